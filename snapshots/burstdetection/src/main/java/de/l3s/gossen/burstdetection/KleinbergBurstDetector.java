@@ -1,13 +1,20 @@
 package de.l3s.gossen.burstdetection;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.google.common.collect.Lists;
 
 import de.l3s.gossen.burstdetection.Burst.Direction;
 import de.l3s.gossen.burstdetection.impl.Cell;
+import de.l3s.gossen.burstdetection.impl.Trellis;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -371,4 +378,170 @@ public class KleinbergBurstDetector extends GenericBurstDetector {
 		return findBursts(object, intValues, documentFrequencies, inputStates, gamma,
 				densityScaling);
 	}
+
+	/* Batch detection over many objects against the same documentFrequencies */
+
+	/** Number of objects handed to a thread at once */
+	private static final int BATCH_CHUNK = 256;
+
+	/** Largest document frequency for which log factorials are tabulated */
+	private static final int MAX_LOG_FACTORIALS = 1 << 22;
+
+	/** Trellis buffers of each thread, reused for every object */
+	private static final ThreadLocal<Trellis> TRELLISES = new ThreadLocal<Trellis>() {
+		@Override
+		protected Trellis initialValue() {
+			return new Trellis();
+		}
+	};
+
+	/** log(i!) for i up to the largest document frequency, null if not yet computed */
+	private volatile double[] logFactorials;
+
+	/** Returns the table of log factorials, or null if the frequencies are too large */
+	private double[] logFactorials() {
+		double[] table = logFactorials;
+		if (table == null) {
+			int max = 0;
+			for (int df : documentFrequencies) {
+				max = Math.max(max, df);
+			}
+			if (max > MAX_LOG_FACTORIALS) {
+				return null;
+			}
+			table = new double[max + 1];
+			for (int i = 1; i <= max; i++) {
+				table[i] = table[i - 1] + Math.log(i);
+			}
+			logFactorials = table;
+		}
+		return table;
+	}
+
+	/**
+	 * Detects the bursts of one object in the current thread like
+	 * {@link #detectBursts(Object, double[])}, but without allocating cells:
+	 * the trellis is reused across calls of the same thread, log(n choose k)
+	 * is computed once per bin from a shared table instead of once per bin and
+	 * level, and the values that only depend on documentFrequencies are
+	 * computed once per detector. The results agree up to floating point
+	 * rounding. Like detectBursts, it throws a RuntimeException for an object
+	 * that never occurs.
+	 */
+	public <O> List<Burst<O>> detectBurstsInPlace(O object, double[] values) {
+		checkArgument(values.length == documentFrequencies.length,
+				"#objectFrequencies (%s) != #documentFrequencies (%s)", values.length,
+				documentFrequencies.length);
+		checkNotNull(object);
+
+		int n = values.length;
+		int binK = 0;
+		int binN = 0;
+		for (int i = 0; i < n; i++) {
+			binK += (int) values[i];
+			binN += documentFrequencies[i];
+		}
+		if ("".equals(object)) {
+			return Collections.emptyList();
+		}
+		if (binK == 0 || binN == 0) {
+			throw new RuntimeException("A word bursted on is never used");
+		}
+		int levels = inputStates + 1;
+		double[] fRate = initializeFRate((double) binN / (double) binK, levels, densityScaling);
+		double[] logP = new double[levels];
+		double[] logQ = new double[levels];
+		for (int k = 0; k < levels; k++) {
+			double probability = 1.0 / fRate[k];
+			if (probability >= 1.0) {
+				throw new IllegalArgumentException("probability >= 1.0, got " + probability);
+			}
+			logP[k] = Math.log(probability);
+			logQ[k] = Math.log(1.0 - probability);
+		}
+
+		double[] table = logFactorials();
+		Trellis trellis = TRELLISES.get();
+		trellis.reset(n, levels);
+		for (int j = 0; j < n; j++) {
+			int entry = (int) values[j];
+			int base = documentFrequencies[j];
+			double lc = (table != null && entry <= base) ? table[base] - table[base - entry] - table[entry]
+					: logChoose(base, entry);
+			for (int k = 0; k < levels; k++) {
+				trellis.setCost(j, k, -1 * (lc + entry * logP[k] + (base - entry) * logQ[k]));
+			}
+		}
+		trellis.compute(computeTransCost(n, gamma));
+
+		List<Burst<O>> bursts = Lists.newArrayList();
+		for (int i = 0; i < n; i++) {
+			for (int level = inputStates - 1; level >= 0; level--) {
+				if (trellis.getCandidate(i, level)
+						&& trellis.getBreakpoint(i, level) - i + 1 >= MIN_SLENGTH
+						&& trellis.getTotalPower(i, level) >= POWER_THRESH) {
+					bursts.add(Burst.of(object, i, trellis.getBreakpoint(i, level), level,
+							trellis.getTotalPower(i, level), Direction.HIGHER));
+				}
+			}
+		}
+		return bursts;
+	}
+
+	/**
+	 * Detects the bursts of many objects in parallel on the executor. The
+	 * objects are split into chunks, each of which is processed by
+	 * {@link #detectBurstsInPlace(Object, double[])} in one thread. Returns the
+	 * bursts of each object, in the order of the objects.
+	 */
+	public <O> List<List<Burst<O>>> detectBursts(final List<O> objects, final List<double[]> values,
+			ExecutorService executor) throws InterruptedException {
+		checkArgument(objects.size() == values.size(), "#objects (%s) != #values (%s)",
+				objects.size(), values.size());
+		final List<List<Burst<O>>> results = new ArrayList<List<Burst<O>>>(
+				Collections.<List<Burst<O>>> nCopies(objects.size(), null));
+		List<Future<?>> futures = Lists.newArrayList();
+		for (int start = 0; start < objects.size(); start += BATCH_CHUNK) {
+			final int from = start;
+			final int to = Math.min(start + BATCH_CHUNK, objects.size());
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int i = from; i < to; i++) {
+						results.set(i, detectBurstsInPlace(objects.get(i), values.get(i)));
+					}
+					return null;
+				}
+			}));
+		}
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			for (Future<?> future : futures) {
+				future.cancel(true);
+			}
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+		return results;
+	}
+
+	/**
+	 * Detects the bursts of many objects with the given number of threads, see
+	 * {@link #detectBursts(List, List, ExecutorService)}
+	 */
+	public <O> List<List<Burst<O>>> detectBursts(List<O> objects, List<double[]> values, int threads)
+			throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			return detectBursts(objects, values, executor);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 }
@@ -0,0 +1,215 @@
+package de.l3s.gossen.burstdetection;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import de.l3s.gossen.burstdetection.Burst.Direction;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Incremental version of {@link KleinbergBurstDetector} for series that grow
+ * one bin at a time. Each object keeps a {@link State} of O(states) size with
+ * the costs of the Viterbi trellis up to the last bin, and
+ * {@link #update(Object, State, int, int)} advances it by one bin in O(states)
+ * time. The base rate is the rate of the object in all bins seen so far, and
+ * the transition cost is computed for a fixed horizon of bins instead of the
+ * length of the whole series.
+ * <p>
+ * Unlike the offline algorithm, the state of a bin is decided when the bin
+ * arrives (the cheapest state at that point) and is not revised by later
+ * bins, so bursts may start a little later and end a little earlier than in
+ * the offline result.
+ * @author tuan
+ */
+public class OnlineKleinbergBurstDetector {
+
+	/** Per-object state of the detection, see {@link #newState()} */
+	public static class State {
+		/** Number of bins seen */
+		private int bins;
+		/** Sum of the object counts */
+		private long binK;
+		/** Sum of the document counts */
+		private long binN;
+		/** Viterbi costs of the best path ending in each level, minus their minimum */
+		private final double[] totals;
+		/** First bin of the open burst of each level, -1 if none */
+		private final int[] starts;
+		/** Strength of the open burst of each level */
+		private final double[] powers;
+
+		private State(int levels) {
+			totals = new double[levels];
+			starts = new int[levels - 1];
+			powers = new double[levels - 1];
+			Arrays.fill(starts, -1);
+		}
+
+		/** Number of bins seen */
+		public int getBins() {
+			return bins;
+		}
+
+		/** Writes the state in 28 + 20 * states bytes */
+		public void write(DataOutput out) throws IOException {
+			out.writeInt(bins);
+			out.writeLong(binK);
+			out.writeLong(binN);
+			for (double total : totals) {
+				out.writeDouble(total);
+			}
+			for (int i = 0; i < starts.length; i++) {
+				out.writeInt(starts[i]);
+				out.writeDouble(powers[i]);
+			}
+		}
+
+		private void readFields(DataInput in) throws IOException {
+			bins = in.readInt();
+			binK = in.readLong();
+			binN = in.readLong();
+			for (int k = 0; k < totals.length; k++) {
+				totals[k] = in.readDouble();
+			}
+			for (int i = 0; i < starts.length; i++) {
+				starts[i] = in.readInt();
+				powers[i] = in.readDouble();
+			}
+		}
+	}
+
+	/** Highest probability of an object in a level, so that all costs stay finite */
+	private static final double MAX_PROBABILITY = 1 - 1e-12;
+
+	private final int inputStates;
+	private final double densityScaling;
+	private final double transCost;
+
+	/**
+	 * @param inputStates
+	 *            number of burst states above the base state
+	 * @param gamma
+	 *            transition rate
+	 * @param densityScaling
+	 *            rate ratio between successive states
+	 * @param horizon
+	 *            number of bins the transition cost is computed for, e.g.
+	 *            the number of bins of a year
+	 */
+	public OnlineKleinbergBurstDetector(int inputStates, double gamma, double densityScaling, int horizon) {
+		checkArgument(inputStates > 0, "inputStates (%s) must be > 0", inputStates);
+		checkArgument(densityScaling > 1, "densityScaling (%s) must be > 1", densityScaling);
+		this.inputStates = inputStates;
+		this.densityScaling = densityScaling;
+		this.transCost = KleinbergBurstDetector.computeTransCost(horizon, gamma);
+	}
+
+	public OnlineKleinbergBurstDetector(int horizon) {
+		this(KleinbergBurstDetector.DEFAULT_STATES, KleinbergBurstDetector.DEFAULT_GAMMA,
+				KleinbergBurstDetector.DEFAULT_DENSITY_SCALING, horizon);
+	}
+
+	/** Returns the state of an object before its first bin */
+	public State newState() {
+		return new State(inputStates + 1);
+	}
+
+	/** Reads a state written by {@link State#write(DataOutput)} */
+	public State readState(DataInput in) throws IOException {
+		State state = newState();
+		state.readFields(in);
+		return state;
+	}
+
+	/**
+	 * Adds the next bin of an object and returns its bursts that include this
+	 * bin, one for each burst level whose burst is open, from the highest level
+	 * (0) to the lowest. A burst is new if it starts at this bin and extended
+	 * otherwise; a burst that is not returned any more has ended at the
+	 * previous bin.
+	 */
+	public <O> List<Burst<O>> update(O object, State state, int count, int documentFrequency) {
+		checkNotNull(object);
+		checkArgument(count >= 0 && count <= documentFrequency,
+				"count (%s) must be between 0 and documentFrequency (%s)", count, documentFrequency);
+		int levels = inputStates + 1;
+		int bin = state.bins++;
+		state.binK += count;
+		state.binN += documentFrequency;
+
+		// Costs of the bin in each level, without log(n choose k), which is the same for all levels
+		double[] costs = new double[levels];
+		double base = state.binN == 0 ? 0 : (double) state.binK / (double) state.binN;
+		double probability = base;
+		for (int k = levels - 1; k >= 0; k--) {
+			if (base == 0) {
+				costs[k] = 0;
+			} else {
+				// a rate of 1 would make the costs infinite and the totals NaN for good
+				double p = Math.min(probability, MAX_PROBABILITY);
+				costs[k] = -(count * Math.log(p) + (documentFrequency - count) * Math.log(1.0 - p));
+			}
+			probability *= densityScaling;
+		}
+
+		// One step of the Viterbi recursion; moving from level m up to level k < m
+		// costs transCost * (m - k), moving down is free. The best predecessor is
+		// the minimum of a prefix minimum (m <= k) and a suffix minimum (m > k).
+		double[] totals = state.totals;
+		double[] next = new double[levels];
+		if (bin == 0) {
+			for (int k = 0; k < levels; k++) {
+				next[k] = costs[k] + transCost * (levels - 1 - k);
+			}
+		} else {
+			double up = Double.POSITIVE_INFINITY;
+			for (int k = levels - 1; k >= 0; k--) {
+				next[k] = up - transCost * k;
+				up = Math.min(up, totals[k] + transCost * k);
+			}
+			double down = Double.POSITIVE_INFINITY;
+			for (int k = 0; k < levels; k++) {
+				down = Math.min(down, totals[k]);
+				next[k] = costs[k] + Math.min(down, next[k]);
+			}
+		}
+		int current = levels - 1;
+		for (int k = levels - 2; k >= 0; k--) {
+			if (next[k] < next[current]) {
+				current = k;
+			}
+		}
+		double min = next[current];
+		for (int k = 0; k < levels; k++) {
+			totals[k] = next[k] - min;
+		}
+
+		// Open, extend or close the bursts of each level
+		List<Burst<O>> bursts = null;
+		for (int k = 0; k < levels - 1; k++) {
+			if (current <= k) {
+				if (state.starts[k] < 0) {
+					state.starts[k] = bin;
+					state.powers[k] = 0;
+				}
+				state.powers[k] += costs[levels - 1] - costs[k];
+				if (bursts == null) {
+					bursts = Lists.newArrayList();
+				}
+				bursts.add(Burst.of(object, state.starts[k], bin, k, state.powers[k], Direction.HIGHER));
+			} else {
+				state.starts[k] = -1;
+				state.powers[k] = 0;
+			}
+		}
+		return bursts == null ? Collections.<Burst<O>> emptyList() : bursts;
+	}
+}
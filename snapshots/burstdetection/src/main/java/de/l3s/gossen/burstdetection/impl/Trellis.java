@@ -0,0 +1,169 @@
+package de.l3s.gossen.burstdetection.impl;
+
+import java.util.Arrays;
+
+/**
+ * The Viterbi trellis of Kleinberg's algorithm in flat arrays, indexed by
+ * <code>bin * levels + level</code>. It holds the same values as an array of
+ * {@link Cell}s, but it is allocated once and reused for every series, so it
+ * is meant to be kept per thread. Only the values needed to report bursts
+ * (candidates, breakpoints and total powers) are computed.
+ * @author tuan
+ */
+public class Trellis {
+	private int n;
+	private int levels;
+
+	private double[] costs = new double[0];
+	private double[] totals = new double[0];
+	private double[] totalPowers = new double[0];
+	private int[] previousPaths = new int[0];
+	private int[] breakpoints = new int[0];
+	private boolean[] marks = new boolean[0];
+	private boolean[] candidates = new boolean[0];
+	private int[] paths = new int[0];
+	private int[] leftBarrier = new int[0];
+
+	/** Prepares the trellis for n bins with the given number of levels */
+	public void reset(int n, int levels) {
+		this.n = n;
+		this.levels = levels;
+		int size = n * levels;
+		if (costs.length < size) {
+			costs = new double[size];
+			totals = new double[size];
+			totalPowers = new double[size];
+			previousPaths = new int[size];
+			breakpoints = new int[size];
+			marks = new boolean[size];
+			candidates = new boolean[size];
+		} else {
+			Arrays.fill(totalPowers, 0, size, 0);
+			Arrays.fill(marks, 0, size, false);
+			Arrays.fill(candidates, 0, size, false);
+		}
+		if (paths.length < n) {
+			paths = new int[n];
+		}
+		if (leftBarrier.length < levels) {
+			leftBarrier = new int[levels];
+		}
+	}
+
+	public int size() {
+		return n;
+	}
+
+	public int levels() {
+		return levels;
+	}
+
+	public void setCost(int bin, int level, double cost) {
+		costs[bin * levels + level] = cost;
+	}
+
+	public boolean getCandidate(int bin, int level) {
+		return candidates[bin * levels + level];
+	}
+
+	public int getBreakpoint(int bin, int level) {
+		return breakpoints[bin * levels + level];
+	}
+
+	public double getTotalPower(int bin, int level) {
+		return totalPowers[bin * levels + level];
+	}
+
+	/** Runs the algorithm on the costs set before, as KleinbergBurstDetector does on cells */
+	public void compute(double transCost) {
+		int q = computeTotals(transCost);
+		computePathAndMark(q);
+		computeBreakpoints();
+	}
+
+	private int computeTotals(double transCost) {
+		for (int k = 0; k < levels; k++) {
+			totals[k] = costs[k] + transCost * (levels - 1 - k);
+		}
+		for (int j = 1; j < n; j++) {
+			int cur = j * levels;
+			int prev = cur - levels;
+			for (int k = 0; k < levels; k++) {
+				double cost = costs[cur + k];
+				double d = cost + totals[prev];
+				int q = 0;
+				for (int m = 1; m < levels; m++) {
+					// '<=' prefers the lower level on equal costs, see KleinbergBurstDetector
+					double tmpD = cost + totals[prev + m];
+					if (m > k && (tmpD + transCost * (m - k)) <= d) {
+						d = tmpD + transCost * (m - k);
+						q = m;
+					} else if (m <= k && tmpD <= d) {
+						d = tmpD;
+						q = m;
+					}
+				}
+				totals[cur + k] = d;
+				previousPaths[cur + k] = q;
+			}
+		}
+		int last = (n - 1) * levels;
+		double d = totals[last];
+		int q = 0;
+		for (int m = 1; m < levels; m++) {
+			if (totals[last + m] < d) {
+				d = totals[last + m];
+				q = m;
+			}
+		}
+		return q;
+	}
+
+	private void computePathAndMark(int q) {
+		paths[n - 1] = q;
+		for (int j = n - 2; j >= 0; j--) {
+			paths[j] = previousPaths[(j + 1) * levels + paths[j + 1]];
+		}
+		for (int k = paths[0]; k < levels - 1; k++) {
+			marks[k] = true;
+		}
+		for (int j = 1; j < n; j++) {
+			for (int k = paths[j]; k < paths[j - 1]; k++) {
+				marks[j * levels + k] = true;
+			}
+		}
+	}
+
+	private void computeBreakpoints() {
+		Arrays.fill(leftBarrier, 0, levels, -1);
+		for (int j = 0; j < n; j++) {
+			int cur = j * levels;
+			for (int k = 0; k < levels - 1; k++) {
+				if (marks[cur + k]) {
+					leftBarrier[k] = j;
+				}
+			}
+			for (int k = 0; k < paths[j]; k++) {
+				if (leftBarrier[k] >= 0) {
+					int barrier = leftBarrier[k] * levels + k;
+					breakpoints[barrier] = j;
+					candidates[barrier] = true;
+					leftBarrier[k] = -1;
+				}
+			}
+			for (int k = paths[j]; k < levels - 1; k++) {
+				if (leftBarrier[k] >= 0) {
+					totalPowers[leftBarrier[k] * levels + k] += costs[cur + levels - 1] - costs[cur + k];
+				}
+			}
+		}
+		for (int k = 0; k < levels - 1; k++) {
+			if (leftBarrier[k] >= 0) {
+				int barrier = leftBarrier[k] * levels + k;
+				breakpoints[barrier] = n - 1;
+				candidates[barrier] = true;
+				leftBarrier[k] = -1;
+			}
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package de.l3s.gossen.burst;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import de.l3s.gossen.burstdetection.Burst;
+import de.l3s.gossen.burstdetection.KleinbergBurstDetector;
+
+import static de.l3s.gossen.burstdetection.KleinbergBurstDetector.DEFAULT_DENSITY_SCALING;
+import static de.l3s.gossen.burstdetection.KleinbergBurstDetector.DEFAULT_GAMMA;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class BatchBurstDetectionTest {
+
+	private static final int BINS = 200;
+
+	private static int[] documentFrequencies(Random random) {
+		int[] df = new int[BINS];
+		for (int i = 0; i < BINS; i++) {
+			df[i] = 30000 + random.nextInt(20000);
+		}
+		return df;
+	}
+
+	/** Poisson-like term counts with a few random bursts */
+	private static List<double[]> termFrequencies(Random random, int terms) {
+		List<double[]> values = Lists.newArrayList();
+		for (int t = 0; t < terms; t++) {
+			double[] tf = new double[BINS];
+			double rate = 1 + random.nextInt(200);
+			int burstStart = random.nextInt(BINS);
+			int burstEnd = Math.min(BINS, burstStart + random.nextInt(20));
+			for (int i = 0; i < BINS; i++) {
+				double r = (i >= burstStart && i < burstEnd) ? 3 * rate : rate;
+				tf[i] = Math.max(0, Math.round(r + Math.sqrt(r) * random.nextGaussian()));
+			}
+			values.add(tf);
+		}
+		return values;
+	}
+
+	private static List<String> names(int terms) {
+		List<String> objects = Lists.newArrayList();
+		for (int t = 0; t < terms; t++) {
+			objects.add("term" + t);
+		}
+		return objects;
+	}
+
+	@Test
+	public void testBatchAgreesWithSingleCalls() throws Exception {
+		Random random = new Random(42);
+		KleinbergBurstDetector detector = new KleinbergBurstDetector(documentFrequencies(random), 3,
+				DEFAULT_GAMMA, DEFAULT_DENSITY_SCALING);
+		List<double[]> values = termFrequencies(random, 500);
+		List<String> objects = names(values.size());
+
+		List<List<Burst<String>>> batch = detector.detectBursts(objects, values, 4);
+		for (int t = 0; t < objects.size(); t++) {
+			Collection<Burst<String>> expected = detector.detectBursts(objects.get(t), values.get(t));
+			List<Burst<String>> actual = batch.get(t);
+			assertEquals(objects.get(t), expected.size(), actual.size());
+			Iterator<Burst<String>> it = actual.iterator();
+			for (Burst<String> e : expected) {
+				Burst<String> a = it.next();
+				assertEquals(e.getStart(), a.getStart());
+				assertEquals(e.getEnd(), a.getEnd());
+				assertEquals(e.getState(), a.getState());
+				assertEquals(e.getStrength(), a.getStrength(), 1e-6 * Math.max(1, Math.abs(e.getStrength())));
+			}
+		}
+	}
+
+	@Test
+	public void testUnusedObjectIsRejectedByBoth() {
+		KleinbergBurstDetector detector = new KleinbergBurstDetector(documentFrequencies(new Random(7)));
+		double[] never = new double[BINS];
+		try {
+			detector.detectBursts("unused", never);
+			fail("detectBursts accepted an unused object");
+		} catch (RuntimeException expected) {
+		}
+		try {
+			detector.detectBurstsInPlace("unused", never);
+			fail("detectBurstsInPlace accepted an unused object");
+		} catch (RuntimeException expected) {
+		}
+	}
+
+	/** Compares the per-call detection with the batch detection (wall clock, after warm-up) */
+	@Ignore
+	@Test
+	public void benchmark() throws Exception {
+		Random random = new Random(1);
+		KleinbergBurstDetector detector = new KleinbergBurstDetector(documentFrequencies(random));
+		List<double[]> values = termFrequencies(random, 2000);
+		List<String> objects = names(values.size());
+		int threads = Runtime.getRuntime().availableProcessors();
+
+		for (int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			int bursts = 0;
+			for (int t = 0; t < objects.size(); t++) {
+				bursts += detector.detectBursts(objects.get(t), values.get(t)).size();
+			}
+			long perCall = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			int inPlace = 0;
+			for (int t = 0; t < objects.size(); t++) {
+				inPlace += detector.detectBurstsInPlace(objects.get(t), values.get(t)).size();
+			}
+			long single = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			int batched = 0;
+			for (List<Burst<String>> b : detector.detectBursts(objects, values, threads)) {
+				batched += b.size();
+			}
+			long batch = System.nanoTime() - start;
+
+			System.out.printf("round %d: per call %d ms (%d bursts), in place %d ms (%d), batch on %d threads %d ms (%d)%n",
+					round, perCall / 1000000, bursts, single / 1000000, inPlace, threads, batch / 1000000, batched);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package de.l3s.gossen.burst;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.l3s.gossen.burstdetection.Burst;
+import de.l3s.gossen.burstdetection.OnlineKleinbergBurstDetector;
+import de.l3s.gossen.burstdetection.OnlineKleinbergBurstDetector.State;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OnlineBurstDetectionTest {
+
+	private static final int BINS = 200;
+	private static final int BURST_START = 120;
+	private static final int BURST_END = 140;
+
+	private static int count(Random random, int bin) {
+		double rate = (bin >= BURST_START && bin < BURST_END) ? 150 : 50;
+		return (int) Math.max(0, Math.round(rate + Math.sqrt(rate) * random.nextGaussian()));
+	}
+
+	@Test
+	public void testDetectsBurst() {
+		Random random = new Random(7);
+		OnlineKleinbergBurstDetector detector = new OnlineKleinbergBurstDetector(BINS);
+		State state = detector.newState();
+		int inBurst = 0;
+		int outside = 0;
+		for (int bin = 0; bin < BINS; bin++) {
+			List<Burst<String>> bursts = detector.update("foo", state, count(random, bin), 40000);
+			for (Burst<String> burst : bursts) {
+				assertEquals(bin, burst.getEnd());
+				assertTrue(burst.getStart() <= bin);
+			}
+			if (bursts.isEmpty()) {
+				continue;
+			}
+			if (bin >= BURST_START && bin < BURST_END) {
+				inBurst++;
+			} else {
+				outside++;
+			}
+		}
+		assertEquals(BINS, state.getBins());
+		assertTrue("bins in burst " + inBurst, inBurst >= BURST_END - BURST_START - 2);
+		assertTrue("bins outside burst " + outside, outside <= 3);
+	}
+
+	@Test
+	public void testSaturatedFirstBin() {
+		Random random = new Random(7);
+		OnlineKleinbergBurstDetector detector = new OnlineKleinbergBurstDetector(BINS);
+		State state = detector.newState();
+		// the base rate is 1 after this bin
+		detector.update("foo", state, 1, 1);
+		int inBurst = 0;
+		for (int bin = 0; bin < BINS; bin++) {
+			List<Burst<String>> bursts = detector.update("foo", state, count(random, bin), 40000);
+			if (!bursts.isEmpty() && bin >= BURST_START && bin < BURST_END) {
+				inBurst++;
+			}
+		}
+		assertTrue("bins in burst " + inBurst, inBurst >= BURST_END - BURST_START - 2);
+	}
+
+	@Test
+	public void testCheckpoint() throws Exception {
+		Random random = new Random(3);
+		OnlineKleinbergBurstDetector detector = new OnlineKleinbergBurstDetector(BINS);
+		State state = detector.newState();
+		int[] counts = new int[BINS];
+		for (int bin = 0; bin < BINS; bin++) {
+			counts[bin] = count(random, bin);
+		}
+		for (int bin = 0; bin < BURST_START + 5; bin++) {
+			detector.update("foo", state, counts[bin], 40000);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		state.write(new DataOutputStream(bytes));
+		State restored = detector.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		for (int bin = BURST_START + 5; bin < BINS; bin++) {
+			List<Burst<String>> expected = detector.update("foo", state, counts[bin], 40000);
+			List<Burst<String>> actual = detector.update("foo", restored, counts[bin], 40000);
+			assertEquals(expected.toString(), actual.toString());
+		}
+	}
+}
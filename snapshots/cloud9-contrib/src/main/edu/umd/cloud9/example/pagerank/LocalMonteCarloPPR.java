@@ -0,0 +1,621 @@
+/*
+ * Cloud9: A MapReduce Library for Hadoop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package edu.umd.cloud9.example.pagerank;
+
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tuan.collections.FloatArrayList;
+import tuan.collections.IntArrayList;
+import tuan.collections.IntIntHashMap;
+
+/**
+ * A single-machine version of {@link BasicMonteCarloPPR}: since that job
+ * already assumes that the graph fits in memory, this one loads it once
+ * and runs all the random walks in one process, instead of one MapReduce
+ * round per step.
+ * <p>
+ * The input is the same plain-text graph, one node per line: the node id
+ * followed by pairs of neighbor id and weight, separated by white space.
+ * It is parsed straight from the bytes into CSR arrays: the edges of the
+ * node with index i are <code>offsets[i] .. offsets[i+1]-1</code> in
+ * <code>targets</code> and in <code>cumulativeWeights</code>, which holds
+ * the running sum of the weights of the node. Neighbors that have no line
+ * of their own are dangling nodes without edges.
+ * <p>
+ * The walks are those of BasicMonteCarloPPR: a walk starts at its source
+ * node, stops with probability <code>jumpFactor</code> at every node (and
+ * at dangling nodes), and otherwise moves to a neighbor with a probability
+ * proportional to the weight of the edge. Neighbors are sampled in constant
+ * time from alias tables built at load time, or by a binary search in the
+ * cumulative weights, which needs no extra memory. The personalized
+ * PageRank of a source is the distribution of the ends of its walks,
+ * written like the output of phase 3: the source id, and then every end
+ * node id with its frequency, in the order of the ids, all separated by
+ * tabs.
+ * <p>
+ * The sources are processed in blocks on all threads, and the blocks are
+ * written in the order of the source ids. Every source draws from its own
+ * generator, split from the one of the seed, so that the output only
+ * depends on the seed and not on the number of threads.
+ *
+ * @author tuan
+ *
+ */
+public class LocalMonteCarloPPR {
+
+	/** number of sources given to a thread at once */
+	private static final int BLOCK_SIZE = 256;
+
+	/** node ids, by index */
+	private final int[] ids;
+
+	/** number of nodes that have a line in the input, which come first */
+	private final int numSources;
+
+	private final int[] offsets;
+	private final int[] targets;
+	private final float[] cumulativeWeights;
+
+	/** the alias tables, or null for binary search sampling */
+	private float[] aliasProbabilities;
+	private int[] aliases;
+
+	private LocalMonteCarloPPR(int[] ids, int numSources, int[] offsets,
+			int[] targets, float[] cumulativeWeights) {
+		this.ids = ids;
+		this.numSources = numSources;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.cumulativeWeights = cumulativeWeights;
+	}
+
+	/**
+	 * Loads a graph in the text format of {@link BasicMonteCarloPPR}, and
+	 * builds the alias tables if asked to
+	 */
+	public static LocalMonteCarloPPR load(InputStream in, boolean alias)
+			throws IOException {
+		IntIntHashMap index = new IntIntHashMap();
+		IntArrayList nodeIds = new IntArrayList();
+		IntArrayList offsetLst = new IntArrayList();
+		IntArrayList targetIds = new IntArrayList();
+		FloatArrayList weights = new FloatArrayList();
+		offsetLst.add(0);
+
+		LineScanner scanner = new LineScanner(in);
+		while (scanner.nextLine()) {
+			if (!scanner.nextToken()) {
+				continue;
+			}
+			int nodeId = scanner.intToken();
+			if (index.containsKey(nodeId)) {
+				throw new IOException("line " + scanner.lineNo
+						+ ": node " + nodeId + " appears twice");
+			}
+			index.put(nodeId, nodeIds.size);
+			nodeIds.add(nodeId);
+			float sum = 0f;
+			while (scanner.nextToken()) {
+				int target = scanner.intToken();
+				if (!scanner.nextToken()) {
+					throw new IOException("line " + scanner.lineNo
+							+ ": neighbor " + target + " without weight");
+				}
+				float weight = scanner.floatToken();
+				if (!(weight >= 0f)) {
+					throw new IOException("line " + scanner.lineNo
+							+ ": invalid weight " + weight);
+				}
+				sum += weight;
+				targetIds.add(target);
+				weights.add(sum);
+			}
+			offsetLst.add(targetIds.size);
+		}
+
+		// map the neighbors to indices, appending the dangling ones
+		int numSources = nodeIds.size;
+		int[] targets = new int[targetIds.size];
+		for (int i = 0; i < targets.length; i++) {
+			int id = targetIds.get(i);
+			int t = index.get(id, -1);
+			if (t < 0) {
+				t = nodeIds.size;
+				index.put(id, t);
+				nodeIds.add(id);
+				offsetLst.add(targets.length);
+			}
+			targets[i] = t;
+		}
+		LocalMonteCarloPPR graph = new LocalMonteCarloPPR(
+				Arrays.copyOf(nodeIds.items, nodeIds.size), numSources,
+				Arrays.copyOf(offsetLst.items, offsetLst.size), targets,
+				Arrays.copyOf(weights.items, weights.size));
+		if (alias) {
+			graph.buildAliasTables();
+		}
+		return graph;
+	}
+
+	/** Builds the alias tables of all nodes, with Vose's method */
+	private void buildAliasTables() {
+		aliasProbabilities = new float[targets.length];
+		aliases = new int[targets.length];
+		int maxDegree = 0;
+		for (int v = 0; v < ids.length; v++) {
+			maxDegree = Math.max(maxDegree, offsets[v + 1] - offsets[v]);
+		}
+		double[] p = new double[maxDegree];
+		int[] small = new int[maxDegree];
+		int[] large = new int[maxDegree];
+		for (int v = 0; v < ids.length; v++) {
+			int begin = offsets[v], degree = offsets[v + 1] - begin;
+			if (degree == 0) {
+				continue;
+			}
+			double total = cumulativeWeights[begin + degree - 1];
+			int ns = 0, nl = 0;
+			double previous = 0.0;
+			for (int j = 0; j < degree; j++) {
+				double w = cumulativeWeights[begin + j];
+				p[j] = (total > 0.0) ? (w - previous) * degree / total : 1.0;
+				previous = w;
+				if (p[j] < 1.0) {
+					small[ns++] = j;
+				} else {
+					large[nl++] = j;
+				}
+			}
+			while (ns > 0 && nl > 0) {
+				int s = small[--ns], l = large[--nl];
+				aliasProbabilities[begin + s] = (float) p[s];
+				aliases[begin + s] = begin + l;
+				p[l] -= 1.0 - p[s];
+				if (p[l] < 1.0) {
+					small[ns++] = l;
+				} else {
+					large[nl++] = l;
+				}
+			}
+			// what is left has probability 1, up to rounding
+			while (nl > 0) {
+				int l = large[--nl];
+				aliasProbabilities[begin + l] = 1f;
+				aliases[begin + l] = begin + l;
+			}
+			while (ns > 0) {
+				int s = small[--ns];
+				aliasProbabilities[begin + s] = 1f;
+				aliases[begin + s] = begin + s;
+			}
+		}
+	}
+
+	/** number of nodes, dangling ones included */
+	public int numNodes() {
+		return ids.length;
+	}
+
+	/** number of nodes with a line in the input, whose PPR is computed */
+	public int numSources() {
+		return numSources;
+	}
+
+	public int numEdges() {
+		return targets.length;
+	}
+
+	/**
+	 * Runs the walks of all sources on the given number of threads, and
+	 * writes their personalized PageRanks to out in the order of the ids
+	 *
+	 * @param jumpFactor probability of stopping a walk at each node, in
+	 *            (0, 1]
+	 * @param walks number of walks per source
+	 */
+	public void run(final float jumpFactor, final int walks, long seed,
+			int threads, Writer out) throws IOException, InterruptedException {
+		if (!(jumpFactor > 0f && jumpFactor <= 1f)) {
+			throw new IllegalArgumentException(
+					"jumpFactor must be in (0, 1]: " + jumpFactor);
+		}
+		if (walks < 1 || threads < 1) {
+			throw new IllegalArgumentException("walks and threads must be "
+					+ "at least 1: " + walks + ", " + threads);
+		}
+
+		// sources in the order of their ids
+		long[] keys = new long[numSources];
+		for (int i = 0; i < numSources; i++) {
+			keys[i] = ((long) ids[i] << 32) | i;
+		}
+		Arrays.sort(keys);
+		final int[] order = new int[numSources];
+		for (int i = 0; i < numSources; i++) {
+			order[i] = (int) keys[i];
+		}
+
+		final SplitMix64 root = new SplitMix64(seed);
+		final ThreadLocal<int[]> ends = new ThreadLocal<int[]>() {
+			@Override
+			protected int[] initialValue() {
+				return new int[walks];
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			// keep a few blocks per thread in flight, and write them in order
+			ArrayDeque<Future<String>> pending = new ArrayDeque<Future<String>>();
+			for (int from = 0; from < numSources; from += BLOCK_SIZE) {
+				final int blockFrom = from;
+				final int blockTo = Math.min(numSources, from + BLOCK_SIZE);
+				pending.add(executor.submit(new Callable<String>() {
+					public String call() {
+						StringBuilder s = new StringBuilder();
+						int[] buf = ends.get();
+						for (int i = blockFrom; i < blockTo; i++) {
+							walk(order[i], jumpFactor, buf, root.split(order[i]));
+							append(s, ids[order[i]], buf);
+						}
+						return s.toString();
+					}
+				}));
+				if (pending.size() >= 4 * threads) {
+					out.write(get(pending.poll()));
+				}
+			}
+			while (!pending.isEmpty()) {
+				out.write(get(pending.poll()));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static String get(Future<String> future)
+			throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/** Runs ends.length walks from the source, and keeps the ids of their ends */
+	private void walk(int source, float jumpFactor, int[] ends,
+			SplitMix64 rng) {
+		for (int w = 0; w < ends.length; w++) {
+			int v = source;
+			while (rng.nextFloat() >= jumpFactor) {
+				int begin = offsets[v], degree = offsets[v + 1] - begin;
+				if (degree == 0 || cumulativeWeights[begin + degree - 1] <= 0f) {
+					break;
+				}
+				v = targets[sample(begin, degree, rng)];
+			}
+			ends[w] = ids[v];
+		}
+	}
+
+	/** Returns the position of a random edge among degree ones from begin */
+	private int sample(int begin, int degree, SplitMix64 rng) {
+		long r = rng.nextLong();
+		if (aliases != null) {
+			// the high 32 bits pick a column, the low 24 bits the coin
+			int i = begin + (int) (((r >>> 32) * degree) >>> 32);
+			float coin = (r & 0xFFFFFF) * 0x1.0p-24f;
+			return (coin < aliasProbabilities[i]) ? i : aliases[i];
+		}
+		float x = (r >>> 40) * 0x1.0p-24f * cumulativeWeights[begin + degree - 1];
+		int low = begin, high = begin + degree - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (cumulativeWeights[mid] > x) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	/** Appends the frequencies of the ends, like the reducer of phase 3 */
+	private static void append(StringBuilder s, int sourceId, int[] ends) {
+		Arrays.sort(ends);
+		s.append(sourceId);
+		s.append("\t");
+		for (int i = 0; i < ends.length;) {
+			int j = i + 1;
+			while (j < ends.length && ends[j] == ends[i]) {
+				j++;
+			}
+			s.append(ends[i]);
+			s.append("\t");
+			s.append((float) (j - i) / ends.length);
+			s.append("\t");
+			i = j;
+		}
+		s.append("\n");
+	}
+
+	/**
+	 * Reads the lines and white-space separated tokens of the input, from a
+	 * buffer of bytes that is reused for all of them
+	 */
+	private static final class LineScanner {
+		private final InputStream in;
+		private final byte[] buf = new byte[1 << 16];
+		private int pos = 0, limit = 0;
+		private boolean eof = false, eol = true;
+		private int lineNo = 0;
+
+		private byte[] token = new byte[32];
+		private int tokenLength;
+
+		LineScanner(InputStream in) {
+			this.in = in;
+		}
+
+		private int read() throws IOException {
+			if (pos == limit) {
+				if (eof) {
+					return -1;
+				}
+				limit = in.read(buf);
+				pos = 0;
+				if (limit <= 0) {
+					eof = true;
+					limit = 0;
+					return -1;
+				}
+			}
+			return buf[pos++] & 0xFF;
+		}
+
+		/** Skips the rest of the current line, returns false at the end */
+		boolean nextLine() throws IOException {
+			while (!eol) {
+				int c = read();
+				if (c == -1) {
+					return false;
+				}
+				eol = (c == '\n');
+			}
+			if (read() == -1) {
+				return false;
+			}
+			pos--;
+			eol = false;
+			lineNo++;
+			return true;
+		}
+
+		/** Reads the next token of the line, returns false at its end */
+		boolean nextToken() throws IOException {
+			if (eol) {
+				return false;
+			}
+			int c = read();
+			while (c == ' ' || c == '\t' || c == '\r') {
+				c = read();
+			}
+			if (c == '\n' || c == -1) {
+				eol = true;
+				return false;
+			}
+			tokenLength = 0;
+			while (c != ' ' && c != '\t' && c != '\r' && c != '\n' && c != -1) {
+				if (tokenLength == token.length) {
+					token = Arrays.copyOf(token, 2 * tokenLength);
+				}
+				token[tokenLength++] = (byte) c;
+				c = read();
+			}
+			eol = (c == '\n' || c == -1);
+			return true;
+		}
+
+		int intToken() throws IOException {
+			int i = 0;
+			boolean negative = token[0] == '-';
+			if (negative || token[0] == '+') {
+				i++;
+			}
+			if (i == tokenLength) {
+				throw invalid("number");
+			}
+			long value = 0;
+			for (; i < tokenLength; i++) {
+				int d = token[i] - '0';
+				if (d < 0 || d > 9) {
+					throw invalid("node id");
+				}
+				value = value * 10 + d;
+				if (value > Integer.MAX_VALUE + 1L) {
+					throw invalid("node id");
+				}
+			}
+			value = negative ? -value : value;
+			if (value > Integer.MAX_VALUE) {
+				throw invalid("node id");
+			}
+			return (int) value;
+		}
+
+		/**
+		 * Parses plain decimals like "0.25" directly, and leaves exponents
+		 * and the like to Float.parseFloat()
+		 */
+		float floatToken() throws IOException {
+			int i = 0;
+			boolean negative = token[0] == '-';
+			if (negative || token[0] == '+') {
+				i++;
+			}
+			long mantissa = 0;
+			int digits = 0, decimals = 0;
+			boolean point = false;
+			for (; i < tokenLength; i++) {
+				int c = token[i];
+				if (c == '.' && !point) {
+					point = true;
+				} else if (c >= '0' && c <= '9' && digits < 18) {
+					mantissa = mantissa * 10 + (c - '0');
+					if (mantissa > 0) {
+						digits++;
+					}
+					if (point) {
+						decimals++;
+					}
+				} else {
+					break;
+				}
+			}
+			if (i < tokenLength || decimals > 22) {
+				try {
+					return Float.parseFloat(new String(token, 0, tokenLength, "US-ASCII"));
+				} catch (NumberFormatException e) {
+					throw invalid("weight");
+				}
+			}
+			double value = mantissa / POWERS_OF_TEN[decimals];
+			return (float) (negative ? -value : value);
+		}
+
+		private IOException invalid(String what) throws IOException {
+			return new IOException("line " + lineNo + ": invalid " + what + " "
+					+ new String(token, 0, tokenLength, "US-ASCII"));
+		}
+	}
+
+	private static final double[] POWERS_OF_TEN = new double[23];
+	static {
+		POWERS_OF_TEN[0] = 1.0;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+		}
+	}
+
+	/**
+	 * The SplitMix64 generator of java.util.SplittableRandom (which is
+	 * not in Java 7): a 64-bit counter stepped by an odd gamma and
+	 * scrambled. {@link #split(long)} derives the generator of a source from
+	 * its index alone, so that sources can be processed in any order and on
+	 * any thread.
+	 */
+	static final class SplitMix64 {
+		private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+		private long seed;
+		private final long gamma;
+
+		SplitMix64(long seed) {
+			this(seed, GOLDEN_GAMMA);
+		}
+
+		private SplitMix64(long seed, long gamma) {
+			this.seed = seed;
+			this.gamma = gamma;
+		}
+
+		long nextLong() {
+			return mix64(seed += gamma);
+		}
+
+		/** uniform in [0, 1), from the 24 high bits */
+		float nextFloat() {
+			return (nextLong() >>> 40) * 0x1.0p-24f;
+		}
+
+		/** The index-th child generator; this one does not change */
+		SplitMix64 split(long index) {
+			long s = seed + 2 * index * gamma;
+			return new SplitMix64(mix64(s + gamma), mixGamma(s + 2 * gamma));
+		}
+
+		private static long mix64(long z) {
+			z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+			z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+			return z ^ (z >>> 31);
+		}
+
+		private static long mixGamma(long z) {
+			z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+			z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+			z = (z ^ (z >>> 33)) | 1L;
+			int n = Long.bitCount(z ^ (z >>> 1));
+			return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+		}
+	}
+
+	private static int printUsage() {
+		System.out.println("usage: [input] [output] [jumpFactor] [walks]"
+				+ " [threads (default: all cores)] [seed (default: 0)]"
+				+ " [alias|cumulative (default: alias)]");
+		return -1;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 4 || args.length > 7) {
+			System.exit(printUsage());
+		}
+		float jumpFactor = Float.parseFloat(args[2]);
+		int walks = Integer.parseInt(args[3]);
+		int threads = (args.length > 4) ? Integer.parseInt(args[4])
+				: Runtime.getRuntime().availableProcessors();
+		long seed = (args.length > 5) ? Long.parseLong(args[5]) : 0L;
+		boolean alias = (args.length <= 6) || !"cumulative".equals(args[6]);
+
+		long start = System.currentTimeMillis();
+		InputStream in = new FileInputStream(args[0]);
+		LocalMonteCarloPPR ppr;
+		try {
+			ppr = load(in, alias);
+		} finally {
+			in.close();
+		}
+		System.out.println("Loaded " + ppr.numNodes() + " nodes ("
+				+ ppr.numSources() + " sources) and " + ppr.numEdges()
+				+ " edges in " + (System.currentTimeMillis() - start) + " ms");
+
+		start = System.currentTimeMillis();
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(args[1]), "UTF-8"), 1 << 16);
+		try {
+			ppr.run(jumpFactor, walks, seed, threads, out);
+		} finally {
+			out.close();
+		}
+		System.out.println("Ran " + walks + " walks per source on " + threads
+				+ " threads in " + (System.currentTimeMillis() - start) + " ms");
+	}
+}
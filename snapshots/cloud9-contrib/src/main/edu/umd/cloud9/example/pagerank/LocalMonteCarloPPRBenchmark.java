@@ -0,0 +1,291 @@
+/*
+ * Cloud9: A MapReduce Library for Hadoop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package edu.umd.cloud9.example.pagerank;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmarks {@link LocalMonteCarloPPR} on a synthetic graph shaped like
+ * the Wikipedia link graph (skewed in-degrees, a few percent of dangling
+ * pages), or on a graph file in the text format of
+ * {@link BasicMonteCarloPPR}. It reports the loading time and the walking
+ * time on one thread and on all of them, checks that both give the same
+ * output, and measures the error of the estimates against the exact
+ * personalized PageRanks of a sample of sources, computed by power
+ * iteration on the synthetic graph.
+ * <p>
+ * Given the phase 3 output of BasicMonteCarloPPR on the same graph (and the
+ * time the job took), it compares the vectors of both versions source by
+ * source, with the same L1 distance.
+ * <p>
+ * Usage: LocalMonteCarloPPRBenchmark [nodes|graph file] [average degree]
+ * [walks] [jumpFactor] [MR output file] [MR time in ms]. The English
+ * Wikipedia has about 4.5 million articles and 25 links per article.
+ *
+ * @author tuan
+ *
+ */
+public class LocalMonteCarloPPRBenchmark {
+
+	/** number of sources whose estimates are checked against the exact PPR */
+	private static final int SAMPLE = 50;
+
+	private int n;
+	private int[] offsets;
+	private int[] targets;
+	private float[] weights;
+
+	/**
+	 * Generates a graph of n nodes: the targets of the links follow a
+	 * power law, and one node in 20 has no out-link
+	 */
+	private void generate(int n, int averageDegree, Random random) {
+		this.n = n;
+		offsets = new int[n + 1];
+		for (int v = 0; v < n; v++) {
+			int degree = (random.nextInt(20) == 0) ? 0 : 1 + (int) (-Math.log(
+					1.0 - random.nextDouble()) * (averageDegree - 1));
+			offsets[v + 1] = offsets[v] + degree;
+		}
+		targets = new int[offsets[n]];
+		weights = new float[offsets[n]];
+		for (int i = 0; i < targets.length; i++) {
+			double u = random.nextDouble();
+			targets[i] = (int) (n * u * u * u);
+			weights[i] = (1 + random.nextInt(1000)) / 1000f;
+		}
+	}
+
+	private void writeGraph(File file) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file), "UTF-8"), 1 << 16);
+		try {
+			for (int v = 0; v < n; v++) {
+				if (offsets[v] == offsets[v + 1]) {
+					continue;
+				}
+				out.write(Integer.toString(v));
+				for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+					out.write('\t');
+					out.write(Integer.toString(targets[i]));
+					out.write('\t');
+					out.write(Float.toString(weights[i]));
+				}
+				out.write('\n');
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/** The exact distribution of the ends of the walks from a source */
+	private double[] exact(int source, float jumpFactor) {
+		double[] end = new double[n];
+		double[] mass = new double[n];
+		double[] next = new double[n];
+		mass[source] = 1.0;
+		double left = 1.0;
+		while (left > 1e-9) {
+			left = 0.0;
+			for (int v = 0; v < n; v++) {
+				double m = mass[v];
+				if (m == 0.0) {
+					continue;
+				}
+				mass[v] = 0.0;
+				end[v] += m * jumpFactor;
+				m *= 1.0 - jumpFactor;
+				int begin = offsets[v], degree = offsets[v + 1] - begin;
+				if (degree == 0) {
+					end[v] += m;
+					continue;
+				}
+				double total = 0.0;
+				for (int i = begin; i < begin + degree; i++) {
+					total += weights[i];
+				}
+				for (int i = begin; i < begin + degree; i++) {
+					next[targets[i]] += m * weights[i] / total;
+				}
+				left += m;
+			}
+			double[] t = mass;
+			mass = next;
+			next = t;
+		}
+		return end;
+	}
+
+	/** Parses output lines of either version into source -> (node -> frequency) */
+	private static Map<Integer, Map<Integer, Double>> parse(InputStream in)
+			throws IOException {
+		Map<Integer, Map<Integer, Double>> vectors =
+				new HashMap<Integer, Map<Integer, Double>>();
+		BufferedReader reader = new BufferedReader(
+				new InputStreamReader(in, "UTF-8"));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty()) {
+				continue;
+			}
+			String[] tokens = line.split("\t");
+			// phase 3 of BasicMonteCarloPPR repeats the key
+			int first = (tokens.length % 2 == 0) ? 2 : 1;
+			Map<Integer, Double> vector = new HashMap<Integer, Double>();
+			for (int i = first; i + 1 < tokens.length; i += 2) {
+				vector.put(Integer.parseInt(tokens[i]),
+						Double.parseDouble(tokens[i + 1]));
+			}
+			vectors.put(Integer.parseInt(tokens[0]), vector);
+		}
+		return vectors;
+	}
+
+	private static double l1(Map<Integer, Double> a, Map<Integer, Double> b) {
+		double d = 0.0;
+		for (Map.Entry<Integer, Double> e : a.entrySet()) {
+			Double other = b.get(e.getKey());
+			d += Math.abs(e.getValue() - ((other == null) ? 0.0 : other));
+		}
+		for (Map.Entry<Integer, Double> e : b.entrySet()) {
+			if (!a.containsKey(e.getKey())) {
+				d += e.getValue();
+			}
+		}
+		return d;
+	}
+
+	private static double l1(Map<Integer, Double> a, double[] exact) {
+		double d = 0.0;
+		for (int v = 0; v < exact.length; v++) {
+			Double estimate = a.get(v);
+			d += Math.abs(exact[v] - ((estimate == null) ? 0.0 : estimate));
+		}
+		return d;
+	}
+
+	private static long time(LocalMonteCarloPPR ppr, float jumpFactor,
+			int walks, int threads, Writer out) throws Exception {
+		long start = System.currentTimeMillis();
+		ppr.run(jumpFactor, walks, 0L, threads, out);
+		return System.currentTimeMillis() - start;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String graph = (args.length > 0) ? args[0] : "200000";
+		int averageDegree = (args.length > 1) ? Integer.parseInt(args[1]) : 25;
+		int walks = (args.length > 2) ? Integer.parseInt(args[2]) : 100;
+		float jumpFactor = (args.length > 3) ? Float.parseFloat(args[3]) : 0.25f;
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		LocalMonteCarloPPRBenchmark bench = null;
+		File file;
+		if (graph.matches("\\d+")) {
+			bench = new LocalMonteCarloPPRBenchmark();
+			bench.generate(Integer.parseInt(graph), averageDegree, new Random(0));
+			file = File.createTempFile("graph", ".txt");
+			file.deleteOnExit();
+			bench.writeGraph(file);
+			System.out.println("Generated " + bench.n + " nodes and "
+					+ bench.targets.length + " edges, " + file.length() + " bytes");
+		} else {
+			file = new File(graph);
+		}
+
+		for (boolean alias : new boolean[] { true, false }) {
+			long start = System.currentTimeMillis();
+			InputStream in = new FileInputStream(file);
+			LocalMonteCarloPPR ppr;
+			try {
+				ppr = LocalMonteCarloPPR.load(in, alias);
+			} finally {
+				in.close();
+			}
+			String sampling = alias ? "alias" : "cumulative";
+			System.out.println(sampling + ": loaded in "
+					+ (System.currentTimeMillis() - start) + " ms");
+
+			StringWriter one = new StringWriter();
+			StringWriter all = new StringWriter();
+			long t1 = time(ppr, jumpFactor, walks, 1, one);
+			long tn = time(ppr, jumpFactor, walks, cores, all);
+			double walksPerSecond = 1000.0 * ppr.numSources() * walks / tn;
+			System.out.println(sampling + ": " + walks + " walks from each of "
+					+ ppr.numSources() + " sources in " + t1 + " ms on 1 thread, "
+					+ tn + " ms on " + cores + " (" + (long) walksPerSecond
+					+ " walks/s), same output: "
+					+ one.toString().equals(all.toString()));
+
+			Map<Integer, Map<Integer, Double>> local =
+					parse(new ByteArrayInputStream(all.toString()
+							.getBytes("UTF-8")));
+			if (bench != null) {
+				Random random = new Random(1);
+				double error = 0.0;
+				int checked = 0;
+				for (int k = 0; k < SAMPLE; k++) {
+					int source = random.nextInt(bench.n);
+					if (local.containsKey(source)) {
+						error += l1(local.get(source), bench.exact(source, jumpFactor));
+						checked++;
+					}
+				}
+				System.out.println(sampling + ": mean L1 error against the exact"
+						+ " PPR of " + checked + " sources: " + error / checked);
+			}
+
+			if (args.length > 4 && alias) {
+				InputStream mrIn = new FileInputStream(args[4]);
+				Map<Integer, Map<Integer, Double>> mr;
+				try {
+					mr = parse(mrIn);
+				} finally {
+					mrIn.close();
+				}
+				double distance = 0.0;
+				int common = 0;
+				for (Map.Entry<Integer, Map<Integer, Double>> e : mr.entrySet()) {
+					if (local.containsKey(e.getKey())) {
+						distance += l1(e.getValue(), local.get(e.getKey()));
+						common++;
+					}
+				}
+				System.out.println("MapReduce: " + common + " sources in common,"
+						+ " mean L1 distance to the local vectors: "
+						+ distance / common);
+				if (args.length > 5) {
+					System.out.println("MapReduce: " + args[5] + " ms, speed-up "
+							+ (Double.parseDouble(args[5]) / tn));
+				}
+			}
+		}
+	}
+}
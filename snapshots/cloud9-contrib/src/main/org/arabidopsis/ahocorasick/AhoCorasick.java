@@ -27,6 +27,12 @@ import java.util.Iterator;
    </pre></code>
    </p>
 
+   <p>A search keeps its state in the Iterator, but prepare() and
+   add() change the tree, so one tree should not be shared between
+   threads that may still add keywords.  To search one dictionary
+   from many threads, build a CompiledAhoCorasick and give each
+   thread its own Matcher.</p>
+
    <h2>Recent changes</h2>
    <ul>
 
@@ -0,0 +1,521 @@
+package org.arabidopsis.ahocorasick;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+   <p>An immutable Aho-Corasick automaton in flat arrays.  Unlike
+   AhoCorasick, which has one State object per node with its own
+   edge list and output set, this class keeps the whole automaton in
+   a handful of int arrays:</p>
+
+   <ul>
+   <li>the states are numbered in breadth-first order, and the edges
+   of each state are a sorted range of the labels/targets arrays,
+   found by binary search (the root has a table of all 256
+   transitions);</li>
+   <li>fail[s] is the fail transition of state s;</li>
+   <li>output[s] is the keyword that ends in s, or -1, and
+   dictLink[s] is the nearest state on the fail chain of s that has
+   an output, or -1.  Thus all matches ending at a byte are found
+   without copying outputs along the fail transitions.</li>
+   </ul>
+
+   <p>Keywords are identified by the ints that the Builder returns.
+   Searching does not allocate: matches are passed to a
+   MatchListener.  The automaton can be written to a file and mapped
+   into memory, so that many processes can share one dictionary
+   without loading it.</p>
+
+   <p>The automaton never changes after it is built, so one instance
+   can be searched by any number of threads at once.  Each thread
+   that needs to step through matches one by one, or wants
+   non-overlapping matches, uses its own Matcher (see
+   matcher()).</p>
+
+   <p>
+   Example usage:
+   <code><pre>
+       CompiledAhoCorasick.Builder builder = new CompiledAhoCorasick.Builder();
+       int hello = builder.add("hello".getBytes());
+       int world = builder.add("world".getBytes());
+       CompiledAhoCorasick tree = builder.build();
+
+       tree.search("hello world".getBytes(), new MatchListener() {
+           public boolean match(int keyword, int start, int end) {
+               System.out.println(keyword + " found at " + start);
+               return true;
+           }
+       });
+   </pre></code>
+   </p>
+ */
+public class CompiledAhoCorasick {
+    /** Identifies the file format */
+    private static final int MAGIC = 0x41434d32;
+
+    /** Number of ints in the file header */
+    private static final int HEADER_INTS = 4;
+
+    private final int numStates;
+    private final int numKeywords;
+    /** edges of state s are edgeStart[s] .. edgeStart[s+1]-1 */
+    private final IntBuffer edgeStart;
+    private final IntBuffer targets;
+    private final ByteBuffer labels;
+    private final IntBuffer fail;
+    private final IntBuffer output;
+    private final IntBuffer dictLink;
+    private final IntBuffer lengths;
+    /** depth[s] is the length of the path from the root to s */
+    private final IntBuffer depths;
+    /** Transitions of the root for all 256 bytes, 0 (the root) if none */
+    private final int[] rootNext = new int[256];
+
+
+    /**
+       Collects keywords and builds the automaton.
+     */
+    public static class Builder {
+	private final List<byte[]> keywords = new ArrayList<byte[]>();
+	private final Map<ByteBuffer, Integer> ids = new HashMap<ByteBuffer, Integer>();
+
+	/**
+	   Adds a keyword and returns its id.  Ids are given out in
+	   the order of the keywords, starting at 0; a keyword that was
+	   added before keeps its id.
+	 */
+	public int add(byte[] keyword) {
+	    if (keyword.length == 0)
+		throw new IllegalArgumentException("empty keyword");
+	    ByteBuffer key = ByteBuffer.wrap(keyword.clone());
+	    Integer id = ids.get(key);
+	    if (id == null) {
+		id = keywords.size();
+		ids.put(key, id);
+		keywords.add(key.array());
+	    }
+	    return id;
+	}
+
+
+	public int size() {
+	    return keywords.size();
+	}
+
+
+	public CompiledAhoCorasick build() {
+	    return new CompiledAhoCorasick(keywords);
+	}
+    }
+
+
+
+    /** Compares keywords byte by byte, unsigned */
+    private static int compare(byte[] a, byte[] b) {
+	int n = Math.min(a.length, b.length);
+	for (int i = 0; i < n; i++) {
+	    int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+	    if (c != 0)
+		return c;
+	}
+	return a.length - b.length;
+    }
+
+
+
+    /**
+       Builds the trie breadth-first from the sorted keywords: every
+       state is a range of keywords with a common prefix, and its
+       children are the subranges that agree on the next byte.
+     */
+    private CompiledAhoCorasick(final List<byte[]> keywords) {
+	numKeywords = keywords.size();
+	Integer[] order = new Integer[numKeywords];
+	for (int i = 0; i < numKeywords; i++)
+	    order[i] = i;
+	Arrays.sort(order, new Comparator<Integer>() {
+		public int compare(Integer a, Integer b) {
+		    return CompiledAhoCorasick.compare(keywords.get(a), keywords.get(b));
+		}
+	    });
+	byte[][] sorted = new byte[numKeywords][];
+	int[] sortedIds = new int[numKeywords];
+	int[] lengthArray = new int[numKeywords];
+	for (int i = 0; i < numKeywords; i++) {
+	    sorted[i] = keywords.get(order[i]);
+	    sortedIds[i] = order[i];
+	    lengthArray[order[i]] = sorted[i].length;
+	}
+	order = null;
+
+	// Breadth-first construction; state s covers sorted[lo[s]..hi[s])
+	// with common prefix length depth[s]
+	IntArray lo = new IntArray(), hi = new IntArray(), depth = new IntArray();
+	IntArray starts = new IntArray(), targetArray = new IntArray(), outputArray = new IntArray();
+	ByteArray labelArray = new ByteArray();
+	lo.add(0);
+	hi.add(numKeywords);
+	depth.add(0);
+	for (int s = 0; s < lo.size(); s++) {
+	    int from = lo.get(s), to = hi.get(s), d = depth.get(s);
+	    starts.add(targetArray.size());
+	    if (from < to && sorted[from].length == d) {
+		outputArray.add(sortedIds[from]);
+		from++;
+	    } else {
+		outputArray.add(-1);
+	    }
+	    while (from < to) {
+		byte b = sorted[from][d];
+		int end = from + 1;
+		while (end < to && sorted[end][d] == b)
+		    end++;
+		labelArray.add(b);
+		targetArray.add(lo.size());
+		lo.add(from);
+		hi.add(end);
+		depth.add(d + 1);
+		from = end;
+	    }
+	}
+	numStates = lo.size();
+	starts.add(targetArray.size());
+	depths = IntBuffer.wrap(depth.toArray());
+	lo = hi = depth = null;
+
+	edgeStart = IntBuffer.wrap(starts.toArray());
+	targets = IntBuffer.wrap(targetArray.toArray());
+	labels = ByteBuffer.wrap(labelArray.toArray());
+	output = IntBuffer.wrap(outputArray.toArray());
+	lengths = IntBuffer.wrap(lengthArray);
+
+	// Fail transitions, breadth-first, so fail[] of shallower states is known
+	int[] failArray = new int[numStates];
+	int[] linkArray = new int[numStates];
+	linkArray[0] = -1;
+	fail = IntBuffer.wrap(failArray);
+	dictLink = IntBuffer.wrap(linkArray);
+	initRoot();
+	for (int s = 0; s < numStates; s++) {
+	    for (int e = edgeStart.get(s); e < edgeStart.get(s + 1); e++) {
+		int child = targets.get(e);
+		byte b = labels.get(e);
+		int f = 0;
+		if (s != 0) {
+		    f = failArray[s];
+		    int next;
+		    while ((next = edge(f, b)) < 0 && f != 0)
+			f = failArray[f];
+		    f = next < 0 ? 0 : next;
+		}
+		failArray[child] = f;
+		linkArray[child] = output.get(f) >= 0 ? f : linkArray[f];
+	    }
+	}
+    }
+
+
+
+    private CompiledAhoCorasick(ByteBuffer file) throws IOException {
+	file.order(ByteOrder.BIG_ENDIAN);
+	IntBuffer header = file.asIntBuffer();
+	if (header.get(0) != MAGIC)
+	    throw new IOException("not a CompiledAhoCorasick file");
+	numStates = header.get(1);
+	int numEdges = header.get(2);
+	numKeywords = header.get(3);
+	int pos = HEADER_INTS * 4;
+	edgeStart = slice(file, pos, numStates + 1).asIntBuffer();
+	pos += (numStates + 1) * 4;
+	targets = slice(file, pos, numEdges).asIntBuffer();
+	pos += numEdges * 4;
+	fail = slice(file, pos, numStates).asIntBuffer();
+	pos += numStates * 4;
+	output = slice(file, pos, numStates).asIntBuffer();
+	pos += numStates * 4;
+	dictLink = slice(file, pos, numStates).asIntBuffer();
+	pos += numStates * 4;
+	lengths = slice(file, pos, numKeywords).asIntBuffer();
+	pos += numKeywords * 4;
+	depths = slice(file, pos, numStates).asIntBuffer();
+	pos += numStates * 4;
+	ByteBuffer l = file.duplicate();
+	l.position(pos);
+	l.limit(pos + numEdges);
+	labels = l.slice();
+	initRoot();
+    }
+
+
+    /** Returns n ints of the buffer from byte position pos */
+    private static ByteBuffer slice(ByteBuffer file, int pos, int n) {
+	ByteBuffer b = file.duplicate();
+	b.position(pos);
+	b.limit(pos + n * 4);
+	return b.slice().order(ByteOrder.BIG_ENDIAN);
+    }
+
+
+    private void initRoot() {
+	for (int e = edgeStart.get(0); e < edgeStart.get(1); e++)
+	    rootNext[labels.get(e) & 0xFF] = targets.get(e);
+    }
+
+
+
+    /** Returns the target of the edge of state s labeled b, or -1 */
+    private int edge(int s, byte b) {
+	if (s == 0) {
+	    int t = rootNext[b & 0xFF];
+	    return t == 0 ? -1 : t;
+	}
+	int low = edgeStart.get(s), high = edgeStart.get(s + 1) - 1;
+	int key = b & 0xFF;
+	while (low <= high) {
+	    int mid = (low + high) >>> 1;
+	    int label = labels.get(mid) & 0xFF;
+	    if (label < key)
+		low = mid + 1;
+	    else if (label > key)
+		high = mid - 1;
+	    else
+		return targets.get(mid);
+	}
+	return -1;
+    }
+
+
+    /**
+       Returns the state after reading b in state s.  The root is
+       state 0.
+     */
+    public int next(int s, byte b) {
+	while (true) {
+	    if (s == 0)
+		return rootNext[b & 0xFF];
+	    int t = edge(s, b);
+	    if (t >= 0)
+		return t;
+	    s = fail.get(s);
+	}
+    }
+
+
+    /**
+       Reports the keywords that end in state s, the longest first,
+       with end as the index after the last byte.  Returns false if
+       the listener stopped the search.
+     */
+    boolean report(int s, int end, MatchListener listener) {
+	if (output.get(s) < 0)
+	    s = dictLink.get(s);
+	while (s >= 0) {
+	    int keyword = output.get(s);
+	    if (!listener.match(keyword, end - lengths.get(keyword), end))
+		return false;
+	    s = dictLink.get(s);
+	}
+	return true;
+    }
+
+
+    /** Returns the keyword that ends in state s, or -1 */
+    int outputOf(int s) {
+	return output.get(s);
+    }
+
+
+    /** Returns the next state on the fail chain of s with an output, or -1 */
+    int dictLinkOf(int s) {
+	return dictLink.get(s);
+    }
+
+
+    /** Returns the state with the longest keyword that ends in s, or -1 */
+    int firstOutput(int s) {
+	return output.get(s) >= 0 ? s : dictLink.get(s);
+    }
+
+
+    /** Returns the length of the path from the root to s */
+    int depth(int s) {
+	return depths.get(s);
+    }
+
+
+    /**
+       Returns a new Matcher for this automaton.  A Matcher must only
+       be used by one thread at a time.
+     */
+    public Matcher matcher(MatchMode mode) {
+	return new Matcher(this, mode);
+    }
+
+
+
+    /**
+       Reports all matches in bytes[offset..offset+length), including
+       overlapping ones.  Returns false if the listener stopped the
+       search.
+     */
+    public boolean search(byte[] bytes, int offset, int length, MatchListener listener) {
+	int s = 0;
+	for (int i = offset; i < offset + length; i++) {
+	    s = next(s, bytes[i]);
+	    if (s != 0 && (output.get(s) >= 0 || dictLink.get(s) >= 0)
+		&& !report(s, i + 1, listener))
+		return false;
+	}
+	return true;
+    }
+
+
+    public boolean search(byte[] bytes, MatchListener listener) {
+	return search(bytes, 0, bytes.length, listener);
+    }
+
+
+    /**
+       Reports all matches in the remaining bytes of the buffer,
+       without changing its position.  Indexes are absolute
+       positions in the buffer.
+     */
+    public boolean search(ByteBuffer buffer, MatchListener listener) {
+	int s = 0;
+	for (int i = buffer.position(); i < buffer.limit(); i++) {
+	    s = next(s, buffer.get(i));
+	    if (s != 0 && (output.get(s) >= 0 || dictLink.get(s) >= 0)
+		&& !report(s, i + 1, listener))
+		return false;
+	}
+	return true;
+    }
+
+
+
+    /** Returns the number of states */
+    public int size() {
+	return numStates;
+    }
+
+
+    /** Returns the number of keywords */
+    public int numKeywords() {
+	return numKeywords;
+    }
+
+
+    /** Returns the length of a keyword */
+    public int length(int keyword) {
+	return lengths.get(keyword);
+    }
+
+
+
+    /** Writes the automaton to a file that can be mapped by map() */
+    public void writeTo(File file) throws IOException {
+	DataOutputStream out = new DataOutputStream
+	    (new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+	try {
+	    out.writeInt(MAGIC);
+	    out.writeInt(numStates);
+	    out.writeInt(targets.limit());
+	    out.writeInt(numKeywords);
+	    writeInts(out, edgeStart);
+	    writeInts(out, targets);
+	    writeInts(out, fail);
+	    writeInts(out, output);
+	    writeInts(out, dictLink);
+	    writeInts(out, lengths);
+	    writeInts(out, depths);
+	    for (int i = 0; i < labels.limit(); i++)
+		out.writeByte(labels.get(i));
+	} finally {
+	    out.close();
+	}
+    }
+
+
+    private static void writeInts(DataOutputStream out, IntBuffer ints) throws IOException {
+	for (int i = 0; i < ints.limit(); i++)
+	    out.writeInt(ints.get(i));
+    }
+
+
+
+    /**
+       Maps a file written by writeTo() into memory.  The automaton
+       is read from the file on demand, so it is available at once
+       and shared by all processes that map the same file.  Files
+       must be smaller than 2 GB.
+     */
+    public static CompiledAhoCorasick map(File file) throws IOException {
+	RandomAccessFile raf = new RandomAccessFile(file, "r");
+	try {
+	    FileChannel channel = raf.getChannel();
+	    return new CompiledAhoCorasick
+		(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+	} finally {
+	    raf.close();
+	}
+    }
+
+
+
+    /** A growable int array */
+    private static class IntArray {
+	private int[] data = new int[16];
+	private int size = 0;
+
+	void add(int x) {
+	    if (size == data.length)
+		data = Arrays.copyOf(data, size * 2);
+	    data[size++] = x;
+	}
+
+	int get(int i) {
+	    return data[i];
+	}
+
+	int size() {
+	    return size;
+	}
+
+	int[] toArray() {
+	    return Arrays.copyOf(data, size);
+	}
+    }
+
+
+    /** A growable byte array */
+    private static class ByteArray {
+	private byte[] data = new byte[16];
+	private int size = 0;
+
+	void add(byte x) {
+	    if (size == data.length)
+		data = Arrays.copyOf(data, size * 2);
+	    data[size++] = x;
+	}
+
+	byte[] toArray() {
+	    return Arrays.copyOf(data, size);
+	}
+    }
+}
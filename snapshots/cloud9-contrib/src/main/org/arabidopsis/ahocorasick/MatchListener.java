@@ -0,0 +1,14 @@
+package org.arabidopsis.ahocorasick;
+
+
+/**
+   Receives the matches of a CompiledAhoCorasick search.
+ */
+public interface MatchListener {
+    /**
+       Called for every match of a keyword.  start is the index of the
+       first matching byte, end is one byte after the last one.
+       Returns false to stop the search.
+     */
+    boolean match(int keyword, int start, int end);
+}
@@ -0,0 +1,24 @@
+package org.arabidopsis.ahocorasick;
+
+
+/**
+   Which matches a Matcher reports.
+ */
+public enum MatchMode {
+    /** Every match, including overlapping ones, in order of their end */
+    ALL,
+
+    /**
+       Matches that do not overlap, in order of their end: the first
+       keyword to end wins, the longest one if several end at the same
+       byte, and the search continues after it.
+     */
+    NON_OVERLAPPING,
+
+    /**
+       Matches that do not overlap, from left to right: the match that
+       starts first wins, the longest one if several start at the same
+       byte, and the search continues after it.
+     */
+    LEFTMOST_LONGEST
+}
@@ -0,0 +1,231 @@
+package org.arabidopsis.ahocorasick;
+
+import java.nio.ByteBuffer;
+
+
+/**
+   <p>Steps through the matches of a CompiledAhoCorasick in some text,
+   much like java.util.regex.Matcher.  The automaton is shared, the
+   Matcher holds the state of one search, so every thread needs its
+   own Matcher; it can be reset to new text any number of times.
+   Finding a match does not allocate.</p>
+
+   <p>
+   Example usage:
+   <code><pre>
+       Matcher m = tree.matcher(MatchMode.LEFTMOST_LONGEST);
+       m.reset(text);
+       while (m.find())
+           System.out.println(m.keyword() + " found at " + m.start());
+   </pre></code>
+   </p>
+ */
+public class Matcher {
+    private final CompiledAhoCorasick tree;
+    private final MatchMode mode;
+
+    private byte[] array;
+    private ByteBuffer buffer;
+    private int limit;
+    /** Subtracted from the reported indices, for slices of heap buffers */
+    private int shift;
+
+    /** Index of the next byte to read */
+    private int pos;
+    /** Current state of the automaton */
+    private int state;
+    /** Next state on the output chain to report in ALL mode, or -1 */
+    private int chain = -1;
+
+    /** Best match seen but not yet reported in LEFTMOST_LONGEST mode */
+    private int candidateKeyword, candidateStart = -1, candidateEnd;
+
+    private int keyword = -1, start, end;
+
+
+    Matcher(CompiledAhoCorasick tree, MatchMode mode) {
+	this.tree = tree;
+	this.mode = mode;
+    }
+
+
+    public MatchMode mode() {
+	return mode;
+    }
+
+
+    /** Starts a new search in bytes[offset .. offset+length-1] */
+    public Matcher reset(byte[] bytes, int offset, int length) {
+	array = bytes;
+	buffer = null;
+	shift = 0;
+	return restart(offset, offset + length);
+    }
+
+
+    public Matcher reset(byte[] bytes) {
+	return reset(bytes, 0, bytes.length);
+    }
+
+
+    /**
+       Starts a new search from the position to the limit of the
+       buffer.  The buffer is not modified.  Matches are reported as
+       indices of the buffer, as by CompiledAhoCorasick.search(ByteBuffer).
+     */
+    public Matcher reset(ByteBuffer bytes) {
+	if (bytes.hasArray()) {
+	    reset(bytes.array(), bytes.arrayOffset() + bytes.position(),
+		  bytes.remaining());
+	    shift = bytes.arrayOffset();
+	    return this;
+	}
+	array = null;
+	buffer = bytes;
+	shift = 0;
+	return restart(bytes.position(), bytes.limit());
+    }
+
+
+    private Matcher restart(int from, int to) {
+	pos = from;
+	limit = to;
+	state = 0;
+	chain = -1;
+	candidateStart = -1;
+	keyword = -1;
+	return this;
+    }
+
+
+    private byte at(int i) {
+	return array != null ? array[i] : buffer.get(i);
+    }
+
+
+    /**
+       Finds the next match.  Returns false when there are no more
+       matches in the text.
+     */
+    public boolean find() {
+	switch (mode) {
+	case ALL:
+	    return findAll();
+	case NON_OVERLAPPING:
+	    return findNonOverlapping();
+	default:
+	    return findLeftmostLongest();
+	}
+    }
+
+
+    private boolean findAll() {
+	while (chain < 0) {
+	    if (pos == limit)
+		return found(-1, 0, 0);
+	    state = tree.next(state, at(pos++));
+	    chain = tree.firstOutput(state);
+	}
+	int k = tree.outputOf(chain);
+	chain = tree.dictLinkOf(chain);
+	return found(k, pos - tree.length(k), pos);
+    }
+
+
+    private boolean findNonOverlapping() {
+	while (pos < limit) {
+	    state = tree.next(state, at(pos++));
+	    int s = tree.firstOutput(state);
+	    if (s >= 0) {
+		// The first state on the chain has the longest keyword
+		int k = tree.outputOf(s);
+		state = 0;
+		return found(k, pos - tree.length(k), pos);
+	    }
+	}
+	return found(-1, 0, 0);
+    }
+
+
+    /**
+       Keeps the leftmost-longest match seen so far until no later
+       match can start at or before it.  A match that is still to come
+       starts in the current state, which spans the last depth(state)
+       bytes, so the candidate is final once it starts before them.
+       The search then goes on from the end of the candidate, in the
+       root state, which may read some bytes again.
+     */
+    private boolean findLeftmostLongest() {
+	while (true) {
+	    if (pos < limit) {
+		state = tree.next(state, at(pos++));
+		int s = tree.firstOutput(state);
+		if (s >= 0) {
+		    int k = tree.outputOf(s);
+		    int from = pos - tree.length(k);
+		    if (candidateStart < 0 || from < candidateStart
+			|| (from == candidateStart && pos > candidateEnd)) {
+			candidateKeyword = k;
+			candidateStart = from;
+			candidateEnd = pos;
+		    }
+		}
+		if (candidateStart < 0 || pos - tree.depth(state) <= candidateStart)
+		    continue;
+	    } else if (candidateStart < 0) {
+		return found(-1, 0, 0);
+	    }
+	    pos = candidateEnd;
+	    state = 0;
+	    candidateStart = -1;
+	    return found(candidateKeyword, pos - tree.length(candidateKeyword), pos);
+	}
+    }
+
+
+    private boolean found(int k, int s, int e) {
+	keyword = k;
+	start = s - shift;
+	end = e - shift;
+	return k >= 0;
+    }
+
+
+    /**
+       Passes all remaining matches to the listener.  Returns false if
+       the listener stopped the search.
+     */
+    public boolean findAll(MatchListener listener) {
+	while (find())
+	    if (!listener.match(keyword, start, end))
+		return false;
+	return true;
+    }
+
+
+    /** The keyword of the last match */
+    public int keyword() {
+	check();
+	return keyword;
+    }
+
+
+    /** The index of the first byte of the last match */
+    public int start() {
+	check();
+	return start;
+    }
+
+
+    /** The index after the last byte of the last match */
+    public int end() {
+	check();
+	return end;
+    }
+
+
+    private void check() {
+	if (keyword < 0)
+	    throw new IllegalStateException("no match");
+    }
+}
@@ -8,6 +8,8 @@ public class TestAll extends TestCase {
 	suite.addTestSuite(TestState.class);
 	suite.addTestSuite(TestAhoCorasick.class);
 	suite.addTestSuite(TestQueue.class);
+	suite.addTestSuite(TestCompiledAhoCorasick.class);
+	suite.addTestSuite(TestMatcher.class);
 	return suite;
     }
 }
@@ -0,0 +1,108 @@
+package org.arabidopsis.ahocorasick;
+
+import junit.framework.TestCase;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+   Junit test cases for CompiledAhoCorasick.
+ */
+
+public class TestCompiledAhoCorasick extends TestCase {
+
+    /** Collects matches as "keyword@start-end" */
+    private static class Collector implements MatchListener {
+	List<String> matches = new ArrayList<String>();
+
+	public boolean match(int keyword, int start, int end) {
+	    matches.add(keyword + "@" + start + "-" + end);
+	    return true;
+	}
+    }
+
+
+    private CompiledAhoCorasick build(String... keywords) {
+	CompiledAhoCorasick.Builder builder = new CompiledAhoCorasick.Builder();
+	for (int i = 0; i < keywords.length; i++)
+	    assertEquals(i, builder.add(keywords[i].getBytes()));
+	return builder.build();
+    }
+
+
+    public void testExample() {
+	CompiledAhoCorasick tree = build("he", "she", "his", "hers");
+	Collector c = new Collector();
+	tree.search("ushers".getBytes(), c);
+	assertEquals("[1@1-4, 0@2-4, 3@2-6]", c.matches.toString());
+    }
+
+
+    public void testDuplicateKeywords() {
+	CompiledAhoCorasick.Builder builder = new CompiledAhoCorasick.Builder();
+	assertEquals(0, builder.add("abc".getBytes()));
+	assertEquals(1, builder.add("b".getBytes()));
+	assertEquals(0, builder.add("abc".getBytes()));
+	assertEquals(2, builder.build().numKeywords());
+    }
+
+
+    public void testStop() {
+	CompiledAhoCorasick tree = build("a");
+	final int[] count = new int[1];
+	boolean finished = tree.search("aaaa".getBytes(), new MatchListener() {
+		public boolean match(int keyword, int start, int end) {
+		    return ++count[0] < 2;
+		}
+	    });
+	assertFalse(finished);
+	assertEquals(2, count[0]);
+    }
+
+
+    /** Compares the matches with those of AhoCorasick on random data */
+    public void testAgainstAhoCorasick() throws Exception {
+	Random random = new Random(17);
+	AhoCorasick tree = new AhoCorasick();
+	CompiledAhoCorasick.Builder builder = new CompiledAhoCorasick.Builder();
+	for (int i = 0; i < 500; i++) {
+	    byte[] keyword = new byte[1 + random.nextInt(5)];
+	    for (int j = 0; j < keyword.length; j++)
+		keyword[j] = (byte) (random.nextInt(4) - 2);
+	    tree.add(keyword, new Integer(builder.add(keyword)));
+	}
+	tree.prepare();
+	CompiledAhoCorasick compiled = builder.build();
+	File file = File.createTempFile("aho", ".bin");
+	file.deleteOnExit();
+	compiled.writeTo(file);
+	CompiledAhoCorasick mapped = CompiledAhoCorasick.map(file);
+
+	byte[] text = new byte[10000];
+	for (int j = 0; j < text.length; j++)
+	    text[j] = (byte) (random.nextInt(4) - 2);
+
+	List<String> expected = new ArrayList<String>();
+	for (Iterator it = tree.search(text); it.hasNext();) {
+	    SearchResult result = (SearchResult) it.next();
+	    for (Object output : result.getOutputs()) {
+		int keyword = ((Integer) output).intValue();
+		int end = result.getLastIndex();
+		expected.add(keyword + "@" + (end - compiled.length(keyword)) + "-" + end);
+	    }
+	}
+	Collections.sort(expected);
+	Collector c = new Collector();
+	compiled.search(text, c);
+	Collections.sort(c.matches);
+	assertEquals(expected, c.matches);
+	Collector m = new Collector();
+	mapped.search(java.nio.ByteBuffer.wrap(text), m);
+	Collections.sort(m.matches);
+	assertEquals(expected, m.matches);
+    }
+}
@@ -0,0 +1,172 @@
+package org.arabidopsis.ahocorasick;
+
+import junit.framework.TestCase;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+   Junit test cases for Matcher.
+ */
+
+public class TestMatcher extends TestCase {
+
+    private CompiledAhoCorasick build(String... keywords) {
+	CompiledAhoCorasick.Builder builder = new CompiledAhoCorasick.Builder();
+	for (int i = 0; i < keywords.length; i++)
+	    builder.add(keywords[i].getBytes());
+	return builder.build();
+    }
+
+
+    private List<String> matches(Matcher m, byte[] text) {
+	List<String> matches = new ArrayList<String>();
+	m.reset(text);
+	while (m.find())
+	    matches.add(m.keyword() + "@" + m.start() + "-" + m.end());
+	return matches;
+    }
+
+
+    public void testModes() {
+	CompiledAhoCorasick tree = build("he", "she", "his", "hers");
+	byte[] text = "ushers".getBytes();
+	assertEquals("[1@1-4, 0@2-4, 3@2-6]",
+		     matches(tree.matcher(MatchMode.ALL), text).toString());
+	assertEquals("[1@1-4]",
+		     matches(tree.matcher(MatchMode.NON_OVERLAPPING), text).toString());
+	assertEquals("[1@1-4]",
+		     matches(tree.matcher(MatchMode.LEFTMOST_LONGEST), text).toString());
+
+	tree = build("a", "ab", "abcd", "bc");
+	text = "abcdabc".getBytes();
+	assertEquals("[0@0-1, 3@1-3, 0@4-5, 3@5-7]",
+		     matches(tree.matcher(MatchMode.NON_OVERLAPPING), text).toString());
+	assertEquals("[2@0-4, 1@4-6]",
+		     matches(tree.matcher(MatchMode.LEFTMOST_LONGEST), text).toString());
+    }
+
+
+    public void testNoMatch() {
+	Matcher m = build("abc").matcher(MatchMode.LEFTMOST_LONGEST);
+	assertFalse(m.reset("ababab".getBytes()).find());
+	try {
+	    m.start();
+	    fail();
+	} catch (IllegalStateException e) {
+	}
+    }
+
+
+    /** Slices of heap and direct buffers report the indices of the slice */
+    public void testByteBufferSlices() {
+	CompiledAhoCorasick tree = build("he", "she", "his", "hers");
+	byte[] text = "xxushers".getBytes();
+	ByteBuffer heap = ByteBuffer.wrap(text, 2, 6).slice();
+	ByteBuffer direct = ByteBuffer.allocateDirect(text.length);
+	direct.put(text).position(2);
+	direct = direct.slice();
+	for (ByteBuffer buffer : new ByteBuffer[] { heap, direct }) {
+	    final List<String> expected = new ArrayList<String>();
+	    tree.search(buffer, new MatchListener() {
+		    public boolean match(int keyword, int start, int end) {
+			expected.add(keyword + "@" + start + "-" + end);
+			return true;
+		    }
+		});
+	    Matcher m = tree.matcher(MatchMode.ALL).reset(buffer);
+	    List<String> actual = new ArrayList<String>();
+	    while (m.find())
+		actual.add(m.keyword() + "@" + m.start() + "-" + m.end());
+	    Collections.sort(expected);
+	    Collections.sort(actual);
+	    assertEquals("[0@2-4, 1@1-4, 3@2-6]", actual.toString());
+	    assertEquals(expected, actual);
+	}
+    }
+
+
+    private byte[] random(Random random, int length) {
+	byte[] bytes = new byte[length];
+	for (int j = 0; j < length; j++)
+	    bytes[j] = (byte) (random.nextInt(3) - 1);
+	return bytes;
+    }
+
+
+    private boolean matchesAt(byte[] text, int pos, byte[] keyword) {
+	if (pos + keyword.length > text.length)
+	    return false;
+	for (int j = 0; j < keyword.length; j++)
+	    if (text[pos + j] != keyword[j])
+		return false;
+	return true;
+    }
+
+
+    /** Compares the modes with a naive search on random data */
+    public void testAgainstNaive() {
+	Random random = new Random(23);
+	for (int round = 0; round < 20; round++) {
+	    CompiledAhoCorasick.Builder builder = new CompiledAhoCorasick.Builder();
+	    List<byte[]> keywords = new ArrayList<byte[]>();
+	    for (int i = 0; i < 30; i++) {
+		byte[] keyword = random(random, 1 + random.nextInt(6));
+		if (builder.add(keyword) == keywords.size())
+		    keywords.add(keyword);
+	    }
+	    CompiledAhoCorasick tree = builder.build();
+	    byte[] text = random(random, 2000);
+
+	    List<String> all = new ArrayList<String>();
+	    for (int pos = 0; pos < text.length; pos++)
+		for (int k = 0; k < keywords.size(); k++)
+		    if (matchesAt(text, pos, keywords.get(k)))
+			all.add(k + "@" + pos + "-" + (pos + keywords.get(k).length));
+	    List<String> found = matches(tree.matcher(MatchMode.ALL), text);
+	    Collections.sort(all);
+	    Collections.sort(found);
+	    assertEquals(all, found);
+
+	    // Leftmost-longest: the longest keyword at the first position with a match
+	    List<String> leftmost = new ArrayList<String>();
+	    for (int pos = 0; pos < text.length;) {
+		int best = -1;
+		for (int k = 0; k < keywords.size(); k++)
+		    if (matchesAt(text, pos, keywords.get(k))
+			&& (best < 0 || keywords.get(k).length > keywords.get(best).length))
+			best = k;
+		if (best < 0) {
+		    pos++;
+		} else {
+		    leftmost.add(best + "@" + pos + "-" + (pos + keywords.get(best).length));
+		    pos += keywords.get(best).length;
+		}
+	    }
+	    assertEquals(leftmost, matches(tree.matcher(MatchMode.LEFTMOST_LONGEST), text));
+
+	    // Non-overlapping: the longest keyword at the first end after the last match
+	    List<String> nonOverlapping = new ArrayList<String>();
+	    for (int from = 0, end = 1; end <= text.length; end++) {
+		int best = -1;
+		for (int k = 0; k < keywords.size(); k++) {
+		    int start = end - keywords.get(k).length;
+		    if (start >= from && matchesAt(text, start, keywords.get(k))
+			&& (best < 0 || keywords.get(k).length > keywords.get(best).length))
+			best = k;
+		}
+		if (best >= 0) {
+		    nonOverlapping.add(best + "@" + (end - keywords.get(best).length) + "-" + end);
+		    from = end;
+		}
+	    }
+	    Matcher m = tree.matcher(MatchMode.NON_OVERLAPPING);
+	    assertEquals(nonOverlapping, matches(m, text));
+	    // A Matcher can be reused
+	    assertEquals(nonOverlapping, matches(m, text));
+	}
+    }
+}
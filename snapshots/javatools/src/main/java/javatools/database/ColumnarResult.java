@@ -0,0 +1,202 @@
+package javatools.database;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.BitSet;
+
+import javatools.util.ByteArrayList;
+import javatools.util.DoubleArrayList;
+import javatools.util.FloatArrayList;
+import javatools.util.IntArrayList;
+import javatools.util.LongArrayList;
+import javatools.util.ShortArrayList;
+
+/**
+This class is part of the Java Tools (see http://mpii.de/yago-naga/javatools).
+It is licensed under the Creative Commons Attribution License
+(see http://creativecommons.org/licenses/by/3.0) by
+the YAGO-NAGA team (see http://mpii.de/yago-naga).
+
+  This class holds the rows of a ResultSet in growable primitive columns, one
+  javatools.util array list per column, so that large numerical results can be fetched
+  without creating an object per row or value. The list of each column depends on its
+  java.sql.Types type: TINYINT and BOOLEAN/BIT (as 0/1) go to a ByteArrayList,
+  SMALLINT to a ShortArrayList, INTEGER to an IntArrayList, BIGINT to a LongArrayList,
+  REAL to a FloatArrayList, and FLOAT, DOUBLE, NUMERIC and DECIMAL to a DoubleArrayList.
+  NULL values are stored as 0 and can be recognized by isNull().<BR>
+  The object can be cleared and filled again, which reuses the arrays.
+  Example:
+  <PRE>
+  ColumnarResult c=new ColumnarResult(Types.INTEGER, Types.DOUBLE);
+  d.queryColumns("SELECT id, weight FROM features", 10000, c);
+  IntArrayList ids=c.getInts(0);
+  DoubleArrayList weights=c.getDoubles(1);
+  for(int i=0;i&lt;c.size();i++) ... ids.items[i] ... weights.items[i] ...
+  </PRE>
+ */
+public class ColumnarResult {
+
+	/** Holds the java.sql.Types type of each column, or null if it is taken from the first result set*/
+	protected int[] types;
+
+	/** Holds the list of each column*/
+	protected Object[] columns;
+
+	/** Holds the NULL rows of each column, created on the first NULL*/
+	protected BitSet[] nulls;
+
+	/** Number of rows*/
+	protected int size = 0;
+
+	/** Creates columns of the given java.sql.Types types*/
+	public ColumnarResult(int... types) {
+		setTypes(types.clone());
+	}
+
+	/** Creates columns whose types are taken from the first result set*/
+	public ColumnarResult() {
+	}
+
+	/** Creates the lists for the types*/
+	protected void setTypes(int[] types) {
+		Object[] columns = new Object[types.length];
+		for (int i = 0; i < types.length; i++) {
+			switch (types[i]) {
+			case Types.TINYINT:
+			case Types.BOOLEAN:
+			case Types.BIT:
+				columns[i] = new ByteArrayList();
+				break;
+			case Types.SMALLINT:
+				columns[i] = new ShortArrayList();
+				break;
+			case Types.INTEGER:
+				columns[i] = new IntArrayList();
+				break;
+			case Types.BIGINT:
+				columns[i] = new LongArrayList();
+				break;
+			case Types.REAL:
+				columns[i] = new FloatArrayList();
+				break;
+			case Types.FLOAT:
+			case Types.DOUBLE:
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				columns[i] = new DoubleArrayList();
+				break;
+			default:
+				throw new IllegalArgumentException("Column " + i + " has type " + types[i] + ", which has no primitive column");
+			}
+		}
+		this.types = types;
+		this.columns = columns;
+		this.nulls = new BitSet[types.length];
+	}
+
+	/** Appends all rows of the result set (it is not closed), returns the number of rows added*/
+	public int fill(ResultSet r) throws SQLException {
+		ResultSetMetaData meta = r.getMetaData();
+		if (types == null) {
+			int[] t = new int[meta.getColumnCount()];
+			for (int i = 0; i < t.length; i++)
+				t[i] = meta.getColumnType(i + 1);
+			setTypes(t);
+		} else if (meta.getColumnCount() != types.length) {
+			throw new SQLException("Result has " + meta.getColumnCount() + " columns, expected " + types.length);
+		}
+		int start = size;
+		while (r.next()) {
+			for (int i = 0; i < types.length; i++) {
+				Object column = columns[i];
+				if (column instanceof IntArrayList) ((IntArrayList) column).add(r.getInt(i + 1));
+				else if (column instanceof DoubleArrayList) ((DoubleArrayList) column).add(r.getDouble(i + 1));
+				else if (column instanceof LongArrayList) ((LongArrayList) column).add(r.getLong(i + 1));
+				else if (column instanceof FloatArrayList) ((FloatArrayList) column).add(r.getFloat(i + 1));
+				else if (column instanceof ShortArrayList) ((ShortArrayList) column).add(r.getShort(i + 1));
+				else ((ByteArrayList) column).add(r.getByte(i + 1));
+				if (r.wasNull()) {
+					if (nulls[i] == null) nulls[i] = new BitSet();
+					nulls[i].set(size);
+				}
+			}
+			size++;
+		}
+		return (size - start);
+	}
+
+	/** Removes all rows, keeps the arrays*/
+	public void clear() {
+		if (columns == null) return;
+		for (int i = 0; i < columns.length; i++) {
+			Object column = columns[i];
+			if (column instanceof IntArrayList) ((IntArrayList) column).clear();
+			else if (column instanceof DoubleArrayList) ((DoubleArrayList) column).clear();
+			else if (column instanceof LongArrayList) ((LongArrayList) column).clear();
+			else if (column instanceof FloatArrayList) ((FloatArrayList) column).clear();
+			else if (column instanceof ShortArrayList) ((ShortArrayList) column).clear();
+			else ((ByteArrayList) column).clear();
+			if (nulls[i] != null) nulls[i].clear();
+		}
+		size = 0;
+	}
+
+	/** Returns the number of rows*/
+	public int size() {
+		return (size);
+	}
+
+	/** Returns the number of columns (0 if the types are not yet known)*/
+	public int numColumns() {
+		return (types == null ? 0 : types.length);
+	}
+
+	/** TRUE if the value in the column (starting at 0) and row is NULL*/
+	public boolean isNull(int column, int row) {
+		return (nulls[column] != null && nulls[column].get(row));
+	}
+
+	/** Returns the list of a column (starting at 0)*/
+	protected Object column(int column, Class<?> c) {
+		if (columns == null || !c.isInstance(columns[column]))
+			throw new IllegalArgumentException("Column " + column + " is not held in a " + c.getSimpleName());
+		return (columns[column]);
+	}
+
+	/** Returns an INTEGER column (starting at 0)*/
+	public IntArrayList getInts(int column) {
+		return ((IntArrayList) column(column, IntArrayList.class));
+	}
+
+	/** Returns a BIGINT column (starting at 0)*/
+	public LongArrayList getLongs(int column) {
+		return ((LongArrayList) column(column, LongArrayList.class));
+	}
+
+	/** Returns a FLOAT/DOUBLE/NUMERIC/DECIMAL column (starting at 0)*/
+	public DoubleArrayList getDoubles(int column) {
+		return ((DoubleArrayList) column(column, DoubleArrayList.class));
+	}
+
+	/** Returns a REAL column (starting at 0)*/
+	public FloatArrayList getFloats(int column) {
+		return ((FloatArrayList) column(column, FloatArrayList.class));
+	}
+
+	/** Returns a SMALLINT column (starting at 0)*/
+	public ShortArrayList getShorts(int column) {
+		return ((ShortArrayList) column(column, ShortArrayList.class));
+	}
+
+	/** Returns a TINYINT/BOOLEAN/BIT column (starting at 0)*/
+	public ByteArrayList getBytes(int column) {
+		return ((ByteArrayList) column(column, ByteArrayList.class));
+	}
+
+	@Override
+	public String toString() {
+		return ("ColumnarResult with " + numColumns() + " columns and " + size + " rows");
+	}
+}
@@ -0,0 +1,69 @@
+package javatools.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+This class is part of the Java Tools (see http://mpii.de/yago-naga/javatools).
+It is licensed under the Creative Commons Attribution License
+(see http://creativecommons.org/licenses/by/3.0) by
+the YAGO-NAGA team (see http://mpii.de/yago-naga).
+
+  This class holds a fixed number of additional connections of a {@link Database},
+  which serve the read queries of concurrent threads. Each thread is bound to one
+  connection on its first query, round-robin, so that up to size threads
+  query in parallel and a thread always sees the same session. Connections are
+  opened lazily by Database.newConnection().
+ */
+public class ConnectionPool {
+
+	/** Holds the database that opens the connections*/
+	protected final Database database;
+
+	/** Holds the connections, null if not yet opened*/
+	protected final Connection[] connections;
+
+	/** Index of the connection for the next thread*/
+	protected int next = 0;
+
+	/** Holds the connection of each thread*/
+	protected final ThreadLocal<Connection> assigned = new ThreadLocal<Connection>();
+
+	/** Creates a pool of size connections for the database*/
+	public ConnectionPool(Database database, int size) {
+		if (size <= 0) throw new IllegalArgumentException("Pool size must be > 0: " + size);
+		this.database = database;
+		this.connections = new Connection[size];
+	}
+
+	/** Returns the connection of the current thread*/
+	public Connection get() throws SQLException {
+		Connection c = assigned.get();
+		if (c == null) {
+			c = nextConnection();
+			assigned.set(c);
+		}
+		return (c);
+	}
+
+	/** Returns the next connection in round-robin order, opens it if necessary*/
+	protected synchronized Connection nextConnection() throws SQLException {
+		int i = next;
+		next = (next + 1) % connections.length;
+		if (connections[i] == null) connections[i] = database.newConnection();
+		return (connections[i]);
+	}
+
+	/** Returns the number of connections*/
+	public int size() {
+		return (connections.length);
+	}
+
+	/** Closes all connections*/
+	public synchronized void close() {
+		for (int i = 0; i < connections.length; i++) {
+			Database.close(connections[i]);
+			connections[i] = null;
+		}
+	}
+}
@@ -5,8 +5,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.ObjectOutputStream;
+import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.Driver;
@@ -20,9 +25,15 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javatools.administrative.Announce;
 import javatools.administrative.D;
@@ -67,7 +78,14 @@ import javatools.util.ShortArrayList;
  * </PRE>
  * 
  * The inserters are automatically flushed every 1000 insertions and when
- * closed. They are flushed and closed when the database is closed.
+ * closed. They are flushed and closed when the database is closed. After
+ * setBulkLoading(true), Postgres and MySQL return inserters that stream the
+ * rows to COPY and LOAD DATA instead.
+ * <P>
+ * Prepared statements can be reused across calls with
+ * setStatementCacheSize(int), concurrent readers can be served by further
+ * connections with setConnectionPoolSize(int), and the execution times of
+ * all statements can be collected with setTimingEnabled(boolean).
  * <P>
  * Unfortunately, the same datatype is called differently on different database
  * systems, behaves differently and is written down differently. There is an
@@ -125,6 +143,18 @@ public abstract class Database {
 	 */
 	protected Driver driver = null;
 
+	/** Caches prepared statements per connection, null if caching is off */
+	protected volatile Map<Connection, StatementCache> statementCaches = null;
+
+	/** Number of idle statements kept per connection */
+	protected int statementCacheSize = 0;
+
+	/** Holds further connections for concurrent read queries, or null */
+	protected volatile ConnectionPool connectionPool = null;
+
+	/** Holds the timing of each SQL text, null if timing is off */
+	protected volatile Map<String, StatementTiming> statementTimings = null;
+
 	/** Returns the connection */
 	public Connection getConnection() {
 		return (connection);
@@ -213,6 +243,199 @@ public abstract class Database {
 		return (true);
 	}
 
+	/**
+	 * Keeps up to size idle prepared statements per connection, so that queries
+	 * and updates with parameters do not prepare their SQL again. A cached
+	 * statement is reused only after its result set (or the statement itself)
+	 * has been closed by Database.close(...), ResultIterator.close() or
+	 * ResultSet.close(). A statement whose result set is never closed is not
+	 * reused. Size 0 closes the caches and switches caching off (default).
+	 */
+	public synchronized void setStatementCacheSize(int size) {
+		if (size < 0)
+			throw new IllegalArgumentException("Cache size must be >= 0: "
+					+ size);
+		if (statementCaches != null) {
+			synchronized (statementCaches) {
+				for (StatementCache cache : statementCaches.values())
+					cache.close();
+			}
+		}
+		statementCacheSize = size;
+		statementCaches = size == 0 ? null : Collections
+				.synchronizedMap(new IdentityHashMap<Connection, StatementCache>());
+	}
+
+	/** Returns the statement cache of the connection, or null */
+	protected StatementCache statementCache(Connection c) {
+		Map<Connection, StatementCache> caches = statementCaches;
+		if (caches == null)
+			return (null);
+		synchronized (caches) {
+			StatementCache cache = caches.get(c);
+			if (cache == null) {
+				cache = new StatementCache(c, statementCacheSize);
+				caches.put(c, cache);
+			}
+			return (cache);
+		}
+	}
+
+	/**
+	 * Returns a prepared statement for the SQL on the connection, from the
+	 * statement cache if caching is on. Close it with close(Statement).
+	 */
+	protected PreparedStatement prepare(Connection c, String sql,
+			int resultSetType, int resultSetConcurrency) throws SQLException {
+		StatementCache cache = statementCache(c);
+		if (cache == null)
+			return (c.prepareStatement(sql, resultSetType, resultSetConcurrency));
+		return (cache.prepare(sql, resultSetType, resultSetConcurrency));
+	}
+
+	/**
+	 * Opens a pool of size further connections to the database, which serve the
+	 * read queries (the query... methods) of concurrent threads. Each thread is
+	 * bound to one pooled connection. Updates, inserters and transactions
+	 * always use the main connection, and so do queries while a transaction
+	 * is running. Size 0 closes the pool (default).
+	 */
+	public synchronized void setConnectionPoolSize(int size)
+			throws SQLException {
+		if (size < 0)
+			throw new IllegalArgumentException("Pool size must be >= 0: "
+					+ size);
+		ConnectionPool old = connectionPool;
+		connectionPool = size == 0 ? null : new ConnectionPool(this, size);
+		if (old != null) {
+			if (statementCaches != null) {
+				for (Connection c : old.connections) {
+					StatementCache cache = statementCaches.remove(c);
+					if (cache != null)
+						cache.close();
+				}
+			}
+			old.close();
+		}
+	}
+
+	/** Returns the connection for read queries of the current thread */
+	protected Connection readConnection() throws SQLException {
+		ConnectionPool pool = connectionPool;
+		if (pool == null || inTransactionMode)
+			return (connection);
+		return (pool.get());
+	}
+
+	/**
+	 * Opens a new connection to the same database, as used by the connection
+	 * pool. Subclasses that know how to connect override this method.
+	 */
+	protected Connection newConnection() throws SQLException {
+		throw new SQLException("Connection pooling is not supported by "
+				+ getClass().getSimpleName());
+	}
+
+	/**
+	 * Switches on or off the timing of statements. The timings can be retrieved
+	 * by getStatementTimings() and are reset when timing is switched on.
+	 */
+	public void setTimingEnabled(boolean on) {
+		statementTimings = on ? new ConcurrentHashMap<String, StatementTiming>()
+				: null;
+	}
+
+	/** Returns the timing of each SQL text, or null if timing is off */
+	public Map<String, StatementTiming> getStatementTimings() {
+		return (statementTimings);
+	}
+
+	/** Returns the statement timings, the most expensive first */
+	public String timingReport() {
+		Map<String, StatementTiming> timings = statementTimings;
+		if (timings == null)
+			return ("Timing is off");
+		List<StatementTiming> list = new ArrayList<StatementTiming>(
+				timings.values());
+		Collections.sort(list);
+		StringBuilder result = new StringBuilder();
+		for (StatementTiming t : list)
+			result.append(t).append('\n');
+		return (result.toString());
+	}
+
+	/** Records an execution of the SQL that started at the given nano time */
+	protected void time(String sql, long startNanos) {
+		Map<String, StatementTiming> timings = statementTimings;
+		if (timings == null)
+			return;
+		long nanos = System.nanoTime() - startNanos;
+		StatementTiming t = timings.get(sql);
+		if (t == null) {
+			t = new StatementTiming(sql);
+			StatementTiming old = ((ConcurrentHashMap<String, StatementTiming>) timings)
+					.putIfAbsent(sql, t);
+			if (old != null)
+				t = old;
+		}
+		t.add(nanos);
+	}
+
+	/**
+	 * Executes the query and records its time. If the statement comes from the
+	 * statement cache, closing the result set returns it to the cache.
+	 */
+	protected ResultSet timedExecuteQuery(PreparedStatement ps, String sql)
+			throws SQLException {
+		return (StatementCache.track(ps, untrackedExecuteQuery(ps, sql)));
+	}
+
+	/**
+	 * Executes the query and records its time. The result set has to be
+	 * closed by close(ResultSet) to return a cached statement.
+	 */
+	protected ResultSet untrackedExecuteQuery(PreparedStatement ps, String sql)
+			throws SQLException {
+		long start = System.nanoTime();
+		ResultSet result = ps.executeQuery();
+		time(sql, start);
+		return (result);
+	}
+
+	/** Executes the update and records its time */
+	protected int timedExecuteUpdate(PreparedStatement ps, String sql)
+			throws SQLException {
+		long start = System.nanoTime();
+		int result = ps.executeUpdate();
+		time(sql, start);
+		return (result);
+	}
+
+	/** Executes the statement and records its time */
+	protected boolean timedExecute(PreparedStatement ps, String sql)
+			throws SQLException {
+		long start = System.nanoTime();
+		boolean result = ps.execute();
+		time(sql, start);
+		return (result);
+	}
+
+	/** Update keywords that make query(...) call executeUpdate */
+	private static final String[] UPDATE_KEYWORDS = { "INSERT", "UPDATE",
+			"DELETE", "CREATE", "DROP", "ALTER" };
+
+	/** TRUE if the SQL starts with INSERT/UPDATE/DELETE/CREATE/DROP/ALTER */
+	protected static boolean isUpdate(String sql) {
+		int start = 0;
+		while (start < sql.length() && Character.isWhitespace(sql.charAt(start)))
+			start++;
+		for (String keyword : UPDATE_KEYWORDS) {
+			if (sql.regionMatches(true, start, keyword, 0, keyword.length()))
+				return (true);
+		}
+		return (false);
+	}
+
 	/**
 	 * Returns the results for a query as a ResultSet with given type,
 	 * concurrency and fetchsize. The preferred way to execute a query is by the
@@ -225,21 +448,19 @@ public abstract class Database {
 	public ResultSet query(int fetchsize, CharSequence sqlcs,
 			int resultSetType, int resultSetConcurrency) throws SQLException {
 		String sql = prepareQuery(sqlcs.toString());
-		if (sql.toUpperCase().startsWith("INSERT")
-				|| sql.toUpperCase().startsWith("UPDATE")
-				|| sql.toUpperCase().startsWith("DELETE")
-				|| sql.toUpperCase().startsWith("CREATE")
-				|| sql.toUpperCase().startsWith("DROP")
-				|| sql.toUpperCase().startsWith("ALTER")) {
+		if (isUpdate(sql)) {
 			executeUpdate(sql);
 			return (null);
 		}
 		try {
-			Statement stmnt = connection.createStatement(resultSetType,
+			Statement stmnt = readConnection().createStatement(resultSetType,
 					resultSetConcurrency);
 			if (fetchsize != Integer.MIN_VALUE)
 				stmnt.setFetchSize(fetchsize);
-			return (stmnt.executeQuery(sql));
+			long start = System.nanoTime();
+			ResultSet result = stmnt.executeQuery(sql);
+			time(sql, start);
+			return (result);
 		} catch (SQLException e) {
 			throw e;
 		}
@@ -727,6 +948,56 @@ public abstract class Database {
 		return (list.size() == 0) ? null : list.toArray();
 	}
 
+	/**
+	 * Executes a forward-only read-only query with the given fetch size and
+	 * parameters. A fetch size of 0 leaves the choice to the driver. MySQL
+	 * streams the result row by row for Integer.MIN_VALUE, PostgreSQL honours
+	 * the fetch size only if autocommit is off. A cached statement gets its
+	 * fetch size back when the result set is closed by close(ResultSet).
+	 */
+	protected ResultSet queryForward(CharSequence sqlcs, int fetchSize,
+			Object... param) throws SQLException {
+		String sql = prepareQuery(sqlcs.toString());
+		PreparedStatement ps = prepare(readConnection(), sql,
+				ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		try {
+			ps.setFetchSize(fetchSize);
+			for (int i = 0; i < param.length; i++)
+				ps.setObject(i + 1, param[i]);
+			// queryColumns and RowIterator close it by close(ResultSet)
+			return untrackedExecuteQuery(ps, sql);
+		} catch (SQLException e) {
+			close(ps);
+			throw e;
+		}
+	}
+
+	/**
+	 * Appends all rows of a query with parameters to the primitive columns,
+	 * returns the number of rows added. Unlike queryIntsValue, this creates no
+	 * object per row, and the columns can be cleared and filled again. See
+	 * queryForward for the fetch size.
+	 */
+	public int queryColumns(CharSequence sql, int fetchSize,
+			ColumnarResult columns, Object... param) throws SQLException {
+		ResultSet rs = queryForward(sql, fetchSize, param);
+		try {
+			return (columns.fill(rs));
+		} finally {
+			close(rs);
+		}
+	}
+
+	/**
+	 * Returns the rows of a query with parameters in a RowIterator, which
+	 * reuses one row object. The iterator closes the statement when it is
+	 * exhausted or closed. See queryForward for the fetch size.
+	 */
+	public RowIterator queryRows(CharSequence sql, int fetchSize,
+			Object... param) throws SQLException {
+		return (new RowIterator(queryForward(sql, fetchSize, param)));
+	}
+
 	/**
 	 * Return the list of primitive double with parameters, or null if the
 	 * resultset is empty
@@ -903,23 +1174,19 @@ public abstract class Database {
 	public ResultSet query(CharSequence sqlcs, int resultSetType,
 			int resultSetConcurrency, String... param) throws SQLException {
 		String sql = prepareQuery(sqlcs.toString());
-		if (sql.toUpperCase().startsWith("INSERT")
-				|| sql.toUpperCase().startsWith("UPDATE")
-				|| sql.toUpperCase().startsWith("DELETE")
-				|| sql.toUpperCase().startsWith("CREATE")
-				|| sql.toUpperCase().startsWith("DROP")
-				|| sql.toUpperCase().startsWith("ALTER")) {
+		if (isUpdate(sql)) {
 			executeUpdate(sql);
 			return (null);
 		}
+		PreparedStatement ps = prepare(readConnection(), sql, resultSetType,
+				resultSetConcurrency);
 		try {
-			PreparedStatement ps = connection.prepareStatement(sql,
-					resultSetType, resultSetConcurrency);
 			int n = param.length;
 			for (int i = 1; i <= n; i++)
 				ps.setString(i, param[i - 1]);
-			return ps.executeQuery();
+			return timedExecuteQuery(ps, sql);
 		} catch (SQLException e) {
+			close(ps);
 			throw e;
 		}
 	}
@@ -933,22 +1200,18 @@ public abstract class Database {
 			int resultSetConcurrency, Object param, int type)
 			throws SQLException {
 		String sql = prepareQuery(sqlcs.toString());
-		if (sql.toUpperCase().startsWith("INSERT")
-				|| sql.toUpperCase().startsWith("UPDATE")
-				|| sql.toUpperCase().startsWith("DELETE")
-				|| sql.toUpperCase().startsWith("CREATE")
-				|| sql.toUpperCase().startsWith("DROP")
-				|| sql.toUpperCase().startsWith("ALTER")) {
+		if (isUpdate(sql)) {
 			executeUpdate(sql);
 			return (null);
 		}
+		PreparedStatement ps = prepare(readConnection(), sql, resultSetType,
+				resultSetConcurrency);
 		try {
-			PreparedStatement ps = connection.prepareStatement(sql,
-					resultSetType, resultSetConcurrency);
 			ps.setObject(1, param, type);
 
-			return ps.executeQuery();
+			return timedExecuteQuery(ps, sql);
 		} catch (SQLException e) {
+			close(ps);
 			throw e;
 		}
 	}
@@ -961,22 +1224,18 @@ public abstract class Database {
 	public ResultSet query(CharSequence sqlcs, int resultSetType,
 			int resultSetConcurrency, byte[] param) throws SQLException {
 		String sql = prepareQuery(sqlcs.toString());
-		if (sql.toUpperCase().startsWith("INSERT")
-				|| sql.toUpperCase().startsWith("UPDATE")
-				|| sql.toUpperCase().startsWith("DELETE")
-				|| sql.toUpperCase().startsWith("CREATE")
-				|| sql.toUpperCase().startsWith("DROP")
-				|| sql.toUpperCase().startsWith("ALTER")) {
+		if (isUpdate(sql)) {
 			executeUpdate(sql);
 			return (null);
 		}
+		PreparedStatement ps = prepare(readConnection(), sql, resultSetType,
+				resultSetConcurrency);
 		try {
-			PreparedStatement ps = connection.prepareStatement(sql,
-					resultSetType, resultSetConcurrency);
 			ps.setBytes(1, param);
 
-			return ps.executeQuery();
+			return timedExecuteQuery(ps, sql);
 		} catch (SQLException e) {
+			close(ps);
 			throw e;
 		}
 	}
@@ -989,23 +1248,19 @@ public abstract class Database {
 	public ResultSet query(CharSequence sqlcs, int resultSetType,
 			int resultSetConcurrency, int... param) throws SQLException {
 		String sql = prepareQuery(sqlcs.toString());
-		if (sql.toUpperCase().startsWith("INSERT")
-				|| sql.toUpperCase().startsWith("UPDATE")
-				|| sql.toUpperCase().startsWith("DELETE")
-				|| sql.toUpperCase().startsWith("CREATE")
-				|| sql.toUpperCase().startsWith("DROP")
-				|| sql.toUpperCase().startsWith("ALTER")) {
+		if (isUpdate(sql)) {
 			executeUpdate(sql);
 			return (null);
 		}
+		PreparedStatement ps = prepare(readConnection(), sql, resultSetType,
+				resultSetConcurrency);
 		try {
-			PreparedStatement ps = connection.prepareStatement(sql,
-					resultSetType, resultSetConcurrency);
 			int n = param.length;
 			for (int i = 1; i <= n; i++)
 				ps.setInt(i, param[i - 1]);
-			return ps.executeQuery();
+			return timedExecuteQuery(ps, sql);
 		} catch (SQLException e) {
+			close(ps);
 			throw e;
 		}
 	}
@@ -1018,23 +1273,19 @@ public abstract class Database {
 	public ResultSet query(CharSequence sqlcs, int resultSetType,
 			int resultSetConcurrency, Timestamp... param) throws SQLException {
 		String sql = prepareQuery(sqlcs.toString());
-		if (sql.toUpperCase().startsWith("INSERT")
-				|| sql.toUpperCase().startsWith("UPDATE")
-				|| sql.toUpperCase().startsWith("DELETE")
-				|| sql.toUpperCase().startsWith("CREATE")
-				|| sql.toUpperCase().startsWith("DROP")
-				|| sql.toUpperCase().startsWith("ALTER")) {
+		if (isUpdate(sql)) {
 			executeUpdate(sql);
 			return (null);
 		}
+		PreparedStatement ps = prepare(readConnection(), sql, resultSetType,
+				resultSetConcurrency);
 		try {
-			PreparedStatement ps = connection.prepareStatement(sql,
-					resultSetType, resultSetConcurrency);
 			int n = param.length;
 			for (int i = 1; i <= n; i++)
 				ps.setTimestamp(i, param[i - 1]);
-			return ps.executeQuery();
+			return timedExecuteQuery(ps, sql);
 		} catch (SQLException e) {
+			close(ps);
 			throw e;
 		}
 	}
@@ -1048,11 +1299,12 @@ public abstract class Database {
 			throws SQLException {
 		String sql = prepareQuery(sqlcs.toString());
 		try {
-			PreparedStatement ps = connection.prepareStatement(sql);
+			PreparedStatement ps = prepare(connection, sql,
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
 			int n = param.length;
 			for (int i = 1; i <= n; i++)
 				ps.setString(i, param[i - 1]);
-			int result = ps.executeUpdate();
+			int result = timedExecuteUpdate(ps, sql);
 			close(ps);
 			return (result);
 		} catch (SQLException e) {
@@ -1069,11 +1321,12 @@ public abstract class Database {
 			throws SQLException {
 		String sql = prepareQuery(sqlcs.toString());
 		try {
-			PreparedStatement ps = connection.prepareStatement(sql);
+			PreparedStatement ps = prepare(connection, sql,
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
 			int n = param.length;
 			for (int i = 1; i <= n; i++)
 				ps.setInt(i, param[i - 1]);
-			int result = ps.executeUpdate();
+			int result = timedExecuteUpdate(ps, sql);
 			close(ps);
 			return (result);
 		} catch (SQLException e) {
@@ -1091,11 +1344,12 @@ public abstract class Database {
 			throws SQLException {
 		String sql = prepareQuery(sqlcs.toString());
 		try {
-			PreparedStatement ps = connection.prepareStatement(sql);
+			PreparedStatement ps = prepare(connection, sql,
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
 			int n = param.length;
 			for (int i = 1; i <= n; i++)
 				ps.setInt(i, param[i - 1]);
-			boolean result = ps.execute();
+			boolean result = timedExecute(ps, sql);
 			close(ps);
 			return result;
 		} catch (SQLException e) {
@@ -1113,11 +1367,12 @@ public abstract class Database {
 			throws SQLException {
 		String sql = prepareQuery(sqlcs.toString());
 		try {
-			PreparedStatement ps = connection.prepareStatement(sql);
+			PreparedStatement ps = prepare(connection, sql,
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
 			int n = param.length;
 			for (int i = 1; i <= n; i++)
 				ps.setObject(i, param[i - 1].getValue(), param[i - 1].getType());
-			ps.execute();
+			timedExecute(ps, sql);
 			close(ps);
 			// close();
 		} catch (SQLException e) {
@@ -1200,7 +1455,9 @@ public abstract class Database {
 		String sql = prepareQuery(sqlcs.toString());
 		try {
 			Statement s = connection.createStatement();
+			long start = System.nanoTime();
 			int result = s.executeUpdate(sql);
+			time(sql, start);
 			close(s);
 			return (result);
 		} catch (SQLException e) {
@@ -1429,26 +1686,40 @@ public abstract class Database {
 		}
 	}
 
-	/** Closes a statement */
+	/**
+	 * Closes a statement. A statement from the statement cache is returned to
+	 * the cache instead.
+	 */
 	public static void close(Statement statement) {
 		try {
-			if (statement != null)
+			if (statement != null && !StatementCache.release(statement))
 				statement.close();
 		} catch (SQLException e) {
 		}
 	}
 
-	/** Closes a result set */
+	/** Closes a result set and its statement */
 	public static void close(ResultSet rs) {
+		if (rs == null)
+			return;
+		if (StatementCache.isTracked(rs)) {
+			// closing it returns the statement
+			try {
+				rs.close();
+			} catch (SQLException e) {
+			}
+			return;
+		}
+		Statement statement = null;
 		try {
-			close(rs.getStatement());
+			statement = rs.getStatement();
 		} catch (SQLException e) {
 		}
 		try {
-			if (rs != null)
-				rs.close();
+			rs.close();
 		} catch (SQLException e) {
 		}
+		close(statement);
 	}
 
 	/** Closes the connection */
@@ -1465,6 +1736,12 @@ public abstract class Database {
 		}
 		while (inserters.size() != 0)
 			inserters.get(0).close();
+		try {
+			setConnectionPoolSize(0);
+		} catch (SQLException ex) {
+			Announce.error(ex);
+		}
+		setStatementCacheSize(0);
 		close(connection);
 		try {
 			DriverManager.deregisterDriver(driver);
@@ -1799,15 +2076,19 @@ public abstract class Database {
 			batchSize = size;
 		}
 
+		/**
+		 * Creates an inserter without a prepared statement, for subclasses that
+		 * load the data differently
+		 */
+		protected Inserter(String table, SQLType[] columnTypes) {
+			this.tableName = table;
+			this.columnTypes = columnTypes;
+			inserters.add(this);
+		}
+
 		/** Creates a bulk loader */
 		public Inserter(String table) throws SQLException {
-			ResultSet r = query(limit("SELECT * FROM " + table, 1));
-			ResultSetMetaData meta = r.getMetaData();
-			columnTypes = new SQLType[meta.getColumnCount()];
-			for (int i = 0; i < columnTypes.length; i++) {
-				columnTypes[i] = getSQLType(meta.getColumnType(i + 1));
-			}
-			Database.close(r);
+			columnTypes = tableColumnTypes(table);
 			tableName = table;
 			table = "INSERT INTO " + table + " VALUES(";
 			for (int i = 0; i < columnTypes.length - 1; i++)
@@ -1969,14 +2250,444 @@ public abstract class Database {
 		}
 	}
 
+	/** Returns the types of the columns of a table */
+	protected SQLType[] tableColumnTypes(String table) throws SQLException {
+		ResultSet r = query(limit("SELECT * FROM " + table, 1));
+		ResultSetMetaData meta = r.getMetaData();
+		SQLType[] columnTypes = new SQLType[meta.getColumnCount()];
+		for (int i = 0; i < columnTypes.length; i++) {
+			columnTypes[i] = getSQLType(meta.getColumnType(i + 1));
+		}
+		Database.close(r);
+		return (columnTypes);
+	}
+
+	/**
+	 * An Inserter that streams the rows as text to the bulk load command of the
+	 * database (e.g. COPY in Postgres), instead of sending batches of INSERT
+	 * statements. The rows are written into chunks, which a loader thread
+	 * streams through a separate connection. The producer only blocks if
+	 * the loader falls more than queueSize chunks behind. flush() ends the
+	 * current load command and waits until it has finished. Since the rows
+	 * are loaded through a separate connection, they are not part of a
+	 * transaction on the main connection.
+	 * <P>
+	 * The rows are written in the text format shared by Postgres' COPY and
+	 * MySQL's LOAD DATA: tab separated columns, newline separated rows,
+	 * backslash escapes and \N for null. Each value is written as
+	 * setObject(value, type) of the column type would store it: dates as
+	 * timestamps, booleans as 1/0 in non-character columns, and numbers
+	 * without fractions in integer columns.
+	 */
+	public abstract class StreamingInserter extends Inserter {
+
+		/** Marks the end of a load command in the queue */
+		protected final byte[] END = new byte[0];
+
+		/** Holds the column names in parentheses, or the empty string */
+		protected final String columnList;
+
+		/** Holds the chunks that wait for the loader */
+		protected final BlockingQueue<byte[]> queue;
+
+		/** Holds the current chunk */
+		protected StringBuilder buffer = new StringBuilder();
+
+		/** Number of chars after which a chunk is handed to the loader */
+		protected int chunkSize = 1 << 20;
+
+		/** Holds the connection of the loader, opened when the first chunk is loaded */
+		protected Connection loaderConnection;
+
+		/** Holds the loader thread, or null if no load command is running */
+		protected Thread loader;
+
+		/** Holds the exception of the loader */
+		protected volatile Throwable failure;
+
+		/** Number of rows loaded so far */
+		protected volatile long rowsLoaded = 0;
+
+		/** tells whether the inserter is already closed */
+		private boolean closed = false;
+
+		/**
+		 * Creates a streaming inserter for the columns of the table. The names
+		 * may be null if values for all columns are given.
+		 */
+		public StreamingInserter(String table, SQLType[] columnTypes,
+				String[] columnNames, int queueSize) throws SQLException {
+			super(table, columnTypes);
+			if (columnNames == null) {
+				columnList = "";
+			} else {
+				StringBuilder b = new StringBuilder(" (");
+				for (int i = 0; i < columnNames.length; i++) {
+					if (i > 0)
+						b.append(", ");
+					b.append(columnNames[i]);
+				}
+				columnList = b.append(')').toString();
+			}
+			queue = new ArrayBlockingQueue<byte[]>(queueSize);
+		}
+
+		/** Sets the number of chars after which a chunk is handed to the loader */
+		public void setChunkSize(int chars) {
+			chunkSize = chars;
+		}
+
+		/**
+		 * Runs the bulk load command on loaderConnection, reading the rows from
+		 * the stream until it ends. Returns the number of rows loaded.
+		 */
+		protected abstract long load(InputStream rows) throws Exception;
+
+		/** Appends a binary value. By default, binary values are not supported. */
+		protected void appendBytes(byte[] value) throws SQLException {
+			throw new SQLException("Binary values cannot be loaded by "
+					+ getClass().getSimpleName() + " into " + tableName);
+		}
+
+		/**
+		 * Returns the text of a non-null value for a column with the given
+		 * type code of java.sql.Types
+		 */
+		protected String text(Object value, int typeCode) {
+			if (value instanceof Calendar)
+				value = ((Calendar) value).getTime();
+			switch (typeCode) {
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.LONGVARCHAR:
+			case Types.CLOB:
+				return (value.toString());
+			case Types.DATE:
+				if (value instanceof java.util.Date)
+					return (new java.sql.Date(((java.util.Date) value)
+							.getTime()).toString());
+				break;
+			case Types.TIME:
+				if (value instanceof java.util.Date)
+					return (new java.sql.Time(((java.util.Date) value)
+							.getTime()).toString());
+				break;
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+			case Types.BIGINT:
+				if (value instanceof BigDecimal)
+					return (((BigDecimal) value).toBigInteger().toString());
+				if (value instanceof Double || value instanceof Float)
+					return (Long.toString(((Number) value).longValue()));
+				break;
+			case Types.DECIMAL:
+			case Types.NUMERIC:
+				if (value instanceof BigDecimal)
+					return (((BigDecimal) value).toPlainString());
+				break;
+			case Types.BIT:
+			case Types.BOOLEAN:
+				if (value instanceof Number)
+					return (((Number) value).doubleValue() != 0 ? "1" : "0");
+				break;
+			}
+			if (value instanceof Boolean)
+				return (((Boolean) value).booleanValue() ? "1" : "0");
+			if (value instanceof java.util.Date
+					&& !(value instanceof java.sql.Date)
+					&& !(value instanceof java.sql.Time))
+				return (new Timestamp(((java.util.Date) value).getTime())
+						.toString());
+			return (value.toString());
+		}
+
+		/** Appends a value for a column of the type, escaped for the text format */
+		protected void append(Object value, int typeCode) throws SQLException {
+			if (value == null) {
+				buffer.append("\\N");
+				return;
+			}
+			if (value instanceof byte[]) {
+				appendBytes((byte[]) value);
+				return;
+			}
+			String s = text(value, typeCode);
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				switch (c) {
+				case '\\':
+					buffer.append("\\\\");
+					break;
+				case '\t':
+					buffer.append("\\t");
+					break;
+				case '\n':
+					buffer.append("\\n");
+					break;
+				case '\r':
+					buffer.append("\\r");
+					break;
+				default:
+					buffer.append(c);
+				}
+			}
+		}
+
+		@Override
+		public void insert(List<Object> values) throws SQLException {
+			checkFailure();
+			if (values.size() != columnTypes.length)
+				throw new SQLException("Bulk-insert into " + tableName + " "
+						+ values + "\nExpected " + columnTypes.length
+						+ " values");
+			int length = buffer.length();
+			try {
+				for (int i = 0; i < values.size(); i++) {
+					if (i > 0)
+						buffer.append('\t');
+					Object value = values.get(i);
+					if (value != null && !(value instanceof byte[])
+							&& columnTypes[i].getTypeCode() == Types.BLOB)
+						value = toBytes(value);
+					append(value, columnTypes[i].getTypeCode());
+				}
+			} catch (IOException e) {
+				buffer.setLength(length);
+				throw new SQLException("Bulk-insert into " + tableName + " "
+						+ values + "\n" + e.getMessage());
+			} catch (SQLException e) {
+				buffer.setLength(length);
+				throw e;
+			}
+			buffer.append('\n');
+			batchCounter++;
+			if (buffer.length() >= chunkSize)
+				sendChunk();
+		}
+
+		/** Hands the current chunk to the loader, blocks if the queue is full */
+		protected void sendChunk() throws SQLException {
+			if (loader == null)
+				startLoader();
+			byte[] chunk;
+			try {
+				chunk = buffer.toString().getBytes("UTF-8");
+			} catch (UnsupportedEncodingException e) {
+				throw new SQLException(e);
+			}
+			buffer.setLength(0);
+			put(chunk);
+		}
+
+		/** Puts a chunk into the queue */
+		protected void put(byte[] chunk) throws SQLException {
+			try {
+				queue.put(chunk);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("Interrupted while loading into "
+						+ tableName);
+			}
+		}
+
+		/** Starts a loader thread for a new load command */
+		protected void startLoader() throws SQLException {
+			if (loaderConnection == null)
+				loaderConnection = newConnection();
+			loader = new Thread("Loader for " + tableName) {
+				@Override
+				public void run() {
+					ChunkInputStream in = new ChunkInputStream();
+					try {
+						rowsLoaded += load(in);
+					} catch (InvocationTargetException e) {
+						failure = e.getCause();
+					} catch (Throwable e) {
+						failure = e;
+					}
+					// Drain the queue so that the producer never blocks
+					try {
+						while (!in.ended)
+							in.nextChunk();
+					} catch (IOException e) {
+					}
+				}
+			};
+			loader.setDaemon(true);
+			loader.start();
+		}
+
+		/** Throws an SQLException if the loader failed */
+		protected void checkFailure() throws SQLException {
+			Throwable t = failure;
+			if (t == null)
+				return;
+			failure = null;
+			if (t instanceof SQLException)
+				throw new SQLException("Bulk-load into " + tableName + "\n"
+						+ t.getMessage(), t);
+			throw new SQLException("Bulk-load into " + tableName, t);
+		}
+
+		/** Ends the current load command and waits until it is done */
+		@Override
+		public void flush() throws SQLException {
+			if (buffer.length() > 0)
+				sendChunk();
+			if (loader != null) {
+				put(END);
+				try {
+					loader.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted while loading into "
+							+ tableName);
+				}
+				loader = null;
+			}
+			checkFailure();
+		}
+
+		/** Flushes and closes */
+		@Override
+		public void close() {
+			if (closed)
+				return;
+			try {
+				flush();
+			} catch (SQLException e) {
+				Announce.error(e);
+			}
+			Database.close(loaderConnection);
+			inserters.remove(this);
+			closed = true;
+		}
+
+		/** Returns the number of rows loaded so far */
+		public long getRowsLoaded() {
+			return (rowsLoaded);
+		}
+
+		@Override
+		public String toString() {
+			return getClass().getSimpleName() + " into " + tableName
+					+ columnList;
+		}
+
+		/** Reads the chunks of the queue until the END marker */
+		protected class ChunkInputStream extends InputStream {
+
+			protected byte[] chunk = END;
+
+			protected int pos = 0;
+
+			protected boolean ended = false;
+
+			/** Takes the next chunk from the queue */
+			protected void nextChunk() throws IOException {
+				try {
+					chunk = queue.take();
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+				pos = 0;
+				if (chunk == END)
+					ended = true;
+			}
+
+			@Override
+			public int read() throws IOException {
+				while (pos == chunk.length) {
+					if (ended)
+						return (-1);
+					nextChunk();
+				}
+				return (chunk[pos++] & 0xff);
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (len == 0)
+					return (0);
+				while (pos == chunk.length) {
+					if (ended)
+						return (-1);
+					nextChunk();
+				}
+				int n = Math.min(len, chunk.length - pos);
+				System.arraycopy(chunk, pos, b, off, n);
+				pos += n;
+				return (n);
+			}
+		}
+	}
+
+	/** TRUE if newInserter returns streaming inserters where available */
+	protected boolean bulkLoading = false;
+
+	/** Number of chunks the loader of a streaming inserter may fall behind */
+	protected int bulkLoadQueueSize = 4;
+
+	/**
+	 * Makes newInserter(...) return StreamingInserters, which use the bulk load
+	 * command of the database, if this database supports them. This is much
+	 * faster than batches of INSERT statements, but the rows are loaded
+	 * through a separate connection. queueSize is the number of chunks (of
+	 * 1M chars) the loader may fall behind before the producer blocks.
+	 */
+	public void setBulkLoading(boolean on, int queueSize) {
+		if (queueSize <= 0)
+			throw new IllegalArgumentException("queueSize must be > 0: "
+					+ queueSize);
+		bulkLoading = on;
+		bulkLoadQueueSize = queueSize;
+	}
+
+	/** Switches streaming inserters on or off, see setBulkLoading(boolean,int) */
+	public void setBulkLoading(boolean on) {
+		setBulkLoading(on, bulkLoadQueueSize);
+	}
+
+	/**
+	 * Returns a StreamingInserter for the columns, or null if this database
+	 * does not support them. The column names may be null if values for all
+	 * columns are given.
+	 */
+	protected StreamingInserter newStreamingInserter(String table,
+			SQLType[] columnTypes, String[] columnNames) throws SQLException {
+		return (null);
+	}
+
+	/** Returns a streaming inserter if bulk loading is on and supported, or null */
+	protected Inserter bulkInserter(String table, SQLType[] columnTypes,
+			String[] columnNames) throws SQLException {
+		if (!bulkLoading)
+			return (null);
+		if (columnTypes == null)
+			columnTypes = tableColumnTypes(table);
+		return (newStreamingInserter(table, columnTypes, columnNames));
+	}
+
 	/** Returns an inserter for a table with specific column types */
 	public Inserter newInserter(String table) throws SQLException {
+		Inserter bulk = bulkInserter(table, null, null);
+		if (bulk != null)
+			return (bulk);
 		return (new Inserter(table));
 	}
 
 	/** Returns an inserter for a table with specific column types */
 	public Inserter newInserter(String table, Class... argumentTypes)
 			throws SQLException {
+		if (bulkLoading) {
+			SQLType[] types = new SQLType[argumentTypes.length];
+			for (int i = 0; i < types.length; i++)
+				types[i] = getSQLType(argumentTypes[i]);
+			Inserter bulk = bulkInserter(table, types, null);
+			if (bulk != null)
+				return (bulk);
+		}
 		return (new Inserter(table, argumentTypes));
 	}
 
@@ -1986,11 +2697,30 @@ public abstract class Database {
 	 */
 	public Inserter newInserter(String table, int... argumentTypes)
 			throws SQLException {
+		if (bulkLoading) {
+			SQLType[] types = new SQLType[argumentTypes.length];
+			for (int i = 0; i < types.length; i++)
+				types[i] = getSQLType(argumentTypes[i]);
+			Inserter bulk = bulkInserter(table, types, null);
+			if (bulk != null)
+				return (bulk);
+		}
 		return (new Inserter(table, argumentTypes));
 	}
 
 	public Inserter newInserter(String table, Column... cols)
 			throws SQLException {
+		if (bulkLoading && cols != null && cols.length > 0) {
+			SQLType[] types = new SQLType[cols.length];
+			String[] names = new String[cols.length];
+			for (int i = 0; i < cols.length; i++) {
+				types[i] = getSQLType(cols[i].getType());
+				names[i] = cols[i].getName();
+			}
+			Inserter bulk = bulkInserter(table, types, names);
+			if (bulk != null)
+				return (bulk);
+		}
 		return (new Inserter(table, cols));
 	}
 
@@ -1,8 +1,11 @@
 package javatools.database;
 
+import java.io.InputStream;
+import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Types;
 import java.util.Iterator;
 import java.util.Map;
@@ -37,6 +40,9 @@ Example:
  */
 public class MySQLDatabase extends Database {
 
+	/** Holds the String by which further connections can be opened*/
+	protected String connectionString;
+
 	/** Constructs a new MySQLDatabase from a user and a password,
 	 * all other arguments may be null*/
 	public MySQLDatabase(String user, String password, String database, String host, String port) 
@@ -63,6 +69,7 @@ public class MySQLDatabase extends Database {
 		else collate = "&connectionCollation=" + collate;
 		String connectionString = String.format("jdbc:mysql://%s%s/%s?user=%s&password=%s%s%s", 
 				host, port, database, user, password, charset, collate);
+		this.connectionString = connectionString;
 		connection = DriverManager.getConnection(connectionString);
 		connection.setAutoCommit( true );  
 		description="MySQL database for "+user+" at "+host+":"+port+", database "+database;
@@ -100,11 +107,12 @@ public class MySQLDatabase extends Database {
 		if (collate == null) collate = "";
 		else collate = "&connectionCollation=" + collate;
 		if (embedded == null) {
-			connection = DriverManager.getConnection(String.format("jdbc:mysql://%s%s/%s?user=%s&password=%s%s%s", host, port, database, user, password, charset, collate));
+			connectionString = String.format("jdbc:mysql://%s%s/%s?user=%s&password=%s%s%s", host, port, database, user, password, charset, collate);
 		}
 		else {
-			connection = DriverManager.getConnection(String.format("jdbc:mysql:mxj://%s%s/%s?user=%s&password=%s%s%s&%s", host, port, database, user, password, charset, collate, embedded));
+			connectionString = String.format("jdbc:mysql:mxj://%s%s/%s?user=%s&password=%s%s%s&%s", host, port, database, user, password, charset, collate, embedded);
 		}
+		connection = DriverManager.getConnection(connectionString);
 		connection.setAutoCommit(true);
 		
 		description="MySQL database for "+user+" at "+host+":"+port+", database "+database;
@@ -121,6 +129,43 @@ public class MySQLDatabase extends Database {
 	public MySQLDatabase() {
 	}
 
+	/** Streams the rows into a table by LOAD DATA LOCAL INFILE, reading from a stream instead of a file*/
+	public class LoadDataInserter extends StreamingInserter {
+
+		public LoadDataInserter(String table, SQLType[] columnTypes, String[] columnNames, int queueSize) throws SQLException {
+			super(table, columnTypes, columnNames, queueSize);
+		}
+
+		@Override
+		protected long load(InputStream rows) throws Exception {
+			Statement s = loaderConnection.createStatement();
+			try {
+				// The driver is accessed by reflection, so that it is needed only at runtime
+				Class<?> mysqlStatement = Class.forName("com.mysql.jdbc.Statement");
+				mysqlStatement.getMethod("setLocalInfileInputStream", InputStream.class).invoke(s.unwrap(mysqlStatement), rows);
+				return (s.executeUpdate("LOAD DATA LOCAL INFILE 'stream' INTO TABLE " + tableName
+						+ " CHARACTER SET utf8 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n'" + columnList));
+			} finally {
+				Database.close(s);
+			}
+		}
+	}
+
+	@Override
+	protected StreamingInserter newStreamingInserter(String table, SQLType[] columnTypes, String[] columnNames) throws SQLException {
+		if (connectionString == null) return (null);
+		return (new LoadDataInserter(table, columnTypes, columnNames, bulkLoadQueueSize));
+	}
+
+	/** Opens a new connection with the connection string, e.g. for the connection pool*/
+	@Override
+	protected Connection newConnection() throws SQLException {
+		if (connectionString == null) return (super.newConnection());
+		Connection c = DriverManager.getConnection(connectionString);
+		c.setAutoCommit(true);
+		return (c);
+	}
+
 	@Override
 	public boolean jarAvailable() {
 		try {
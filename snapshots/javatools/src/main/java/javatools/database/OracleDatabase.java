@@ -1,5 +1,6 @@
 package javatools.database;
 
+import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.SQLException;
@@ -120,6 +121,14 @@ public class OracleDatabase extends Database {
     connection.setAutoCommit(true);
   }
 
+  /** Opens a new connection with the connection string, e.g. for the connection pool*/
+  @Override
+  protected Connection newConnection() throws SQLException {
+    Connection c = DriverManager.getConnection(connectionString);
+    c.setAutoCommit(true);
+    return (c);
+  }
+
   /** Makes an SQL query limited to n results */
   public String limit(String sql, int n) {
     n++;
@@ -1,5 +1,7 @@
 package javatools.database;
 
+import java.io.InputStream;
+import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
@@ -45,6 +47,9 @@ public class PostgresDatabase extends Database {
   /** Holds the default schema*/
   protected String schema = null;
 
+  /** Holds the URL, user and password by which further connections can be opened*/
+  protected String url, user, password;
+
   /** Constructs a non-functional OracleDatabase for use of getSQLType*/
   public PostgresDatabase() {
     java2SQL.put(String.class,postgretext);
@@ -65,6 +70,9 @@ public class PostgresDatabase extends Database {
     Driver driver = (Driver) Class.forName("org.postgresql.Driver").newInstance();
     DriverManager.registerDriver(driver);
     String url = "jdbc:postgresql://" + host + ":" + port + (database == null ? "" : "/" + database) + (useSSL ? "?ssl=true&sslfactory=org.postgresql.ssl.NonValidatingFactory" : "");
+    this.url = url;
+    this.user = user;
+    this.password = password;
     connection = DriverManager.getConnection(url, user, password);
     connection.setAutoCommit(true);
     description = "Postgres database '" + database + "' as '" + user + "' at " + host + ":" + port + " using schema '" + schema+"'";
@@ -87,6 +95,53 @@ public class PostgresDatabase extends Database {
   }
 
   
+  /** Opens a new connection with the same URL and schema, e.g. for the connection pool*/
+  @Override
+  protected Connection newConnection() throws SQLException {
+    if (url == null) return (super.newConnection());
+    Connection c = DriverManager.getConnection(url, user, password);
+    c.setAutoCommit(true);
+    if (schema != null) {
+      Statement s = c.createStatement();
+      s.executeUpdate("SET search_path TO " + schema + ", public");
+      s.close();
+    }
+    return (c);
+  }
+
+  /** Streams the rows into a table by COPY ... FROM STDIN, using the CopyManager of the Postgres driver*/
+  public class CopyInserter extends StreamingInserter {
+
+    public CopyInserter(String table, SQLType[] columnTypes, String[] columnNames, int queueSize) throws SQLException {
+      super(table, columnTypes, columnNames, queueSize);
+    }
+
+    /** Writes binary values in the hex format of bytea*/
+    @Override
+    protected void appendBytes(byte[] value) {
+      buffer.append("\\\\x");
+      for (byte b : value) {
+        buffer.append(Character.forDigit((b >> 4) & 15, 16)).append(Character.forDigit(b & 15, 16));
+      }
+    }
+
+    @Override
+    protected long load(InputStream rows) throws Exception {
+      // The driver is accessed by reflection, so that it is needed only at runtime
+      Class<?> pgConnection = Class.forName("org.postgresql.PGConnection");
+      Object copyManager = pgConnection.getMethod("getCopyAPI").invoke(loaderConnection.unwrap(pgConnection));
+      Object rowCount = copyManager.getClass().getMethod("copyIn", String.class, InputStream.class)
+          .invoke(copyManager, "COPY " + tableName + columnList + " FROM STDIN", rows);
+      return (((Number) rowCount).longValue());
+    }
+  }
+
+  @Override
+  protected StreamingInserter newStreamingInserter(String table, SQLType[] columnTypes, String[] columnNames) throws SQLException {
+    if (url == null) return (null);
+    return (new CopyInserter(table, columnTypes, columnNames, bulkLoadQueueSize));
+  }
+
   /** Sets the default schema*/
   public void setSchema(String s) throws SQLException {
     executeUpdate("SET search_path TO "+s+", public");
@@ -0,0 +1,191 @@
+package javatools.database;
+
+import java.io.Closeable;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+This class is part of the Java Tools (see http://mpii.de/yago-naga/javatools).
+It is licensed under the Creative Commons Attribution License
+(see http://creativecommons.org/licenses/by/3.0) by
+the YAGO-NAGA team (see http://mpii.de/yago-naga).
+
+  This class iterates over the rows of a ResultSet like a {@link ResultIterator}, but
+  it returns the same {@link Row} object for every row. The Row holds the numerical
+  values in primitive arrays, so that no object is created per row or value (except
+  for strings). A Row is only valid until the next call to hasNext() or next(); it must
+  be copied if it is needed longer. Unlike ResultIterator, this iterator does not read
+  ahead.<BR>
+  Example:
+  <PRE>
+  RowIterator rows=d.queryRows("SELECT id, weight FROM features", 10000);
+  for(RowIterator.Row r : rows) {
+    ... r.getInt(0) ... r.getDouble(1) ...
+  }
+  rows.close();
+  </PRE>
+ */
+public class RowIterator implements Iterator<RowIterator.Row>, Iterable<RowIterator.Row>, Closeable {
+
+	/** A mutable row. Columns are counted from 0.*/
+	public static class Row {
+
+		/** Holds the java.sql.Types type of each column*/
+		public final int[] types;
+
+		/** Holds the values of integral and boolean columns*/
+		public final long[] longs;
+
+		/** Holds the values of floating point columns*/
+		public final double[] doubles;
+
+		/** Holds the values of all other columns as strings*/
+		public final String[] strings;
+
+		/** Tells which values are NULL*/
+		public final boolean[] nulls;
+
+		/** Creates a row for the columns of the result set*/
+		public Row(ResultSetMetaData meta) throws SQLException {
+			types = new int[meta.getColumnCount()];
+			for (int i = 0; i < types.length; i++)
+				types[i] = meta.getColumnType(i + 1);
+			longs = new long[types.length];
+			doubles = new double[types.length];
+			strings = new String[types.length];
+			nulls = new boolean[types.length];
+		}
+
+		/** Reads the current row of the result set*/
+		public void fill(ResultSet r) throws SQLException {
+			for (int i = 0; i < types.length; i++) {
+				switch (types[i]) {
+				case Types.TINYINT:
+				case Types.SMALLINT:
+				case Types.INTEGER:
+				case Types.BIGINT:
+					longs[i] = r.getLong(i + 1);
+					break;
+				case Types.BOOLEAN:
+				case Types.BIT:
+					longs[i] = r.getBoolean(i + 1) ? 1 : 0;
+					break;
+				case Types.REAL:
+				case Types.FLOAT:
+				case Types.DOUBLE:
+				case Types.NUMERIC:
+				case Types.DECIMAL:
+					doubles[i] = r.getDouble(i + 1);
+					break;
+				default:
+					strings[i] = r.getString(i + 1);
+				}
+				nulls[i] = r.wasNull();
+			}
+		}
+
+		/** Returns the number of columns*/
+		public int size() {
+			return (types.length);
+		}
+
+		/** TRUE if the value is NULL*/
+		public boolean isNull(int column) {
+			return (nulls[column]);
+		}
+
+		/** Returns the value of an integral or boolean column*/
+		public long getLong(int column) {
+			return (longs[column]);
+		}
+
+		/** Returns the value of an integral or boolean column*/
+		public int getInt(int column) {
+			return ((int) longs[column]);
+		}
+
+		/** Returns the value of a floating point column*/
+		public double getDouble(int column) {
+			return (doubles[column]);
+		}
+
+		/** Returns the value of a column that is neither integral nor floating point*/
+		public String getString(int column) {
+			return (strings[column]);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder b = new StringBuilder("[");
+			for (int i = 0; i < types.length; i++) {
+				if (i > 0) b.append(", ");
+				if (nulls[i]) b.append("null");
+				else if (strings[i] != null) b.append(strings[i]);
+				else if (doubles[i] != 0) b.append(doubles[i]);
+				else b.append(longs[i]);
+			}
+			return (b.append(']').toString());
+		}
+	}
+
+	/** Holds the resultSet*/
+	protected ResultSet resultSet;
+
+	/** Holds the row*/
+	protected Row row;
+
+	/** TRUE if the result set is positioned on a row that has not been returned*/
+	protected boolean hasRow = false;
+
+	/** TRUE if the result set is exhausted or closed*/
+	protected boolean done = false;
+
+	/** Creates a RowIterator for a ResultSet*/
+	public RowIterator(ResultSet s) {
+		resultSet = s;
+	}
+
+	public boolean hasNext() {
+		if (hasRow) return (true);
+		if (done) return (false);
+		try {
+			hasRow = resultSet.next();
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+		if (!hasRow) close();
+		return (hasRow);
+	}
+
+	/** Fills the row with the next row of the result set and returns it*/
+	public Row next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		hasRow = false;
+		try {
+			if (row == null) row = new Row(resultSet.getMetaData());
+			row.fill(resultSet);
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+		return (row);
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	public Iterator<Row> iterator() {
+		return (this);
+	}
+
+	/** Closes the resultset and the underlying statement*/
+	public void close() {
+		if (done) return;
+		done = true;
+		Database.close(resultSet);
+	}
+}
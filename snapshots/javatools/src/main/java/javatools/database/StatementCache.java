@@ -0,0 +1,229 @@
+package javatools.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+This class is part of the Java Tools (see http://mpii.de/yago-naga/javatools).
+It is licensed under the Creative Commons Attribution License
+(see http://creativecommons.org/licenses/by/3.0) by
+the YAGO-NAGA team (see http://mpii.de/yago-naga).
+
+  This class caches the PreparedStatements of one connection, keyed by their SQL text,
+  result set type and concurrency. It is used by {@link Database} if a statement cache
+  size is set.<BR>
+  A statement is handed out exclusively by prepare() and returns to the cache when it is
+  closed through Database.close(Statement) or Database.close(ResultSet), or when the result
+  set that track() returned for it is closed. Thus, a statement whose result set is still
+  being read is never executed again. A statement that is never returned stays with its
+  caller until the cache is closed. Up to the given number of idle statements are kept; the
+  least recently used one is closed when the cache is full.<BR>
+  The fetch size, maximal number of rows, maximal field size and query timeout of a statement
+  are set back to the values it was prepared with when it returns and when it is handed out
+  again.
+ */
+public class StatementCache {
+
+	/** Maps every statement of any cache to its cache*/
+	private static final Map<Statement, StatementCache> owners = Collections.synchronizedMap(new WeakHashMap<Statement, StatementCache>());
+
+	/** Holds the connection*/
+	protected final Connection connection;
+
+	/** Holds the idle statements in LRU order*/
+	protected final LinkedHashMap<String, PreparedStatement> idle;
+
+	/** Holds the lease of each statement that is handed out*/
+	protected final Map<Statement, Lease> inUse = new IdentityHashMap<Statement, Lease>();
+
+	/** Holds the fetch size, max rows, max field size and query timeout of each statement when it was prepared*/
+	protected final Map<Statement, int[]> defaults = new IdentityHashMap<Statement, int[]>();
+
+	/** TRUE if the cache was cleared for good*/
+	protected boolean closed = false;
+
+	/** Number of statements that were reused*/
+	protected long hits = 0;
+
+	/** Number of statements that were prepared*/
+	protected long misses = 0;
+
+	/** Creates a cache for the connection that keeps up to size idle statements*/
+	public StatementCache(Connection connection, final int size) {
+		this.connection = connection;
+		idle = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() <= size) return (false);
+				discard(eldest.getValue());
+				return (true);
+			}
+		};
+	}
+
+	/** Returns an idle statement for the SQL or prepares a new one*/
+	public synchronized PreparedStatement prepare(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		String key = resultSetType + "/" + resultSetConcurrency + "/" + sql;
+		PreparedStatement ps = idle.remove(key);
+		if (ps != null) {
+			hits++;
+			ps.clearParameters();
+			reset(ps);
+		} else {
+			misses++;
+			ps = connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+			owners.put(ps, this);
+			defaults.put(ps, new int[] { ps.getFetchSize(), ps.getMaxRows(), ps.getMaxFieldSize(), ps.getQueryTimeout() });
+		}
+		inUse.put(ps, new Lease(key));
+		return (ps);
+	}
+
+	/** Sets the statement back to the state it was prepared with*/
+	protected void reset(PreparedStatement ps) throws SQLException {
+		int[] d = defaults.get(ps);
+		if (ps.getFetchSize() != d[0]) ps.setFetchSize(d[0]);
+		if (ps.getMaxRows() != d[1]) ps.setMaxRows(d[1]);
+		if (ps.getMaxFieldSize() != d[2]) ps.setMaxFieldSize(d[2]);
+		if (ps.getQueryTimeout() != d[3]) ps.setQueryTimeout(d[3]);
+	}
+
+	/**
+	 * Takes back a statement that was handed out. Does nothing if it is idle already, or if
+	 * lease is not null and the statement has been handed out again since.
+	 */
+	protected synchronized void checkIn(Statement s, Lease lease) {
+		Lease current = inUse.get(s);
+		if (current == null || (lease != null && lease != current)) return;
+		inUse.remove(s);
+		if (closed || idle.containsKey(current.key)) {
+			discard(s);
+			return;
+		}
+		// Idle statements keep no fetch size, e.g. the streaming mode of MySQL
+		try {
+			reset((PreparedStatement) s);
+		} catch (SQLException e) {
+			discard(s);
+			return;
+		}
+		idle.put(current.key, (PreparedStatement) s);
+	}
+
+	/** Closes the statement and forgets it*/
+	protected void discard(Statement s) {
+		owners.remove(s);
+		defaults.remove(s);
+		try {
+			s.close();
+		} catch (SQLException e) {
+		}
+	}
+
+	/**
+	 * Returns the statement to its cache if it belongs to one, returns FALSE if it does
+	 * not belong to a cache and should be closed
+	 */
+	public static boolean release(Statement s) {
+		StatementCache cache = owners.get(s);
+		if (cache == null) return (false);
+		cache.checkIn(s, null);
+		return (true);
+	}
+
+	/**
+	 * Returns the result set of a statement, so that closing it returns the statement to its
+	 * cache. Returns the result set itself if the statement does not belong to a cache.
+	 */
+	public static ResultSet track(Statement s, ResultSet rs) {
+		StatementCache cache = owners.get(s);
+		if (cache == null || rs == null) return (rs);
+		Lease lease;
+		synchronized (cache) {
+			lease = cache.inUse.get(s);
+		}
+		if (lease == null) return (rs);
+		return ((ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+				new Tracker(rs, s, cache, lease)));
+	}
+
+	/** TRUE if the result set comes from track() and returns its statement when it is closed*/
+	public static boolean isTracked(ResultSet rs) {
+		return (rs != null && Proxy.isProxyClass(rs.getClass()) && Proxy.getInvocationHandler(rs) instanceof Tracker);
+	}
+
+	/** One handing out of a statement*/
+	protected static class Lease {
+		protected final String key;
+
+		protected Lease(String key) {
+			this.key = key;
+		}
+	}
+
+	/** Forwards all calls to a result set, and returns the statement to its cache on close()*/
+	protected static class Tracker implements InvocationHandler {
+		protected final ResultSet rs;
+		protected final Statement statement;
+		protected final StatementCache cache;
+		protected final Lease lease;
+
+		protected Tracker(ResultSet rs, Statement statement, StatementCache cache, Lease lease) {
+			this.rs = rs;
+			this.statement = statement;
+			this.cache = cache;
+			this.lease = lease;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getName().equals("close") && method.getParameterTypes().length == 0) {
+				try {
+					rs.close();
+				} finally {
+					cache.checkIn(statement, lease);
+				}
+				return (null);
+			}
+			try {
+				return (method.invoke(rs, args));
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	/** Closes all idle statements. Statements that are handed out are closed when they come back.*/
+	public synchronized void close() {
+		closed = true;
+		for (Iterator<PreparedStatement> it = idle.values().iterator(); it.hasNext();) {
+			discard(it.next());
+			it.remove();
+		}
+	}
+
+	/** Returns the number of idle statements*/
+	public synchronized int size() {
+		return (idle.size());
+	}
+
+	@Override
+	public synchronized String toString() {
+		return ("StatementCache with " + idle.size() + " idle and " + inUse.size() + " used statements, " + hits + " hits, " + misses + " misses");
+	}
+}
@@ -0,0 +1,70 @@
+package javatools.database;
+
+/**
+This class is part of the Java Tools (see http://mpii.de/yago-naga/javatools).
+It is licensed under the Creative Commons Attribution License
+(see http://creativecommons.org/licenses/by/3.0) by
+the YAGO-NAGA team (see http://mpii.de/yago-naga).
+
+  This class accumulates the execution times of one SQL statement. It is filled by
+  {@link Database} if timing is enabled. For queries, only the execution is timed,
+  not the reading of the result set.
+ */
+public class StatementTiming implements Comparable<StatementTiming> {
+
+	/** Holds the SQL text*/
+	protected final String sql;
+
+	/** Number of executions*/
+	protected long count = 0;
+
+	/** Total execution time in nanoseconds*/
+	protected long totalNanos = 0;
+
+	/** Longest execution time in nanoseconds*/
+	protected long maxNanos = 0;
+
+	public StatementTiming(String sql) {
+		this.sql = sql;
+	}
+
+	/** Adds one execution*/
+	public synchronized void add(long nanos) {
+		count++;
+		totalNanos += nanos;
+		if (nanos > maxNanos) maxNanos = nanos;
+	}
+
+	public String getSql() {
+		return (sql);
+	}
+
+	public synchronized long getCount() {
+		return (count);
+	}
+
+	public synchronized long getTotalNanos() {
+		return (totalNanos);
+	}
+
+	public synchronized long getMaxNanos() {
+		return (maxNanos);
+	}
+
+	/** Returns the mean execution time in milliseconds*/
+	public synchronized double getMeanMillis() {
+		return (count == 0 ? 0 : totalNanos / 1e6 / count);
+	}
+
+	/** Orders by decreasing total time*/
+	public int compareTo(StatementTiming o) {
+		long a = getTotalNanos();
+		long b = o.getTotalNanos();
+		return (a > b ? -1 : a < b ? 1 : 0);
+	}
+
+	@Override
+	public synchronized String toString() {
+		return (String.format("%8d x %10.3f ms = %10.1f ms (max %10.3f ms) %s", count, getMeanMillis(), totalNanos / 1e6, maxNanos / 1e6, sql));
+	}
+}
@@ -0,0 +1,404 @@
+package javatools.datatypes;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import javatools.administrative.D;
+
+/**
+ * This class is part of the Java Tools (see
+ * http://mpii.de/yago-naga/javatools). It is licensed under the Creative
+ * Commons Attribution License (see http://creativecommons.org/licenses/by/3.0)
+ * by the YAGO-NAGA team (see http://mpii.de/yago-naga).
+ *
+ * The class implements a compact, read-only Trie. It offers the lookup methods of
+ * {@link Trie}, but it is built once from a sorted list of words and cannot be
+ * modified afterwards. Instead of one object and one TreeMap per node, the nodes are
+ * numbered in breadth-first order and stored in three flat arrays:
+ * the label of the edge that leads to each node, the number of the first child of
+ * each node (the children of a node are consecutive and sorted by label, so that
+ * they are found by binary search), and one bit per node that tells whether the node
+ * ends a word. This takes about 6 bytes and 1 bit per node, and no lookup allocates.
+ *
+ * A CompactTrie can be written to a file with {@link #writeTo(File)} and mapped back
+ * with {@link #map(File)}, which does not read the file up front, so that large
+ * gazetteers can be shared between processes by the operating system.
+ *
+ * Example:
+ * <PRE>
+ *   CompactTrie t=CompactTrie.build(Arrays.asList("New York","New York City","Paris"));
+ *   // Longest-match scanning without allocation
+ *   for(int pos=0;pos&lt;text.length();pos++) {
+ *     int length=t.longestMatch(text,pos);
+ *     if(length&gt;0) {
+ *       ... found text[pos,pos+length) ...
+ *       pos+=length-1;
+ *     }
+ *   }
+ * </PRE>
+ */
+public class CompactTrie extends AbstractSet<CharSequence> {
+
+  /** Marks the files written by writeTo*/
+  public static final int MAGIC = 0x54524945;
+  /** Version of the file format*/
+  public static final int VERSION = 1;
+  /** Length of the file header in bytes*/
+  protected static final int HEADER_LENGTH = 16;
+
+  /** Number of nodes, the root is node 0*/
+  protected final int numNodes;
+  /** Number of words*/
+  protected final int size;
+  /** Holds for each node the label of the edge that leads to it*/
+  protected final CharBuffer labels;
+  /** Holds for each node the first child, and at numNodes the total number of nodes*/
+  protected final IntBuffer firstChild;
+  /** Holds one bit per node, set if the node ends a word*/
+  protected final LongBuffer isWord;
+
+  /** Constructs a CompactTrie over the given node arrays*/
+  protected CompactTrie(int numNodes, int size, CharBuffer labels, IntBuffer firstChild, LongBuffer isWord) {
+    this.numNodes=numNodes;
+    this.size=size;
+    this.labels=labels;
+    this.firstChild=firstChild;
+    this.isWord=isWord;
+  }
+
+  /** Builds a CompactTrie from words in any order*/
+  public static CompactTrie build(Collection<? extends CharSequence> words) {
+    String[] sorted=new String[words.size()];
+    int i=0;
+    for(CharSequence w : words) sorted[i++]=w.toString();
+    Arrays.sort(sorted);
+    return(fromSorted(Arrays.asList(sorted)));
+  }
+
+  /** Builds a CompactTrie that contains the words of the Trie*/
+  public static CompactTrie of(Trie trie) {
+    List<String> words=new ArrayList<String>(trie.size());
+    for(String s : trie.strings()) words.add(s);
+    return(build(words));
+  }
+
+  /**
+   * Builds a CompactTrie from words that are sorted by their chars (as by String.compareTo).
+   * Duplicates are ignored.
+   */
+  public static CompactTrie fromSorted(List<? extends CharSequence> words) {
+    int n=words.size();
+    for(int i=1;i<n;i++) {
+      if(compare(words.get(i-1),words.get(i))>0) throw new IllegalArgumentException("Words are not sorted at "+i+": "+words.get(i));
+    }
+    // Per node: the range [lo,hi) of words that start with the node's prefix
+    int[] lo=new int[16];
+    int[] hi=new int[16];
+    char[] label=new char[16];
+    int[] first=new int[17];
+    int numNodes=1;
+    int size=0;
+    long[] words1=new long[1];
+    lo[0]=0;
+    hi[0]=n;
+    // Process the nodes level by level, appending the children of each node
+    int levelEnd=1;
+    int depth=0;
+    for(int node=0;node<numNodes;node++) {
+      if(node==levelEnd) {
+        levelEnd=numNodes;
+        depth++;
+      }
+      int i=lo[node];
+      int end=hi[node];
+      if(i<end && words.get(i).length()==depth) {
+        if(words1.length<=(node>>>6)) words1=Arrays.copyOf(words1,Math.max(words1.length*2,(node>>>6)+1));
+        words1[node>>>6]|=1L<<node;
+        size++;
+        // Skip duplicates
+        while(i<end && words.get(i).length()==depth) i++;
+      }
+      first[node]=numNodes;
+      while(i<end) {
+        char c=words.get(i).charAt(depth);
+        int j=i+1;
+        while(j<end && words.get(j).charAt(depth)==c) j++;
+        if(numNodes==lo.length) {
+          int newLength=lo.length+(lo.length>>1)+16;
+          lo=Arrays.copyOf(lo,newLength);
+          hi=Arrays.copyOf(hi,newLength);
+          label=Arrays.copyOf(label,newLength);
+          first=Arrays.copyOf(first,newLength+1);
+        }
+        lo[numNodes]=i;
+        hi[numNodes]=j;
+        label[numNodes]=c;
+        numNodes++;
+        i=j;
+      }
+    }
+    first[numNodes]=numNodes;
+    return(new CompactTrie(numNodes,size,CharBuffer.wrap(Arrays.copyOf(label,numNodes)),
+        IntBuffer.wrap(Arrays.copyOf(first,numNodes+1)),LongBuffer.wrap(Arrays.copyOf(words1,(numNodes+63)>>>6))));
+  }
+
+  /** Compares two sequences by their chars*/
+  protected static int compare(CharSequence a, CharSequence b) {
+    int n=Math.min(a.length(),b.length());
+    for(int i=0;i<n;i++) {
+      int d=a.charAt(i)-b.charAt(i);
+      if(d!=0) return(d);
+    }
+    return(a.length()-b.length());
+  }
+
+  // ------------ Navigation -----------------
+
+  /** Returns the child of the node with the label, or -1*/
+  protected final int child(int node, char c) {
+    int low=firstChild.get(node);
+    int high=firstChild.get(node+1)-1;
+    while(low<=high) {
+      int mid=(low+high)>>>1;
+      char m=labels.get(mid);
+      if(m<c) low=mid+1;
+      else if(m>c) high=mid-1;
+      else return(mid);
+    }
+    return(-1);
+  }
+
+  /** TRUE if the node ends a word*/
+  protected final boolean isWord(int node) {
+    return((isWord.get(node>>>6) & (1L<<node))!=0);
+  }
+
+  // ------------ Lookup -----------------
+
+  @Override
+  public boolean contains(Object s) {
+    return(s instanceof CharSequence && contains((CharSequence)s,0,((CharSequence)s).length()));
+  }
+
+  /** TRUE if the trie contains the subsequence [start,end) of s*/
+  public boolean contains(CharSequence s, int start, int end) {
+    int node=0;
+    for(int i=start;i<end;i++) {
+      node=child(node,s.charAt(i));
+      if(node==-1) return(false);
+    }
+    return(isWord(node));
+  }
+
+  /**
+   * Returns the length of the shortest contained subsequence, starting from
+   * start position, or -1 (as in {@link Trie#containedLength(CharSequence, int)})
+   */
+  public int containedLength(CharSequence s, int startPos) {
+    int node=0;
+    for(int i=startPos;;i++) {
+      if(isWord(node)) return(i-startPos);
+      if(i>=s.length()) return(-1);
+      node=child(node,s.charAt(i));
+      if(node==-1) return(-1);
+    }
+  }
+
+  /**
+   * Returns the length of the longest contained subsequence, starting from
+   * start position, or -1
+   */
+  public int longestMatch(CharSequence s, int startPos) {
+    int node=0;
+    int result=isWord(0)?0:-1;
+    for(int i=startPos;i<s.length();i++) {
+      node=child(node,s.charAt(i));
+      if(node==-1) break;
+      if(isWord(node)) result=i-startPos+1;
+    }
+    return(result);
+  }
+
+  /** Returns all words found, the shortest one at each position (as {@link Trie#wordsIn(CharSequence)}) */
+  public PeekIterator<CharSequence> wordsIn(final CharSequence text) {
+    return(new PeekIterator<CharSequence>() {
+      int pos=-1;
+
+      public CharSequence internalNext() {
+        while(++pos<text.length()) {
+          int length=containedLength(text,pos);
+          if(length!=-1) return(text.subSequence(pos,pos+length));
+        }
+        return(null);
+      }
+    });
+  }
+
+  /** Returns the longest non-empty words found from left to right, without overlaps */
+  public PeekIterator<CharSequence> longestMatchesIn(final CharSequence text) {
+    return(new PeekIterator<CharSequence>() {
+      int pos=0;
+
+      public CharSequence internalNext() {
+        for(;pos<text.length();pos++) {
+          int length=longestMatch(text,pos);
+          if(length>0) {
+            pos+=length;
+            return(text.subSequence(pos-length,pos));
+          }
+        }
+        return(null);
+      }
+    });
+  }
+
+  @Override
+  public int size() {
+    return(size);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return(size==0);
+  }
+
+  /** Returns the number of nodes*/
+  public int numNodes() {
+    return(numNodes);
+  }
+
+  /** Returns the words in sorted order*/
+  @Override
+  public PeekIterator<CharSequence> iterator() {
+    if(isEmpty()) return(PeekIterator.emptyIterator());
+    return(new PeekIterator<CharSequence>() {
+      StringBuilder currentString=new StringBuilder();
+      /** Holds the node at each depth*/
+      int[] path=new int[16];
+      int depth=-1;
+      boolean done=false;
+
+      @Override
+      protected CharSequence internalNext() {
+        if(done) return(null);
+        do {
+          if(depth==-1) {
+            depth=0;
+            if(isWord(0)) return("");
+          }
+          int node=path[depth];
+          int c=firstChild.get(node);
+          if(c<firstChild.get(node+1)) {
+            // Go down
+            if(++depth==path.length) path=Arrays.copyOf(path,path.length*2);
+            path[depth]=c;
+            currentString.append(labels.get(c));
+          } else {
+            // Go up until there is a next neighbor
+            while(true) {
+              if(depth==0) {
+                done=true;
+                return(null);
+              }
+              int next=path[depth]+1;
+              if(next<firstChild.get(path[depth-1]+1)) {
+                path[depth]=next;
+                currentString.setCharAt(depth-1,labels.get(next));
+                break;
+              }
+              depth--;
+              currentString.setLength(depth);
+            }
+          }
+        } while(!isWord(path[depth]));
+        return(currentString.toString());
+      }
+    });
+  }
+
+  @Override
+  public String toString() {
+    return "CompactTrie with "+size()+" elements and "+numNodes+" nodes";
+  }
+
+  // ------------ Files -----------------
+
+  /** Writes the trie to a file that can be mapped*/
+  public void writeTo(File file) throws IOException {
+    DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file),1<<16));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(numNodes);
+      out.writeInt(size);
+      for(int i=0;i<=numNodes;i++) out.writeInt(firstChild.get(i));
+      for(int i=0;i<isWord.capacity();i++) out.writeLong(isWord.get(i));
+      for(int i=0;i<numNodes;i++) out.writeChar(labels.get(i));
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Maps a trie file read-only into memory. The nodes are paged in by the
+   * operating system as they are visited. The file must not be larger than 2GB.
+   */
+  public static CompactTrie map(File file) throws IOException {
+    RandomAccessFile raf=new RandomAccessFile(file,"r");
+    try {
+      if(raf.length()<HEADER_LENGTH || raf.length()>Integer.MAX_VALUE) throw new IOException("Not a trie file: "+file);
+      MappedByteBuffer buffer=raf.getChannel().map(FileChannel.MapMode.READ_ONLY,0,raf.length());
+      if(buffer.getInt(0)!=MAGIC) throw new IOException("Not a trie file: "+file);
+      if(buffer.getInt(4)!=VERSION) throw new IOException("Unsupported trie version "+buffer.getInt(4)+": "+file);
+      int numNodes=buffer.getInt(8);
+      int size=buffer.getInt(12);
+      long wordsOffset=HEADER_LENGTH+4L*(numNodes+1);
+      int numWords=(numNodes+63)>>>6;
+      long labelsOffset=wordsOffset+8L*numWords;
+      if(raf.length()!=labelsOffset+2L*numNodes) throw new IOException("Corrupt trie file: "+file);
+      return(new CompactTrie(numNodes,size,
+          slice(buffer,(int)labelsOffset,2*numNodes).asCharBuffer(),
+          slice(buffer,HEADER_LENGTH,4*(numNodes+1)).asIntBuffer(),
+          slice(buffer,(int)wordsOffset,8*numWords).asLongBuffer()));
+    } finally {
+      // The mapping stays valid after the channel is closed
+      raf.close();
+    }
+  }
+
+  /** Returns the part [offset,offset+length) of the buffer*/
+  protected static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+    ByteBuffer b=buffer.duplicate();
+    b.position(offset);
+    b.limit(offset+length);
+    return(b.slice());
+  }
+
+  /** Test method */
+  public static void main(String[] args) throws Exception {
+    CompactTrie t=CompactTrie.build(Arrays.asList("hallo","du","hal","New York","New York City"));
+    for(CharSequence s : t) D.p(s);
+    D.p(t.wordsIn("Blah hallo blub hallo fasel du").asList());
+    D.p(t.longestMatchesIn("Blah hallo New York City du").asList());
+    File file=File.createTempFile("trie",".bin");
+    t.writeTo(file);
+    CompactTrie m=CompactTrie.map(file);
+    D.p(m, m.contains("New York"), m.contains("New Yor"));
+    file.delete();
+  }
+}
@@ -0,0 +1,303 @@
+package javatools.datatypes;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import javatools.administrative.D;
+
+/**
+  This class is part of the Java Tools (see http://mpii.de/yago-naga/javatools).
+  It is licensed under the Creative Commons Attribution License
+  (see http://creativecommons.org/licenses/by/3.0) by
+  the YAGO-NAGA team (see http://mpii.de/yago-naga).
+
+  This class implements a priority queue, whose elements are integers (ids) and whose
+  priorities are doubles. It offers the methods of {@link IdPriorityQueue}, but keeps
+  the ids in an indexed binary max-heap, so that add, put (update of the priority),
+  poll and remove take logarithmic time and peek takes constant time.
+  The position of each id in the heap is found through an open-addressing table.
+  All data lives in primitive arrays.
+*/
+public class IdPriorityHeap {
+  /** Golden ratio constant used to scramble the ids*/
+  private static final int PHI = 0x9E3779B9;
+
+  /** Holds the ids in heap order*/
+  protected int[] heapIds;
+  /** Holds the priorities in heap order*/
+  protected double[] heapPriorities;
+  /** Holds for each heap position the slot of its id in the table*/
+  protected int[] heapSlots;
+  /** Number of ids in the queue*/
+  protected int numElements=0;
+
+  /** Holds the ids of the table, the length is always a power of two*/
+  protected int[] slotIds;
+  /** Holds for each slot the heap position of its id plus one, 0 marks a free slot*/
+  protected int[] slotPositions;
+  /** slotIds.length-1*/
+  protected int mask;
+  /** Number of ids that triggers the next resize of the table*/
+  protected int threshold;
+
+  /** Constructor with initial capacity*/
+  public IdPriorityHeap(int capacity) {
+    clear(capacity);
+  }
+
+  /** Constructor with capacity 10*/
+  public IdPriorityHeap() {
+    this(10);
+  }
+
+  /** Adds an id to the queue or updates its priority (logarithmic time)*/
+  public void add(int i, double priority) {
+    int slot=slotOf(i);
+    // If we found the element, update its priority
+    if(slotPositions[slot]!=0) {
+      int pos=slotPositions[slot]-1;
+      double old=heapPriorities[pos];
+      heapPriorities[pos]=priority;
+      if(priority>old) siftUp(pos);
+      else if(priority<old) siftDown(pos);
+      return;
+    }
+    if(numElements>=threshold) {
+      resize(slotIds.length<<1);
+      slot=slotOf(i);
+    }
+    if(numElements==heapIds.length) {
+      int newLength=heapIds.length+(heapIds.length>>1)+10;
+      heapIds=Arrays.copyOf(heapIds,newLength);
+      heapPriorities=Arrays.copyOf(heapPriorities,newLength);
+      heapSlots=Arrays.copyOf(heapSlots,newLength);
+    }
+    slotIds[slot]=i;
+    set(numElements,i,priority,slot);
+    siftUp(numElements++);
+  }
+
+  /** Truncates the id to int, then adds (logarithmic time)*/
+  public void put(long id, double priority) {
+    add((int)id,priority);
+  }
+
+  /** Returns and removes the id with highest priority*/
+  public int poll() {
+    if(numElements==0) throw new NoSuchElementException();
+    int toReturn=heapIds[0];
+    removeAt(0);
+    return(toReturn);
+  }
+
+  /** Returns the highest priority*/
+  public double highestPriority() {
+    if(numElements==0) throw new NoSuchElementException();
+    return(heapPriorities[0]);
+  }
+
+  /** Returns the id with the highest priority*/
+  public int peek() {
+    if(numElements==0) throw new NoSuchElementException();
+    return(heapIds[0]);
+  }
+
+  /** Returns the priority of the id*/
+  public double priority(int i) {
+    int slot=slotOf(i);
+    if(slotPositions[slot]==0) throw new NoSuchElementException(String.valueOf(i));
+    return(heapPriorities[slotPositions[slot]-1]);
+  }
+
+  /** Removes one id, returns TRUE if the queue was modified*/
+  public boolean remove(int i) {
+    int slot=slotOf(i);
+    if(slotPositions[slot]==0) return false;
+    removeAt(slotPositions[slot]-1);
+    return true;
+  }
+
+  /** Removes one id, returns TRUE if the queue was modified*/
+  public boolean remove(long i) {
+    return(remove((int)i));
+  }
+
+  /** TRUE if the queue contains i*/
+  public boolean contains(int i) {
+    return(slotPositions[slotOf(i)]!=0);
+  }
+
+  /** TRUE if the queue contains i*/
+  public boolean contains(long i) {
+    return(contains((int)i));
+  }
+
+  public int size() {
+    return numElements;
+  }
+
+  /** TRUE if the queue is empty*/
+  public boolean isEmpty() {
+    return numElements==0;
+  }
+
+  /** Removes all elements*/
+  public void clear() {
+    clear(10);
+  }
+
+  public void clear(int capacity) {
+    if(capacity<0) throw new IllegalArgumentException("capacity must be >= 0: " + capacity);
+    numElements=0;
+    heapIds=new int[capacity];
+    heapPriorities=new double[capacity];
+    heapSlots=new int[capacity];
+    int tableSize=Integer.highestOneBit(Math.max(capacity,4)*2-1)<<1;
+    slotIds=new int[tableSize];
+    slotPositions=new int[tableSize];
+    mask=tableSize-1;
+    threshold=tableSize>>1;
+  }
+
+  // ------------ Heap and table internals -----------------
+
+  /** Places the id at the heap position and points its slot to it*/
+  protected final void set(int pos, int id, double priority, int slot) {
+    heapIds[pos]=id;
+    heapPriorities[pos]=priority;
+    heapSlots[pos]=slot;
+    slotPositions[slot]=pos+1;
+  }
+
+  /** Moves the element at pos up until the heap order holds*/
+  protected void siftUp(int pos) {
+    int id=heapIds[pos];
+    double priority=heapPriorities[pos];
+    int slot=heapSlots[pos];
+    while(pos>0) {
+      int parent=(pos-1)>>>1;
+      if(heapPriorities[parent]>=priority) break;
+      set(pos,heapIds[parent],heapPriorities[parent],heapSlots[parent]);
+      pos=parent;
+    }
+    set(pos,id,priority,slot);
+  }
+
+  /** Moves the element at pos down until the heap order holds*/
+  protected void siftDown(int pos) {
+    int id=heapIds[pos];
+    double priority=heapPriorities[pos];
+    int slot=heapSlots[pos];
+    int half=numElements>>>1;
+    while(pos<half) {
+      int child=2*pos+1;
+      int right=child+1;
+      if(right<numElements && heapPriorities[right]>heapPriorities[child]) child=right;
+      if(heapPriorities[child]<=priority) break;
+      set(pos,heapIds[child],heapPriorities[child],heapSlots[child]);
+      pos=child;
+    }
+    set(pos,id,priority,slot);
+  }
+
+  /** Removes the element at the heap position*/
+  protected void removeAt(int pos) {
+    removeSlot(heapSlots[pos]);
+    int last=--numElements;
+    if(pos==last) return;
+    int id=heapIds[last];
+    set(pos,id,heapPriorities[last],heapSlots[last]);
+    siftDown(pos);
+    if(heapIds[pos]==id) siftUp(pos);
+  }
+
+  /** Returns the slot of the id, or the free slot where it would go*/
+  protected final int slotOf(int id) {
+    int slot=home(id);
+    while(slotPositions[slot]!=0 && slotIds[slot]!=id) slot=(slot+1) & mask;
+    return(slot);
+  }
+
+  /** Returns the home slot of the id*/
+  protected final int home(int id) {
+    int h=id*PHI;
+    return (h ^ (h>>>16)) & mask;
+  }
+
+  /** Frees the slot and moves back the following ids of the probe chain*/
+  protected void removeSlot(int hole) {
+    int i=hole;
+    while(true) {
+      i=(i+1) & mask;
+      int pos=slotPositions[i];
+      if(pos==0) break;
+      int home=home(slotIds[i]);
+      // Move the id into the hole unless its home lies cyclically in (hole, i]
+      if(((i-home) & mask) >= ((i-hole) & mask)) {
+        slotIds[hole]=slotIds[i];
+        slotPositions[hole]=pos;
+        heapSlots[pos-1]=hole;
+        hole=i;
+      }
+    }
+    slotPositions[hole]=0;
+  }
+
+  /** Rehashes all ids into a table of the given size*/
+  protected void resize(int tableSize) {
+    slotIds=new int[tableSize];
+    slotPositions=new int[tableSize];
+    mask=tableSize-1;
+    threshold=tableSize>>1;
+    for(int pos=0;pos<numElements;pos++) {
+      int slot=slotOf(heapIds[pos]);
+      slotIds[slot]=heapIds[pos];
+      slotPositions[slot]=pos+1;
+      heapSlots[pos]=slot;
+    }
+  }
+
+  // ------------ Wrappers -----------------
+
+  public void addAll(IdPriorityHeap s) {
+    for(int i=0;i<s.numElements;i++) add(s.heapIds[i],s.heapPriorities[i]);
+  }
+
+  public void addAll(IdPriorityQueue s) {
+    for(int i=0;i<=s.lastIndex;i++) {
+      if(s.isThere.get(i)) add(s.data[i],s.priorities[i]);
+    }
+  }
+
+  /** Returns an array of the ids of this queue, in no particular order*/
+  public int[] toArray() {
+    return Arrays.copyOf(heapIds,numElements);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result=new StringBuilder("[");
+    for(int i=0;i<numElements;i++) {
+      result.append(heapIds[i]).append(" (").append(heapPriorities[i]).append("), ");
+    }
+    if(result.length()>2) result.setLength(result.length()-2);
+    return result.append(']').toString();
+  }
+
+  /** Test */
+  public static void main(String[] args) {
+    IdPriorityHeap q=new IdPriorityHeap();
+    for(int i=1;i<10;i++) q.add(i,1000-i*10);
+    D.p(q);
+    q.add(2, 100);
+    D.p(q);
+    q.remove(2);
+    q.remove(3);
+    q.add(3,40);
+    D.p(q);
+    while(!q.isEmpty()) {
+      D.p(q);
+      D.p(q.poll());
+    }
+  }
+
+}
@@ -15,7 +15,8 @@ import javatools.administrative.D;
    
        
   This class implements a priority queue, whose elements are integers (ids) and whose
-  priorities are doubles. 
+  priorities are doubles. All operations are linear time; {@link IdPriorityHeap}
+  offers the same methods in logarithmic time.
 */
 
 public class IdPriorityQueue extends IntSet {
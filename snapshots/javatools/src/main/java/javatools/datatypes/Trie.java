@@ -14,6 +14,7 @@ import javatools.administrative.D;
  * by the YAGO-NAGA team (see http://mpii.de/yago-naga).
  * 
  * The class implements the Trie data type.
+ * For large word lists that do not change after loading, see {@link CompactTrie}.
  */
 public class Trie extends AbstractSet<CharSequence> {
 
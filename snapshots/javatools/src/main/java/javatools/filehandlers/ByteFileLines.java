@@ -23,8 +23,11 @@ Does the same as FileLines (see there) but reads bytes (see SimpleInputStreamRea
 */
 public class ByteFileLines extends FileLines {
 
-  /** The stream to read the lines from */
+  /** The stream to read the lines from (null if the file is mapped) */
   public InputStream in;
+
+  /** The mapped file to read the lines from (null if read from a stream) */
+  protected MappedFileLines mapped;
   
   /** Constructs FileLines from a filename */
   public ByteFileLines(String f) throws IOException {
@@ -38,8 +41,14 @@ public class ByteFileLines extends FileLines {
   public ByteFileLines(String f, String announceMsg) throws IOException {
     this(new File(f),announceMsg);
   }
-  /** Constructs FileLines from a file, shows progress bar  (main constructor 1) */
+  /** Constructs FileLines from a file, shows progress bar  (main constructor 1).
+   * A regular file is mapped into memory (see MappedFileLines), which also announces the progress;
+   * anything else (a pipe, a device) is read as a stream. */
   public ByteFileLines(File f, String announceMsg) throws IOException {
+    if(f.isFile()) {
+      mapped=new MappedFileLines(f,announceMsg).skipEmptyLines(true);
+      return;
+    }
     if(announceMsg!=null) {
       Announce.progressStart(announceMsg, f.length());
       announceChars=0;
@@ -57,6 +66,7 @@ public class ByteFileLines extends FileLines {
   
   @Override
   public String internalNext() {
+    if(mapped!=null) return(mapped.nextLine()?mapped.line().toString():null);
     StringBuffer next=new StringBuffer(100);
     try {
       int c;
@@ -80,6 +90,10 @@ public class ByteFileLines extends FileLines {
   
   @Override
   public void close() {
+    if(mapped!=null) {
+      mapped.close();
+      return;
+    }
     try {
       in.close();
     } catch (IOException e) {}
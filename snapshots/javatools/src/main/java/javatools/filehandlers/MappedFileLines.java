@@ -0,0 +1,441 @@
+package javatools.filehandlers;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javatools.administrative.Announce;
+import javatools.administrative.D;
+
+/**
+ * This class is part of the Java Tools (see
+ * http://mpii.de/yago-naga/javatools). It is licensed under the Creative
+ * Commons Attribution License (see http://creativecommons.org/licenses/by/3.0)
+ * by the YAGO-NAGA team (see http://mpii.de/yago-naga).
+ *
+ * The class reads the lines of a file like FileLines, but maps the file into memory
+ * window by window instead of copying it through a Reader, and finds the line ends
+ * eight bytes at a time. The lines are given as one {@link Line} object that is
+ * reused for all lines: a CharSequence over the mapped bytes (one char per byte, as
+ * in ByteFileLines), so that reading a line allocates nothing. Call toString() on
+ * the lines that have to be kept. Lines end with \n, \r or \r\n, as for
+ * BufferedReader.readLine().<BR>
+ * Example:
+ *
+ * <PRE>
+ * for (MappedFileLines.Line l : new MappedFileLines(&quot;yago.tsv&quot;, &quot;Reading YAGO&quot;)) {
+ *   if (l.indexOf('\t', 0) == -1) continue;
+ *   ...
+ * }
+ * </PRE>
+ *
+ * A reader can also read only the lines that start in a range of bytes of the
+ * file, so that several threads read disjoint parts of one file:
+ * {@link #split(File, int)} cuts a file into such readers, and
+ * {@link #process(File, int, String, LineHandler)} runs a handler on all lines
+ * with several threads. Either way, every line is read exactly once.<BR>
+ * As with FileLines, the progress can be announced with Announce, and the file is
+ * closed when there are no more lines. If you do not read all lines, close the
+ * reader manually.
+ */
+public class MappedFileLines implements Iterable<MappedFileLines.Line>, Iterator<MappedFileLines.Line>, Closeable {
+
+  /** Bytes mapped at once, unless a line is longer */
+  public static int CHUNK_SIZE = 1 << 26;
+
+  /** Bytes read between two progress reports */
+  protected static final int PROGRESS_STEP = 1 << 20;
+
+  protected RandomAccessFile raf;
+  protected FileChannel channel;
+  protected final long fileSize;
+  /** Position of the first byte after the range */
+  protected final long to;
+  /** Position of the first byte of the range, before skipping the line that started before*/
+  protected final long from;
+
+  /** The current window of the file */
+  protected MappedByteBuffer window;
+  protected long windowStart;
+  protected int windowLength;
+
+  /** Position of the next line */
+  protected long pos;
+
+  protected final Line line = new Line();
+  protected boolean skipEmptyLines = false;
+  protected boolean closed = false;
+
+  /** TRUE if hasNext() has already read the line that next() returns */
+  private boolean fetched = false;
+  private boolean hasLine;
+
+  /** Whether the progress is announced, and the counter of the readers of a split (or null) */
+  protected boolean announce = false;
+  protected AtomicLong progress;
+  protected long reported;
+
+  /** Constructs MappedFileLines from a filename */
+  public MappedFileLines(String f) throws IOException {
+    this(new File(f), null);
+  }
+
+  /** Constructs MappedFileLines from a file */
+  public MappedFileLines(File f) throws IOException {
+    this(f, null);
+  }
+
+  /** Constructs MappedFileLines from a filename, shows progress bar */
+  public MappedFileLines(String f, String announceMsg) throws IOException {
+    this(new File(f), announceMsg);
+  }
+
+  /** Constructs MappedFileLines from a file, shows progress bar */
+  public MappedFileLines(File f, String announceMsg) throws IOException {
+    this(f, 0, Long.MAX_VALUE, null);
+    if (announceMsg != null) {
+      Announce.progressStart(announceMsg, Math.max(1, fileSize));
+      announce = true;
+    }
+  }
+
+  /**
+   * Constructs MappedFileLines that reads the lines that start at or after the
+   * byte from and before the byte to. The last line may end after to.
+   */
+  public MappedFileLines(File f, long from, long to) throws IOException {
+    this(f, from, to, null);
+  }
+
+  /** Constructs a reader of a range, that adds the bytes it reads to progress (main constructor) */
+  protected MappedFileLines(File f, long from, long to, AtomicLong progress) throws IOException {
+    raf = new RandomAccessFile(f, "r");
+    channel = raf.getChannel();
+    fileSize = raf.length();
+    this.from = Math.max(0, from);
+    this.to = Math.min(to, fileSize);
+    this.progress = progress;
+    pos = this.from;
+    // Skip the end of the line that started before the range
+    while (pos < this.to && !isLineStart(pos))
+      pos++;
+  }
+
+  /** Whether all lines or only the non-empty ones are read (as by ByteFileLines). Returns this. */
+  public MappedFileLines skipEmptyLines(boolean skip) {
+    skipEmptyLines = skip;
+    return (this);
+  }
+
+  /** Tells whether a line starts at position p */
+  protected boolean isLineStart(long p) throws IOException {
+    if (p == 0) return (true);
+    byte previous = byteAt(p - 1);
+    if (previous == '\n') return (true);
+    return (previous == '\r' && (p == fileSize || byteAt(p) != '\n'));
+  }
+
+  /** Returns the byte at position p, mapping it if needed */
+  protected byte byteAt(long p) throws IOException {
+    if (window == null || p < windowStart || p >= windowStart + windowLength) map(p, 1);
+    return (window.get((int) (p - windowStart)));
+  }
+
+  /** Maps at least minLength bytes from start (unless the file ends before) */
+  protected void map(long start, long minLength) throws IOException {
+    long length = Math.min(fileSize - start, Math.max(CHUNK_SIZE, minLength));
+    if (length > Integer.MAX_VALUE) throw new IOException("Line longer than 2GB at byte " + start);
+    window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+    windowStart = start;
+    windowLength = (int) length;
+  }
+
+  private static final long ONES = 0x0101010101010101L;
+  private static final long HIGHS = 0x8080808080808080L;
+  private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+  private static final long RETURNS = 0x0D0D0D0D0D0D0D0DL;
+
+  /** Returns the index of the first \n or \r of the window in [i, end), or end */
+  protected int findLineEnd(int i, int end) {
+    // Eight bytes at a time: a byte of x^NEWLINES is zero where x has a \n
+    for (; i + 8 <= end; i += 8) {
+      long x = window.getLong(i);
+      long n = x ^ NEWLINES;
+      long r = x ^ RETURNS;
+      if (((((n - ONES) & ~n) | ((r - ONES) & ~r)) & HIGHS) != 0) break;
+    }
+    for (; i < end; i++) {
+      byte b = window.get(i);
+      if (b == '\n' || b == '\r') return (i);
+    }
+    return (end);
+  }
+
+  /** Reads the next line into line(), returns FALSE if there are no more lines (and closes the reader) */
+  public boolean nextLine() {
+    if (closed) return (false);
+    try {
+      while (pos < to) {
+        if (window == null || pos < windowStart || pos >= windowStart + windowLength) map(pos, 1);
+        int start = (int) (pos - windowStart);
+        int i = start;
+        int end;
+        while (true) {
+          // Keep one byte to look at after a \r, unless the window ends the file
+          boolean last = windowStart + windowLength == fileSize;
+          int limit = last ? windowLength : windowLength - 1;
+          end = findLineEnd(i, limit);
+          if (end < limit || last) break;
+          // The line goes beyond the window: map it again from its start, larger
+          i = end - start;
+          map(pos, 2L * windowLength);
+          start = 0;
+        }
+        long next = windowStart + end;
+        if (end < windowLength) {
+          next += (window.get(end) == '\r' && end + 1 < windowLength && window.get(end + 1) == '\n') ? 2 : 1;
+        }
+        line.set(window, start, end - start, pos);
+        pos = next;
+        reportProgress();
+        if (skipEmptyLines && line.length == 0) continue;
+        return (true);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    close();
+    return (false);
+  }
+
+  /** Announces the progress every PROGRESS_STEP bytes */
+  protected void reportProgress() {
+    long read = Math.min(pos, to) - from;
+    if (read - reported < PROGRESS_STEP && pos < to) return;
+    if (announce) Announce.progressAt(read);
+    if (progress != null) progress.addAndGet(read - reported);
+    reported = read;
+  }
+
+  /** The current line, which changes with the next call of nextLine(), hasNext() or next() */
+  public Line line() {
+    return (line);
+  }
+
+  /** Reads the next line, if next() did not return the last one read */
+  public boolean hasNext() {
+    if (!fetched) {
+      hasLine = nextLine();
+      fetched = true;
+    }
+    return (hasLine);
+  }
+
+  /** Returns the next line, which is the same Line object with a new content */
+  public Line next() {
+    if (!hasNext()) throw new NoSuchElementException();
+    fetched = false;
+    return (line);
+  }
+
+  /** Unsupported, throws an UnsupportedOperationException */
+  public void remove() throws UnsupportedOperationException {
+    throw new UnsupportedOperationException("MappedFileLines does not support \"remove\"");
+  }
+
+  /** Returns this */
+  public Iterator<Line> iterator() {
+    return (this);
+  }
+
+  /** Closes the file. The lines are no longer valid. */
+  public void close() {
+    if (closed) return;
+    closed = true;
+    try {
+      raf.close();
+    } catch (IOException e) {
+    }
+    window = null;
+    line.set(null, 0, 0, pos);
+    if (announce) Announce.progressDone();
+    announce = false;
+  }
+
+  /** Returns a simple identifier */
+  public String toString() {
+    return ("MappedFileLines of bytes " + from + "-" + to);
+  }
+
+  /** Returns n readers of disjoint ranges of the file, which together read each line once */
+  public static MappedFileLines[] split(File f, int n) throws IOException {
+    return (split(f, n, null));
+  }
+
+  /** Returns n readers of disjoint ranges, which add the bytes they read to progress */
+  protected static MappedFileLines[] split(File f, int n, AtomicLong progress) throws IOException {
+    if (n < 1) throw new IllegalArgumentException("n must be at least 1: " + n);
+    long size = f.length();
+    MappedFileLines[] result = new MappedFileLines[n];
+    for (int i = 0; i < n; i++) {
+      result[i] = new MappedFileLines(f, size * i / n, size * (i + 1) / n, progress);
+    }
+    return (result);
+  }
+
+  /** Handles the lines of a part of a file */
+  public interface LineHandler {
+
+    /**
+     * Handles one line of the part part of the file. It is called by several threads
+     * at once, each with its own Line object, which is only valid during the call.
+     */
+    public void handle(Line line, int part) throws Exception;
+  }
+
+  /**
+   * Splits the file into as many parts as threads, and calls the handler on every line
+   * of every part, in one thread per part. Shows a progress bar if announceMsg is not
+   * null. An exception of the handler is rethrown (wrapped in a RuntimeException if
+   * needed), once all threads stopped.
+   */
+  public static void process(File f, int threads, String announceMsg, final LineHandler handler) throws IOException, InterruptedException {
+    final AtomicLong progress = new AtomicLong();
+    final MappedFileLines[] parts = split(f, threads, progress);
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    Thread[] workers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      final int part = i;
+      workers[i] = new Thread("MappedFileLines-" + i) {
+        public void run() {
+          MappedFileLines lines = parts[part];
+          try {
+            while (error.get() == null && lines.nextLine()) {
+              handler.handle(lines.line(), part);
+            }
+          } catch (Throwable t) {
+            error.compareAndSet(null, t);
+          } finally {
+            lines.close();
+          }
+        }
+      };
+      workers[i].start();
+    }
+    // Announce is not thread-safe: the progress is announced from this thread only
+    if (announceMsg != null) Announce.progressStart(announceMsg, Math.max(1, f.length()));
+    try {
+      for (Thread worker : workers) {
+        while (worker.isAlive()) {
+          worker.join(200);
+          if (announceMsg != null) Announce.progressAt(progress.get());
+        }
+      }
+    } finally {
+      if (announceMsg != null) Announce.progressDone();
+    }
+    Throwable t = error.get();
+    if (t == null) return;
+    if (t instanceof RuntimeException) throw (RuntimeException) t;
+    if (t instanceof Error) throw (Error) t;
+    throw new RuntimeException(t);
+  }
+
+  /**
+   * A line of a mapped file, as a CharSequence with one char per byte (ISO-8859-1). Use
+   * toString(encoding) to decode UTF-8. The object is reused for the next line.
+   */
+  public static final class Line implements CharSequence {
+
+    protected ByteBuffer buffer;
+    protected int start;
+    protected int length;
+    protected long position;
+
+    protected void set(ByteBuffer buffer, int start, int length, long position) {
+      this.buffer = buffer;
+      this.start = start;
+      this.length = length;
+      this.position = position;
+    }
+
+    /** Position of the line in the file */
+    public long position() {
+      return (position);
+    }
+
+    public int length() {
+      return (length);
+    }
+
+    public char charAt(int index) {
+      return ((char) (byteAt(index) & 0xFF));
+    }
+
+    public byte byteAt(int index) {
+      if (index < 0 || index >= length) throw new IndexOutOfBoundsException("Index " + index + " in a line of " + length);
+      return (buffer.get(start + index));
+    }
+
+    /** Returns the index of the first c at or after from, or -1 */
+    public int indexOf(char c, int from) {
+      if (c > 0xFF) return (-1);
+      byte b = (byte) c;
+      for (int i = Math.max(0, from); i < length; i++) {
+        if (buffer.get(start + i) == b) return (i);
+      }
+      return (-1);
+    }
+
+    /** Copies the bytes of the line to dst at offset, returns the number of bytes */
+    public int getBytes(byte[] dst, int offset) {
+      for (int i = 0; i < length; i++) {
+        dst[offset + i] = buffer.get(start + i);
+      }
+      return (length);
+    }
+
+    /** Returns a new Line with the chars from start to end (exclusive), on the same bytes */
+    public CharSequence subSequence(int from, int to) {
+      if (from < 0 || to > length || from > to) throw new IndexOutOfBoundsException("Range " + from + "-" + to + " in a line of " + length);
+      Line result = new Line();
+      result.set(buffer, start + from, to - from, position + from);
+      return (result);
+    }
+
+    /** Decodes the bytes of the line */
+    public String toString(String encoding) throws UnsupportedEncodingException {
+      byte[] bytes = new byte[length];
+      getBytes(bytes, 0);
+      return (new String(bytes, encoding));
+    }
+
+    /** Returns a String with one char per byte */
+    public String toString() {
+      char[] chars = new char[length];
+      for (int i = 0; i < length; i++) {
+        chars[i] = (char) (buffer.get(start + i) & 0xFF);
+      }
+      return (new String(chars));
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    long chars = 0;
+    int lines = 0;
+    for (Line l : new MappedFileLines(args[0], "Reading " + args[0])) {
+      chars += l.length();
+      lines++;
+    }
+    D.p(lines, "lines", chars, "chars");
+  }
+}
@@ -33,6 +33,10 @@ import java.util.Collection;
  * were proposed in comments in his blog:
  * http://blog.locut.us/2008/01/12/a-decent-stand-alone-java-bloom-filter-implementation/
  *
+ * Every hash function runs an MD5 digest inside a lock. For large or concurrently
+ * used filters, see {@link FastBloomFilter}. {@link CountingBloomFilter} supports
+ * removal, and {@link ScalableBloomFilter} grows with the number of elements.
+ *
  * @param <E> Object type that is to be inserted into the Bloom filter, e.g. String or Integer.
  * @author Magnus Skjegstad <magnus@skjegstad.com>
  */
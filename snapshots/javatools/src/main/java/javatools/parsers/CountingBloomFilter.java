@@ -0,0 +1,271 @@
+package javatools.parsers;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javatools.administrative.D;
+
+/**
+ * A counting Bloom filter (Fan et al., "Summary Cache", 2000), which supports removal
+ * of elements. Instead of a bit, each position holds a 4-bit counter; 16 counters are
+ * packed into a long. The counters are derived from the keys as in {@link FastBloomFilter},
+ * and updated with compare-and-set, so that the filter can be used by several threads
+ * without locking.
+ *
+ * A counter that reaches 15 sticks there and is never decremented again, so that
+ * removals can never cause false negatives. Only keys that were added may be removed;
+ * removing a key that was never added (but happens to be a false positive) can cause
+ * false negatives for other keys, as in any counting Bloom filter.
+ */
+public class CountingBloomFilter {
+    /** Maximal value of a counter*/
+    public static final int MAX_COUNT = 15;
+
+    private final long numCounters;
+    private final int k;
+    /** The counters, 16 per word*/
+    private final AtomicLongArray counters;
+
+    /**
+     * Constructs an empty counting Bloom filter that is sized for the expected number of
+     * elements and the desired false positive probability.
+     *
+     * @param expectedInsertions the number of elements the filter is expected to contain.
+     * @param fpp the desired false positive probability, between 0 and 1 (exclusive).
+     */
+    public CountingBloomFilter(long expectedInsertions, double fpp) {
+        this(FastBloomFilter.optimalNumOfBits(expectedInsertions, fpp),
+                FastBloomFilter.optimalNumOfHashFunctions(expectedInsertions,
+                        FastBloomFilter.optimalNumOfBits(expectedInsertions, fpp)));
+    }
+
+    /**
+     * Constructs an empty counting Bloom filter.
+     *
+     * @param numCounters defines how many counters should be used for the filter.
+     * @param numHashFunctions defines how many counters are incremented per element.
+     */
+    public CountingBloomFilter(long numCounters, int numHashFunctions) {
+        if (numCounters <= 0) throw new IllegalArgumentException("numCounters must be > 0: " + numCounters);
+        if (numHashFunctions <= 0) throw new IllegalArgumentException("numHashFunctions must be > 0: " + numHashFunctions);
+        long numWords = (numCounters + 15) >>> 4;
+        if (numWords > Integer.MAX_VALUE) throw new IllegalArgumentException("numCounters too large: " + numCounters);
+        this.numCounters = numCounters;
+        this.k = numHashFunctions;
+        this.counters = new AtomicLongArray((int) numWords);
+    }
+
+    /** Adds a key to the filter, returns true if it was certainly not contained before*/
+    public boolean add(byte[] key) {
+        return add(key, 0, key.length);
+    }
+
+    /** Adds length bytes of key starting at offset, see add(byte[])*/
+    public boolean add(byte[] key, int offset, int length) {
+        long[] h = FastBloomFilter.hash(key, offset, length);
+        return increment(h[0], h[1]);
+    }
+
+    /** Adds a character sequence, see add(byte[])*/
+    public boolean add(CharSequence key) {
+        long[] h = FastBloomFilter.hash(key);
+        return increment(h[0], h[1]);
+    }
+
+    /** Adds a long, see add(byte[])*/
+    public boolean add(long key) {
+        long[] h = FastBloomFilter.hash(key);
+        return increment(h[0], h[1]);
+    }
+
+    /**
+     * Removes a key that was added before. Returns false, without changing the filter,
+     * if the key is certainly not contained.
+     */
+    public boolean remove(byte[] key) {
+        return remove(key, 0, key.length);
+    }
+
+    /** Removes length bytes of key starting at offset, see remove(byte[])*/
+    public boolean remove(byte[] key, int offset, int length) {
+        long[] h = FastBloomFilter.hash(key, offset, length);
+        return decrement(h[0], h[1]);
+    }
+
+    /** Removes a character sequence, see remove(byte[])*/
+    public boolean remove(CharSequence key) {
+        long[] h = FastBloomFilter.hash(key);
+        return decrement(h[0], h[1]);
+    }
+
+    /** Removes a long, see remove(byte[])*/
+    public boolean remove(long key) {
+        long[] h = FastBloomFilter.hash(key);
+        return decrement(h[0], h[1]);
+    }
+
+    /** Returns true if the key could be contained, false if it is certainly not contained*/
+    public boolean contains(byte[] key) {
+        return contains(key, 0, key.length);
+    }
+
+    /** Tests length bytes of key starting at offset, see contains(byte[])*/
+    public boolean contains(byte[] key, int offset, int length) {
+        long[] h = FastBloomFilter.hash(key, offset, length);
+        return minCount(h[0], h[1]) > 0;
+    }
+
+    /** Tests a character sequence, see contains(byte[])*/
+    public boolean contains(CharSequence key) {
+        long[] h = FastBloomFilter.hash(key);
+        return minCount(h[0], h[1]) > 0;
+    }
+
+    /** Tests a long, see contains(byte[])*/
+    public boolean contains(long key) {
+        long[] h = FastBloomFilter.hash(key);
+        return minCount(h[0], h[1]) > 0;
+    }
+
+    /**
+     * Returns an upper bound of how often the key was added (minus removed), which is
+     * exact unless the key collides with others. Saturates at MAX_COUNT.
+     */
+    public int count(CharSequence key) {
+        long[] h = FastBloomFilter.hash(key);
+        return minCount(h[0], h[1]);
+    }
+
+    /** Returns an upper bound of how often the long was added, see count(CharSequence)*/
+    public int count(long key) {
+        long[] h = FastBloomFilter.hash(key);
+        return minCount(h[0], h[1]);
+    }
+
+    /** Returns the index of the counter of the i-th hash function*/
+    private long index(long h1, long h2, int i) {
+        return ((h1 + i * h2) & Long.MAX_VALUE) % numCounters;
+    }
+
+    /** Increments the k counters of the hash, returns true if any of them was 0*/
+    private boolean increment(long h1, long h2) {
+        boolean changed = false;
+        for (int i = 0; i < k; i++) {
+            long index = index(h1, h2, i);
+            int word = (int) (index >>> 4);
+            int shift = (int) (index & 15) << 2;
+            long old;
+            int count;
+            do {
+                old = counters.get(word);
+                count = (int) (old >>> shift) & 15;
+                if (count == MAX_COUNT) break;
+            } while (!counters.compareAndSet(word, old, old + (1L << shift)));
+            if (count == 0) changed = true;
+        }
+        return changed;
+    }
+
+    /** Decrements the k counters of the hash unless one of them is 0*/
+    private boolean decrement(long h1, long h2) {
+        if (minCount(h1, h2) == 0) return false;
+        for (int i = 0; i < k; i++) {
+            long index = index(h1, h2, i);
+            int word = (int) (index >>> 4);
+            int shift = (int) (index & 15) << 2;
+            long old;
+            int count;
+            do {
+                old = counters.get(word);
+                count = (int) (old >>> shift) & 15;
+                if (count == 0 || count == MAX_COUNT) break;
+            } while (!counters.compareAndSet(word, old, old - (1L << shift)));
+        }
+        return true;
+    }
+
+    /** Returns the minimum of the k counters of the hash*/
+    private int minCount(long h1, long h2) {
+        int min = MAX_COUNT;
+        for (int i = 0; i < k && min > 0; i++) {
+            long index = index(h1, h2, i);
+            int count = (int) (counters.get((int) (index >>> 4)) >>> ((int) (index & 15) << 2)) & 15;
+            if (count < min) min = count;
+        }
+        return min;
+    }
+
+    /** Sets all counters to 0*/
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) counters.set(i, 0);
+    }
+
+    /** Returns the number of counters that are not 0*/
+    public long cardinality() {
+        long count = 0;
+        for (int i = counters.length() - 1; i >= 0; i--) {
+            long w = counters.get(i);
+            // Fold each nibble into its lowest bit
+            w = (w | (w >>> 1) | (w >>> 2) | (w >>> 3)) & 0x1111111111111111L;
+            count += Long.bitCount(w);
+        }
+        return count;
+    }
+
+    /**
+     * Calculates the expected probability of false positives based on the number
+     * of non-zero counters.
+     */
+    public double expectedFalsePositiveProbability() {
+        return Math.pow((double) cardinality() / numCounters, k);
+    }
+
+    /** Returns the number of counters of the filter*/
+    public long size() {
+        return numCounters;
+    }
+
+    /** Returns the number of hash functions*/
+    public int getK() {
+        return k;
+    }
+
+    @Override
+    public String toString() {
+        return "CountingBloomFilter(" + numCounters + " counters, " + k + " hashes, " + cardinality() + " set)";
+    }
+
+    /** Test*/
+    public static void main(String[] args) {
+        int n = 100000;
+        CountingBloomFilter filter = new CountingBloomFilter(n, 0.01);
+        for (int i = 0; i < n; i++) filter.add("Anchor " + i);
+        D.p(filter, filter.expectedFalsePositiveProbability());
+        for (int i = 0; i < n; i += 2) filter.remove("Anchor " + i);
+        int falseNegatives = 0;
+        int falsePositives = 0;
+        for (int i = 0; i < n; i++) {
+            if (i % 2 == 1 && !filter.contains("Anchor " + i)) falseNegatives++;
+            if (i % 2 == 0 && filter.contains("Anchor " + i)) falsePositives++;
+        }
+        D.p(filter, "false negatives", falseNegatives, "removed but contained", falsePositives);
+        filter.add("twice");
+        filter.add("twice");
+        D.p("count", filter.count("twice"));
+    }
+}
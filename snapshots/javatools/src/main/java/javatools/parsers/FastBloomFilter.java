@@ -0,0 +1,467 @@
+package javatools.parsers;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javatools.administrative.D;
+import javatools.util.MurmurHash3;
+
+/**
+ * A Bloom filter that, unlike {@link BloomFilter}, needs neither string concatenation
+ * nor a message digest per hash function. Each key is hashed once with the 128-bit
+ * MurmurHash3, and the k bit positions are derived from the two halves h1 and h2 as
+ * h1 + i*h2 (Kirsch and Mitzenmacher, "Less Hashing, Same Performance: Building a
+ * Better Bloom Filter", 2006). Keys can be byte arrays, character sequences and longs.
+ *
+ * The bits are kept in an AtomicLongArray and set with compare-and-set, so that any
+ * number of threads can add and query concurrently without locking.
+ *
+ * A filter can be written to a file with {@link #writeTo(File)}. The file consists of a
+ * 24 byte header followed by the bit words in big-endian order, so that it can be
+ * loaded into memory with {@link #load(File)} or mapped read-only with
+ * {@link #mapReadOnly(File)}, which does not read the bits up front.
+ */
+public class FastBloomFilter {
+    /** Marks the files written by writeTo*/
+    public static final int MAGIC = 0x424c4f4d;
+    /** Version of the file format*/
+    public static final int VERSION = 1;
+    /** Length of the file header in bytes*/
+    public static final int HEADER_LENGTH = 24;
+
+    /** Seed of the hash function*/
+    private static final long SEED = 0x5bd1e995L;
+
+    /** Scratch space for the two halves of the hash, one per thread*/
+    private static final ThreadLocal<long[]> HASH = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[2];
+        }
+    };
+
+    private final long numBits;
+    private final int k;
+    /** The bits, or null if the filter is mapped*/
+    private final AtomicLongArray bits;
+    /** The mapped bits of a read-only filter, or null*/
+    private final LongBuffer mapped;
+
+    /**
+     * Constructs an empty Bloom filter that is sized for the expected number of
+     * elements and the desired false positive probability.
+     *
+     * @param expectedInsertions the number of elements the filter is expected to contain.
+     * @param fpp the desired false positive probability, between 0 and 1 (exclusive).
+     */
+    public FastBloomFilter(long expectedInsertions, double fpp) {
+        this(optimalNumOfBits(expectedInsertions, fpp),
+                optimalNumOfHashFunctions(expectedInsertions, optimalNumOfBits(expectedInsertions, fpp)));
+    }
+
+    /**
+     * Constructs an empty Bloom filter.
+     *
+     * @param numBits defines how many bits should be used for the filter.
+     * @param numHashFunctions defines how many bits are set per element.
+     */
+    public FastBloomFilter(long numBits, int numHashFunctions) {
+        if (numBits <= 0) throw new IllegalArgumentException("numBits must be > 0: " + numBits);
+        if (numHashFunctions <= 0) throw new IllegalArgumentException("numHashFunctions must be > 0: " + numHashFunctions);
+        long numWords = (numBits + 63) >>> 6;
+        if (numWords > Integer.MAX_VALUE) throw new IllegalArgumentException("numBits too large: " + numBits);
+        this.numBits = numBits;
+        this.k = numHashFunctions;
+        this.bits = new AtomicLongArray((int) numWords);
+        this.mapped = null;
+    }
+
+    /** Constructs a read-only Bloom filter over mapped bits*/
+    private FastBloomFilter(long numBits, int numHashFunctions, LongBuffer mapped) {
+        this.numBits = numBits;
+        this.k = numHashFunctions;
+        this.bits = null;
+        this.mapped = mapped;
+    }
+
+    /**
+     * Calculates the number of bits m that gives the false positive probability fpp
+     * for n elements: m = -n ln(fpp) / (ln 2)^2.
+     */
+    public static long optimalNumOfBits(long n, double fpp) {
+        if (n <= 0) throw new IllegalArgumentException("expectedInsertions must be > 0: " + n);
+        if (!(fpp > 0 && fpp < 1)) throw new IllegalArgumentException("fpp must be in (0,1): " + fpp);
+        return Math.max(64, (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+    }
+
+    /**
+     * Calculates the number of hash functions k that minimizes the false positive
+     * probability for n elements in m bits: k = m/n ln 2.
+     */
+    public static int optimalNumOfHashFunctions(long n, long m) {
+        return Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    /**
+     * Adds a key to the Bloom filter.
+     *
+     * @return true if the filter changed, i.e. the key was certainly not contained before.
+     */
+    public boolean add(byte[] key) {
+        return add(key, 0, key.length);
+    }
+
+    /**
+     * Adds length bytes of key starting at offset to the Bloom filter.
+     *
+     * @return true if the filter changed, i.e. the key was certainly not contained before.
+     */
+    public boolean add(byte[] key, int offset, int length) {
+        long[] h = hash(key, offset, length);
+        return setBits(h[0], h[1]);
+    }
+
+    /**
+     * Adds a character sequence to the Bloom filter.
+     *
+     * @return true if the filter changed, i.e. the key was certainly not contained before.
+     */
+    public boolean add(CharSequence key) {
+        long[] h = hash(key);
+        return setBits(h[0], h[1]);
+    }
+
+    /**
+     * Adds a long to the Bloom filter.
+     *
+     * @return true if the filter changed, i.e. the key was certainly not contained before.
+     */
+    public boolean add(long key) {
+        long[] h = hash(key);
+        return setBits(h[0], h[1]);
+    }
+
+    /**
+     * Returns true if the key could have been inserted into the Bloom filter.
+     * Returns false if the key was certainly not inserted.
+     */
+    public boolean contains(byte[] key) {
+        return contains(key, 0, key.length);
+    }
+
+    /**
+     * Returns true if length bytes of key starting at offset could have been inserted
+     * into the Bloom filter.
+     */
+    public boolean contains(byte[] key, int offset, int length) {
+        long[] h = hash(key, offset, length);
+        return testBits(h[0], h[1]);
+    }
+
+    /**
+     * Returns true if the character sequence could have been inserted into the Bloom filter.
+     */
+    public boolean contains(CharSequence key) {
+        long[] h = hash(key);
+        return testBits(h[0], h[1]);
+    }
+
+    /**
+     * Returns true if the long could have been inserted into the Bloom filter.
+     */
+    public boolean contains(long key) {
+        long[] h = hash(key);
+        return testBits(h[0], h[1]);
+    }
+
+    /**
+     * Hashes the key into the two halves h1 and h2 from which the bit positions are
+     * derived. The returned array is reused by the next call in the same thread.
+     */
+    static long[] hash(byte[] key, int offset, int length) {
+        long[] h = HASH.get();
+        MurmurHash3.hash128(key, offset, length, SEED, h);
+        return h;
+    }
+
+    /** Hashes the UTF-16 code units of the key, see hash(byte[],int,int)*/
+    static long[] hash(CharSequence key) {
+        long[] h = HASH.get();
+        MurmurHash3.hash128(key, SEED, h);
+        return h;
+    }
+
+    /** Hashes the key, see hash(byte[],int,int)*/
+    static long[] hash(long key) {
+        long[] h = HASH.get();
+        MurmurHash3.hash128(key, SEED, h);
+        return h;
+    }
+
+    /** Sets the k bits of the hash, returns true if any of them was not set*/
+    boolean setBits(long h1, long h2) {
+        if (bits == null) throw new UnsupportedOperationException("The filter is read-only");
+        boolean changed = false;
+        long combined = h1;
+        for (int i = 0; i < k; i++) {
+            long index = (combined & Long.MAX_VALUE) % numBits;
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long old;
+            do {
+                old = bits.get(word);
+                if ((old & mask) != 0) break;
+            } while (!bits.compareAndSet(word, old, old | mask));
+            if ((old & mask) == 0) changed = true;
+            combined += h2;
+        }
+        return changed;
+    }
+
+    /** Returns true if all k bits of the hash are set*/
+    boolean testBits(long h1, long h2) {
+        long combined = h1;
+        for (int i = 0; i < k; i++) {
+            long index = (combined & Long.MAX_VALUE) % numBits;
+            if ((word((int) (index >>> 6)) & (1L << index)) == 0) return false;
+            combined += h2;
+        }
+        return true;
+    }
+
+    /** Returns the word at the given index*/
+    private long word(int i) {
+        return bits != null ? bits.get(i) : mapped.get(i);
+    }
+
+    /** Returns the number of words*/
+    private int numWords() {
+        return bits != null ? bits.length() : mapped.capacity();
+    }
+
+    /**
+     * Adds all elements of the other filter to this filter (bitwise or).
+     * Both filters must have the same size and number of hash functions.
+     */
+    public void union(FastBloomFilter other) {
+        checkCompatible(other);
+        for (int i = 0; i < bits.length(); i++) {
+            long o = other.word(i);
+            long old;
+            do {
+                old = bits.get(i);
+                if ((old | o) == old) break;
+            } while (!bits.compareAndSet(i, old, old | o));
+        }
+    }
+
+    /**
+     * Keeps only the bits that are also set in the other filter (bitwise and).
+     * Afterwards, the filter contains at least the elements that were added to both
+     * filters. Both filters must have the same size and number of hash functions.
+     */
+    public void intersect(FastBloomFilter other) {
+        checkCompatible(other);
+        for (int i = 0; i < bits.length(); i++) {
+            long o = other.word(i);
+            long old;
+            do {
+                old = bits.get(i);
+                if ((old & o) == old) break;
+            } while (!bits.compareAndSet(i, old, old & o));
+        }
+    }
+
+    private void checkCompatible(FastBloomFilter other) {
+        if (bits == null) throw new UnsupportedOperationException("The filter is read-only");
+        if (other.numBits != numBits || other.k != k) {
+            throw new IllegalArgumentException("Incompatible filters: " + numBits + " bits/" + k + " hashes vs. "
+                    + other.numBits + " bits/" + other.k + " hashes");
+        }
+    }
+
+    /** Sets all bits to false*/
+    public void clear() {
+        if (bits == null) throw new UnsupportedOperationException("The filter is read-only");
+        for (int i = 0; i < bits.length(); i++) bits.set(i, 0);
+    }
+
+    /** Returns the number of bits that are set*/
+    public long cardinality() {
+        long count = 0;
+        for (int i = numWords() - 1; i >= 0; i--) count += Long.bitCount(word(i));
+        return count;
+    }
+
+    /**
+     * Estimates the number of elements that were added from the number of set bits X
+     * as -m/k ln(1 - X/m) (Swamidass and Baldi, 2007).
+     */
+    public long approximateElementCount() {
+        double x = cardinality();
+        if (x >= numBits) return Long.MAX_VALUE;
+        return Math.round(-(double) numBits / k * Math.log(1 - x / numBits));
+    }
+
+    /**
+     * Calculates the expected probability of false positives based on the number
+     * of set bits: (X/m)^k.
+     */
+    public double expectedFalsePositiveProbability() {
+        return Math.pow((double) cardinality() / numBits, k);
+    }
+
+    /** Returns the number of bits of the filter*/
+    public long size() {
+        return numBits;
+    }
+
+    /** Returns the number of hash functions*/
+    public int getK() {
+        return k;
+    }
+
+    /** Returns true if the filter is mapped from a file and cannot be modified*/
+    public boolean isReadOnly() {
+        return bits == null;
+    }
+
+    /** Writes the header and the bits*/
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(k);
+        out.writeInt(0);
+        out.writeLong(numBits);
+        for (int i = 0, n = numWords(); i < n; i++) out.writeLong(word(i));
+    }
+
+    /** Writes the filter to a file that can be loaded or mapped*/
+    public void writeTo(File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /** Reads a filter that was written by writeTo*/
+    public static FastBloomFilter readFrom(DataInput in) throws IOException {
+        readHeader(in);
+        int k = in.readInt();
+        in.readInt();
+        long numBits = in.readLong();
+        FastBloomFilter result = new FastBloomFilter(numBits, k);
+        for (int i = 0; i < result.bits.length(); i++) result.bits.set(i, in.readLong());
+        return result;
+    }
+
+    /** Reads a filter from a file into memory*/
+    public static FastBloomFilter load(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+        try {
+            return readFrom(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Maps a filter file read-only into memory. The bits are paged in by the operating
+     * system as they are queried; add, union, intersect and clear throw an
+     * UnsupportedOperationException. The file must not be larger than 2GB.
+     */
+    public static FastBloomFilter mapReadOnly(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            readHeader(raf);
+            int k = raf.readInt();
+            raf.readInt();
+            long numBits = raf.readLong();
+            long numWords = (numBits + 63) >>> 6;
+            if (numBits <= 0 || k <= 0) throw new IOException("Corrupt Bloom filter file: " + file);
+            if (HEADER_LENGTH + numWords * 8 > Integer.MAX_VALUE) throw new IOException("File too large to map: " + file);
+            if (raf.length() < HEADER_LENGTH + numWords * 8) throw new IOException("Truncated Bloom filter file: " + file);
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH, numWords * 8);
+            return new FastBloomFilter(numBits, k, buffer.asLongBuffer());
+        } finally {
+            // The mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    /** Checks magic and version*/
+    private static void readHeader(DataInput in) throws IOException {
+        int magic = in.readInt();
+        if (magic != MAGIC) throw new IOException("Not a Bloom filter file, magic " + Integer.toHexString(magic));
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("Unsupported Bloom filter version " + version);
+    }
+
+    @Override
+    public String toString() {
+        return "FastBloomFilter(" + numBits + " bits, " + k + " hashes, " + cardinality() + " set)";
+    }
+
+    /** Test and timing against BloomFilter*/
+    public static void main(String[] args) throws Exception {
+        int n = 1000000;
+        FastBloomFilter fast = new FastBloomFilter(n, 0.01);
+        BloomFilter<String> slow = new BloomFilter<String>(10 * n, n);
+        D.p(fast);
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) fast.add("Anchor " + i);
+        D.p("FastBloomFilter add:", System.currentTimeMillis() - time, "ms");
+        time = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) slow.add("Anchor " + i);
+        D.p("BloomFilter add:", System.currentTimeMillis() - time, "ms");
+        int falsePositives = 0;
+        time = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            if (!fast.contains("Anchor " + i)) D.p("False negative:", i);
+            if (fast.contains("Other " + i)) falsePositives++;
+        }
+        D.p("FastBloomFilter contains:", System.currentTimeMillis() - time, "ms, false positive rate",
+                (double) falsePositives / n, "expected", fast.expectedFalsePositiveProbability());
+        D.p("Approximate element count:", fast.approximateElementCount());
+        File file = File.createTempFile("bloom", ".bin");
+        fast.writeTo(file);
+        FastBloomFilter mapped = mapReadOnly(file);
+        FastBloomFilter loaded = load(file);
+        for (int i = 0; i < n; i++) {
+            if (!mapped.contains("Anchor " + i) || !loaded.contains("Anchor " + i)) D.p("Lost after writing:", i);
+        }
+        D.p("Mapped:", mapped, "Loaded:", loaded);
+        file.delete();
+    }
+}
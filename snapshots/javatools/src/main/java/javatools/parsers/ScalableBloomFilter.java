@@ -0,0 +1,217 @@
+package javatools.parsers;
+
+/**
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+import java.util.Arrays;
+
+import javatools.administrative.D;
+
+/**
+ * A scalable Bloom filter (Almeida et al., "Scalable Bloom Filters", 2007), which
+ * does not need to know the number of elements in advance. It starts with one
+ * {@link FastBloomFilter} slice for the initial capacity. Whenever a slice is full,
+ * a new slice is chained, which is growthFactor times larger and has a false positive
+ * probability that is tighteningRatio times smaller. Slice i thus has the false
+ * positive probability fpp*(1-r)*r^i, so that the compound probability stays below
+ * fpp no matter how many slices are added.
+ *
+ * A key is hashed only once for all slices. Additions are synchronized, lookups
+ * are not.
+ */
+public class ScalableBloomFilter {
+    /** Default growth factor of the slice capacity*/
+    public static final int DEFAULT_GROWTH_FACTOR = 2;
+    /** Default tightening ratio of the slice false positive probability*/
+    public static final double DEFAULT_TIGHTENING_RATIO = 0.9;
+
+    private final long initialCapacity;
+    private final double fpp;
+    private final int growthFactor;
+    private final double tighteningRatio;
+
+    /** The slices, the last one receives new elements*/
+    private volatile FastBloomFilter[] slices;
+    /** Capacity of the last slice*/
+    private long capacity;
+    /** False positive probability of the last slice*/
+    private double sliceFpp;
+    /** Number of elements in the last slice*/
+    private long sliceElements;
+    /** Number of elements in all slices*/
+    private volatile long numElements;
+
+    /**
+     * Constructs an empty scalable Bloom filter with the default growth factor and
+     * tightening ratio.
+     *
+     * @param initialCapacity the number of elements of the first slice.
+     * @param fpp the desired false positive probability of the entire filter.
+     */
+    public ScalableBloomFilter(long initialCapacity, double fpp) {
+        this(initialCapacity, fpp, DEFAULT_GROWTH_FACTOR, DEFAULT_TIGHTENING_RATIO);
+    }
+
+    /**
+     * Constructs an empty scalable Bloom filter.
+     *
+     * @param initialCapacity the number of elements of the first slice.
+     * @param fpp the desired false positive probability of the entire filter.
+     * @param growthFactor the factor by which the capacity of each new slice grows, at least 1.
+     * @param tighteningRatio the factor by which the false positive probability of each new
+     *        slice shrinks, between 0 and 1 (exclusive).
+     */
+    public ScalableBloomFilter(long initialCapacity, double fpp, int growthFactor, double tighteningRatio) {
+        if (initialCapacity <= 0) throw new IllegalArgumentException("initialCapacity must be > 0: " + initialCapacity);
+        if (!(fpp > 0 && fpp < 1)) throw new IllegalArgumentException("fpp must be in (0,1): " + fpp);
+        if (growthFactor < 1) throw new IllegalArgumentException("growthFactor must be >= 1: " + growthFactor);
+        if (!(tighteningRatio > 0 && tighteningRatio < 1)) throw new IllegalArgumentException("tighteningRatio must be in (0,1): " + tighteningRatio);
+        this.initialCapacity = initialCapacity;
+        this.fpp = fpp;
+        this.growthFactor = growthFactor;
+        this.tighteningRatio = tighteningRatio;
+        this.capacity = initialCapacity;
+        this.sliceFpp = fpp * (1 - tighteningRatio);
+        this.slices = new FastBloomFilter[] { new FastBloomFilter(capacity, sliceFpp) };
+    }
+
+    /** Adds a key to the filter, returns true if it was certainly not contained before*/
+    public boolean add(byte[] key) {
+        return add(key, 0, key.length);
+    }
+
+    /** Adds length bytes of key starting at offset, see add(byte[])*/
+    public boolean add(byte[] key, int offset, int length) {
+        long[] h = FastBloomFilter.hash(key, offset, length);
+        return add(h[0], h[1]);
+    }
+
+    /** Adds a character sequence, see add(byte[])*/
+    public boolean add(CharSequence key) {
+        long[] h = FastBloomFilter.hash(key);
+        return add(h[0], h[1]);
+    }
+
+    /** Adds a long, see add(byte[])*/
+    public boolean add(long key) {
+        long[] h = FastBloomFilter.hash(key);
+        return add(h[0], h[1]);
+    }
+
+    /** Returns true if the key could be contained, false if it is certainly not contained*/
+    public boolean contains(byte[] key) {
+        return contains(key, 0, key.length);
+    }
+
+    /** Tests length bytes of key starting at offset, see contains(byte[])*/
+    public boolean contains(byte[] key, int offset, int length) {
+        long[] h = FastBloomFilter.hash(key, offset, length);
+        return contains(slices, h[0], h[1]);
+    }
+
+    /** Tests a character sequence, see contains(byte[])*/
+    public boolean contains(CharSequence key) {
+        long[] h = FastBloomFilter.hash(key);
+        return contains(slices, h[0], h[1]);
+    }
+
+    /** Tests a long, see contains(byte[])*/
+    public boolean contains(long key) {
+        long[] h = FastBloomFilter.hash(key);
+        return contains(slices, h[0], h[1]);
+    }
+
+    /** Tests the hash against the slices, the largest one first*/
+    private static boolean contains(FastBloomFilter[] slices, long h1, long h2) {
+        for (int i = slices.length - 1; i >= 0; i--) {
+            if (slices[i].testBits(h1, h2)) return true;
+        }
+        return false;
+    }
+
+    /** Adds the hash to the last slice unless it is contained*/
+    private synchronized boolean add(long h1, long h2) {
+        if (contains(slices, h1, h2)) return false;
+        if (sliceElements >= capacity) {
+            capacity = capacity * growthFactor;
+            sliceFpp = sliceFpp * tighteningRatio;
+            sliceElements = 0;
+            FastBloomFilter[] grown = Arrays.copyOf(slices, slices.length + 1);
+            grown[slices.length] = new FastBloomFilter(capacity, sliceFpp);
+            slices = grown;
+        }
+        slices[slices.length - 1].setBits(h1, h2);
+        sliceElements++;
+        numElements++;
+        return true;
+    }
+
+    /** Removes all elements and slices but the first*/
+    public synchronized void clear() {
+        capacity = initialCapacity;
+        sliceFpp = fpp * (1 - tighteningRatio);
+        sliceElements = 0;
+        numElements = 0;
+        slices[0].clear();
+        slices = new FastBloomFilter[] { slices[0] };
+    }
+
+    /** Returns the number of distinct elements that were added*/
+    public long count() {
+        return numElements;
+    }
+
+    /** Returns the number of slices*/
+    public int numSlices() {
+        return slices.length;
+    }
+
+    /** Returns the number of bits of all slices*/
+    public long size() {
+        long size = 0;
+        for (FastBloomFilter slice : slices) size += slice.size();
+        return size;
+    }
+
+    /**
+     * Calculates the expected probability of false positives of the entire filter,
+     * based on the number of set bits of each slice.
+     */
+    public double expectedFalsePositiveProbability() {
+        double p = 1;
+        for (FastBloomFilter slice : slices) p *= 1 - slice.expectedFalsePositiveProbability();
+        return 1 - p;
+    }
+
+    @Override
+    public String toString() {
+        return "ScalableBloomFilter(" + numElements + " elements, " + slices.length + " slices, " + size() + " bits)";
+    }
+
+    /** Test*/
+    public static void main(String[] args) {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+        int n = 1000000;
+        for (int i = 0; i < n; i++) filter.add("Anchor " + i);
+        int falsePositives = 0;
+        for (int i = 0; i < n; i++) {
+            if (!filter.contains("Anchor " + i)) D.p("False negative:", i);
+            if (filter.contains("Other " + i)) falsePositives++;
+        }
+        D.p(filter, "false positive rate", (double) falsePositives / n, "expected",
+                filter.expectedFalsePositiveProbability());
+    }
+}
@@ -0,0 +1,147 @@
+package javatools.util;
+
+/**
+ * The x64 128-bit variant of Austin Appleby's MurmurHash3 (public domain,
+ * http://code.google.com/p/smhasher/). The hash is non-cryptographic, but fast
+ * and well distributed, which makes it a good fit for hash tables and Bloom filters.
+ *
+ * The two 64-bit halves of the hash are written to a caller-provided array, so
+ * that hashing does not allocate. Character sequences are hashed as their
+ * UTF-16LE code units without being encoded first, and longs as their 8
+ * little-endian bytes; the results equal the hash of the corresponding byte arrays.
+ */
+public final class MurmurHash3 {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private MurmurHash3() {
+    }
+
+    /**
+     * Hashes length bytes of data starting at offset.
+     *
+     * @param out receives the two halves of the hash in out[0] and out[1].
+     */
+    public static void hash128(byte[] data, int offset, int length, long seed, long[] out) {
+        long h1 = seed;
+        long h2 = seed;
+        int end = offset + (length & ~15);
+        int i = offset;
+        for (; i < end; i += 16) {
+            long k1 = getLongLE(data, i);
+            long k2 = getLongLE(data, i + 8);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        int rest = length & 15;
+        for (int j = rest - 1; j >= 8; j--) k2 = (k2 << 8) | (data[i + j] & 0xffL);
+        for (int j = Math.min(rest, 8) - 1; j >= 0; j--) k1 = (k1 << 8) | (data[i + j] & 0xffL);
+        if (rest > 8) h2 ^= mixK2(k2);
+        if (rest > 0) h1 ^= mixK1(k1);
+
+        finish(h1, h2, length, out);
+    }
+
+    /**
+     * Hashes the UTF-16LE code units of s, without encoding s first.
+     *
+     * @param out receives the two halves of the hash in out[0] and out[1].
+     */
+    public static void hash128(CharSequence s, long seed, long[] out) {
+        long h1 = seed;
+        long h2 = seed;
+        int length = s.length();
+        int end = length & ~7;
+        int i = 0;
+        for (; i < end; i += 8) {
+            long k1 = getCharsLE(s, i, 4);
+            long k2 = getCharsLE(s, i + 4, 4);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        int rest = length & 7;
+        if (rest > 4) h2 ^= mixK2(getCharsLE(s, i + 4, rest - 4));
+        if (rest > 0) h1 ^= mixK1(getCharsLE(s, i, Math.min(rest, 4)));
+
+        finish(h1, h2, 2L * length, out);
+    }
+
+    /**
+     * Hashes the 8 little-endian bytes of value.
+     *
+     * @param out receives the two halves of the hash in out[0] and out[1].
+     */
+    public static void hash128(long value, long seed, long[] out) {
+        finish(seed ^ mixK1(value), seed, 8, out);
+    }
+
+    /** The 64-bit finalizer of MurmurHash3, a cheap and thorough bit mixer for longs */
+    public static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static void finish(long h1, long h2, long length, long[] out) {
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        out[0] = h1;
+        out[1] = h2;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long getLongLE(byte[] data, int i) {
+        return (data[i] & 0xffL)
+                | (data[i + 1] & 0xffL) << 8
+                | (data[i + 2] & 0xffL) << 16
+                | (data[i + 3] & 0xffL) << 24
+                | (data[i + 4] & 0xffL) << 32
+                | (data[i + 5] & 0xffL) << 40
+                | (data[i + 6] & 0xffL) << 48
+                | (data[i + 7] & 0xffL) << 56;
+    }
+
+    private static long getCharsLE(CharSequence s, int i, int n) {
+        long k = 0;
+        for (int j = n - 1; j >= 0; j--) k = (k << 16) | s.charAt(i + j);
+        return k;
+    }
+}
@@ -0,0 +1,429 @@
+package edu.stanford.nlp.ling.tokensregex;
+
+import edu.stanford.nlp.ling.tokensregex.MultiWordStringMatcher.MatchType;
+import edu.stanford.nlp.util.IntPair;
+import edu.stanford.nlp.util.IntTriple;
+
+import java.util.*;
+
+/**
+ * Finds many target strings in a piece of text in one pass, with the same
+ * results as the regular expression of
+ * {@link MultiWordStringMatcher#getPattern(String[])} for the
+ * <code>MatchType</code>, which gets very slow once the alternation has many
+ * thousands of targets.
+ * <p>
+ * Text and targets are normalized into units: the characters that the match
+ * type does not skip (whitespace for EXCTWS and LWS, whitespace and punctuation
+ * for LNRM), lower cased for LWS and LNRM. An Aho-Corasick automaton over the
+ * units of the targets then finds the candidates in the text, and each
+ * candidate is checked against what its target says about the skipped
+ * characters between two units: EXCTWS and LWS require whitespace where the
+ * target has whitespace, allow it next to punctuation and forbid it elsewhere;
+ * LNRM allows punctuation and whitespace wherever the target has some.
+ * <p>
+ * The matches are then chosen as the regular expression would find them with
+ * {@link MultiWordStringMatcher#findOffsets(java.util.regex.Pattern, String, int, int)}:
+ * at the leftmost character where any target matches, the target that comes
+ * first in the order of {@link MultiWordStringMatcher#LONGEST_STRING_COMPARATOR}
+ * (the order of the alternation) is taken, and the search goes on after it. A
+ * target that starts with skipped characters matches from the first of the
+ * skipped characters before its first unit. A match that starts or ends inside
+ * a word is dropped, and the search still goes on after it, so that it hides
+ * the matches that overlap it. Targets that consist of skipped characters only
+ * are ignored (their regular expression matches the empty string).
+ * <p>
+ * An automaton does not change once it is built, so it can be shared by
+ * threads.
+ *
+ * @see MultiWordStringMatcher#compile(Collection)
+ */
+public class MultiWordStringAutomaton {
+
+  /** Constraints on the skipped characters between two units of a target */
+  private static final byte FORBIDDEN = 0, ANY = 1, REQUIRED = 2;
+
+  private final MatchType matchType;
+  private final String[] targetStrings;
+  /** Constraints between the units of each target, null if there are none */
+  private final byte[][] constraints;
+  /**
+   * Constraint on the skipped characters before the first unit of each target,
+   * FORBIDDEN if the target starts with a unit
+   */
+  private final byte[] leading;
+  /** Number of units of each target */
+  private final int[] lengths;
+  /** Position of each target in the alternation of MultiWordStringMatcher.getRegex(String[]) */
+  private final int[] ranks;
+
+  /** Edges of state s are edgeStart[s] .. edgeStart[s+1]-1, sorted by label */
+  private final int[] edgeStart;
+  private final char[] labels;
+  private final int[] targets;
+  private final int[] fail;
+  private final int[] depth;
+  /** Targets that end in state s are outputIds[outputStart[s] .. outputStart[s+1]-1] */
+  private final int[] outputStart;
+  private final int[] outputIds;
+  /** Nearest state on the fail chain of s with outputs, or -1 */
+  private final int[] dictLink;
+
+  /** Units of a normalized string */
+  private static class Units {
+    char[] chars;
+    /** Index of each unit in the original string */
+    int[] positions;
+    /** Whether characters were skipped before each unit */
+    boolean[] gaps;
+    int size;
+
+    Units(int capacity) {
+      chars = new char[capacity];
+      positions = new int[capacity];
+      gaps = new boolean[capacity];
+    }
+  }
+
+  MultiWordStringAutomaton(MatchType matchType, Collection<String> targetStrings)
+  {
+    if (matchType == MatchType.REGEX) {
+      throw new UnsupportedOperationException("Cannot compile targets of match type " + matchType);
+    }
+    this.matchType = matchType;
+    this.targetStrings = targetStrings.toArray(new String[targetStrings.size()]);
+    int n = this.targetStrings.length;
+    final char[][] keys = new char[n][];
+    constraints = new byte[n][];
+    leading = new byte[n];
+    lengths = new int[n];
+    List<Integer> order = new ArrayList<Integer>(n);
+    for (int i = 0; i < n; i++) {
+      String target = this.targetStrings[i];
+      Units units = normalize(target, 0, target.length());
+      keys[i] = Arrays.copyOf(units.chars, units.size);
+      lengths[i] = units.size;
+      constraints[i] = targetConstraints(target, units);
+      if (units.size > 0 && units.gaps[0]) {
+        leading[i] = (matchType == MatchType.LNRM) ? ANY : REQUIRED;
+      }
+      // An empty target would match everywhere
+      if (units.size > 0) {
+        order.add(i);
+      }
+    }
+    Collections.sort(order, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        return compareKeys(keys[a], keys[b]);
+      }
+    });
+    ranks = new int[n];
+    List<Integer> alternation = new ArrayList<Integer>(order);
+    Collections.sort(alternation, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b) {
+        return MultiWordStringMatcher.LONGEST_STRING_COMPARATOR.compare(
+            MultiWordStringAutomaton.this.targetStrings[a], MultiWordStringAutomaton.this.targetStrings[b]);
+      }
+    });
+    for (int r = 0; r < alternation.size(); r++) {
+      ranks[alternation.get(r)] = r;
+    }
+
+    // Breadth-first trie: state s covers the sorted keys lo[s] .. hi[s]-1,
+    // which share their first depth[s] units
+    int capacity = 1;
+    for (int i : order) {
+      capacity += keys[i].length;
+    }
+    int[] lo = new int[capacity], hi = new int[capacity];
+    int[] depths = new int[capacity];
+    int[] starts = new int[capacity + 1];
+    int[] outStarts = new int[capacity + 1];
+    char[] edgeLabels = new char[capacity];
+    int[] edgeTargets = new int[capacity];
+    outputIds = new int[order.size()];
+    int states = 1, edges = 0, outputs = 0;
+    hi[0] = order.size();
+    for (int s = 0; s < states; s++) {
+      int from = lo[s], to = hi[s], d = depths[s];
+      starts[s] = edges;
+      outStarts[s] = outputs;
+      while (from < to && keys[order.get(from)].length == d) {
+        outputIds[outputs++] = order.get(from++);
+      }
+      while (from < to) {
+        char c = keys[order.get(from)][d];
+        int end = from + 1;
+        while (end < to && keys[order.get(end)][d] == c) {
+          end++;
+        }
+        edgeLabels[edges] = c;
+        edgeTargets[edges++] = states;
+        lo[states] = from;
+        hi[states] = end;
+        depths[states++] = d + 1;
+        from = end;
+      }
+    }
+    starts[states] = edges;
+    outStarts[states] = outputs;
+    edgeStart = Arrays.copyOf(starts, states + 1);
+    outputStart = Arrays.copyOf(outStarts, states + 1);
+    labels = Arrays.copyOf(edgeLabels, edges);
+    targets = Arrays.copyOf(edgeTargets, edges);
+    depth = Arrays.copyOf(depths, states);
+
+    // Fail transitions; breadth-first order means the parent's are known
+    fail = new int[states];
+    dictLink = new int[states];
+    dictLink[0] = -1;
+    for (int s = 0; s < states; s++) {
+      for (int e = edgeStart[s]; e < edgeStart[s + 1]; e++) {
+        int child = targets[e];
+        int f = 0;
+        if (s != 0) {
+          f = fail[s];
+          int next;
+          while ((next = edge(f, labels[e])) < 0 && f != 0) {
+            f = fail[f];
+          }
+          f = (next < 0) ? 0 : next;
+        }
+        fail[child] = f;
+        dictLink[child] = hasOutputs(f) ? f : dictLink[f];
+      }
+    }
+  }
+
+  private static int compareKeys(char[] a, char[] b) {
+    int n = Math.min(a.length, b.length);
+    for (int i = 0; i < n; i++) {
+      if (a[i] != b[i]) {
+        return a[i] - b[i];
+      }
+    }
+    return a.length - b.length;
+  }
+
+  public MatchType getMatchType() {
+    return matchType;
+  }
+
+  /** Number of target strings */
+  public int size() {
+    return targetStrings.length;
+  }
+
+  public String getTargetString(int index) {
+    return targetStrings[index];
+  }
+
+  private static boolean isSpace(char c) {
+    // same as \s in java.util.regex
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  private static boolean isPunct(char c) {
+    // same as \p{Punct} in java.util.regex
+    return (c >= '!' && c <= '/') || (c >= ':' && c <= '@') || (c >= '[' && c <= '`') || (c >= '{' && c <= '~');
+  }
+
+  private boolean isSkipped(char c) {
+    switch (matchType) {
+      case EXCT: return false;
+      case LNRM: return isSpace(c) || isPunct(c);
+      default: return isSpace(c);
+    }
+  }
+
+  private char fold(char c) {
+    if (matchType == MatchType.LWS || matchType == MatchType.LNRM) {
+      return Character.toLowerCase(Character.toUpperCase(c));
+    }
+    return c;
+  }
+
+  private Units normalize(String s, int start, int end) {
+    Units units = new Units(end - start);
+    boolean gap = false;
+    for (int i = start; i < end; i++) {
+      char c = s.charAt(i);
+      if (isSkipped(c)) {
+        gap = true;
+      } else {
+        units.chars[units.size] = fold(c);
+        units.positions[units.size] = i;
+        units.gaps[units.size++] = gap;
+        gap = false;
+      }
+    }
+    return units;
+  }
+
+  /** Constraint between unit i-1 and i of a target is at index i-1 */
+  private byte[] targetConstraints(String target, Units units) {
+    if (matchType == MatchType.EXCT || units.size < 2) {
+      return null;
+    }
+    byte[] c = new byte[units.size - 1];
+    for (int i = 1; i < units.size; i++) {
+      if (matchType == MatchType.LNRM) {
+        c[i-1] = units.gaps[i] ? ANY : FORBIDDEN;
+      } else if (units.gaps[i]) {
+        c[i-1] = REQUIRED;
+      } else {
+        char before = target.charAt(units.positions[i-1]);
+        char after = target.charAt(units.positions[i]);
+        c[i-1] = (isPunct(before) || isPunct(after)) ? ANY : FORBIDDEN;
+      }
+    }
+    return c;
+  }
+
+  private boolean hasOutputs(int s) {
+    return outputStart[s] < outputStart[s + 1];
+  }
+
+  /** Returns the target of the edge of state s labeled c, or -1 */
+  private int edge(int s, char c) {
+    int low = edgeStart[s], high = edgeStart[s + 1] - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (labels[mid] < c) {
+        low = mid + 1;
+      } else if (labels[mid] > c) {
+        high = mid - 1;
+      } else {
+        return targets[mid];
+      }
+    }
+    return -1;
+  }
+
+  private boolean satisfies(int target, Units units, int first) {
+    byte[] c = constraints[target];
+    if (c != null) {
+      for (int i = 0; i < c.length; i++) {
+        boolean gap = units.gaps[first + i + 1];
+        if ((c[i] == FORBIDDEN && gap) || (c[i] == REQUIRED && !gap)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Finds the target strings in text and returns the character offsets (begin, end - exclusive)
+   *   and the index of the target that matched
+   * @param text - String in which to look for the target strings
+   * @param start - position to start search
+   * @param end - position to end search
+   * @return list of integer triples (begin, end - exclusive, target index),
+   *         or null if no target occurs (as with findOffsets, the list is empty
+   *         if all occurrences were dropped at word boundaries)
+   */
+  public List<IntTriple> findMatches(String text, int start, int end)
+  {
+    if (start > text.length()) return null;
+    if (end > text.length()) return null;
+    Units units = normalize(text, start, end);
+
+    // First target in the alternation that matches from each unit on: of the
+    // targets that can start at the unit, and of those that can start at the
+    // skipped characters before it
+    int[] atUnit = new int[units.size], atGap = new int[units.size];
+    Arrays.fill(atUnit, -1);
+    Arrays.fill(atGap, -1);
+    int s = 0;
+    for (int i = 0; i < units.size; i++) {
+      char c = units.chars[i];
+      int next;
+      while ((next = edge(s, c)) < 0 && s != 0) {
+        s = fail[s];
+      }
+      s = (next < 0) ? 0 : next;
+      for (int t = hasOutputs(s) ? s : dictLink[s]; t >= 0; t = dictLink[t]) {
+        int first = i - depth[t] + 1;
+        for (int o = outputStart[t]; o < outputStart[t + 1]; o++) {
+          int target = outputIds[o];
+          if (!satisfies(target, units, first)) {
+            continue;
+          }
+          if (leading[target] != REQUIRED && (atUnit[first] < 0 || ranks[target] < ranks[atUnit[first]])) {
+            atUnit[first] = target;
+          }
+          if (leading[target] != FORBIDDEN && units.gaps[first]
+              && (atGap[first] < 0 || ranks[target] < ranks[atGap[first]])) {
+            atGap[first] = target;
+          }
+        }
+      }
+    }
+
+    // Go through the text as Matcher.find() does: a match starts no earlier
+    // than the end of the previous one, even if that one was dropped
+    List<IntTriple> matches = null;
+    int pos = start;
+    for (int i = 0; i < units.size; i++) {
+      int unitStart = units.positions[i];
+      if (unitStart < pos) {
+        continue;
+      }
+      int gapStart = Math.max(pos, (i == 0) ? start : units.positions[i - 1] + 1);
+      int target, matchStart;
+      if (atGap[i] >= 0 && gapStart < unitStart) {
+        target = atGap[i];
+        matchStart = gapStart;
+      } else if (atUnit[i] >= 0) {
+        target = atUnit[i];
+        matchStart = unitStart;
+      } else {
+        continue;
+      }
+      int last = i + lengths[target] - 1;
+      int matchEnd = units.positions[last] + 1;
+      if (matches == null) { matches = new ArrayList<IntTriple>(); }
+      if (isWordBoundary(text, matchStart, matchEnd)) {
+        matches.add(new IntTriple(matchStart, matchEnd, target));
+      }
+      pos = matchEnd;
+      i = last;
+    }
+    return matches;
+  }
+
+  private static boolean isWordBoundary(String text, int begin, int end) {
+    if (begin > 0 && Character.isLetterOrDigit(text.charAt(begin - 1))) {
+      return false;
+    }
+    if (end < text.length() && Character.isLetterOrDigit(text.charAt(end))) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Finds the target strings in text span from character start to end (exclusive) and returns offsets
+   * @param text - String in which to look for the target strings
+   * @param start - position to start search
+   * @param end - position to end search
+   * @return list of integer pairs indicating the character offsets (begin, end - exclusive)
+   *         at which the target strings can be found, or null as for findMatches
+   */
+  public List<IntPair> findOffsets(String text, int start, int end)
+  {
+    List<IntTriple> matches = findMatches(text, start, end);
+    if (matches == null) return null;
+    List<IntPair> offsets = new ArrayList<IntPair>(matches.size());
+    for (IntTriple m:matches) {
+      offsets.add(new IntPair(m.getSource(), m.getMiddle()));
+    }
+    return offsets;
+  }
+
+  public List<IntPair> findOffsets(String text)
+  {
+    return findOffsets(text, 0, text.length());
+  }
+}
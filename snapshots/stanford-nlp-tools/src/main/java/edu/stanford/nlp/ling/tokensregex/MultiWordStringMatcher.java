@@ -153,6 +153,10 @@ public class MultiWordStringMatcher {
     }
   }
 
+  /**
+   * Builds one regex that matches any of the target strings (matches based on set matchType).
+   * For many target strings, {@link #compile(Collection)} is much faster.
+   */
   public Pattern getPattern(String[] targetStrings) {
     String regex = getRegex(targetStrings);
     return Pattern.compile(regex);
@@ -173,6 +177,26 @@ public class MultiWordStringMatcher {
     return regex;
   }
 
+  /**
+   * Compiles target strings into an automaton that finds all of them in one pass over the text
+   *   (matches based on set matchType, which may not be <code>REGEX</code>)
+   * @param targetStrings - Target strings to look for
+   * @return automaton whose <code>findOffsets</code> returns the same offsets as
+   *         {@link #findOffsets(Pattern, String, int, int)} with {@link #getPattern(String[])}
+   *         of the target strings, except that targets without any character that the
+   *         match type keeps (e.g. only whitespace) are ignored instead of matching
+   *         the empty string
+   */
+  public MultiWordStringAutomaton compile(Collection<String> targetStrings)
+  {
+    return new MultiWordStringAutomaton(matchType, targetStrings);
+  }
+
+  public MultiWordStringAutomaton compile(String[] targetStrings)
+  {
+    return compile(Arrays.asList(targetStrings));
+  }
+
   public Pattern getPattern(String targetString)
   {
     Pattern pattern = targetStringPatternCache.get(targetString);
@@ -0,0 +1,196 @@
+package edu.stanford.nlp.optimization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A stochastic caching diff function whose value and derivative are sums over
+ * data items, computed by several threads. The data (all of it for
+ * {@link #calculate(double[])}, the batch for
+ * {@link #calculateStochastic(double[], double[], int[])}) is cut into one
+ * shard per thread, and each shard adds its items into a derivative buffer of
+ * its own with {@link #calculatePartial}. The buffers are then added up, shard
+ * by shard in order, so the result only depends on the number of threads,
+ * not on their timing. Since it is an {@link AbstractCachingDiffFunction} and an
+ * {@link AbstractStochasticCachingDiffFunction}, it works with all minimizers
+ * as is.
+ * <p>
+ * Each shard keeps a buffer of {@link #domainDimension()} doubles between
+ * calls, so the memory needed is about one derivative per thread.
+ * Hessian vector products are only supported through finite differences
+ * (the default <code>StochasticCalculateMethods.ExternalFiniteDifference</code>),
+ * which need nothing but the derivative.
+ *
+ * @author Tuan Tran
+ */
+public abstract class AbstractParallelCachingDiffFunction extends AbstractStochasticCachingDiffFunction {
+
+  private final int threads;
+  private final ExecutorService executor;
+  private double[][] buffers = null;
+  private int[] allData = null;
+
+  /**
+   * Computes with the given number of threads, which are daemon threads
+   * kept for the life of the function.
+   */
+  public AbstractParallelCachingDiffFunction(int threads) {
+    this(threads, newDaemonPool(threads));
+  }
+
+  /** Computes with the given number of shards on the threads of the executor */
+  public AbstractParallelCachingDiffFunction(int threads, ExecutorService executor) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be at least 1: " + threads);
+    }
+    this.threads = threads;
+    this.executor = executor;
+  }
+
+  private static ExecutorService newDaemonPool(int threads) {
+    return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "AbstractParallelCachingDiffFunction-" + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  public int threads() {
+    return threads;
+  }
+
+  /**
+   * Adds the derivative at x of the data items <code>data[from] .. data[to-1]</code>
+   *   into <code>derivative</code> and returns the sum of their values. It is called
+   *   from several threads at once, each with its own derivative buffer, so it
+   *   must not change fields of the function.
+   *
+   * @param x          -  value to evaluate at
+   * @param data       -  indices of the data items
+   * @param from       -  first position in data of this shard
+   * @param to         -  position in data after the last one of this shard
+   * @param derivative -  buffer of this shard, zero at the start of the call
+   */
+  abstract protected double calculatePartial(double[] x, int[] data, int from, int to, double[] derivative);
+
+  /**
+   * Adds the derivative of the prior at x to <code>derivative</code> and returns the value
+   *   of the prior. It is called in the calling thread once the data items are summed up.
+   *   The default has no prior.
+   *
+   * @param fraction   -  the part of the data that was used, 1 for {@link #calculate(double[])};
+   *                      a batch should carry that part of the prior, so that the batches
+   *                      add up to the full calculation
+   */
+  protected double calculatePrior(double[] x, double[] derivative, double fraction) {
+    return 0.0;
+  }
+
+  @Override
+  protected void calculate(double[] x) {
+    int n = dataDimension();
+    if (allData == null || allData.length != n) {
+      allData = new int[n];
+      for (int i = 0; i < n; i++) {
+        allData[i] = i;
+      }
+    }
+    value = calculateParallel(x, allData);
+    value += calculatePrior(x, derivative, 1.0);
+  }
+
+  @Override
+  public void calculateStochastic(double[] x, double[] v, int[] batch) {
+    if (v != null && !method.equals(StochasticCalculateMethods.ExternalFiniteDifference)) {
+      throw new UnsupportedOperationException("Hessian vector products need " + StochasticCalculateMethods.ExternalFiniteDifference);
+    }
+    if (derivative == null) {
+      derivative = new double[domainDimension()];
+    }
+    value = calculateParallel(x, batch);
+    value += calculatePrior(x, derivative, ((double) batch.length) / dataDimension());
+  }
+
+  /** Fills derivative with the sum over the data and returns the sum of the values */
+  private double calculateParallel(final double[] x, final int[] data) {
+    final int dim = domainDimension();
+    final int shards = Math.max(1, Math.min(threads, data.length));
+    if (buffers == null || buffers[0].length != dim) {
+      buffers = new double[threads][dim];
+    }
+
+    List<Callable<Double>> tasks = new ArrayList<Callable<Double>>(shards);
+    for (int s = 0; s < shards; s++) {
+      final int from = (int) ((long) s * data.length / shards);
+      final int to = (int) ((long) (s + 1) * data.length / shards);
+      final double[] buffer = buffers[s];
+      tasks.add(new Callable<Double>() {
+        public Double call() {
+          Arrays.fill(buffer, 0.0);
+          return calculatePartial(x, data, from, to, buffer);
+        }
+      });
+    }
+    double sum = 0.0;
+    for (Future<Double> future : invokeAll(tasks)) {
+      sum += get(future);
+    }
+
+    // Add up the buffers in shard order; each thread takes a range of the derivative
+    List<Callable<Double>> reductions = new ArrayList<Callable<Double>>(threads);
+    for (int t = 0; t < threads; t++) {
+      final int from = (int) ((long) t * dim / threads);
+      final int to = (int) ((long) (t + 1) * dim / threads);
+      reductions.add(new Callable<Double>() {
+        public Double call() {
+          System.arraycopy(buffers[0], from, derivative, from, to - from);
+          for (int s = 1; s < shards; s++) {
+            double[] buffer = buffers[s];
+            for (int i = from; i < to; i++) {
+              derivative[i] += buffer[i];
+            }
+          }
+          return 0.0;
+        }
+      });
+    }
+    for (Future<Double> future : invokeAll(reductions)) {
+      get(future);
+    }
+    return sum;
+  }
+
+  private List<Future<Double>> invokeAll(List<Callable<Double>> tasks) {
+    try {
+      return executor.invokeAll(tasks);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static double get(Future<Double> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+}
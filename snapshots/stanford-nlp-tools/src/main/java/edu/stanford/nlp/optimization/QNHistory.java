@@ -0,0 +1,328 @@
+package edu.stanford.nlp.optimization;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * The s and y vectors of the last m L-BFGS updates, in a ring buffer that is
+ * allocated once: when it is full, a new pair overwrites the oldest one.
+ * The vectors can be kept as doubles or floats (half the memory, with about 7
+ * significant digits, which is plenty for a Hessian approximation), on the
+ * heap or in direct buffers outside of it, which keeps large histories out of
+ * the way of the garbage collector. Pairs are numbered from 0, the oldest, to
+ * size()-1, the newest, as in {@link QNMinimizer.QNInfo}.
+ *
+ * @author Tuan Tran
+ */
+public abstract class QNHistory {
+
+  public enum Storage {
+    /** double[] on the heap */
+    HEAP_DOUBLE,
+    /** float[] on the heap */
+    HEAP_FLOAT,
+    /** direct DoubleBuffers */
+    DIRECT_DOUBLE,
+    /** direct FloatBuffers */
+    DIRECT_FLOAT
+  }
+
+  protected final int capacity;
+  protected final int dimension;
+  private final double[] rho;
+  private int start = 0;
+  private int size = 0;
+
+  protected QNHistory(int capacity, int dimension) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be at least 1: " + capacity);
+    }
+    this.capacity = capacity;
+    this.dimension = dimension;
+    this.rho = new double[capacity];
+  }
+
+  /** Allocates a history of capacity pairs of vectors with dimension elements */
+  public static QNHistory allocate(Storage storage, int capacity, int dimension) {
+    switch (storage) {
+    case HEAP_DOUBLE:
+      return new HeapDouble(capacity, dimension);
+    case HEAP_FLOAT:
+      return new HeapFloat(capacity, dimension);
+    case DIRECT_DOUBLE:
+      return new DirectDouble(capacity, dimension);
+    default:
+      return new DirectFloat(capacity, dimension);
+    }
+  }
+
+  // The vectors of slot k are 2k (s) and 2k+1 (y)
+
+  /** Copies x into a vector */
+  protected abstract void set(int vector, double[] x);
+
+  /** Returns the inner product of a vector and x */
+  protected abstract double dot(int vector, double[] x);
+
+  /** Adds c times a vector to x */
+  protected abstract void addTo(double[] x, int vector, double c);
+
+  /** Number of bytes the vectors take */
+  public abstract long bytes();
+
+  /** Whether the vectors are kept outside of the Java heap */
+  public abstract boolean isDirect();
+
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  private int slot(int pair) {
+    return (start + pair) % capacity;
+  }
+
+  /** Returns 1 / (s'y) of a pair */
+  public double rho(int pair) {
+    return rho[slot(pair)];
+  }
+
+  /** Returns s'x for the s of a pair */
+  public double dotS(int pair, double[] x) {
+    return dot(2 * slot(pair), x);
+  }
+
+  /** Returns y'x for the y of a pair */
+  public double dotY(int pair, double[] x) {
+    return dot(2 * slot(pair) + 1, x);
+  }
+
+  /** Adds c times the s of a pair to x */
+  public void addS(double[] x, int pair, double c) {
+    addTo(x, 2 * slot(pair), c);
+  }
+
+  /** Adds c times the y of a pair to x */
+  public void addY(double[] x, int pair, double c) {
+    addTo(x, 2 * slot(pair) + 1, c);
+  }
+
+  /** Adds a pair as the newest one, overwriting the oldest one if the history is full */
+  public void add(double[] s, double[] y, double rho) {
+    int k;
+    if (size < capacity) {
+      k = slot(size++);
+    } else {
+      k = start;
+      start = (start + 1) % capacity;
+    }
+    set(2 * k, s);
+    set(2 * k + 1, y);
+    this.rho[k] = rho;
+  }
+
+  /** Forgets all pairs; the memory is kept */
+  public void clear() {
+    start = 0;
+    size = 0;
+  }
+
+
+  private static class HeapDouble extends QNHistory {
+    private final double[][] vectors;
+
+    HeapDouble(int capacity, int dimension) {
+      super(capacity, dimension);
+      vectors = new double[2 * capacity][dimension];
+    }
+
+    @Override
+    protected void set(int vector, double[] x) {
+      System.arraycopy(x, 0, vectors[vector], 0, dimension);
+    }
+
+    @Override
+    protected double dot(int vector, double[] x) {
+      double[] v = vectors[vector];
+      double sum = 0.0;
+      for (int i = 0; i < dimension; i++) {
+        sum += v[i] * x[i];
+      }
+      return sum;
+    }
+
+    @Override
+    protected void addTo(double[] x, int vector, double c) {
+      double[] v = vectors[vector];
+      for (int i = 0; i < dimension; i++) {
+        x[i] += c * v[i];
+      }
+    }
+
+    @Override
+    public long bytes() {
+      return 2L * capacity * dimension * 8;
+    }
+
+    @Override
+    public boolean isDirect() {
+      return false;
+    }
+  }
+
+
+  private static class HeapFloat extends QNHistory {
+    private final float[][] vectors;
+
+    HeapFloat(int capacity, int dimension) {
+      super(capacity, dimension);
+      vectors = new float[2 * capacity][dimension];
+    }
+
+    @Override
+    protected void set(int vector, double[] x) {
+      float[] v = vectors[vector];
+      for (int i = 0; i < dimension; i++) {
+        v[i] = (float) x[i];
+      }
+    }
+
+    @Override
+    protected double dot(int vector, double[] x) {
+      float[] v = vectors[vector];
+      double sum = 0.0;
+      for (int i = 0; i < dimension; i++) {
+        sum += v[i] * x[i];
+      }
+      return sum;
+    }
+
+    @Override
+    protected void addTo(double[] x, int vector, double c) {
+      float[] v = vectors[vector];
+      for (int i = 0; i < dimension; i++) {
+        x[i] += c * v[i];
+      }
+    }
+
+    @Override
+    public long bytes() {
+      return 2L * capacity * dimension * 4;
+    }
+
+    @Override
+    public boolean isDirect() {
+      return false;
+    }
+  }
+
+
+  private static ByteBuffer direct(long bytes) {
+    if (bytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("vector too long for a direct buffer: " + bytes + " bytes");
+    }
+    return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+  }
+
+
+  private static class DirectDouble extends QNHistory {
+    private final DoubleBuffer[] vectors;
+
+    DirectDouble(int capacity, int dimension) {
+      super(capacity, dimension);
+      vectors = new DoubleBuffer[2 * capacity];
+      for (int k = 0; k < vectors.length; k++) {
+        vectors[k] = direct(8L * dimension).asDoubleBuffer();
+      }
+    }
+
+    @Override
+    protected void set(int vector, double[] x) {
+      DoubleBuffer v = vectors[vector];
+      v.clear();
+      v.put(x, 0, dimension);
+    }
+
+    @Override
+    protected double dot(int vector, double[] x) {
+      DoubleBuffer v = vectors[vector];
+      double sum = 0.0;
+      for (int i = 0; i < dimension; i++) {
+        sum += v.get(i) * x[i];
+      }
+      return sum;
+    }
+
+    @Override
+    protected void addTo(double[] x, int vector, double c) {
+      DoubleBuffer v = vectors[vector];
+      for (int i = 0; i < dimension; i++) {
+        x[i] += c * v.get(i);
+      }
+    }
+
+    @Override
+    public long bytes() {
+      return 2L * capacity * dimension * 8;
+    }
+
+    @Override
+    public boolean isDirect() {
+      return true;
+    }
+  }
+
+
+  private static class DirectFloat extends QNHistory {
+    private final FloatBuffer[] vectors;
+
+    DirectFloat(int capacity, int dimension) {
+      super(capacity, dimension);
+      vectors = new FloatBuffer[2 * capacity];
+      for (int k = 0; k < vectors.length; k++) {
+        vectors[k] = direct(4L * dimension).asFloatBuffer();
+      }
+    }
+
+    @Override
+    protected void set(int vector, double[] x) {
+      FloatBuffer v = vectors[vector];
+      for (int i = 0; i < dimension; i++) {
+        v.put(i, (float) x[i]);
+      }
+    }
+
+    @Override
+    protected double dot(int vector, double[] x) {
+      FloatBuffer v = vectors[vector];
+      double sum = 0.0;
+      for (int i = 0; i < dimension; i++) {
+        sum += v.get(i) * x[i];
+      }
+      return sum;
+    }
+
+    @Override
+    protected void addTo(double[] x, int vector, double c) {
+      FloatBuffer v = vectors[vector];
+      for (int i = 0; i < dimension; i++) {
+        x[i] += c * v.get(i);
+      }
+    }
+
+    @Override
+    public long bytes() {
+      return 2L * capacity * dimension * 4;
+    }
+
+    @Override
+    public boolean isDirect() {
+      return true;
+    }
+  }
+}
@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import edu.stanford.nlp.math.ArrayMath;
+import edu.stanford.nlp.util.MemoryMonitor;
 
 /**
  *
@@ -112,6 +113,16 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators {
   private int evaluateIters = 0;    // Evaluate every x interations (0 = no evaluation)
   private Evaluator[] evaluators;  // separate set of evaluators to check how optimization is going
 
+  private QNHistory.Storage historyStorage = null; // null keeps the s,y pairs in lists
+  private boolean reportPeakMemory = false;
+  private long peakMemory = -1;
+
+  // Scratch space reused across iterations
+  private double[] alphas = new double[0];
+  private final double[] newPt = new double[3];
+  private final double[] bestPt = new double[3];
+  private final double[] endPt = new double[3];
+
   public enum eState {
     TERMINATE_MAXEVALS, TERMINATE_RELATIVENORM, TERMINATE_GRADNORM, TERMINATE_AVERAGEIMPROVE, CONTINUE
   }
@@ -215,6 +226,32 @@ public void setEvaluators(int iters, Evaluator[] evaluators)
     scaleOpt = eScaling.SCALAR;
   }
 
+  /**
+   * Keeps the s,y pairs in a {@link QNHistory} ring buffer that is allocated
+   * once at the start of minimize(), instead of in lists of arrays, so that no
+   * memory is allocated while iterating. With float storage the history takes
+   * half the memory; with direct storage it is kept off the Java heap.
+   * Null goes back to the lists. It has no effect when a history is given
+   * with setHistory() or passed to minimize().
+   */
+  public void useHistoryBuffer(QNHistory.Storage storage) {
+    historyStorage = storage;
+  }
+
+  /**
+   * Tracks the peak heap use during minimize() with a
+   * {@link MemoryMonitor.PeakMemoryMonitor}, and reports it with the size of
+   * the history at the end.
+   */
+  public void reportPeakMemory(boolean toReport) {
+    reportPeakMemory = toReport;
+  }
+
+  /** The peak heap use of the last minimize() in bytes, or -1 if it was not tracked */
+  public long getPeakMemory() {
+    return peakMemory;
+  }
+
   public boolean wasSuccessful() {
     return success;
   }
@@ -482,6 +519,10 @@ public void setEvaluators(int iters, Evaluator[] evaluators)
     private List<double[]> s = null;
     private List<double[]> y = null;
     private List<Double> rho = null;
+    // Or all of it in a ring buffer, with the new pair built in scratch arrays
+    private QNHistory history = null;
+    private double[] scratchS = null;
+    private double[] scratchY = null;
     private double gamma;
     public double[] d = null;
     private int mem;
@@ -512,22 +553,68 @@ public void setEvaluators(int iters, Evaluator[] evaluators)
       setHistory(sList, yList);
     }
 
+    /** Keeps the pairs in the given history, whose capacity is the memory */
+    public QNInfo(QNHistory history) {
+      this.history = history;
+      gamma = 1;
+      mem = history.capacity();
+    }
+
     public int size() {
-      return s.size();
+      return (history != null) ? history.size() : s.size();
     }
 
     public double getRho(int ind) {
-      return rho.get(ind);
+      return (history != null) ? history.rho(ind) : rho.get(ind);
     }
 
     public double[] getS(int ind) {
+      if (history != null) {
+        throw new UnsupportedOperationException("s vectors are kept in a QNHistory");
+      }
       return s.get(ind);
     }
 
     public double[] getY(int ind) {
+      if (history != null) {
+        throw new UnsupportedOperationException("y vectors are kept in a QNHistory");
+      }
       return y.get(ind);
     }
 
+    /** Returns s'x for the pair ind */
+    public double dotS(int ind, double[] x) {
+      return (history != null) ? history.dotS(ind, x) : ArrayMath.innerProduct(s.get(ind), x);
+    }
+
+    /** Returns y'x for the pair ind */
+    public double dotY(int ind, double[] x) {
+      return (history != null) ? history.dotY(ind, x) : ArrayMath.innerProduct(y.get(ind), x);
+    }
+
+    /** Adds c times the s of the pair ind to x */
+    public void addS(double[] x, int ind, double c) {
+      if (history != null) {
+        history.addS(x, ind, c);
+      } else {
+        plusAndConstMult(x, s.get(ind), c, x);
+      }
+    }
+
+    /** Adds c times the y of the pair ind to x */
+    public void addY(double[] x, int ind, double c) {
+      if (history != null) {
+        history.addY(x, ind, c);
+      } else {
+        plusAndConstMult(x, y.get(ind), c, x);
+      }
+    }
+
+    /** Returns the ring buffer of the pairs, or null if they are kept in lists */
+    public QNHistory getHistory() {
+      return history;
+    }
+
     public void useDiagonalScaling() {
       this.scaleOpt = eScaling.DIAGONAL;
     }
@@ -544,12 +631,19 @@ public void setEvaluators(int iters, Evaluator[] evaluators)
       y = null;
       rho = null;
       d = null;
+      history = null;
+      scratchS = null;
+      scratchY = null;
     }
 
     public void clear() {
-      s.clear();
-      y.clear();
-      rho.clear();
+      if (history != null) {
+        history.clear();
+      } else {
+        s.clear();
+        y.clear();
+        rho.clear();
+      }
       d = null;
     }
 
@@ -615,8 +709,15 @@ public void setEvaluators(int iters, Evaluator[] evaluators)
       double sy, yy, sg;
 
       // allocate arrays for new s,y pairs (or replace if the list is already
-      // full)
-      if (mem > 0 && s.size() == mem || s.size() == maxMem) {
+      // full). The ring buffer copies them in, so the scratch arrays are reused.
+      if (history != null) {
+        if (scratchS == null || scratchS.length != x.length) {
+          scratchS = new double[x.length];
+          scratchY = new double[x.length];
+        }
+        newS = scratchS;
+        newY = scratchY;
+      } else if (mem > 0 && s.size() == mem || s.size() == maxMem) {
         newS = s.remove(0);
         newY = y.remove(0);
         rho.remove(0);
@@ -728,6 +829,12 @@ public void setEvaluators(int iters, Evaluator[] evaluators)
 
         }
 
+        if (history != null) {
+          // The ring buffer overwrites its oldest pair when it is full.
+          history.add(newS, newY, 1 / sy);
+          return history.size();
+        }
+
         // If s is already of size mem, remove the oldest vector and free it up.
 
         if (mem > 0 && s.size() == mem || s.size() == maxMem) {
@@ -750,7 +857,7 @@ public void setEvaluators(int iters, Evaluator[] evaluators)
         say(" Either convergence, or floating point errors combined with extremely linear region ");
       }
 
-      return s.size();
+      return size();
     } // end update
 
   } // end class QNInfo
@@ -773,19 +880,22 @@ public void setEvaluators(int iters, Evaluator[] evaluators)
     System.arraycopy(fg, 0, dir, 0, fg.length);
 
     int mmm = qn.size();
-    double[] as = new double[mmm];
+    if (alphas.length < mmm) {
+      alphas = new double[mmm];
+    }
+    double[] as = alphas;
 
     for (int i = mmm - 1; i >= 0; i--) {
-      as[i] = qn.getRho(i) * ArrayMath.innerProduct(qn.getS(i), dir);
-      plusAndConstMult(dir, qn.getY(i), -as[i], dir);
+      as[i] = qn.getRho(i) * qn.dotS(i, dir);
+      qn.addY(dir, i, -as[i]);
     }
 
     // multiply by hessian approximation
     qn.applyInitialHessian(dir);
 
     for (int i = 0; i < mmm; i++) {
-      double b = qn.getRho(i) * ArrayMath.innerProduct(qn.getY(i), dir);
-      plusAndConstMult(dir, qn.getS(i), as[i] - b, dir);
+      double b = qn.getRho(i) * qn.dotY(i, dir);
+      qn.addS(dir, i, as[i] - b);
     }
 
     ArrayMath.multiplyInPlace(dir, -1);
@@ -841,7 +951,14 @@ public double[] minimize(DiffFunction dfunction, double functionTolerance,
     }
 
     if (qn == null && presetInfo == null) {
-      qn = new QNInfo(mem);
+      if (historyStorage != null) {
+        int capacity = (mem > 0) ? Math.min(mem, 20) : 20; // as QNInfo.maxMem
+        qn = new QNInfo(QNHistory.allocate(historyStorage, capacity, dfunction.domainDimension()));
+        sayln("Keeping the history in a " + historyStorage + " ring buffer of "
+            + capacity + " pairs, " + qn.getHistory().bytes() / (1 << 20) + " MB.");
+      } else {
+        qn = new QNInfo(mem);
+      }
       noHistory = true;
     } else if (presetInfo != null) {
       qn = presetInfo;
@@ -871,207 +988,244 @@ public double[] minimize(DiffFunction dfunction, double functionTolerance,
     // evaluateFunction)
     value = evaluateFunction(dfunction, x, grad);
 
-    PrintWriter outFile = null;
-    PrintWriter infoFile = null;
+    Thread memoryMonitor = null;
+    MemoryMonitor.PeakMemoryMonitor peakMonitor = null;
+    peakMemory = -1;
+    if (reportPeakMemory) {
+      peakMonitor = new MemoryMonitor.PeakMemoryMonitor(100, Integer.MAX_VALUE);
+      memoryMonitor = new Thread(peakMonitor, "QNMinimizer-PeakMemoryMonitor");
+      memoryMonitor.setDaemon(true);
+      memoryMonitor.start();
+    }
 
-    if (outputToFile) {
-      try {
-        String baseName = "QN_m" + mem + "_" + lsOpt.toString() + "_"
-            + scaleOpt.toString();
-        outFile = new PrintWriter(new FileOutputStream(baseName + ".output"),
-            true);
-        infoFile = new PrintWriter(new FileOutputStream(baseName + ".info"),
-            true);
-        infoFile.println(dfunction.domainDimension() + "; DomainDimension ");
-        infoFile.println(mem + "; memory");
-      } catch (IOException e) {
-        System.err.println("Caught IOException outputing QN data to file: "
-            + e.getMessage());
-        System.exit(1);
+    try {
+      PrintWriter outFile = null;
+      PrintWriter infoFile = null;
+
+      if (outputToFile) {
+        try {
+          String baseName = "QN_m" + mem + "_" + lsOpt.toString() + "_"
+              + scaleOpt.toString();
+          outFile = new PrintWriter(new FileOutputStream(baseName + ".output"),
+              true);
+          infoFile = new PrintWriter(new FileOutputStream(baseName + ".info"),
+              true);
+          infoFile.println(dfunction.domainDimension() + "; DomainDimension ");
+          infoFile.println(mem + "; memory");
+        } catch (IOException e) {
+          System.err.println("Caught IOException outputing QN data to file: "
+              + e.getMessage());
+          System.exit(1);
+        }
       }
-    }
 
-    Record rec = new Record(quiet, monitor, functionTolerance, outFile);
-    // sets the original gradient and x. Also stores the monitor.
-    rec.start(value, grad, x);
-
-    // Check if max Evaluations and Iterations have been provided.
-    maxFevals = (maxFunctionEvaluations > 0) ? maxFunctionEvaluations
-        : Integer.MAX_VALUE;
-    // maxIterations = (maxIterations > 0) ? maxIterations : Integer.MAX_VALUE;
-
-    sayln("               An explanation of the output:");
-    sayln("Iter           The number of iterations");
-    sayln("evals          The number of function evaluations");
-    sayln("SCALING        <D> Diagonal scaling was used; <I> Scaled Identity");
-    sayln("LINESEARCH     [## M steplength]  Minpack linesearch");
-    sayln("                   1-Function value was too high");
-    sayln("                   2-Value ok, gradient positive, positive curvature");
-    sayln("                   3-Value ok, gradient negative, positive curvature");
-    sayln("                   4-Value ok, gradient negative, negative curvature");
-    sayln("               [.. B]  Backtracking");
-    sayln("VALUE          The current function value");
-    sayln("TIME           Total elapsed time");
-    sayln("|GNORM|        The current norm of the gradient");
-    sayln("{RELNORM}      The ratio of the current to initial gradient norms");
-    sayln("AVEIMPROVE     The average improvement / current value");
-    sayln();
-    sayln("Iter ## evals ## <SCALING> [LINESEARCH] VALUE TIME |GNORM| {RELNORM} AVEIMPROVE");
-
-    boolean doEval = false;
-    // Beginning of the loop.
-    do {
+      Record rec = new Record(quiet, monitor, functionTolerance, outFile);
+      // sets the original gradient and x. Also stores the monitor.
+      rec.start(value, grad, x);
+
+      // Check if max Evaluations and Iterations have been provided.
+      maxFevals = (maxFunctionEvaluations > 0) ? maxFunctionEvaluations
+          : Integer.MAX_VALUE;
+      // maxIterations = (maxIterations > 0) ? maxIterations : Integer.MAX_VALUE;
+
+      sayln("               An explanation of the output:");
+      sayln("Iter           The number of iterations");
+      sayln("evals          The number of function evaluations");
+      sayln("SCALING        <D> Diagonal scaling was used; <I> Scaled Identity");
+      sayln("LINESEARCH     [## M steplength]  Minpack linesearch");
+      sayln("                   1-Function value was too high");
+      sayln("                   2-Value ok, gradient positive, positive curvature");
+      sayln("                   3-Value ok, gradient negative, positive curvature");
+      sayln("                   4-Value ok, gradient negative, negative curvature");
+      sayln("               [.. B]  Backtracking");
+      sayln("VALUE          The current function value");
+      sayln("TIME           Total elapsed time");
+      sayln("|GNORM|        The current norm of the gradient");
+      sayln("{RELNORM}      The ratio of the current to initial gradient norms");
+      sayln("AVEIMPROVE     The average improvement / current value");
+      sayln();
+      sayln("Iter ## evals ## <SCALING> [LINESEARCH] VALUE TIME |GNORM| {RELNORM} AVEIMPROVE");
+
+      boolean doEval = false;
+      // Beginning of the loop.
+      do {
+
+        try {
+          sayln();
+          doEval = (its > 0 && evaluateIters > 0 && its % evaluateIters == 0);
+          if (doEval) {
+            doEvaluation(x);
+          }
+          its += 1;
+          double newValue;
+          double[] newPoint = null; // returned by the line search
+          say("Iter " + its + " evals " + fevals + " ");
 
-      try {
-        sayln();
-        doEval = (its > 0 && evaluateIters > 0 && its % evaluateIters == 0);
-        if (doEval) {
-          doEvaluation(x);
-        }
-        its += 1;
-        double newValue;
-        double[] newPoint = new double[3]; // initialized in loop
-        say("Iter " + its + " evals " + fevals + " ");
-
-        // Compute the search direction
-        say("<");
-        computeDir(dir, grad, qn);
-        say("> ");
-
-        // sanity check dir
-        boolean hasNaNDir = false;
-        boolean hasNaNGrad = false;
-        for (int i = 0; i < dir.length; i++) {
-          if (dir[i] != dir[i]) hasNaNDir = true;
-          if (grad[i] != grad[i]) hasNaNGrad = true;
-        }
-        if (hasNaNDir && !hasNaNGrad) {
-          say("(NaN dir likely due to Hessian approx - resetting) ");
-          qn.clear();
-          // re-compute the search direction
+          // Compute the search direction
           say("<");
           computeDir(dir, grad, qn);
           say("> ");
-        }
 
-        // perform line search
-        say("[");
+          // sanity check dir
+          boolean hasNaNDir = false;
+          boolean hasNaNGrad = false;
+          for (int i = 0; i < dir.length; i++) {
+            if (dir[i] != dir[i]) hasNaNDir = true;
+            if (grad[i] != grad[i]) hasNaNGrad = true;
+          }
+          if (hasNaNDir && !hasNaNGrad) {
+            say("(NaN dir likely due to Hessian approx - resetting) ");
+            qn.clear();
+            // re-compute the search direction
+            say("<");
+            computeDir(dir, grad, qn);
+            say("> ");
+          }
 
-        // switch between line search options.
-        switch (lsOpt) {
-        case BACKTRACK:
-          newPoint = lineSearchBacktrack(dfunction, dir, x, newX, grad, value);
-          say("B");
-          break;
-        case MINPACK:
-          newPoint = lineSearchMinPack(dfunction, dir, x, newX, grad, value,
-              functionTolerance);
-          say("M");
-          break;
-        default:
-          sayln("Invalid line search option for QNMinimizer. ");
-          System.exit(1);
-          break;
+          // perform line search
+          say("[");
+
+          // switch between line search options.
+          switch (lsOpt) {
+          case BACKTRACK:
+            newPoint = lineSearchBacktrack(dfunction, dir, x, newX, grad, value);
+            say("B");
+            break;
+          case MINPACK:
+            newPoint = lineSearchMinPack(dfunction, dir, x, newX, grad, value,
+                functionTolerance);
+            say("M");
+            break;
+          default:
+            sayln("Invalid line search option for QNMinimizer. ");
+            System.exit(1);
+            break;
 
-        }
+          }
 
-        newValue = newPoint[f];
-        System.err.print(" " + nf.format(newPoint[a]));
-        say("] ");
+          newValue = newPoint[f];
+          System.err.print(" " + nf.format(newPoint[a]));
+          say("] ");
 
-        // This shouldn't actually evaluate anything since that should have been
-        // done in the lineSearch.
-        System.arraycopy(dfunction.derivativeAt(newX), 0, newGrad, 0,
-            newGrad.length);
+          // This shouldn't actually evaluate anything since that should have been
+          // done in the lineSearch.
+          System.arraycopy(dfunction.derivativeAt(newX), 0, newGrad, 0,
+              newGrad.length);
 
-        // This is where all the s, y updates are applied.
-        qn.update(newX, x, newGrad, grad, newPoint[a]);
+          // This is where all the s, y updates are applied.
+          qn.update(newX, x, newGrad, grad, newPoint[a]);
 
-        // Add the current value and gradient to the records, this also monitors
-        // X and writes to output
-        rec.add(newValue, newGrad, newX, fevals);
+          // Add the current value and gradient to the records, this also monitors
+          // X and writes to output
+          rec.add(newValue, newGrad, newX, fevals);
 
-        // shift
-        value = newValue;
-        // double[] temp = x;
-        // x = newX;
-        // newX = temp;
-        System.arraycopy(newX, 0, x, 0, x.length);
-        System.arraycopy(newGrad, 0, grad, 0, newGrad.length);
+          // shift
+          value = newValue;
+          // double[] temp = x;
+          // x = newX;
+          // newX = temp;
+          System.arraycopy(newX, 0, x, 0, x.length);
+          System.arraycopy(newGrad, 0, grad, 0, newGrad.length);
 
-        if (quiet) {
-          System.err.print(".");
-        }
-        if (fevals > maxFevals) {
-          throw new MaxEvaluationsExceeded(" Exceeded in minimize() loop ");
+          if (quiet) {
+            System.err.print(".");
+          }
+          if (fevals > maxFevals) {
+            throw new MaxEvaluationsExceeded(" Exceeded in minimize() loop ");
+          }
+
+        } catch (SurpriseConvergence s) {
+          sayln();
+          sayln("QNMinimizer aborted due to surprise convergence");
+          break;
+        } catch (MaxEvaluationsExceeded m) {
+          sayln();
+          sayln("QNMinimizer aborted due to maxiumum number of function evaluations");
+          sayln(m.toString());
+          sayln("** This is not an acceptable termination of QNMinimizer, consider    ");
+          sayln("** increasing the max number of evaluations, or safeguarding your    ");
+          sayln("** program by checking the QNMinimizer.wasSuccesful() method.        ");
+          break;
+        } catch (OutOfMemoryError oome) {
+          sayln();
+          if (qn.history != null) {
+            // The ring buffer was allocated up front, so dropping pairs frees nothing.
+            throw oome;
+          }
+          qn.s.remove(0);
+          qn.y.remove(0);
+          qn.rho.remove(0);
+          qn.mem = qn.s.size();
+          System.err.println("Caught OutOfMemoryError, changing m = "+qn.mem);
         }
 
-      } catch (SurpriseConvergence s) {
-        sayln();
-        sayln("QNMinimizer aborted due to surprise convergence");
+      } while ((state = rec.toContinue()) == eState.CONTINUE); // do
+
+      if (evaluateIters > 0) {
+        // do final evaluation
+        doEvaluation(x);
+      }
+
+      //
+      // Announce the reason minimization has terminated.
+      //
+      System.err.println();
+      switch (state) {
+      case TERMINATE_GRADNORM:
+        System.err
+            .println("QNMinimizer terminated due to numerically zero gradient: |g| < EPS  max(1,|x|) ");
+        success = true;
+        break;
+      case TERMINATE_RELATIVENORM:
+        System.err
+            .println("QNMinimizer terminated due to sufficient decrease in gradient norms: |g|/|g0| < TOL ");
+        success = true;
         break;
-      } catch (MaxEvaluationsExceeded m) {
-        sayln();
-        sayln("QNMinimizer aborted due to maxiumum number of function evaluations");
-        sayln(m.toString());
-        sayln("** This is not an acceptable termination of QNMinimizer, consider    ");
-        sayln("** increasing the max number of evaluations, or safeguarding your    ");
-        sayln("** program by checking the QNMinimizer.wasSuccesful() method.        ");
+      case TERMINATE_AVERAGEIMPROVE:
+        System.err
+            .println("QNMinimizer terminated due to average improvement: | newest_val - previous_val | / |newestVal| < TOL ");
+        success = true;
+        break;
+      default:
+        System.err.println("QNMinimizer terminated without converging");
+        success = false;
         break;
-      } catch (OutOfMemoryError oome) {
-        sayln();
-        qn.s.remove(0);
-        qn.y.remove(0);
-        qn.rho.remove(0);
-        qn.mem = qn.s.size();
-        System.err.println("Caught OutOfMemoryError, changing m = "+qn.mem);
       }
 
-    } while ((state = rec.toContinue()) == eState.CONTINUE); // do
+      double completionTime = rec.howLong();
+      sayln("Total time spent in optimization: " + nfsec.format(completionTime) + "s");
 
-    if (evaluateIters > 0) {
-      // do final evaluation
-      doEvaluation(x);
-    }
+      if (memoryMonitor != null) {
+        // logs the peak heap use as it stops
+        memoryMonitor.interrupt();
+        try {
+          memoryMonitor.join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        peakMemory = peakMonitor.getPeak();
+        if (qn.history != null) {
+          sayln("History: " + qn.history.size() + " pairs in "
+              + nf.format(qn.history.bytes() / (double) (1 << 30)) + " GB, "
+              + (qn.history.isDirect() ? "off" : "on") + " the heap");
+        }
+      }
 
-    //
-    // Announce the reason minimization has terminated.
-    //
-    System.err.println();
-    switch (state) {
-    case TERMINATE_GRADNORM:
-      System.err
-          .println("QNMinimizer terminated due to numerically zero gradient: |g| < EPS  max(1,|x|) ");
-      success = true;
-      break;
-    case TERMINATE_RELATIVENORM:
-      System.err
-          .println("QNMinimizer terminated due to sufficient decrease in gradient norms: |g|/|g0| < TOL ");
-      success = true;
-      break;
-    case TERMINATE_AVERAGEIMPROVE:
-      System.err
-          .println("QNMinimizer terminated due to average improvement: | newest_val - previous_val | / |newestVal| < TOL ");
-      success = true;
-      break;
-    default:
-      System.err.println("QNMinimizer terminated without converging");
-      success = false;
-      break;
-    }
-
-    double completionTime = rec.howLong();
-    sayln("Total time spent in optimization: " + nfsec.format(completionTime) + "s");
-
-    if (outputToFile) {
-      infoFile.println(completionTime + "; Total Time ");
-      infoFile.println(fevals + "; Total evaluations");
-      infoFile.close();
-      outFile.close();
-    }
-
-    qn.free();
-    return x;
+      if (outputToFile) {
+        infoFile.println(completionTime + "; Total Time ");
+        infoFile.println(fevals + "; Total evaluations");
+        infoFile.close();
+        outFile.close();
+      }
+
+      qn.free();
+      return x;
+    } finally {
+      // stops the monitor if minimize() throws
+      if (memoryMonitor != null && memoryMonitor.isAlive()) {
+        memoryMonitor.interrupt();
+      }
+    }
 
   } // end minimize()
 
@@ -1136,7 +1290,7 @@ public double[] minimize(DiffFunction dfunction, double functionTolerance,
     // c = c * mult(grad, dir);
     c = c * normGradInDir;
 
-    double[] newPoint = new double[3];
+    double[] newPoint = newPt;
 
     while ((newPoint[f] = func.valueAt((plusAndConstMult(x, dir, step, newX)))) > lastValue
         + c * step) {
@@ -1185,9 +1339,9 @@ public double[] minimize(DiffFunction dfunction, double functionTolerance,
     }
     double gTest = ftol * g0;
 
-    double[] newPt = new double[3];
-    double[] bestPt = new double[3];
-    double[] endPt = new double[3];
+    double[] newPt = this.newPt;
+    double[] bestPt = this.bestPt;
+    double[] endPt = this.endPt;
 
     newPt[a] = 1.0; // Always guess 1 first, this should be right if the
                     // function is "nice" and BFGS is working.
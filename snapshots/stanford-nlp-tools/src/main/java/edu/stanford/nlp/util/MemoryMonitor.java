@@ -277,6 +277,11 @@ public class MemoryMonitor {
       }
     }
 
+    /** The peak memory use seen so far in bytes; read it after the thread is joined */
+    public long getPeak() {
+      return peak;
+    }
+
     public void log() {
       outstream.println(String.format("Maximum memory used: %.1f GB", peak / GIGABYTE));
     }
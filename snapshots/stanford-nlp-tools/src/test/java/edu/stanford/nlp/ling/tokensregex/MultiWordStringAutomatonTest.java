@@ -0,0 +1,79 @@
+package edu.stanford.nlp.ling.tokensregex;
+
+import edu.stanford.nlp.ling.tokensregex.MultiWordStringMatcher.MatchType;
+import edu.stanford.nlp.util.IntPair;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that {@link MultiWordStringAutomaton} finds the same offsets as the
+ * regular expressions of {@link MultiWordStringMatcher}.
+ */
+public class MultiWordStringAutomatonTest {
+
+  private static final String ALPHABET = "aAbBxX  .-,\t";
+
+  private static final MatchType[] TYPES = { MatchType.EXCT, MatchType.EXCTWS, MatchType.LWS, MatchType.LNRM };
+
+  private static void check(MatchType type, String[] targets, String text, int start, int end) {
+    MultiWordStringMatcher matcher = new MultiWordStringMatcher(type);
+    // getPattern sorts the array it is given
+    List<IntPair> expected = MultiWordStringMatcher.findOffsets(matcher.getPattern(targets.clone()), text, start, end);
+    List<IntPair> actual = matcher.compile(targets).findOffsets(text, start, end);
+    assertEquals(type + " " + Arrays.toString(targets) + " in \"" + text + "\" [" + start + "," + end + ")",
+        expected, actual);
+  }
+
+  private static void check(MatchType type, String[] targets, String text) {
+    check(type, targets, text, 0, text.length());
+  }
+
+  /** Occurrences that fail the word boundary check hide the ones that overlap them */
+  @Test
+  public void testDroppedMatches() {
+    check(MatchType.EXCTWS, new String[] { "a a" }, "Ba a a");
+    check(MatchType.LNRM, new String[] { "  xB" }, "-a- xb");
+    check(MatchType.LWS, new String[] { "x", "b", ".B" }, "x.B-..");
+    check(MatchType.LNRM, new String[] { "b", "-a", "a b" }, "xa b, a b");
+  }
+
+  private static String random(Random random, int length) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+    }
+    return sb.toString();
+  }
+
+  /** A target with at least one letter, so that its regular expression cannot match the empty string */
+  private static String randomTarget(Random random) {
+    String target;
+    do {
+      target = random(random, 1 + random.nextInt(6));
+    } while (!target.matches(".*[a-zA-Z].*"));
+    return target;
+  }
+
+  @Test
+  public void testAgainstRegex() {
+    Random random = new Random(42);
+    for (MatchType type : TYPES) {
+      for (int round = 0; round < 3000; round++) {
+        String[] targets = new String[(round % 2 == 0) ? 1 : 2 + random.nextInt(6)];
+        for (int i = 0; i < targets.length; i++) {
+          targets[i] = randomTarget(random);
+        }
+        String text = random(random, random.nextInt(40));
+        check(type, targets, text);
+        int start = random.nextInt(text.length() + 1);
+        check(type, targets, text, start, start + random.nextInt(text.length() - start + 1));
+      }
+    }
+  }
+}
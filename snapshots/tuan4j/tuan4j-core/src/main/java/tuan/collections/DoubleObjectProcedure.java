@@ -0,0 +1,8 @@
+package tuan.collections;
+
+/** A procedure that is called with each double-object entry of a {@link DoubleObjectBTreeMap}. */
+public interface DoubleObjectProcedure<V> {
+
+	/** Visits one entry, returns false to stop the iteration. */
+	public boolean apply (double key, V value);
+}
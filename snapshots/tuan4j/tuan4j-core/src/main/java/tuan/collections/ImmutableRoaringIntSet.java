@@ -0,0 +1,277 @@
+/**
+ * ==================================
+ * Copyright (c) 2010 Max-Planck Institute for Informatics
+ * Database and Information Systems Department
+ * http://www.mpi-inf.mpg.de/departments/d5/index.html
+ *
+ * ==================================
+ *
+ * This source code is provided with AS IF - it does not guarantee the
+ * or compatibilities with older or newer version of third-parties. In any
+ * cases, if you have problems regarding using libraries delivered with
+ * the project, feel free to write to the above email. Also, we would like
+ * to get feedbacks from all of you
+ *
+ * Contact: Tuan Tran - ttran@mpi-inf.mpg.de
+ *
+ */
+package tuan.collections;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+This class reads a set serialized by {@link RoaringIntSet#serialize} in place, from a
+ByteBuffer (a memory-mapped file, or the bytes of a record), without copying the containers.
+Only the header is read on wrap(); contains() and the cursors read the containers where they are.
+The view can be re-wrapped to read any number of sets.<BR>
+The view is not thread-safe, and the bytes must not change while it is used.<BR>
+*/
+public class ImmutableRoaringIntSet {
+  /** The bytes, little-endian*/
+  protected ByteBuffer buf;
+  /** Position of the cookie*/
+  protected int start;
+  protected int numChunks;
+  protected boolean hasRun;
+  /** Position of the run marks, of the keys and cardinalities, and of the offsets or -1*/
+  protected int runMarks, header, offsetHeader;
+  /** Positions of the containers, computed when first needed*/
+  protected int[] offsets;
+  protected boolean offsetsKnown;
+  /** Number of integers, or -1 until counted*/
+  protected int numElements;
+
+  /** Creates a view that has to be wrapped around bytes before use*/
+  public ImmutableRoaringIntSet() {
+  }
+
+  /** Creates a view of the set that starts at the position of buf*/
+  public ImmutableRoaringIntSet(ByteBuffer buf) throws IOException {
+    wrap(buf,buf.position());
+  }
+
+  /** Reads the header of the set that starts at buf[start]*/
+  public ImmutableRoaringIntSet wrap(ByteBuffer buf, int start) throws IOException {
+    this.buf=buf.order()==ByteOrder.LITTLE_ENDIAN ? buf : buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    this.start=start;
+    int cookie=this.buf.getInt(start);
+    hasRun=(cookie & 0xFFFF)==RoaringIntSet.SERIAL_COOKIE;
+    if(hasRun) {
+      numChunks=(cookie>>>16)+1;
+      runMarks=start+4;
+      header=runMarks+(numChunks+7)/8;
+    } else if(cookie==RoaringIntSet.SERIAL_COOKIE_NO_RUN) {
+      numChunks=this.buf.getInt(start+4);
+      header=start+8;
+    } else {
+      throw new IOException("Not a portable Roaring bitmap, cookie: "+cookie);
+    }
+    offsetHeader=(!hasRun || numChunks>=RoaringIntSet.NO_OFFSET_THRESHOLD) ? header+4*numChunks : -1;
+    numElements=-1;
+    offsetsKnown=false;
+    return(this);
+  }
+
+  public int size() {
+    if(numElements<0) {
+      numElements=0;
+      for(int i=0;i<numChunks;i++) numElements+=cardinality(i);
+    }
+    return(numElements);
+  }
+
+  public boolean isEmpty() {
+    return(numChunks==0);
+  }
+
+  protected char key(int i) {
+    return(buf.getChar(header+4*i));
+  }
+
+  protected int cardinality(int i) {
+    return(buf.getChar(header+4*i+2)+1);
+  }
+
+  protected boolean isRun(int i) {
+    return(hasRun && (buf.get(runMarks+i/8) & (1<<(i%8)))!=0);
+  }
+
+  protected boolean isBitmap(int i) {
+    return(!isRun(i) && cardinality(i)>RoaringIntSet.MAX_ARRAY);
+  }
+
+  /** Returns the position of the i-th container*/
+  protected int offset(int i) {
+    if(offsetHeader>=0) return(start+buf.getInt(offsetHeader+4*i));
+    if(!offsetsKnown) {
+      if(offsets==null || offsets.length<numChunks) offsets=new int[numChunks];
+      int pos=header+4*numChunks;
+      for(int c=0;c<numChunks;c++) {
+        offsets[c]=pos;
+        if(isRun(c)) pos+=2+4*buf.getChar(pos);
+        else if(cardinality(c)>RoaringIntSet.MAX_ARRAY) pos+=8*RoaringIntSet.BitmapContainer.WORDS;
+        else pos+=2*cardinality(c);
+      }
+      offsetsKnown=true;
+    }
+    return(offsets[i]);
+  }
+
+  /** Number of bytes of the serialized set*/
+  public int serializedSize() {
+    if(numChunks==0) return(header-start);
+    int last=numChunks-1;
+    int pos=offset(last);
+    if(isRun(last)) pos+=2+4*buf.getChar(pos);
+    else if(isBitmap(last)) pos+=8*RoaringIntSet.BitmapContainer.WORDS;
+    else pos+=2*cardinality(last);
+    return(pos-start);
+  }
+
+  public boolean contains(int v) {
+    char key=(char)(v>>>16);
+    char x=(char)v;
+    int low=0, high=numChunks-1;
+    while(low<=high) {
+      int mid=(low+high)>>>1;
+      char k=key(mid);
+      if(k<key) low=mid+1;
+      else if(k>key) high=mid-1;
+      else return(containerContains(mid,x));
+    }
+    return(false);
+  }
+
+  protected boolean containerContains(int i, char x) {
+    int pos=offset(i);
+    if(isRun(i)) {
+      int low=0, high=buf.getChar(pos)-1;
+      pos+=2;
+      while(low<=high) {
+        int mid=(low+high)>>>1;
+        int runStart=buf.getChar(pos+4*mid);
+        if(runStart>x) high=mid-1;
+        else if(runStart+buf.getChar(pos+4*mid+2)<x) low=mid+1;
+        else return(true);
+      }
+      return(false);
+    }
+    if(cardinality(i)>RoaringIntSet.MAX_ARRAY) {
+      return((buf.getLong(pos+8*(x>>>6)) & (1L<<x))!=0);
+    }
+    int low=0, high=cardinality(i)-1;
+    while(low<=high) {
+      int mid=(low+high)>>>1;
+      char v=buf.getChar(pos+2*mid);
+      if(v<x) low=mid+1;
+      else if(v>x) high=mid-1;
+      else return(true);
+    }
+    return(false);
+  }
+
+  /** Returns the elements in a new array, in unsigned order*/
+  public int[] toArray() {
+    int[] result=new int[size()];
+    Cursor c=cursor(false);
+    for(int i=0;i<result.length;i++) result[i]=c.next();
+    return(result);
+  }
+
+  /** Copies the set into a mutable one*/
+  public RoaringIntSet toRoaringIntSet() throws IOException {
+    ByteBuffer b=buf.duplicate();
+    b.position(start);
+    byte[] bytes=new byte[serializedSize()];
+    b.get(bytes);
+    RoaringIntSet result=new RoaringIntSet();
+    result.deserialize(new DataInputStream(new ByteArrayInputStream(bytes)));
+    return(result);
+  }
+
+  @Override
+  public String toString() {
+    return(Arrays.toString(toArray()));
+  }
+
+  /** Returns a cursor over the elements, in signed order (negative ones first) or in unsigned order*/
+  public Cursor cursor(boolean signed) {
+    return(new Cursor().reset(this,signed));
+  }
+
+  /** Reads the elements of a view one at a time. A cursor can be reset to read any number of views.*/
+  public static final class Cursor {
+    private ImmutableRoaringIntSet set;
+    /** Chunks are read from first, wrapping around to 0*/
+    private int first, chunk, chunksRead;
+    private int high, type, pos, left;
+    // array: next value at pos; bitmap: word index and bits left; run: value and end of the run
+    private int word;
+    private long bits;
+    private int value, runEnd;
+
+    private static final int ARRAY=0, BITMAP=1, RUN=2;
+
+    public Cursor reset(ImmutableRoaringIntSet set, boolean signed) {
+      this.set=set;
+      first=0;
+      if(signed) {
+        while(first<set.numChunks && set.key(first)<0x8000) first++;
+        if(first==set.numChunks) first=0;
+      }
+      chunksRead=0;
+      left=0;
+      return(this);
+    }
+
+    public boolean hasNext() {
+      return(left>0 || chunksRead<set.numChunks);
+    }
+
+    public int next() {
+      if(left==0) nextChunk();
+      left--;
+      switch(type) {
+        case ARRAY:
+          int v=set.buf.getChar(pos);
+          pos+=2;
+          return(high | v);
+        case BITMAP:
+          while(bits==0) bits=set.buf.getLong(pos+8*(++word));
+          int b=(word<<6)+Long.numberOfTrailingZeros(bits);
+          bits&=bits-1;
+          return(high | b);
+        default:
+          if(value>runEnd) {
+            value=set.buf.getChar(pos);
+            runEnd=value+set.buf.getChar(pos+2);
+            pos+=4;
+          }
+          return(high | value++);
+      }
+    }
+
+    private void nextChunk() {
+      chunk=(first+chunksRead++)%set.numChunks;
+      high=set.key(chunk)<<16;
+      left=set.cardinality(chunk);
+      pos=set.offset(chunk);
+      if(set.isRun(chunk)) {
+        type=RUN;
+        pos+=2;
+        value=1;
+        runEnd=0;
+      } else if(left>RoaringIntSet.MAX_ARRAY) {
+        type=BITMAP;
+        word=0;
+        bits=set.buf.getLong(pos);
+      } else {
+        type=ARRAY;
+      }
+    }
+  }
+}
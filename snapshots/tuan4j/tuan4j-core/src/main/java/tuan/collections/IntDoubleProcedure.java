@@ -0,0 +1,8 @@
+package tuan.collections;
+
+/** A procedure that is called with each int-double entry of a {@link IntDoubleHashMap}. */
+public interface IntDoubleProcedure {
+
+	/** Visits one entry, returns false to stop the iteration. */
+	public boolean apply (int key, double value);
+}
@@ -0,0 +1,475 @@
+/**
+ * ==================================
+ * Copyright (c) 2010 Max-Planck Institute for Informatics
+ * Database and Information Systems Department
+ * http://www.mpi-inf.mpg.de/departments/d5/index.html
+ *
+ * ==================================
+ *
+ * This source code is provided with AS IF - it does not guarantee the
+ * or compatibilities with older or newer version of third-parties. In any
+ * cases, if you have problems regarding using libraries delivered with
+ * the project, feel free to write to the above email. Also, we would like
+ * to get feedbacks from all of you
+ *
+ * Contact: Tuan Tran - ttran@mpi-inf.mpg.de
+ *
+ */
+package tuan.collections;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+
+import tuan.math.SloppyMath;
+
+/**
+This class implements a hash-indexed integer set with the same API as {@link IntSet}.
+The integers are kept in an open-addressing table with linear probing, so add, contains
+and remove run in amortized constant time instead of scanning the whole set.
+Removal uses backward-shift deletion, hence the table never holds tombstones.<BR>
+The key 0 marks an empty slot and is therefore kept aside in a flag.<BR>
+*/
+public class IntHashSet {
+  /** Golden ratio constant used to scramble the keys*/
+  private static final int PHI = 0x9E3779B9;
+  /** Marks an empty slot*/
+  private static final int EMPTY = 0;
+  /** Default maximal fill ratio of the table*/
+  public static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+  /** Holds the integers, the length is always a power of two*/
+  protected int[] keys;
+  /** Tells whether 0 is in the set*/
+  protected boolean hasZero;
+  /** Number of integers in the set*/
+  protected int numElements=0;
+  /** Maximal fill ratio before the table is doubled*/
+  protected final float loadFactor;
+  /** keys.length-1*/
+  protected int mask;
+  /** Number of elements that triggers the next resize*/
+  protected int threshold;
+  /** Index that can be polled next. Handled exclusively by poll() */
+  protected int pollIndex=0;
+
+  /** Returns the home slot of v*/
+  protected final int slot(int v) {
+    int h=v*PHI;
+    return (h ^ (h>>>16)) & mask;
+  }
+
+  /** Adds the element*/
+  public boolean add(int v) {
+    if(v==EMPTY) {
+      if(hasZero) return(false);
+      hasZero=true;
+      numElements++;
+      return(true);
+    }
+    int[] keys=this.keys;
+    int i=slot(v);
+    while(true) {
+      int k=keys[i];
+      if(k==EMPTY) {
+        keys[i]=v;
+        if(++numElements>threshold) resize(keys.length<<1);
+        return(true);
+      }
+      if(k==v) return(false);
+      i=(i+1) & mask;
+    }
+  }
+
+  /** Adds the element. The existence check comes for free while probing, so this
+   * behaves like add() and is kept for compatibility with IntSet*/
+  public boolean forceAdd(int v) {
+    add(v);
+    return(true);
+  }
+
+  public void clear(int capacity) {
+    int tableSize=tableSizeFor(capacity,loadFactor);
+    numElements=0;
+    hasZero=false;
+    pollIndex=0;
+    keys=new int[tableSize];
+    mask=tableSize-1;
+    threshold=thresholdFor(tableSize,loadFactor);
+  }
+
+  public int poll() {
+    if(numElements==0) throw new NoSuchElementException();
+    if(hasZero) {
+      hasZero=false;
+      numElements--;
+      return(EMPTY);
+    }
+    int[] keys=this.keys;
+    while(true) {
+      if(pollIndex>mask) pollIndex=0;
+      int k=keys[pollIndex];
+      if(k!=EMPTY) {
+        removeSlot(pollIndex);
+        shrink();
+        return(k);
+      }
+      pollIndex++;
+    }
+  }
+
+  /** Returns the slot of the element, -1 if not found. 0 is never found here*/
+  protected int indexOf(int v) {
+    int[] keys=this.keys;
+    int i=slot(v);
+    while(true) {
+      int k=keys[i];
+      if(k==EMPTY) return(-1);
+      if(k==v) return(i);
+      i=(i+1) & mask;
+    }
+  }
+
+  /** Empties the slot and moves back the following elements of the probe chain*/
+  protected void removeSlot(int hole) {
+    int[] keys=this.keys;
+    int i=hole;
+    while(true) {
+      i=(i+1) & mask;
+      int k=keys[i];
+      if(k==EMPTY) break;
+      int home=slot(k);
+      // Move k into the hole unless its home lies cyclically in (hole, i]
+      if(((i-home) & mask) >= ((i-hole) & mask)) {
+        keys[hole]=k;
+        hole=i;
+      }
+    }
+    keys[hole]=EMPTY;
+    numElements--;
+  }
+
+  /** Rehashes all elements into a table of the given size*/
+  protected void resize(int tableSize) {
+    int[] oldKeys=keys;
+    keys=new int[tableSize];
+    mask=tableSize-1;
+    threshold=thresholdFor(tableSize,loadFactor);
+    pollIndex=0;
+    for(int k : oldKeys) {
+      if(k==EMPTY) continue;
+      int i=slot(k);
+      while(keys[i]!=EMPTY) i=(i+1) & mask;
+      keys[i]=k;
+    }
+  }
+
+  /** Deletes empty space if necessary*/
+  protected void shrink() {
+    if(keys.length>1024 && numElements<threshold/8) {
+      resize(tableSizeFor(numElements*2,loadFactor));
+    }
+  }
+
+  /** Force to delete empty space*/
+  public void trim() {
+    int tableSize=tableSizeFor(numElements,loadFactor);
+    if(tableSize<keys.length) resize(tableSize);
+  }
+
+  /** Force to shrink the data to a specified length.
+   * Return true if the data is modified*/
+  public boolean trimToSize(int minSize) {
+    if(numElements<=minSize) {
+      int tableSize=tableSizeFor(minSize,loadFactor);
+      if(tableSize!=keys.length) resize(tableSize);
+      return true;
+    } else return false;
+  }
+
+  /** Returns the smallest power-of-two table that holds capacity elements*/
+  protected static int tableSizeFor(int capacity, float loadFactor) {
+    long needed=(long)Math.ceil(Math.max(capacity,2)/loadFactor)+1;
+    if(needed>1<<30) throw new IllegalArgumentException("capacity is too large: " + capacity);
+    return SloppyMath.nextPowerOfTwo((int)needed);
+  }
+
+  /** Returns the resize threshold, leaving at least one empty slot*/
+  protected static int thresholdFor(int tableSize, float loadFactor) {
+    return Math.min((int)(tableSize*loadFactor),tableSize-1);
+  }
+
+  // ----------- Wrapper methods -------------
+
+  /** Creates a new IntHashSet from initial values.*/
+  public static IntHashSet of(int... initial) {
+    IntHashSet result=new IntHashSet(initial.length);
+    for(int i : initial) result.add(i);
+    return(result);
+  }
+
+  /** Creates a new IntHashSet by copying the given set*/
+  public IntHashSet(IntHashSet copy) {
+    this.loadFactor=copy.loadFactor;
+    setTo(copy);
+  }
+
+  /** Creates a new IntHashSet by copying the given linear-scan set*/
+  public IntHashSet(IntSet copy) {
+    this(copy.size());
+    addAll(copy);
+  }
+
+  /** Creates a new IntHashSet by copying the given bit set*/
+  public IntHashSet(BitSet copy) {
+    this(copy.cardinality());
+    addAll(copy);
+  }
+
+  /** Creates a new IntHashSet*/
+  public IntHashSet() {
+    this(10);
+  }
+
+  /** Creates a new IntHashSet with an initial capacity*/
+  public IntHashSet(int capacity) {
+    this(capacity,DEFAULT_LOAD_FACTOR);
+  }
+
+  /** Creates a new IntHashSet with an initial capacity and a load factor*/
+  public IntHashSet(int capacity, float loadFactor) {
+    if(capacity<0) throw new IllegalArgumentException("capacity must be >= 0: " + capacity);
+    if(loadFactor<=0 || loadFactor>=1) throw new IllegalArgumentException("loadFactor must be in (0,1): " + loadFactor);
+    this.loadFactor=loadFactor;
+    clear(capacity);
+  }
+
+  /** Overwrites the current IntHashSet with the given one*/
+  public void setTo(IntHashSet copy) {
+    if(copy==this) return;
+    keys=copy.keys.clone();
+    hasZero=copy.hasZero;
+    numElements=copy.numElements;
+    mask=copy.mask;
+    threshold=thresholdFor(keys.length,loadFactor);
+    pollIndex=0;
+  }
+
+  /** Removes one element, returns TRUE if the set was modified*/
+  public boolean remove(int i) {
+    if(i==EMPTY) {
+      if(!hasZero) return false;
+      hasZero=false;
+      numElements--;
+      return true;
+    }
+    int pos=indexOf(i);
+    if(pos==-1) return false;
+    removeSlot(pos);
+    shrink();
+    return true;
+  }
+
+  /** Removes one element, returns TRUE if the set was modified*/
+  public boolean remove(long i) {
+    return(remove((int)i));
+  }
+
+  /** Removes all elements in c*/
+  public boolean removeAll(IntHashSet c) {
+    // Removing shifts the keys that c would iterate over
+    if(c==this) {
+      boolean result=!isEmpty();
+      clear();
+      return result;
+    }
+    boolean result=false;
+    if(c.hasZero) result|=remove(EMPTY);
+    for(int k : c.keys) {
+      if(k!=EMPTY) result|=remove(k);
+    }
+    return result;
+  }
+
+  /** Returns an array of the elements of this set
+   * NOTE: This will create a new array to protect underlying data*/
+  public int[] toArray() {
+    int[] result = new int[numElements];
+    int j=0;
+    if(hasZero) result[j++]=EMPTY;
+    for(int k : keys) {
+      if(k!=EMPTY) result[j++]=k;
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder res=new StringBuilder("[");
+    if(hasZero) res.append(EMPTY).append(", ");
+    for(int k : keys) {
+      if(k!=EMPTY) res.append(k).append(", ");
+    }
+    if(numElements>0) res.setLength(res.length()-2);
+    return res.append("]").toString();
+  }
+
+  public int size() {
+    return numElements;
+  }
+
+  /** Adds this element*/
+  public boolean add(long i) {
+    return(add((int)i));
+  }
+
+  /** Adds this element*/
+  public boolean add(Number e) {
+    return add(e.intValue());
+  }
+
+  /** Adds all elements*/
+  public boolean addAll(int[] c) {
+    boolean returnValue=false;
+    for(int i : c) returnValue|=add(i);
+    return(returnValue);
+  }
+
+  /** Adds all elements*/
+  public boolean addAll(IntHashSet s) {
+    boolean returnValue=false;
+    if(s.hasZero) returnValue|=add(EMPTY);
+    for(int k : s.keys) {
+      if(k!=EMPTY) returnValue|=add(k);
+    }
+    return(returnValue);
+  }
+
+  /** Adds all elements*/
+  public boolean addAll(IntSet s) {
+    boolean returnValue=false;
+    for(int index=0;index<=s.lastIndex;index++) {
+      if(s.isThere.get(index)) returnValue|=add(s.data[index]);
+    }
+    return(returnValue);
+  }
+
+  /** Adds all elements*/
+  public boolean addAll(BitSet s) {
+    boolean returnValue=false;
+    for(int i=s.nextSetBit(0);i>=0;i=s.nextSetBit(i+1)) {
+      returnValue|=add(i);
+    }
+    return(returnValue);
+  }
+
+  /** Adds all elements, kept for compatibility with IntSet */
+  public boolean addUnique(int[] c) {
+    return addAll(c);
+  }
+
+  /** Adds all elements, kept for compatibility with IntSet */
+  public boolean addUnique(IntHashSet s) {
+    return addAll(s);
+  }
+
+  /** Adds all elements, kept for compatibility with IntSet */
+  public boolean addUnique(BitSet s) {
+    return addAll(s);
+  }
+
+  /** Removes all elements of s from this set*/
+  public boolean removeAll(BitSet s) {
+    boolean returnValue=false;
+    for(int i=s.nextSetBit(0);i>=0;i=s.nextSetBit(i+1)) {
+      returnValue|=remove(i);
+    }
+    return(returnValue);
+  }
+
+  /** Removes all elements in c*/
+  public boolean removeAll(int[] c) {
+    boolean result=false;
+    for(int o : c) result|=remove(o);
+    return result;
+  }
+
+  /** Adds all elements of this set to s*/
+  public void addTo(BitSet s) {
+    if(hasZero) s.set(EMPTY);
+    for(int k : keys) {
+      if(k!=EMPTY) s.set(k);
+    }
+  }
+
+  /** Adds all elements, returns THIS*/
+  public IntHashSet enhancedBy(IntHashSet addMe) {
+    addAll(addMe);
+    return(this);
+  }
+
+  /** Adds addMe, returns THIS*/
+  public IntHashSet enhancedBy(int addMe) {
+    add(addMe);
+    return(this);
+  }
+
+  /** Removes the given elements, returns THIS*/
+  public IntHashSet shrunkBy(IntHashSet addMe) {
+    removeAll(addMe);
+    return(this);
+  }
+
+  /** Removes the given element, returns THIS*/
+  public IntHashSet shrunkBy(int addMe) {
+    remove(addMe);
+    return(this);
+  }
+
+  /** TRUE if the set contains i*/
+  public boolean contains(int i) {
+    if(i==EMPTY) return(hasZero);
+    return(indexOf(i)!=-1);
+  }
+
+  /** TRUE if the set contains i*/
+  public boolean contains(long i) {
+    return(contains((int)i));
+  }
+
+  /** TRUE if the set is empty*/
+  public boolean isEmpty() {
+    return numElements==0;
+  }
+
+  /** Removes all elements*/
+  public void clear() {
+    clear(10);
+  }
+
+  /** Compares the running time against the linear-scan IntSet*/
+  public static void main(String[] args) {
+    int n=args.length>0?Integer.parseInt(args[0]):50000;
+    java.util.Random random=new java.util.Random(42);
+    int[] values=new int[n];
+    for(int i=0;i<n;i++) values[i]=random.nextInt();
+
+    long start=System.nanoTime();
+    IntSet scan=new IntSet();
+    for(int v : values) scan.add(v);
+    int found=0;
+    for(int v : values) if(scan.contains(v)) found++;
+    long scanTime=System.nanoTime()-start;
+
+    start=System.nanoTime();
+    IntHashSet hash=new IntHashSet();
+    for(int v : values) hash.add(v);
+    int hashFound=0;
+    for(int v : values) if(hash.contains(v)) hashFound++;
+    long hashTime=System.nanoTime()-start;
+
+    System.out.println("IntSet:     " + (scanTime/1000000) + " ms, " + found + " found");
+    System.out.println("IntHashSet: " + (hashTime/1000000) + " ms, " + hashFound + " found");
+
+    hash.removeAll(hash);
+    System.out.println("IntHashSet: " + hash.size() + " left after removeAll(itself)");
+  }
+}
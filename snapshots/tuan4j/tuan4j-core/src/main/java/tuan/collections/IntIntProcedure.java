@@ -0,0 +1,8 @@
+package tuan.collections;
+
+/** A procedure that is called with each int-int entry of a {@link IntIntHashMap}. */
+public interface IntIntProcedure {
+
+	/** Visits one entry, returns false to stop the iteration. */
+	public boolean apply (int key, int value);
+}
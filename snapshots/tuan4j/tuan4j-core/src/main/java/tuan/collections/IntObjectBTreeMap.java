@@ -0,0 +1,713 @@
+package tuan.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/** This is an array-backed counterpart of {@link IntObjectTreeMap}: a B+-tree whose nodes keep
+ * their keys in primitive arrays, so that a node holds up to nodeCapacity entries in a few
+ * contiguous arrays instead of one entry object per key. Every inner node also keeps the
+ * number of entries below each child, hence select and rank take logarithmic time.
+ * The leaves are chained, so ordered and range traversals with a {@link Cursor} or with
+ * {@link #forEach(int, int, IntObjectProcedure)} do not allocate per element. Large sorted inputs
+ * should be loaded with {@link #fromSorted(int[], V[], int)}, which packs the
+ * leaves densely.
+ *
+ * The methods follow the conventions of {@link IntObjectTreeMap}: missing values are reported as
+ * null, and missing keys as Integer.MIN_VALUE (lower end) or Integer.MAX_VALUE (upper end).
+ *
+ * @author tuan
+ *
+ * @param <V>
+ */
+@SuppressWarnings("unchecked")
+public class IntObjectBTreeMap<V> {
+
+	/** Default maximal number of keys in a leaf and of children in an inner node */
+	public static final int DEFAULT_NODE_CAPACITY = 64;
+
+	// Base node: number of keys in a leaf, number of children in an inner node
+	abstract static class Node {
+		int size;
+	}
+
+	// Leaf node, chained to its neighbours
+	static final class Leaf extends Node {
+		final int[] keys;
+		final Object[] vals;
+		Leaf prev, next;
+
+		Leaf(int capacity) {
+			keys = new int[capacity];
+			vals = new Object[capacity];
+		}
+	}
+
+	// Inner node. keys[i] (i > 0) separates children[i-1] from children[i]: all keys in
+	// children[i-1] are smaller, all keys in children[i] are greater or equal. keys[0] is unused.
+	static final class Inner extends Node {
+		final int[] keys;
+		final Node[] children;
+		final int[] counts;
+
+		Inner(int capacity) {
+			keys = new int[capacity];
+			children = new Node[capacity];
+			counts = new int[capacity];
+		}
+	}
+
+	private final int nodeCapacity;
+	private final int minFill;
+
+	private Node root;
+	private Leaf firstLeaf, lastLeaf;
+	private int size;
+
+	// pseudo-return values of the recursive insertion and deletion
+	private int splitKey;
+	private boolean changed;
+	private V removedVal;
+
+	/** Creates an empty map with nodes of {@link #DEFAULT_NODE_CAPACITY} entries */
+	public IntObjectBTreeMap() {
+		this(DEFAULT_NODE_CAPACITY);
+	}
+
+	/** Creates an empty map with nodes of at most nodeCapacity entries */
+	public IntObjectBTreeMap(int nodeCapacity) {
+		if (nodeCapacity < 4) throw new IllegalArgumentException("nodeCapacity must be >= 4: " + nodeCapacity);
+		this.nodeCapacity = nodeCapacity;
+		this.minFill = nodeCapacity / 2;
+	}
+
+	/** Builds a map from keys in strictly ascending order and their values. The leaves
+	 * are filled up to nodeCapacity, so the map takes the least possible space. */
+	public static <V> IntObjectBTreeMap<V> fromSorted(int[] keys, V[] values, int length) {
+		return fromSorted(keys, values, length, DEFAULT_NODE_CAPACITY);
+	}
+
+	/** Builds a map from keys in strictly ascending order and their values. The leaves
+	 * are filled up to nodeCapacity, so the map takes the least possible space. */
+	public static <V> IntObjectBTreeMap<V> fromSorted(int[] keys, V[] values, int length, int nodeCapacity) {
+		IntObjectBTreeMap<V> map = new IntObjectBTreeMap<V>(nodeCapacity);
+		if (length == 0) return map;
+		for (int i = 1; i < length; i++) {
+			if (!(keys[i - 1] < keys[i])) throw new IllegalArgumentException(
+					"keys are not strictly ascending at position " + i);
+		}
+
+		// pack the leaves, spreading the entries evenly so that no leaf underflows
+		int numNodes = (length + nodeCapacity - 1) / nodeCapacity;
+		Node[] level = new Node[numNodes];
+		int[] levelKeys = new int[numNodes];
+		int[] levelCounts = new int[numNodes];
+		Leaf prev = null;
+		for (int n = 0, from = 0; n < numNodes; n++) {
+			int to = (int)((long)length * (n + 1) / numNodes);
+			Leaf leaf = new Leaf(nodeCapacity);
+			leaf.size = to - from;
+			System.arraycopy(keys, from, leaf.keys, 0, leaf.size);
+			System.arraycopy(values, from, leaf.vals, 0, leaf.size);
+			leaf.prev = prev;
+			if (prev != null) prev.next = leaf;
+			else map.firstLeaf = leaf;
+			prev = leaf;
+			level[n] = leaf;
+			levelKeys[n] = keys[from];
+			levelCounts[n] = leaf.size;
+			from = to;
+		}
+		map.lastLeaf = prev;
+
+		// stack the inner levels the same way
+		while (level.length > 1) {
+			int numParents = (level.length + nodeCapacity - 1) / nodeCapacity;
+			Node[] parents = new Node[numParents];
+			int[] parentKeys = new int[numParents];
+			int[] parentCounts = new int[numParents];
+			for (int n = 0, from = 0; n < numParents; n++) {
+				int to = (int)((long)level.length * (n + 1) / numParents);
+				Inner inner = new Inner(nodeCapacity);
+				inner.size = to - from;
+				System.arraycopy(level, from, inner.children, 0, inner.size);
+				System.arraycopy(levelKeys, from, inner.keys, 0, inner.size);
+				System.arraycopy(levelCounts, from, inner.counts, 0, inner.size);
+				int count = 0;
+				for (int i = 0; i < inner.size; i++) count += inner.counts[i];
+				parents[n] = inner;
+				parentKeys[n] = levelKeys[from];
+				parentCounts[n] = count;
+				from = to;
+			}
+			level = parents;
+			levelKeys = parentKeys;
+			levelCounts = parentCounts;
+		}
+		map.root = level[0];
+		map.size = length;
+		return map;
+	}
+
+	/** return number of key-value pairs in this symbol table */
+	public int size() {
+		return size;
+	}
+
+	/** check if current tree is empty */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Removes all mappings */
+	public void clear() {
+		root = null;
+		firstLeaf = lastLeaf = null;
+		size = 0;
+	}
+
+	/** value associated with the given key; null if no such key */
+	public V get(int key) {
+		if (root == null) return null;
+		Leaf leaf = findLeaf(key);
+		int pos = search(leaf.keys, leaf.size, key);
+		return (pos < 0) ? null : (V)leaf.vals[pos];
+	}
+
+	/** check if there is a key-value pair with the given key */
+	public boolean containsKey(int key) {
+		if (root == null) return false;
+		Leaf leaf = findLeaf(key);
+		return search(leaf.keys, leaf.size, key) >= 0;
+	}
+
+	/** insert the key-value pair; overwrite the old value with the new value
+	 * if the key is already present */
+	public void put(int key, V val) {
+		if (root == null) {
+			Leaf leaf = new Leaf(nodeCapacity);
+			leaf.keys[0] = key;
+			leaf.vals[0] = val;
+			leaf.size = 1;
+			root = firstLeaf = lastLeaf = leaf;
+			size = 1;
+			return;
+		}
+		changed = false;
+		Node right = insert(root, key, val);
+		if (changed) size++;
+		if (right != null) {
+			Inner newRoot = new Inner(nodeCapacity);
+			newRoot.children[0] = root;
+			newRoot.children[1] = right;
+			newRoot.keys[1] = splitKey;
+			newRoot.counts[1] = count(right);
+			newRoot.counts[0] = size - newRoot.counts[1];
+			newRoot.size = 2;
+			root = newRoot;
+		}
+	}
+
+	// inserts into the subtree rooted at x, returns the new right sibling of x if x was split
+	private Node insert(Node x, int key, V val) {
+		if (x instanceof Leaf) {
+			Leaf leaf = (Leaf)x;
+			int pos = search(leaf.keys, leaf.size, key);
+			if (pos >= 0) {
+				leaf.vals[pos] = val;
+				return null;
+			}
+			changed = true;
+			pos = -pos - 1;
+			if (leaf.size < nodeCapacity) {
+				insertAt(leaf, pos, key, val);
+				return null;
+			}
+			Leaf right = new Leaf(nodeCapacity);
+			int half = (nodeCapacity + 1) / 2;
+			right.size = leaf.size - half;
+			System.arraycopy(leaf.keys, half, right.keys, 0, right.size);
+			System.arraycopy(leaf.vals, half, right.vals, 0, right.size);
+			java.util.Arrays.fill(leaf.vals, half, leaf.size, null);
+			leaf.size = half;
+			right.next = leaf.next;
+			right.prev = leaf;
+			if (leaf.next != null) leaf.next.prev = right;
+			else lastLeaf = right;
+			leaf.next = right;
+			if (pos <= half) insertAt(leaf, pos, key, val);
+			else insertAt(right, pos - half, key, val);
+			splitKey = right.keys[0];
+			return right;
+		}
+
+		Inner inner = (Inner)x;
+		int i = route(inner, key);
+		Node child = insert(inner.children[i], key, val);
+		if (child == null) {
+			if (changed) inner.counts[i]++;
+			return null;
+		}
+		int childCount = count(child);
+		inner.counts[i] -= childCount - (changed ? 1 : 0);
+		if (inner.size < nodeCapacity) {
+			insertAt(inner, i + 1, splitKey, child, childCount);
+			return null;
+		}
+		Inner right = new Inner(nodeCapacity);
+		int half = (nodeCapacity + 1) / 2;
+		right.size = inner.size - half;
+		System.arraycopy(inner.keys, half, right.keys, 0, right.size);
+		System.arraycopy(inner.children, half, right.children, 0, right.size);
+		System.arraycopy(inner.counts, half, right.counts, 0, right.size);
+		java.util.Arrays.fill(inner.children, half, inner.size, null);
+		inner.size = half;
+		int childKey = splitKey;
+		if (i + 1 <= half) insertAt(inner, i + 1, childKey, child, childCount);
+		else insertAt(right, i + 1 - half, childKey, child, childCount);
+		splitKey = right.keys[0];
+		return right;
+	}
+
+	private void insertAt(Leaf leaf, int pos, int key, V val) {
+		System.arraycopy(leaf.keys, pos, leaf.keys, pos + 1, leaf.size - pos);
+		System.arraycopy(leaf.vals, pos, leaf.vals, pos + 1, leaf.size - pos);
+		leaf.keys[pos] = key;
+		leaf.vals[pos] = val;
+		leaf.size++;
+	}
+
+	private void insertAt(Inner inner, int pos, int key, Node child, int childCount) {
+		System.arraycopy(inner.keys, pos, inner.keys, pos + 1, inner.size - pos);
+		System.arraycopy(inner.children, pos, inner.children, pos + 1, inner.size - pos);
+		System.arraycopy(inner.counts, pos, inner.counts, pos + 1, inner.size - pos);
+		inner.keys[pos] = key;
+		inner.children[pos] = child;
+		inner.counts[pos] = childCount;
+		inner.size++;
+	}
+
+	/** Removes and returns a key-value mapping associated with the least key in
+	 * this map, or null if the map is empty. */
+	public Entry<V> pollFirstEntry() {
+		if (isEmpty()) return null;
+		int key = firstLeaf.keys[0];
+		return new Entry<V>(key, remove(key));
+	}
+
+	/** Removes and returns a key-value mapping associated with the greatest key in
+	 * this map, or null if the map is empty */
+	public Entry<V> pollLastEntry() {
+		if (isEmpty()) return null;
+		int key = lastLeaf.keys[lastLeaf.size - 1];
+		return new Entry<V>(key, remove(key));
+	}
+
+	/**
+	 * Removes the mapping for this key from this map if present.
+	 * @return the previous value associated with key, or null if there
+	 *  was no mapping for key. */
+	public V remove(int key) {
+		if (root == null) return null;
+		changed = false;
+		removedVal = null;
+		delete(root, key);
+		if (!changed) return null;
+		size--;
+		if (size == 0) clear();
+		else if (root instanceof Inner && root.size == 1) root = ((Inner)root).children[0];
+		return removedVal;
+	}
+
+	// deletes from the subtree rooted at x; the caller repairs x if it underflows
+	private void delete(Node x, int key) {
+		if (x instanceof Leaf) {
+			Leaf leaf = (Leaf)x;
+			int pos = search(leaf.keys, leaf.size, key);
+			if (pos < 0) return;
+			changed = true;
+			removedVal = (V)leaf.vals[pos];
+			System.arraycopy(leaf.keys, pos + 1, leaf.keys, pos, leaf.size - pos - 1);
+			System.arraycopy(leaf.vals, pos + 1, leaf.vals, pos, leaf.size - pos - 1);
+			leaf.size--;
+			leaf.vals[leaf.size] = null;
+			return;
+		}
+		Inner inner = (Inner)x;
+		int i = route(inner, key);
+		Node child = inner.children[i];
+		delete(child, key);
+		if (!changed) return;
+		inner.counts[i]--;
+		if (child.size < minFill) repair(inner, i);
+	}
+
+	// merges the underflowing child i with a neighbour, or borrows entries from it
+	private void repair(Inner parent, int i) {
+		int l = (i > 0) ? i - 1 : i;
+		int r = l + 1;
+		Node left = parent.children[l], right = parent.children[r];
+		if (left.size + right.size <= nodeCapacity) {
+			if (left instanceof Leaf) mergeLeaves((Leaf)left, (Leaf)right);
+			else mergeInners((Inner)left, (Inner)right, parent.keys[r]);
+			parent.counts[l] += parent.counts[r];
+			System.arraycopy(parent.keys, r + 1, parent.keys, r, parent.size - r - 1);
+			System.arraycopy(parent.children, r + 1, parent.children, r, parent.size - r - 1);
+			System.arraycopy(parent.counts, r + 1, parent.counts, r, parent.size - r - 1);
+			parent.size--;
+			parent.children[parent.size] = null;
+			return;
+		}
+		int moved;
+		if (left instanceof Leaf) {
+			moved = shiftLeaves((Leaf)left, (Leaf)right);
+			parent.keys[r] = ((Leaf)right).keys[0];
+		} else {
+			Inner li = (Inner)left, ri = (Inner)right;
+			moved = shiftInners(li, ri, parent.keys[r]);
+			parent.keys[r] = ri.keys[0];
+		}
+		parent.counts[l] -= moved;
+		parent.counts[r] += moved;
+	}
+
+	private void mergeLeaves(Leaf left, Leaf right) {
+		System.arraycopy(right.keys, 0, left.keys, left.size, right.size);
+		System.arraycopy(right.vals, 0, left.vals, left.size, right.size);
+		left.size += right.size;
+		left.next = right.next;
+		if (right.next != null) right.next.prev = left;
+		else lastLeaf = left;
+	}
+
+	private void mergeInners(Inner left, Inner right, int separator) {
+		right.keys[0] = separator;
+		System.arraycopy(right.keys, 0, left.keys, left.size, right.size);
+		System.arraycopy(right.children, 0, left.children, left.size, right.size);
+		System.arraycopy(right.counts, 0, left.counts, left.size, right.size);
+		left.size += right.size;
+	}
+
+	// evens out two neighbouring leaves, returns the number of entries moved from left to right
+	private int shiftLeaves(Leaf left, Leaf right) {
+		int total = left.size + right.size;
+		int k = left.size - total / 2;
+		if (k > 0) {
+			System.arraycopy(right.keys, 0, right.keys, k, right.size);
+			System.arraycopy(right.vals, 0, right.vals, k, right.size);
+			System.arraycopy(left.keys, left.size - k, right.keys, 0, k);
+			System.arraycopy(left.vals, left.size - k, right.vals, 0, k);
+			java.util.Arrays.fill(left.vals, left.size - k, left.size, null);
+		} else {
+			int m = -k;
+			System.arraycopy(right.keys, 0, left.keys, left.size, m);
+			System.arraycopy(right.vals, 0, left.vals, left.size, m);
+			System.arraycopy(right.keys, m, right.keys, 0, right.size - m);
+			System.arraycopy(right.vals, m, right.vals, 0, right.size - m);
+			java.util.Arrays.fill(right.vals, right.size - m, right.size, null);
+		}
+		left.size -= k;
+		right.size += k;
+		return k;
+	}
+
+	// evens out two neighbouring inner nodes, returns the number of entries moved from left to right
+	private int shiftInners(Inner left, Inner right, int separator) {
+		right.keys[0] = separator;
+		int total = left.size + right.size;
+		int k = left.size - total / 2;
+		int moved = 0;
+		if (k > 0) {
+			for (int j = left.size - k; j < left.size; j++) moved += left.counts[j];
+			System.arraycopy(right.keys, 0, right.keys, k, right.size);
+			System.arraycopy(right.children, 0, right.children, k, right.size);
+			System.arraycopy(right.counts, 0, right.counts, k, right.size);
+			System.arraycopy(left.keys, left.size - k, right.keys, 0, k);
+			System.arraycopy(left.children, left.size - k, right.children, 0, k);
+			System.arraycopy(left.counts, left.size - k, right.counts, 0, k);
+			java.util.Arrays.fill(left.children, left.size - k, left.size, null);
+		} else {
+			int m = -k;
+			for (int j = 0; j < m; j++) moved -= right.counts[j];
+			System.arraycopy(right.keys, 0, left.keys, left.size, m);
+			System.arraycopy(right.children, 0, left.children, left.size, m);
+			System.arraycopy(right.counts, 0, left.counts, left.size, m);
+			System.arraycopy(right.keys, m, right.keys, 0, right.size - m);
+			System.arraycopy(right.children, m, right.children, 0, right.size - m);
+			System.arraycopy(right.counts, m, right.counts, 0, right.size - m);
+			java.util.Arrays.fill(right.children, right.size - m, right.size, null);
+		}
+		left.size -= k;
+		right.size += k;
+		return moved;
+	}
+
+	/** return the height of tree; 0 if empty */
+	public int height() {
+		int h = 0;
+		for (Node x = root; x != null; h++) {
+			x = (x instanceof Inner) ? ((Inner)x).children[0] : null;
+		}
+		return h;
+	}
+
+	/** Returns the first (lowest) key currently in this map, or
+	 * Integer.MIN_VALUE if the tree is empty */
+	public int firstKey() {
+		if (isEmpty()) return Integer.MIN_VALUE;
+		return firstLeaf.keys[0];
+	}
+
+	/** Returns the last (highest) key currently in this map, or
+	 * Integer.MAX_VALUE if the tree is empty */
+	public int lastKey() {
+		if (isEmpty()) return Integer.MAX_VALUE;
+		return lastLeaf.keys[lastLeaf.size - 1];
+	}
+
+	/**  Returns the greatest key less than or equal to the given key,
+	 * or Integer.MIN_VALUE if there is no such key. */
+	public int floorKey(int key) {
+		if (root == null) return Integer.MIN_VALUE;
+		Leaf leaf = findLeaf(key);
+		int pos = search(leaf.keys, leaf.size, key);
+		if (pos >= 0) return key;
+		pos = -pos - 1;
+		if (pos > 0) return leaf.keys[pos - 1];
+		if (leaf.prev != null) return leaf.prev.keys[leaf.prev.size - 1];
+		return Integer.MIN_VALUE;
+	}
+
+	/** Returns the least key greater than or equal to the given key, or Integer.MAX_VALUE
+	 * if there is no such key. */
+	public int ceilingKey(int key) {
+		if (root == null) return Integer.MAX_VALUE;
+		Leaf leaf = findLeaf(key);
+		int pos = search(leaf.keys, leaf.size, key);
+		if (pos >= 0) return key;
+		pos = -pos - 1;
+		if (pos < leaf.size) return leaf.keys[pos];
+		if (leaf.next != null) return leaf.next.keys[0];
+		return Integer.MAX_VALUE;
+	}
+
+	/** the key of rank k
+	 * The value of Integer.MAX_VALUE indicates that
+	 * the current rank is negative, Integer.MIN_VALUE
+	 * indicates that the current rank is to high
+	 */
+	public int select(int k) {
+		if (k < 0)  return Integer.MAX_VALUE;
+		if (k >= size) return Integer.MIN_VALUE;
+		Node x = root;
+		while (x instanceof Inner) {
+			Inner inner = (Inner)x;
+			int i = 0;
+			while (k >= inner.counts[i]) k -= inner.counts[i++];
+			x = inner.children[i];
+		}
+		return ((Leaf)x).keys[k];
+	}
+
+	/** number of keys less than the given key */
+	public int rank(int key) {
+		if (root == null) return 0;
+		int rank = 0;
+		Node x = root;
+		while (x instanceof Inner) {
+			Inner inner = (Inner)x;
+			int i = route(inner, key);
+			for (int j = 0; j < i; j++) rank += inner.counts[j];
+			x = inner.children[i];
+		}
+		Leaf leaf = (Leaf)x;
+		int pos = search(leaf.keys, leaf.size, key);
+		return rank + ((pos >= 0) ? pos : -pos - 1);
+	}
+
+	/** number keys between lo and hi */
+	public int size(int lo, int hi) {
+		if (lo > hi) return 0;
+		if (containsKey(hi)) return rank(hi) - rank(lo) + 1;
+		else return rank(hi) - rank(lo);
+	}
+
+	/** return the key array of this map in ascending order */
+	public int[] keys() {
+		return keys(firstKey(), lastKey());
+	}
+
+	/** the keys between lo and hi, as a primitive array */
+	public int[] keys(int lo, int hi) {
+		IntArrayList queue = new IntArrayList(Math.max(size(lo, hi), 1));
+		Cursor<V> c = cursor(lo, hi);
+		while (c.advance()) queue.add(c.key);
+		return queue.toArray();
+	}
+
+	/** return the key array of this map in descending order */
+	public int[] descendingKeys() {
+		return descendingKeys(firstKey(), lastKey());
+	}
+
+	/** the keys between lo and hi, as a primitive array in
+	 * descending order */
+	public int[] descendingKeys(int lo, int hi) {
+		int[] keys = keys(lo, hi);
+		for (int i = 0, j = keys.length - 1; i < j; i++, j--) {
+			int tmp = keys[i];
+			keys[i] = keys[j];
+			keys[j] = tmp;
+		}
+		return keys;
+	}
+
+	/** Returns a Collection of the values contained in this map in ascending
+	 * order of the corresponding keys, or null if the tree is empty. Changes in the
+	 * collection are not reflected back into the map */
+	public Collection<V> values() {
+		if (root == null) return null;
+		ArrayList<V> res = new ArrayList<V>(size);
+		for (Leaf leaf = firstLeaf; leaf != null; leaf = leaf.next) {
+			for (int i = 0; i < leaf.size; i++) res.add((V)leaf.vals[i]);
+		}
+		return res;
+	}
+
+	/** Calls the procedure for every mapping with a key between lo and hi, in ascending
+	 * key order, until it returns false. Returns false if the iteration was stopped early.
+	 * The map must not be modified by the procedure. */
+	public boolean forEach(int lo, int hi, IntObjectProcedure<V> procedure) {
+		if (root == null || lo > hi) return true;
+		Leaf leaf = findLeaf(lo);
+		int pos = search(leaf.keys, leaf.size, lo);
+		if (pos < 0) pos = -pos - 1;
+		for (; leaf != null; leaf = leaf.next, pos = 0) {
+			for (; pos < leaf.size; pos++) {
+				if (leaf.keys[pos] > hi) return true;
+				if (!procedure.apply(leaf.keys[pos], (V)leaf.vals[pos])) return false;
+			}
+		}
+		return true;
+	}
+
+	/** Returns a new cursor over the mappings with keys between lo and hi */
+	public Cursor<V> cursor(int lo, int hi) {
+		Cursor<V> c = new Cursor<V>(this);
+		c.reset(lo, hi);
+		return c;
+	}
+
+	/** A cursor over the mappings of a key range in ascending key order. After
+	 * {@link #advance()} returned true, the current mapping is found in {@link #key} and
+	 * {@link #value}. A cursor can be moved to another range with {@link #reset}, so that
+	 * one instance serves any number of range scans without allocation. The map must not
+	 * be modified while a cursor is in use. */
+	public static final class Cursor<V> {
+		private final IntObjectBTreeMap<V> map;
+		private Leaf leaf;
+		private int pos;
+		private int hi;
+		public int key;
+		public V value;
+
+		public Cursor(IntObjectBTreeMap<V> map) {
+			this.map = map;
+		}
+
+		/** Positions the cursor before the first mapping with a key between lo and hi */
+		public void reset(int lo, int hi) {
+			this.hi = hi;
+			if (map.root == null || lo > hi) {
+				leaf = null;
+				return;
+			}
+			leaf = map.findLeaf(lo);
+			int p = search(leaf.keys, leaf.size, lo);
+			pos = ((p >= 0) ? p : -p - 1) - 1;
+		}
+
+		/** Moves to the next mapping, returns false if there is none */
+		public boolean advance() {
+			if (leaf == null) return false;
+			if (++pos >= leaf.size) {
+				leaf = leaf.next;
+				pos = 0;
+				if (leaf == null) return false;
+			}
+			if (leaf.keys[pos] > hi) {
+				leaf = null;
+				return false;
+			}
+			key = leaf.keys[pos];
+			value = (V)leaf.vals[pos];
+			return true;
+		}
+	}
+
+	/** A key-value mapping removed from the map */
+	public static final class Entry<V> {
+		private final int key;
+		private final V val;
+
+		Entry(int key, V val) {
+			this.key = key;
+			this.val = val;
+		}
+
+		public int getKey() {
+			return key;
+		}
+
+		public V getValue() {
+			return val;
+		}
+
+		@Override
+		public String toString() {
+			return key + "=" + val;
+		}
+	}
+
+	// the leaf whose key range contains the given key; the tree must not be empty
+	private Leaf findLeaf(int key) {
+		Node x = root;
+		while (x instanceof Inner) {
+			Inner inner = (Inner)x;
+			x = inner.children[route(inner, key)];
+		}
+		return (Leaf)x;
+	}
+
+	// the child of the inner node whose key range contains the given key
+	private static int route(Inner inner, int key) {
+		int lo = 1, hi = inner.size - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (inner.keys[mid] <= key) lo = mid + 1;
+			else hi = mid - 1;
+		}
+		return lo - 1;
+	}
+
+	// position of the key in the first n keys, or (-(insertion point) - 1)
+	private static int search(int[] keys, int n, int key) {
+		int lo = 0, hi = n - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int k = keys[mid];
+			if (k < key) lo = mid + 1;
+			else if (k > key) hi = mid - 1;
+			else return mid;
+		}
+		return -(lo + 1);
+	}
+
+	// number of mappings in the subtree rooted at x
+	private static int count(Node x) {
+		if (x instanceof Leaf) return x.size;
+		Inner inner = (Inner)x;
+		int count = 0;
+		for (int i = 0; i < inner.size; i++) count += inner.counts[i];
+		return count;
+	}
+}
@@ -33,7 +33,10 @@ import tuan.math.SloppyMath;
  * <br>
  * This map performs very fast get, containsKey, and remove (typically O(1), worst case O(log(n))). Put may be a bit slower,
  * depending on hash collisions. Load factors greater than 0.91 greatly increase the chances the map will have to rehash to the
- * next higher POT size.
+ * next higher POT size. <br>
+ * <br>
+ * The entries can be visited without allocating per entry, either with a {@link Cursor} or with
+ * {@link #forEach(IntObjectProcedure)}.
  * @author Nathan Sweet */
 
 public class IntObjectHashMap<V> {
@@ -501,6 +504,67 @@ public class IntObjectHashMap<V> {
 		 return (h ^ h >>> hashShift) & mask;
 	 }
 
+	/** Calls the procedure for every entry until it returns false. Returns false if the iteration was stopped early. The map
+	 * must not be modified by the procedure. */
+	public boolean forEach (IntObjectProcedure<V> procedure) {
+		if (hasZeroValue && !procedure.apply(0, zeroValue)) return false;
+		int[] keyTable = this.keyTable;
+		V[] valueTable = this.valueTable;
+		for (int i = 0, n = capacity + stashSize; i < n; i++) {
+			int key = keyTable[i];
+			if (key != EMPTY && !procedure.apply(key, valueTable[i])) return false;
+		}
+		return true;
+	}
+
+	/** Returns a new cursor positioned before the first entry. */
+	public Cursor<V> cursor () {
+		return new Cursor<V>(this);
+	}
+
+	/** A cursor over the entries of the map. After {@link #advance()} returned true, the current entry is found in {@link #key}
+	 * and {@link #value}. A cursor can be rewound with {@link #reset()}, so that one instance serves any number of iterations
+	 * without allocation. The map must not be modified while a cursor is in use. */
+	public static class Cursor<V> {
+		final IntObjectHashMap<V> map;
+		int index;
+		public int key;
+		public V value;
+
+		public Cursor (IntObjectHashMap<V> map) {
+			this.map = map;
+			reset();
+		}
+
+		/** Positions the cursor before the first entry again. */
+		public void reset () {
+			index = -2;
+		}
+
+		/** Moves to the next entry, returns false if there is none. */
+		public boolean advance () {
+			if (index == -2) {
+				index = -1;
+				if (map.hasZeroValue) {
+					key = 0;
+					value = map.zeroValue;
+					return true;
+				}
+			}
+			int[] keyTable = map.keyTable;
+			int n = map.capacity + map.stashSize;
+			while (++index < n) {
+				if (keyTable[index] != EMPTY) {
+					key = keyTable[index];
+					value = map.valueTable[index];
+					return true;
+				}
+			}
+			index = n;
+			return false;
+		}
+	}
+
 	 @Override
 	public String toString () {
 		 if (size == 0) return "[]";
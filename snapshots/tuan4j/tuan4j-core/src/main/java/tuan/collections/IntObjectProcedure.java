@@ -0,0 +1,8 @@
+package tuan.collections;
+
+/** A procedure that is called with each int-object entry of a {@link IntObjectHashMap}. */
+public interface IntObjectProcedure<V> {
+
+	/** Visits one entry, returns false to stop the iteration. */
+	public boolean apply (int key, V value);
+}
@@ -0,0 +1,8 @@
+package tuan.collections;
+
+/** A procedure that is called with each long-int entry of a {@link LongIntHashMap}. */
+public interface LongIntProcedure {
+
+	/** Visits one entry, returns false to stop the iteration. */
+	public boolean apply (long key, int value);
+}
@@ -0,0 +1,8 @@
+package tuan.collections;
+
+/** A procedure that is called with each long-long entry of a {@link LongLongHashMap}. */
+public interface LongLongProcedure {
+
+	/** Visits one entry, returns false to stop the iteration. */
+	public boolean apply (long key, long value);
+}
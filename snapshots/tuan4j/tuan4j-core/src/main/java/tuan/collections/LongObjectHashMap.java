@@ -0,0 +1,547 @@
+package tuan.collections;
+import java.util.Random;
+import tuan.math.SloppyMath;
+
+/**
+ * This map follows the design of {@link IntObjectHashMap}, which is redistributed from the project Kryo
+ * under license Apache 2.0. My big thanks to Nathan Sweet
+ * 
+ * More details are found at: http://kryo.googlecode.com
+ *
+ * An unordered map that uses long keys and object values. This implementation is a cuckoo hash map using 3 hashes, random walking,
+ * and a small stash for problematic keys. Null values are allowed. No allocation is done except when growing the table size. <br>
+ * <br>
+ * This map performs very fast get, containsKey, and remove (typically O(1), worst case O(log(n))). Put may be a bit slower,
+ * depending on hash collisions. Load factors greater than 0.91 greatly increase the chances the map will have to rehash to the
+ * next higher POT size. <br>
+ * <br>
+ * The entries can be visited without allocating per entry, either with a {@link Cursor} or with
+ * {@link #forEach(LongObjectProcedure)}. */
+
+public class LongObjectHashMap<V> {
+	private static final int PRIME1 = 0xbe1f14b1;
+	private static final int PRIME2 = 0xb4b82e39;
+	private static final int PRIME3 = 0xced1c241;
+	private static final long EMPTY = 0;
+
+	public int size;
+
+	long[] keyTable;
+	V[] valueTable;
+	int capacity, stashSize;
+	V zeroValue;
+	boolean hasZeroValue;
+
+	private float loadFactor;
+	private int hashShift, mask, threshold;
+	private int stashCapacity;
+	private int pushIterations;
+
+	private Random random = new Random();
+
+	/** Creates a new map with an initial capacity of 32 and a load factor of 0.8. This map will hold 25 items before growing the
+	 * backing table. */
+	public LongObjectHashMap () {
+		this(32, 0.8f);
+	}
+
+	/** Creates a new map with a load factor of 0.8. This map will hold initialCapacity * 0.8 items before growing the backing
+	 * table. */
+	public LongObjectHashMap (int initialCapacity) {
+		this(initialCapacity, 0.8f);
+	}
+
+	/** Creates a new map with the specified initial capacity and load factor. This map will hold initialCapacity * loadFactor items
+	 * before growing the backing table. */
+	public LongObjectHashMap (int initialCapacity, float loadFactor) {
+		if (initialCapacity < 0) throw new IllegalArgumentException("initialCapacity must be >= 0: " + initialCapacity);
+		if (initialCapacity > 1 << 30) throw new IllegalArgumentException("initialCapacity is too large: " + initialCapacity);
+		capacity = SloppyMath.nextPowerOfTwo(initialCapacity);
+
+		if (loadFactor <= 0) throw new IllegalArgumentException("loadFactor must be > 0: " + loadFactor);
+		this.loadFactor = loadFactor;
+
+		threshold = (int)(capacity * loadFactor);
+		mask = capacity - 1;
+		hashShift = 63 - Integer.numberOfTrailingZeros(capacity);
+		stashCapacity = Math.max(3, (int)Math.ceil(Math.log(capacity)) * 2);
+		pushIterations = Math.max(Math.min(capacity, 8), (int)Math.sqrt(capacity) / 8);
+
+		keyTable = new long[capacity + stashCapacity];
+		valueTable = (V[])new Object[keyTable.length];
+	}
+
+	public V put (long key, V value) {
+		if (key == 0) {
+			V oldValue = zeroValue;
+			zeroValue = value;
+			if (!hasZeroValue) {
+				hasZeroValue = true;
+				size++;
+			}
+			return oldValue;
+		}
+
+		long[] keyTable = this.keyTable;
+
+		// Check for existing keys.
+		int index1 = (int)(key & mask);
+		long key1 = keyTable[index1];
+		if (key1 == key) {
+			V oldValue = valueTable[index1];
+			valueTable[index1] = value;
+			return oldValue;
+		}
+
+		int index2 = hash2(key);
+		long key2 = keyTable[index2];
+		if (key2 == key) {
+			V oldValue = valueTable[index2];
+			valueTable[index2] = value;
+			return oldValue;
+		}
+
+		int index3 = hash3(key);
+		long key3 = keyTable[index3];
+		if (key3 == key) {
+			V oldValue = valueTable[index3];
+			valueTable[index3] = value;
+			return oldValue;
+		}
+
+		// Update key in the stash.
+		for (int i = capacity, n = i + stashSize; i < n; i++) {
+			if (key == keyTable[i]) {
+				V oldValue = valueTable[i];
+				valueTable[i] = value;
+				return oldValue;
+			}
+		}
+
+		// Check for empty buckets.
+		if (key1 == EMPTY) {
+			keyTable[index1] = key;
+			valueTable[index1] = value;
+			if (size++ >= threshold) resize(capacity << 1);
+			return null;
+		}
+
+		if (key2 == EMPTY) {
+			keyTable[index2] = key;
+			valueTable[index2] = value;
+			if (size++ >= threshold) resize(capacity << 1);
+			return null;
+		}
+
+		if (key3 == EMPTY) {
+			keyTable[index3] = key;
+			valueTable[index3] = value;
+			if (size++ >= threshold) resize(capacity << 1);
+			return null;
+		}
+
+		push(key, value, index1, key1, index2, key2, index3, key3);
+		return null;
+	}
+
+	/** Skips checks for existing keys. */
+	private void putResize (long key, V value) {
+		if (key == 0) {
+			zeroValue = value;
+			hasZeroValue = true;
+			return;
+		}
+
+		// Check for empty buckets.
+		int index1 = (int)(key & mask);
+		long key1 = keyTable[index1];
+		if (key1 == EMPTY) {
+			keyTable[index1] = key;
+			valueTable[index1] = value;
+			if (size++ >= threshold) resize(capacity << 1);
+			return;
+		}
+
+		int index2 = hash2(key);
+		long key2 = keyTable[index2];
+		if (key2 == EMPTY) {
+			keyTable[index2] = key;
+			valueTable[index2] = value;
+			if (size++ >= threshold) resize(capacity << 1);
+			return;
+		}
+
+		int index3 = hash3(key);
+		long key3 = keyTable[index3];
+		if (key3 == EMPTY) {
+			keyTable[index3] = key;
+			valueTable[index3] = value;
+			if (size++ >= threshold) resize(capacity << 1);
+			return;
+		}
+
+		push(key, value, index1, key1, index2, key2, index3, key3);
+	}
+
+	private void push (long insertKey, V insertValue, int index1, long key1, int index2, long key2, int index3, long key3) {
+		long[] keyTable = this.keyTable;
+		V[] valueTable = this.valueTable;
+		int mask = this.mask;
+
+		// Push keys until an empty bucket is found.
+		long evictedKey;
+		V evictedValue;
+		int i = 0, pushIterations = this.pushIterations;
+		do {
+			// Replace the key and value for one of the hashes.
+			switch (random.nextInt(3)) {
+			case 0:
+				evictedKey = key1;
+				evictedValue = valueTable[index1];
+				keyTable[index1] = insertKey;
+				valueTable[index1] = insertValue;
+				break;
+			case 1:
+				evictedKey = key2;
+				evictedValue = valueTable[index2];
+				keyTable[index2] = insertKey;
+				valueTable[index2] = insertValue;
+				break;
+			default:
+				evictedKey = key3;
+				evictedValue = valueTable[index3];
+				keyTable[index3] = insertKey;
+				valueTable[index3] = insertValue;
+				break;
+			}
+
+			// If the evicted key hashes to an empty bucket, put it there and stop.
+			index1 = (int)(evictedKey & mask);
+			key1 = keyTable[index1];
+			if (key1 == EMPTY) {
+				keyTable[index1] = evictedKey;
+				valueTable[index1] = evictedValue;
+				if (size++ >= threshold) resize(capacity << 1);
+				return;
+			}
+
+			index2 = hash2(evictedKey);
+			key2 = keyTable[index2];
+			if (key2 == EMPTY) {
+				keyTable[index2] = evictedKey;
+				valueTable[index2] = evictedValue;
+				if (size++ >= threshold) resize(capacity << 1);
+				return;
+			}
+
+			index3 = hash3(evictedKey);
+			key3 = keyTable[index3];
+			if (key3 == EMPTY) {
+				keyTable[index3] = evictedKey;
+				valueTable[index3] = evictedValue;
+				if (size++ >= threshold) resize(capacity << 1);
+				return;
+			}
+
+			if (++i == pushIterations) break;
+
+			insertKey = evictedKey;
+			insertValue = evictedValue;
+		} while (true);
+
+		putStash(evictedKey, evictedValue);
+	}
+
+	private void putStash (long key, V value) {
+		if (stashSize == stashCapacity) {
+			// Too many pushes occurred and the stash is full, increase the table size.
+			resize(capacity << 1);
+			put(key, value);
+			return;
+		}
+		// Store key in the stash.
+		int index = capacity + stashSize;
+		keyTable[index] = key;
+		valueTable[index] = value;
+		stashSize++;
+		size++;
+	}
+
+	/** Returns the index of the key in the table, or -1 if it is absent. The key must not be 0. */
+	private int locate (long key) {
+		int index = (int)(key & mask);
+		if (keyTable[index] != key) {
+			index = hash2(key);
+			if (keyTable[index] != key) {
+				index = hash3(key);
+				if (keyTable[index] != key) {
+					long[] keyTable = this.keyTable;
+					for (int i = capacity, n = i + stashSize; i < n; i++)
+						if (keyTable[i] == key) return i;
+					return -1;
+				}
+			}
+		}
+		return index;
+	}
+
+	public V get (long key) {
+		return get(key, null);
+	}
+
+	public V get (long key, V defaultValue) {
+		if (key == 0) return hasZeroValue ? zeroValue : defaultValue;
+		int index = (int)(key & mask);
+		if (keyTable[index] != key) {
+			index = hash2(key);
+			if (keyTable[index] != key) {
+				index = hash3(key);
+				if (keyTable[index] != key) return getStash(key, defaultValue);
+			}
+		}
+		return valueTable[index];
+	}
+
+	private V getStash (long key, V defaultValue) {
+		long[] keyTable = this.keyTable;
+		for (int i = capacity, n = i + stashSize; i < n; i++)
+			if (keyTable[i] == key) return valueTable[i];
+		return defaultValue;
+	}
+
+	public V remove (long key) {
+		return remove(key, null);
+	}
+
+	public V remove (long key, V defaultValue) {
+		if (key == 0) {
+			if (!hasZeroValue) return defaultValue;
+			V oldValue = zeroValue;
+			zeroValue = null;
+			hasZeroValue = false;
+			size--;
+			return oldValue;
+		}
+
+		int index = locate(key);
+		if (index < 0) return defaultValue;
+		V oldValue = valueTable[index];
+		if (index >= capacity)
+			removeStashIndex(index);
+		else {
+			keyTable[index] = EMPTY;
+			valueTable[index] = null;
+		}
+		size--;
+		return oldValue;
+	}
+
+	void removeStashIndex (int index) {
+		// If the removed location was not last, move the last tuple to the removed location.
+		stashSize--;
+		int lastIndex = capacity + stashSize;
+		if (index < lastIndex) {
+			keyTable[index] = keyTable[lastIndex];
+			valueTable[index] = valueTable[lastIndex];
+		}
+		keyTable[lastIndex] = EMPTY;
+		valueTable[lastIndex] = null;
+	}
+
+	public void clear () {
+		long[] keyTable = this.keyTable;
+		for (int i = capacity + stashSize; i-- > 0;)
+			keyTable[i] = EMPTY;
+		java.util.Arrays.fill(valueTable, null);
+		size = 0;
+		stashSize = 0;
+		zeroValue = null;
+		hasZeroValue = false;
+	}
+
+	/** Returns true if the specified value is in the map. Note this traverses the entire map and compares every value, which may be
+	 * an expensive operation.
+	 * @param identity If true, uses == to compare the specified value with values in the map. If false, uses
+	 *           {@link #equals(Object)}. */
+	public boolean containsValue (Object value, boolean identity) {
+		V[] valueTable = this.valueTable;
+		long[] keyTable = this.keyTable;
+		if (value == null) {
+			if (hasZeroValue && zeroValue == null) return true;
+			for (int i = capacity + stashSize; i-- > 0;)
+				if (keyTable[i] != EMPTY && valueTable[i] == null) return true;
+		} else if (identity) {
+			if (hasZeroValue && value == zeroValue) return true;
+			for (int i = capacity + stashSize; i-- > 0;)
+				if (keyTable[i] != EMPTY && valueTable[i] == value) return true;
+		} else {
+			if (hasZeroValue && value.equals(zeroValue)) return true;
+			for (int i = capacity + stashSize; i-- > 0;)
+				if (keyTable[i] != EMPTY && value.equals(valueTable[i])) return true;
+		}
+		return false;
+	}
+
+	public boolean containsKey (long key) {
+		if (key == 0) return hasZeroValue;
+		int index = (int)(key & mask);
+		if (keyTable[index] != key) {
+			index = hash2(key);
+			if (keyTable[index] != key) {
+				index = hash3(key);
+				if (keyTable[index] != key) return containsKeyStash(key);
+			}
+		}
+		return true;
+	}
+
+	private boolean containsKeyStash (long key) {
+		long[] keyTable = this.keyTable;
+		for (int i = capacity, n = i + stashSize; i < n; i++)
+			if (keyTable[i] == key) return true;
+		return false;
+	}
+
+	/** Returns the key for the specified value, or <tt>notFound</tt> if it is not in the map. Note this traverses the entire map
+	 * and compares every value, which may be an expensive operation.
+	 * @param identity If true, uses == to compare the specified value with values in the map. If false, uses
+	 *           {@link #equals(Object)}. */
+	public long findKey (Object value, boolean identity, long notFound) {
+		V[] valueTable = this.valueTable;
+		long[] keyTable = this.keyTable;
+		if (value == null) {
+			if (hasZeroValue && zeroValue == null) return 0;
+			for (int i = capacity + stashSize; i-- > 0;)
+				if (keyTable[i] != EMPTY && valueTable[i] == null) return keyTable[i];
+		} else if (identity) {
+			if (hasZeroValue && value == zeroValue) return 0;
+			for (int i = capacity + stashSize; i-- > 0;)
+				if (keyTable[i] != EMPTY && valueTable[i] == value) return keyTable[i];
+		} else {
+			if (hasZeroValue && value.equals(zeroValue)) return 0;
+			for (int i = capacity + stashSize; i-- > 0;)
+				if (keyTable[i] != EMPTY && value.equals(valueTable[i])) return keyTable[i];
+		}
+		return notFound;
+	}
+
+	/** Increases the size of the backing array to acommodate the specified number of additional items. Useful before adding many
+	 * items to avoid multiple backing array resizes. */
+	public void ensureCapacity (int additionalCapacity) {
+		int sizeNeeded = size + additionalCapacity;
+		if (sizeNeeded >= threshold) resize(SloppyMath.nextPowerOfTwo((int)(sizeNeeded / loadFactor)));
+	}
+
+	private void resize (int newSize) {
+		int oldEndIndex = capacity + stashSize;
+
+		capacity = newSize;
+		threshold = (int)(newSize * loadFactor);
+		mask = newSize - 1;
+		hashShift = 63 - Integer.numberOfTrailingZeros(newSize);
+		stashCapacity = Math.max(3, (int)Math.ceil(Math.log(newSize)) * 2);
+		pushIterations = Math.max(Math.min(newSize, 8), (int)Math.sqrt(newSize) / 8);
+
+		long[] oldKeyTable = keyTable;
+		V[] oldValueTable = valueTable;
+
+		keyTable = new long[newSize + stashCapacity];
+		valueTable = (V[])new Object[newSize + stashCapacity];
+
+		size = hasZeroValue ? 1 : 0;
+		stashSize = 0;
+		for (int i = 0; i < oldEndIndex; i++) {
+			long key = oldKeyTable[i];
+			if (key != EMPTY) putResize(key, oldValueTable[i]);
+		}
+	}
+
+	private int hash2 (long h) {
+		h *= PRIME2;
+		return (int)((h ^ h >>> hashShift) & mask);
+	}
+
+	private int hash3 (long h) {
+		h *= PRIME3;
+		return (int)((h ^ h >>> hashShift) & mask);
+	}
+
+	/** Calls the procedure for every entry until it returns false. Returns false if the iteration was stopped early. The map
+	 * must not be modified by the procedure. */
+	public boolean forEach (LongObjectProcedure<V> procedure) {
+		if (hasZeroValue && !procedure.apply(0, zeroValue)) return false;
+		long[] keyTable = this.keyTable;
+		V[] valueTable = this.valueTable;
+		for (int i = 0, n = capacity + stashSize; i < n; i++) {
+			long key = keyTable[i];
+			if (key != EMPTY && !procedure.apply(key, valueTable[i])) return false;
+		}
+		return true;
+	}
+
+	/** Returns a new cursor positioned before the first entry. */
+	public Cursor<V> cursor () {
+		return new Cursor<V>(this);
+	}
+
+	/** A cursor over the entries of the map. After {@link #advance()} returned true, the current entry is found in {@link #key}
+	 * and {@link #value}. A cursor can be rewound with {@link #reset()}, so that one instance serves any number of iterations
+	 * without allocation. The map must not be modified while a cursor is in use. */
+	public static class Cursor<V> {
+		final LongObjectHashMap<V> map;
+		int index;
+		public long key;
+		public V value;
+
+		public Cursor (LongObjectHashMap<V> map) {
+			this.map = map;
+			reset();
+		}
+
+		/** Positions the cursor before the first entry again. */
+		public void reset () {
+			index = -2;
+		}
+
+		/** Moves to the next entry, returns false if there is none. */
+		public boolean advance () {
+			if (index == -2) {
+				index = -1;
+				if (map.hasZeroValue) {
+					key = 0;
+					value = map.zeroValue;
+					return true;
+				}
+			}
+			long[] keyTable = map.keyTable;
+			int n = map.capacity + map.stashSize;
+			while (++index < n) {
+				if (keyTable[index] != EMPTY) {
+					key = keyTable[index];
+					value = map.valueTable[index];
+					return true;
+				}
+			}
+			index = n;
+			return false;
+		}
+	}
+
+	@Override
+	public String toString () {
+		if (size == 0) return "[]";
+		final StringBuilder buffer = new StringBuilder(32);
+		buffer.append('[');
+		forEach(new LongObjectProcedure<V>() {
+			public boolean apply (long key, V value) {
+				if (buffer.length() > 1) buffer.append(", ");
+				buffer.append(key);
+				buffer.append('=');
+				buffer.append(value);
+				return true;
+			}
+		});
+		buffer.append(']');
+		return buffer.toString();
+	}
+}
@@ -0,0 +1,8 @@
+package tuan.collections;
+
+/** A procedure that is called with each long-object entry of a {@link LongObjectHashMap}. */
+public interface LongObjectProcedure<V> {
+
+	/** Visits one entry, returns false to stop the iteration. */
+	public boolean apply (long key, V value);
+}
@@ -0,0 +1,859 @@
+/**
+ * ==================================
+ * Copyright (c) 2010 Max-Planck Institute for Informatics
+ * Database and Information Systems Department
+ * http://www.mpi-inf.mpg.de/departments/d5/index.html
+ *
+ * ==================================
+ *
+ * This source code is provided with AS IF - it does not guarantee the
+ * or compatibilities with older or newer version of third-parties. In any
+ * cases, if you have problems regarding using libraries delivered with
+ * the project, feel free to write to the above email. Also, we would like
+ * to get feedbacks from all of you
+ *
+ * Contact: Tuan Tran - ttran@mpi-inf.mpg.de
+ *
+ */
+package tuan.collections;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+This class implements a compressed bitmap of integers in the manner of Roaring bitmaps.
+The integers are split by their upper 16 bits into chunks, and each chunk is kept in the
+smallest of three containers: a sorted array of the lower 16 bits (up to 4096 elements),
+a bitmap of 2^16 bits, or a list of runs of consecutive integers (see runOptimize()).
+Sets of 3 or of 3 million integers thus both stay small, and and/or/andNot work
+chunk by chunk, on whole words for bitmaps.<BR>
+The integers are ordered as unsigned ints, so negative ones come after all others.<BR>
+serialize() writes the portable Roaring format, which other Roaring implementations read,
+and {@link ImmutableRoaringIntSet} reads it in place from a ByteBuffer.<BR>
+*/
+public class RoaringIntSet {
+  /** Cardinality up to which a chunk is kept in an array*/
+  static final int MAX_ARRAY=4096;
+  /** Cookies of the portable format, without and with run containers*/
+  static final int SERIAL_COOKIE_NO_RUN=12346;
+  static final int SERIAL_COOKIE=12347;
+  /** Number of containers from which the format with runs has an offset header*/
+  static final int NO_OFFSET_THRESHOLD=4;
+
+  /** Upper 16 bits of the chunks, sorted*/
+  protected char[] keys;
+  /** Containers of the chunks*/
+  protected Container[] containers;
+  /** Number of chunks*/
+  protected int numChunks=0;
+  /** Number of integers*/
+  protected int numElements=0;
+
+  /** Creates an empty set*/
+  public RoaringIntSet() {
+    keys=new char[4];
+    containers=new Container[4];
+  }
+
+  /** Creates a new set by copying the given one*/
+  public RoaringIntSet(RoaringIntSet copy) {
+    setTo(copy);
+  }
+
+  /** Creates a new set from initial values.*/
+  public static RoaringIntSet of(int... initial) {
+    RoaringIntSet result=new RoaringIntSet();
+    result.addAll(initial);
+    return(result);
+  }
+
+  /** Overwrites the current set with the given one*/
+  public void setTo(RoaringIntSet copy) {
+    if(copy==this) return;
+    keys=Arrays.copyOf(copy.keys,Math.max(4,copy.numChunks));
+    containers=new Container[keys.length];
+    for(int i=0;i<copy.numChunks;i++) containers[i]=copy.containers[i].copy();
+    numChunks=copy.numChunks;
+    numElements=copy.numElements;
+  }
+
+  public int size() {
+    return(numElements);
+  }
+
+  public boolean isEmpty() {
+    return(numElements==0);
+  }
+
+  public void clear() {
+    keys=new char[4];
+    containers=new Container[4];
+    numChunks=0;
+    numElements=0;
+  }
+
+  /** Returns the position of the chunk, or -(insertion point)-1*/
+  protected int chunk(char key) {
+    int low=0, high=numChunks-1;
+    while(low<=high) {
+      int mid=(low+high)>>>1;
+      char k=keys[mid];
+      if(k<key) low=mid+1;
+      else if(k>key) high=mid-1;
+      else return(mid);
+    }
+    return(-low-1);
+  }
+
+  public boolean contains(int v) {
+    int i=chunk((char)(v>>>16));
+    return(i>=0 && containers[i].contains((char)v));
+  }
+
+  /** Adds the element*/
+  public boolean add(int v) {
+    char key=(char)(v>>>16);
+    int i=chunk(key);
+    if(i<0) {
+      i=-i-1;
+      insertChunk(i,key,new ArrayContainer());
+    }
+    Container c=containers[i];
+    int card=c.cardinality();
+    containers[i]=c.add((char)v);
+    if(containers[i].cardinality()==card) return(false);
+    numElements++;
+    return(true);
+  }
+
+  /** Adds all elements*/
+  public boolean addAll(int[] c) {
+    boolean returnValue=false;
+    for(int i : c) returnValue|=add(i);
+    return(returnValue);
+  }
+
+  /** Removes one element, returns TRUE if the set was modified*/
+  public boolean remove(int v) {
+    int i=chunk((char)(v>>>16));
+    if(i<0) return(false);
+    Container c=containers[i];
+    int card=c.cardinality();
+    c=c.remove((char)v);
+    if(c.cardinality()==card) return(false);
+    numElements--;
+    if(c.cardinality()==0) removeChunk(i);
+    else containers[i]=c;
+    return(true);
+  }
+
+  protected void insertChunk(int i, char key, Container c) {
+    if(numChunks==keys.length) {
+      keys=Arrays.copyOf(keys,keys.length*2);
+      containers=Arrays.copyOf(containers,keys.length);
+    }
+    System.arraycopy(keys,i,keys,i+1,numChunks-i);
+    System.arraycopy(containers,i,containers,i+1,numChunks-i);
+    keys[i]=key;
+    containers[i]=c;
+    numChunks++;
+  }
+
+  protected void removeChunk(int i) {
+    System.arraycopy(keys,i+1,keys,i,numChunks-i-1);
+    System.arraycopy(containers,i+1,containers,i,numChunks-i-1);
+    containers[--numChunks]=null;
+  }
+
+  /** Appends a chunk with a key above all others, unless it is empty*/
+  protected void appendChunk(char key, Container c) {
+    if(c.cardinality()==0) return;
+    insertChunk(numChunks,key,c);
+    numElements+=c.cardinality();
+  }
+
+  /** Returns the elements in a new array, in unsigned order*/
+  public int[] toArray() {
+    int[] result=new int[numElements];
+    int pos=0;
+    for(int i=0;i<numChunks;i++) {
+      pos=containers[i].fill(keys[i]<<16,result,pos);
+    }
+    return(result);
+  }
+
+  @Override
+  public String toString() {
+    return(Arrays.toString(toArray()));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if(o==this) return(true);
+    if(!(o instanceof RoaringIntSet)) return(false);
+    RoaringIntSet s=(RoaringIntSet)o;
+    return(s.numElements==numElements && Arrays.equals(toArray(),s.toArray()));
+  }
+
+  @Override
+  public int hashCode() {
+    return(Arrays.hashCode(toArray()));
+  }
+
+  // ----------- Set operations -------------
+
+  /** Returns the intersection of a and b*/
+  public static RoaringIntSet and(RoaringIntSet a, RoaringIntSet b) {
+    RoaringIntSet result=new RoaringIntSet();
+    int i=0, j=0;
+    while(i<a.numChunks && j<b.numChunks) {
+      if(a.keys[i]<b.keys[j]) i++;
+      else if(a.keys[i]>b.keys[j]) j++;
+      else {
+        result.appendChunk(a.keys[i],a.containers[i].and(b.containers[j]));
+        i++;
+        j++;
+      }
+    }
+    return(result);
+  }
+
+  /** Returns the union of a and b*/
+  public static RoaringIntSet or(RoaringIntSet a, RoaringIntSet b) {
+    RoaringIntSet result=new RoaringIntSet();
+    int i=0, j=0;
+    while(i<a.numChunks || j<b.numChunks) {
+      if(j==b.numChunks || (i<a.numChunks && a.keys[i]<b.keys[j])) {
+        result.appendChunk(a.keys[i],a.containers[i].copy());
+        i++;
+      } else if(i==a.numChunks || a.keys[i]>b.keys[j]) {
+        result.appendChunk(b.keys[j],b.containers[j].copy());
+        j++;
+      } else {
+        result.appendChunk(a.keys[i],a.containers[i].or(b.containers[j]));
+        i++;
+        j++;
+      }
+    }
+    return(result);
+  }
+
+  /** Returns the elements of a that are not in b*/
+  public static RoaringIntSet andNot(RoaringIntSet a, RoaringIntSet b) {
+    RoaringIntSet result=new RoaringIntSet();
+    int i=0, j=0;
+    while(i<a.numChunks) {
+      if(j==b.numChunks || a.keys[i]<b.keys[j]) {
+        result.appendChunk(a.keys[i],a.containers[i].copy());
+        i++;
+      } else if(a.keys[i]>b.keys[j]) j++;
+      else {
+        result.appendChunk(a.keys[i],a.containers[i].andNot(b.containers[j]));
+        i++;
+        j++;
+      }
+    }
+    return(result);
+  }
+
+  /** Returns the size of the intersection of a and b, without building it*/
+  public static int andCardinality(RoaringIntSet a, RoaringIntSet b) {
+    int result=0;
+    int i=0, j=0;
+    while(i<a.numChunks && j<b.numChunks) {
+      if(a.keys[i]<b.keys[j]) i++;
+      else if(a.keys[i]>b.keys[j]) j++;
+      else result+=a.containers[i++].andCardinality(b.containers[j++]);
+    }
+    return(result);
+  }
+
+  /** Tells whether all elements of s are in this set*/
+  public boolean containsAll(RoaringIntSet s) {
+    return(andCardinality(this,s)==s.numElements);
+  }
+
+  /** Adds all elements of s, returns TRUE if the set was modified*/
+  public boolean addAll(RoaringIntSet s) {
+    int before=numElements;
+    setToResult(or(this,s));
+    return(numElements!=before);
+  }
+
+  /** Removes all elements of s, returns TRUE if the set was modified*/
+  public boolean removeAll(RoaringIntSet s) {
+    int before=numElements;
+    setToResult(andNot(this,s));
+    return(numElements!=before);
+  }
+
+  /** Keeps only the elements of s, returns TRUE if the set was modified*/
+  public boolean retainAll(RoaringIntSet s) {
+    int before=numElements;
+    setToResult(and(this,s));
+    return(numElements!=before);
+  }
+
+  private void setToResult(RoaringIntSet r) {
+    keys=r.keys;
+    containers=r.containers;
+    numChunks=r.numChunks;
+    numElements=r.numElements;
+  }
+
+  /** Turns the chunks into runs wherever that is smaller, returns TRUE if any was*/
+  public boolean runOptimize() {
+    boolean changed=false;
+    for(int i=0;i<numChunks;i++) {
+      Container c=containers[i];
+      if(c instanceof RunContainer) continue;
+      int runs=c.numberOfRuns();
+      if(RunContainer.bytes(runs)<c.serializedBytes()) {
+        containers[i]=RunContainer.of(c,runs);
+        changed=true;
+      }
+    }
+    return(changed);
+  }
+
+  /** Trims the arrays to their sizes*/
+  public void trim() {
+    keys=Arrays.copyOf(keys,Math.max(4,numChunks));
+    containers=Arrays.copyOf(containers,keys.length);
+    for(int i=0;i<numChunks;i++) containers[i].trim();
+  }
+
+  // ----------- Portable serialization -------------
+
+  protected boolean hasRun() {
+    for(int i=0;i<numChunks;i++) {
+      if(containers[i] instanceof RunContainer) return(true);
+    }
+    return(false);
+  }
+
+  /** Number of bytes serialize() writes*/
+  public int serializedSize() {
+    boolean hasRun=hasRun();
+    int size=hasRun ? 4+(numChunks+7)/8 : 8;
+    size+=4*numChunks;
+    if(!hasRun || numChunks>=NO_OFFSET_THRESHOLD) size+=4*numChunks;
+    for(int i=0;i<numChunks;i++) size+=containers[i].serializedBytes();
+    return(size);
+  }
+
+  /** Writes the set in the portable Roaring format, which is little-endian*/
+  public void serialize(DataOutput out) throws IOException {
+    boolean hasRun=hasRun();
+    int start;
+    if(hasRun) {
+      out.writeInt(Integer.reverseBytes(SERIAL_COOKIE | ((numChunks-1)<<16)));
+      byte[] runMarks=new byte[(numChunks+7)/8];
+      for(int i=0;i<numChunks;i++) {
+        if(containers[i] instanceof RunContainer) runMarks[i/8]|=1<<(i%8);
+      }
+      out.write(runMarks);
+      start=4+runMarks.length;
+    } else {
+      out.writeInt(Integer.reverseBytes(SERIAL_COOKIE_NO_RUN));
+      out.writeInt(Integer.reverseBytes(numChunks));
+      start=8;
+    }
+    for(int i=0;i<numChunks;i++) {
+      out.writeShort(Character.reverseBytes(keys[i]));
+      out.writeShort(Character.reverseBytes((char)(containers[i].cardinality()-1)));
+    }
+    start+=4*numChunks;
+    if(!hasRun || numChunks>=NO_OFFSET_THRESHOLD) {
+      int offset=start+4*numChunks;
+      for(int i=0;i<numChunks;i++) {
+        out.writeInt(Integer.reverseBytes(offset));
+        offset+=containers[i].serializedBytes();
+      }
+    }
+    for(int i=0;i<numChunks;i++) containers[i].serialize(out);
+  }
+
+  /** Replaces the content of this set by the one serialized in the portable format*/
+  public void deserialize(DataInput in) throws IOException {
+    int cookie=Integer.reverseBytes(in.readInt());
+    boolean hasRun=(cookie & 0xFFFF)==SERIAL_COOKIE;
+    int n;
+    byte[] runMarks=null;
+    if(hasRun) {
+      n=(cookie>>>16)+1;
+      runMarks=new byte[(n+7)/8];
+      in.readFully(runMarks);
+    } else if(cookie==SERIAL_COOKIE_NO_RUN) {
+      n=Integer.reverseBytes(in.readInt());
+    } else {
+      throw new IOException("Not a portable Roaring bitmap, cookie: "+cookie);
+    }
+    keys=new char[Math.max(4,n)];
+    containers=new Container[keys.length];
+    int[] cards=new int[n];
+    for(int i=0;i<n;i++) {
+      keys[i]=Character.reverseBytes(in.readChar());
+      cards[i]=Character.reverseBytes(in.readChar())+1;
+    }
+    if(!hasRun || n>=NO_OFFSET_THRESHOLD) {
+      for(int i=0;i<n;i++) in.readInt();
+    }
+    numChunks=n;
+    numElements=0;
+    for(int i=0;i<n;i++) {
+      Container c;
+      if(hasRun && (runMarks[i/8] & (1<<(i%8)))!=0) c=RunContainer.read(in);
+      else if(cards[i]<=MAX_ARRAY) c=ArrayContainer.read(in,cards[i]);
+      else c=BitmapContainer.read(in);
+      containers[i]=c;
+      numElements+=c.cardinality();
+    }
+  }
+
+  // ----------- Containers -------------
+
+  /** The lower 16 bits of the integers of a chunk*/
+  abstract static class Container {
+    abstract int cardinality();
+    abstract boolean contains(char x);
+    /** Adds x, returns the container that holds the result*/
+    abstract Container add(char x);
+    /** Removes x, returns the container that holds the result*/
+    abstract Container remove(char x);
+    /** Writes the integers high|x to dst from pos, returns the next position*/
+    abstract int fill(int high, int[] dst, int pos);
+    abstract Container copy();
+    abstract void trim();
+    abstract int numberOfRuns();
+    abstract int serializedBytes();
+    abstract void serialize(DataOutput out) throws IOException;
+
+    /** Returns this container as an array or a bitmap*/
+    Container plain() {
+      return(this);
+    }
+
+    Container and(Container o) {
+      Container a=plain(), b=o.plain();
+      if(a instanceof ArrayContainer) return(((ArrayContainer)a).filter(b,true));
+      if(b instanceof ArrayContainer) return(((ArrayContainer)b).filter(a,true));
+      return(((BitmapContainer)a).and((BitmapContainer)b));
+    }
+
+    Container or(Container o) {
+      Container a=plain(), b=o.plain();
+      if(a instanceof ArrayContainer && b instanceof ArrayContainer) {
+        return(((ArrayContainer)a).or((ArrayContainer)b));
+      }
+      BitmapContainer result=(a instanceof BitmapContainer) ? ((BitmapContainer)a).copy() : ((ArrayContainer)a).toBitmap();
+      result.orInPlace(b);
+      return(result);
+    }
+
+    Container andNot(Container o) {
+      Container a=plain(), b=o.plain();
+      if(a instanceof ArrayContainer) return(((ArrayContainer)a).filter(b,false));
+      BitmapContainer result=((BitmapContainer)a).copy();
+      result.andNotInPlace(b);
+      return(result.normalize());
+    }
+
+    int andCardinality(Container o) {
+      Container a=plain(), b=o.plain();
+      if(a instanceof ArrayContainer) return(((ArrayContainer)a).countIn(b));
+      if(b instanceof ArrayContainer) return(((ArrayContainer)b).countIn(a));
+      long[] x=((BitmapContainer)a).words, y=((BitmapContainer)b).words;
+      int result=0;
+      for(int i=0;i<BitmapContainer.WORDS;i++) result+=Long.bitCount(x[i] & y[i]);
+      return(result);
+    }
+  }
+
+  /** Up to MAX_ARRAY sorted values*/
+  static final class ArrayContainer extends Container {
+    char[] content;
+    int card;
+
+    ArrayContainer() {
+      this(new char[4],0);
+    }
+
+    ArrayContainer(char[] content, int card) {
+      this.content=content;
+      this.card=card;
+    }
+
+    static ArrayContainer read(DataInput in, int card) throws IOException {
+      char[] content=new char[card];
+      for(int i=0;i<card;i++) content[i]=Character.reverseBytes(in.readChar());
+      return(new ArrayContainer(content,card));
+    }
+
+    int cardinality() {
+      return(card);
+    }
+
+    boolean contains(char x) {
+      return(Arrays.binarySearch(content,0,card,x)>=0);
+    }
+
+    Container add(char x) {
+      int i=Arrays.binarySearch(content,0,card,x);
+      if(i>=0) return(this);
+      if(card==MAX_ARRAY) return(toBitmap().add(x));
+      i=-i-1;
+      if(card==content.length) content=Arrays.copyOf(content,Math.min(MAX_ARRAY,Math.max(4,card*2)));
+      System.arraycopy(content,i,content,i+1,card-i);
+      content[i]=x;
+      card++;
+      return(this);
+    }
+
+    Container remove(char x) {
+      int i=Arrays.binarySearch(content,0,card,x);
+      if(i<0) return(this);
+      System.arraycopy(content,i+1,content,i,card-i-1);
+      card--;
+      return(this);
+    }
+
+    int fill(int high, int[] dst, int pos) {
+      for(int i=0;i<card;i++) dst[pos++]=high | content[i];
+      return(pos);
+    }
+
+    ArrayContainer copy() {
+      return(new ArrayContainer(Arrays.copyOf(content,Math.max(1,card)),card));
+    }
+
+    void trim() {
+      content=Arrays.copyOf(content,card);
+    }
+
+    int numberOfRuns() {
+      int runs=0;
+      for(int i=0;i<card;i++) {
+        if(i==0 || content[i]!=content[i-1]+1) runs++;
+      }
+      return(runs);
+    }
+
+    int serializedBytes() {
+      return(2*card);
+    }
+
+    void serialize(DataOutput out) throws IOException {
+      for(int i=0;i<card;i++) out.writeShort(Character.reverseBytes(content[i]));
+    }
+
+    BitmapContainer toBitmap() {
+      BitmapContainer result=new BitmapContainer();
+      for(int i=0;i<card;i++) result.words[content[i]>>>6]|=1L<<content[i];
+      result.card=card;
+      return(result);
+    }
+
+    /** Keeps the values that are (keep) or are not (!keep) in o*/
+    ArrayContainer filter(Container o, boolean keep) {
+      char[] result=new char[Math.max(1,card)];
+      int n=0;
+      for(int i=0;i<card;i++) {
+        if(o.contains(content[i])==keep) result[n++]=content[i];
+      }
+      return(new ArrayContainer(result,n));
+    }
+
+    int countIn(Container o) {
+      int n=0;
+      for(int i=0;i<card;i++) {
+        if(o.contains(content[i])) n++;
+      }
+      return(n);
+    }
+
+    Container or(ArrayContainer o) {
+      if(card+o.card>MAX_ARRAY) {
+        BitmapContainer result=toBitmap();
+        result.orInPlace(o);
+        return(result);
+      }
+      char[] result=new char[Math.max(1,card+o.card)];
+      int i=0, j=0, n=0;
+      while(i<card || j<o.card) {
+        if(j==o.card || (i<card && content[i]<o.content[j])) result[n++]=content[i++];
+        else if(i==card || content[i]>o.content[j]) result[n++]=o.content[j++];
+        else {
+          result[n++]=content[i++];
+          j++;
+        }
+      }
+      return(new ArrayContainer(result,n));
+    }
+  }
+
+  /** 2^16 bits*/
+  static final class BitmapContainer extends Container {
+    static final int WORDS=1024;
+    long[] words;
+    int card;
+
+    BitmapContainer() {
+      this(new long[WORDS],0);
+    }
+
+    BitmapContainer(long[] words, int card) {
+      this.words=words;
+      this.card=card;
+    }
+
+    static BitmapContainer read(DataInput in) throws IOException {
+      long[] words=new long[WORDS];
+      int card=0;
+      for(int i=0;i<WORDS;i++) {
+        words[i]=Long.reverseBytes(in.readLong());
+        card+=Long.bitCount(words[i]);
+      }
+      return(new BitmapContainer(words,card));
+    }
+
+    int cardinality() {
+      return(card);
+    }
+
+    boolean contains(char x) {
+      return((words[x>>>6] & (1L<<x))!=0);
+    }
+
+    Container add(char x) {
+      long w=words[x>>>6];
+      long nw=w | (1L<<x);
+      if(nw!=w) {
+        words[x>>>6]=nw;
+        card++;
+      }
+      return(this);
+    }
+
+    Container remove(char x) {
+      long w=words[x>>>6];
+      long nw=w & ~(1L<<x);
+      if(nw==w) return(this);
+      words[x>>>6]=nw;
+      card--;
+      return(normalize());
+    }
+
+    /** Returns an array container if the cardinality allows it*/
+    Container normalize() {
+      if(card>MAX_ARRAY) return(this);
+      char[] content=new char[Math.max(1,card)];
+      int n=0;
+      for(int i=0;i<WORDS;i++) {
+        long w=words[i];
+        while(w!=0) {
+          content[n++]=(char)((i<<6)+Long.numberOfTrailingZeros(w));
+          w&=w-1;
+        }
+      }
+      return(new ArrayContainer(content,card));
+    }
+
+    int fill(int high, int[] dst, int pos) {
+      for(int i=0;i<WORDS;i++) {
+        long w=words[i];
+        while(w!=0) {
+          dst[pos++]=high | ((i<<6)+Long.numberOfTrailingZeros(w));
+          w&=w-1;
+        }
+      }
+      return(pos);
+    }
+
+    BitmapContainer copy() {
+      return(new BitmapContainer(words.clone(),card));
+    }
+
+    void trim() {
+    }
+
+    int numberOfRuns() {
+      int runs=0;
+      long previous=0;
+      for(int i=0;i<WORDS;i++) {
+        long w=words[i];
+        // a run starts at every set bit whose lower neighbour is clear
+        runs+=Long.bitCount(w & ~((w<<1) | (previous>>>63)));
+        previous=w;
+      }
+      return(runs);
+    }
+
+    int serializedBytes() {
+      return(8*WORDS);
+    }
+
+    void serialize(DataOutput out) throws IOException {
+      for(int i=0;i<WORDS;i++) out.writeLong(Long.reverseBytes(words[i]));
+    }
+
+    Container and(BitmapContainer o) {
+      long[] result=new long[WORDS];
+      int n=0;
+      for(int i=0;i<WORDS;i++) {
+        result[i]=words[i] & o.words[i];
+        n+=Long.bitCount(result[i]);
+      }
+      return(new BitmapContainer(result,n).normalize());
+    }
+
+    void orInPlace(Container o) {
+      if(o instanceof BitmapContainer) {
+        long[] x=((BitmapContainer)o).words;
+        int n=0;
+        for(int i=0;i<WORDS;i++) {
+          words[i]|=x[i];
+          n+=Long.bitCount(words[i]);
+        }
+        card=n;
+      } else {
+        ArrayContainer a=(ArrayContainer)o;
+        for(int i=0;i<a.card;i++) add(a.content[i]);
+      }
+    }
+
+    void andNotInPlace(Container o) {
+      if(o instanceof BitmapContainer) {
+        long[] x=((BitmapContainer)o).words;
+        int n=0;
+        for(int i=0;i<WORDS;i++) {
+          words[i]&=~x[i];
+          n+=Long.bitCount(words[i]);
+        }
+        card=n;
+      } else {
+        ArrayContainer a=(ArrayContainer)o;
+        for(int i=0;i<a.card;i++) {
+          char x=a.content[i];
+          long w=words[x>>>6];
+          if((w & (1L<<x))!=0) {
+            words[x>>>6]=w & ~(1L<<x);
+            card--;
+          }
+        }
+      }
+    }
+  }
+
+  /** Runs of consecutive values, as pairs of start and length-1*/
+  static final class RunContainer extends Container {
+    char[] runs;
+    int numRuns;
+    int card;
+
+    RunContainer(char[] runs, int numRuns) {
+      this.runs=runs;
+      this.numRuns=numRuns;
+      for(int i=0;i<numRuns;i++) card+=runs[2*i+1]+1;
+    }
+
+    static int bytes(int numRuns) {
+      return(2+4*numRuns);
+    }
+
+    /** Returns the runs of the given container, which has numRuns of them*/
+    static RunContainer of(Container c, int numRuns) {
+      int[] values=new int[c.cardinality()];
+      c.fill(0,values,0);
+      char[] runs=new char[2*numRuns];
+      int r=-1;
+      for(int i=0;i<values.length;i++) {
+        if(i==0 || values[i]!=values[i-1]+1) {
+          r++;
+          runs[2*r]=(char)values[i];
+        } else {
+          runs[2*r+1]++;
+        }
+      }
+      return(new RunContainer(runs,numRuns));
+    }
+
+    static RunContainer read(DataInput in) throws IOException {
+      int n=Character.reverseBytes(in.readChar());
+      char[] runs=new char[2*n];
+      for(int i=0;i<2*n;i++) runs[i]=Character.reverseBytes(in.readChar());
+      return(new RunContainer(runs,n));
+    }
+
+    int cardinality() {
+      return(card);
+    }
+
+    boolean contains(char x) {
+      int low=0, high=numRuns-1;
+      while(low<=high) {
+        int mid=(low+high)>>>1;
+        if(runs[2*mid]>x) high=mid-1;
+        else if(runs[2*mid]+runs[2*mid+1]<x) low=mid+1;
+        else return(true);
+      }
+      return(false);
+    }
+
+    Container add(char x) {
+      if(contains(x)) return(this);
+      return(plain().add(x));
+    }
+
+    Container remove(char x) {
+      if(!contains(x)) return(this);
+      return(plain().remove(x));
+    }
+
+    Container plain() {
+      Container result=card>MAX_ARRAY ? new BitmapContainer() : new ArrayContainer(new char[card],0);
+      if(result instanceof ArrayContainer) {
+        ArrayContainer a=(ArrayContainer)result;
+        for(int i=0;i<numRuns;i++) {
+          for(int v=runs[2*i];v<=runs[2*i]+runs[2*i+1];v++) a.content[a.card++]=(char)v;
+        }
+      } else {
+        BitmapContainer b=(BitmapContainer)result;
+        for(int i=0;i<numRuns;i++) {
+          for(int v=runs[2*i];v<=runs[2*i]+runs[2*i+1];v++) b.words[v>>>6]|=1L<<v;
+        }
+        b.card=card;
+      }
+      return(result);
+    }
+
+    int fill(int high, int[] dst, int pos) {
+      for(int i=0;i<numRuns;i++) {
+        for(int v=runs[2*i];v<=runs[2*i]+runs[2*i+1];v++) dst[pos++]=high | v;
+      }
+      return(pos);
+    }
+
+    RunContainer copy() {
+      return(new RunContainer(Arrays.copyOf(runs,2*numRuns),numRuns));
+    }
+
+    void trim() {
+      runs=Arrays.copyOf(runs,2*numRuns);
+    }
+
+    int numberOfRuns() {
+      return(numRuns);
+    }
+
+    int serializedBytes() {
+      return(bytes(numRuns));
+    }
+
+    void serialize(DataOutput out) throws IOException {
+      out.writeShort(Character.reverseBytes((char)numRuns));
+      for(int i=0;i<2*numRuns;i++) out.writeShort(Character.reverseBytes(runs[i]));
+    }
+  }
+}
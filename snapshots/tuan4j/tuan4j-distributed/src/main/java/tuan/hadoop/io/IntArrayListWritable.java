@@ -2,6 +2,8 @@ package tuan.hadoop.io;
 
 import java.util.Arrays;
 
+import org.apache.hadoop.io.WritableComparator;
+
 
 /**
  * This class tailors the two classes ArrayListOfInts and 
@@ -209,4 +211,9 @@ public class IntArrayListWritable extends IntListWritable {
 	public int[] toArray() {
 		return array;
 	}
+
+	static { // register this comparator
+		WritableComparator.define(IntArrayListWritable.class,
+				new IntListWritable.Comparator(IntArrayListWritable.class));
+	}
 }
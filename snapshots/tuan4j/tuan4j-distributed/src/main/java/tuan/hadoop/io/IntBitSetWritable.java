@@ -17,6 +17,10 @@
  */
 package tuan.hadoop.io;
 
+import java.util.Arrays;
+
+import org.apache.hadoop.io.WritableComparator;
+
 import tuan.collections.IntSet;
 
 
@@ -27,7 +31,7 @@ import tuan.collections.IntSet;
  */
 public class IntBitSetWritable extends IntSetWritable {
 
-	private transient IntSet data; 
+	private transient IntSet data = new IntSet();
 	
 	@Override
 	public boolean contains(int element) {
@@ -105,4 +109,29 @@ public class IntBitSetWritable extends IntSetWritable {
 		return data.toArray();
 	}
 
+	/** The elements in ascending order, whatever the order of the table */
+	private int[] sorted() {
+		int[] items = toArray();
+		Arrays.sort(items);
+		return items;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (!(obj instanceof IntBitSetWritable)) return false;
+		return Arrays.equals(sorted(), ((IntBitSetWritable) obj).sorted());
+	}
+
+	/** Hash of the sorted elements, so that it is the same for equal sets on every task */
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(sorted());
+	}
+
+
+	static { // register this comparator
+		WritableComparator.define(IntBitSetWritable.class,
+				new IntSetWritable.Comparator(IntBitSetWritable.class));
+	}
 }
@@ -0,0 +1,407 @@
+package tuan.hadoop.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Compact wire format for arrays of ints, used by the list and set writables.
+ * An array is written as a format byte, its length as a varint, and the values:
+ * <ul>
+ * <li><tt>VARINT</tt>: each value as a zig-zag varint, so that small negative
+ * values are short too</li>
+ * <li><tt>DELTA</tt>: for non-decreasing arrays (sorted ids), the first value
+ * as a zig-zag varint and then the gaps between neighbours as varints</li>
+ * <li><tt>PACKED</tt> and <tt>DELTA_PACKED</tt>: the same numbers in blocks of
+ * {@value #BLOCK_SIZE}, each block being a byte with the bit width of its
+ * largest number followed by all numbers bit-packed with that width</li>
+ * </ul>
+ * The format bytes have their high bit set, while the old format (a 4-byte
+ * length followed by 4-byte values) starts with the high byte of a
+ * non-negative length, which never has it. {@link #readHeader(DataInput)}
+ * recognizes both, so SequenceFiles written before keep being readable.
+ * <p>
+ * An instance keeps a small scratch buffer for the bit-packed blocks, and
+ * is not thread-safe.
+ *
+ * @author tuan
+ *
+ */
+public class IntCodec {
+
+	/** 4-byte length and 4-byte values */
+	public static final int LEGACY = 0;
+	public static final int VARINT = 0x80;
+	public static final int DELTA = 0x81;
+	public static final int PACKED = 0x82;
+	public static final int DELTA_PACKED = 0x83;
+
+	private static final int DELTA_FLAG = 1;
+	private static final int PACKED_FLAG = 2;
+
+	/** number of values in a bit-packed block */
+	public static final int BLOCK_SIZE = 128;
+
+	private byte[] block;
+	private int format;
+
+	/**
+	 * Writes len values of a starting at off, in the most compact of the
+	 * formats
+	 */
+	public void write(DataOutput out, int[] a, int off, int len)
+			throws IOException {
+		write(out, a, off, len, chooseFormat(a, off, len));
+	}
+
+	/** Writes len values of a starting at off in the given format */
+	public void write(DataOutput out, int[] a, int off, int len, int format)
+			throws IOException {
+		if (format == LEGACY) {
+			out.writeInt(len);
+			for (int i = off; i < off + len; i++) {
+				out.writeInt(a[i]);
+			}
+			return;
+		}
+		checkFormat(format);
+		boolean delta = (format & DELTA_FLAG) != 0;
+		out.writeByte(format);
+		writeVInt(out, len);
+		if ((format & PACKED_FLAG) == 0) {
+			for (int i = 0; i < len; i++) {
+				writeVInt(out, number(a, off, i, delta));
+			}
+			return;
+		}
+		byte[] buf = block();
+		for (int start = 0; start < len; start += BLOCK_SIZE) {
+			int end = Math.min(len, start + BLOCK_SIZE);
+			int bits = blockBits(a, off, start, end, delta);
+			long acc = 0;
+			int accBits = 0;
+			int p = 0;
+			for (int i = start; i < end; i++) {
+				acc |= (number(a, off, i, delta) & 0xFFFFFFFFL) << accBits;
+				accBits += bits;
+				while (accBits >= 8) {
+					buf[p++] = (byte) acc;
+					acc >>>= 8;
+					accBits -= 8;
+				}
+			}
+			if (accBits > 0) {
+				buf[p++] = (byte) acc;
+			}
+			out.writeByte(bits);
+			out.write(buf, 0, p);
+		}
+	}
+
+	/**
+	 * Reads the format and the length of an array, in the old format or in
+	 * one of the new ones. The values are read by
+	 * {@link #readValues(DataInput, int[], int, int)} next.
+	 *
+	 * @return the length of the array
+	 */
+	public int readHeader(DataInput in) throws IOException {
+		int first = in.readUnsignedByte();
+		if ((first & 0x80) == 0) {
+			format = LEGACY;
+			return (first << 24) | (in.readUnsignedByte() << 16)
+					| in.readUnsignedShort();
+		}
+		format = first;
+		checkFormat(format);
+		return readVInt(in);
+	}
+
+	/** The format of the last array whose header was read */
+	public int format() {
+		return format;
+	}
+
+	/**
+	 * Reads the len values of the array whose header was just read into
+	 * dst, starting at off
+	 */
+	public void readValues(DataInput in, int[] dst, int off, int len)
+			throws IOException {
+		if (format == LEGACY) {
+			for (int i = off; i < off + len; i++) {
+				dst[i] = in.readInt();
+			}
+			return;
+		}
+		boolean delta = (format & DELTA_FLAG) != 0;
+		if ((format & PACKED_FLAG) == 0) {
+			for (int i = 0; i < len; i++) {
+				dst[off + i] = readVInt(in);
+			}
+		} else {
+			byte[] buf = block();
+			for (int start = 0; start < len; start += BLOCK_SIZE) {
+				int end = Math.min(len, start + BLOCK_SIZE);
+				int bits = in.readUnsignedByte();
+				if (bits > 32) {
+					throw new IOException("Corrupt block with " + bits + " bits");
+				}
+				in.readFully(buf, 0, ((end - start) * bits + 7) / 8);
+				long mask = (1L << bits) - 1;
+				long acc = 0;
+				int accBits = 0;
+				int p = 0;
+				for (int i = start; i < end; i++) {
+					while (accBits < bits) {
+						acc |= (buf[p++] & 0xFFL) << accBits;
+						accBits += 8;
+					}
+					dst[off + i] = (int) (acc & mask);
+					acc >>>= bits;
+					accBits -= bits;
+				}
+			}
+		}
+		if (len > 0) {
+			dst[off] = zigZagDecode(dst[off]);
+			for (int i = off + 1; i < off + len; i++) {
+				dst[i] = delta ? dst[i - 1] + dst[i] : zigZagDecode(dst[i]);
+			}
+		}
+	}
+
+	/**
+	 * Picks <tt>DELTA</tt> for non-decreasing arrays, and the bit-packed
+	 * variant when it is smaller than the varints
+	 */
+	public static int chooseFormat(int[] a, int off, int len) {
+		boolean delta = true;
+		for (int i = off + 1; i < off + len && delta; i++) {
+			delta = a[i] >= a[i - 1];
+		}
+		int format = delta ? DELTA : VARINT;
+		if (len >= BLOCK_SIZE) {
+			long varintBytes = 0, packedBytes = 0;
+			for (int start = 0; start < len; start += BLOCK_SIZE) {
+				int end = Math.min(len, start + BLOCK_SIZE);
+				for (int i = start; i < end; i++) {
+					varintBytes += sizeOfVInt(number(a, off, i, delta));
+				}
+				packedBytes += 1 + ((end - start) * blockBits(a, off, start, end,
+						delta) + 7) / 8;
+			}
+			if (packedBytes < varintBytes) {
+				format |= PACKED_FLAG;
+			}
+		}
+		return format;
+	}
+
+	/** The i-th number to write: a gap, or a zig-zag encoded value */
+	private static int number(int[] a, int off, int i, boolean delta) {
+		if (delta && i > 0) {
+			return a[off + i] - a[off + i - 1];
+		}
+		return zigZagEncode(a[off + i]);
+	}
+
+	private static int blockBits(int[] a, int off, int start, int end,
+			boolean delta) {
+		int or = 0;
+		for (int i = start; i < end; i++) {
+			or |= number(a, off, i, delta);
+		}
+		return 32 - Integer.numberOfLeadingZeros(or);
+	}
+
+	private static void checkFormat(int format) throws IOException {
+		if (format < VARINT || format > DELTA_PACKED) {
+			throw new IOException("Unknown int array format: " + format);
+		}
+	}
+
+	private byte[] block() {
+		if (block == null) {
+			block = new byte[BLOCK_SIZE * 4];
+		}
+		return block;
+	}
+
+	/** Maps signed ints to unsigned ones, so that small magnitudes stay small */
+	public static int zigZagEncode(int i) {
+		return (i << 1) ^ (i >> 31);
+	}
+
+	public static int zigZagDecode(int i) {
+		return (i >>> 1) ^ -(i & 1);
+	}
+
+	/** Writes i as an unsigned varint of 1 to 5 bytes, 7 bits per byte */
+	public static void writeVInt(DataOutput out, int i) throws IOException {
+		while ((i & ~0x7F) != 0) {
+			out.writeByte((i & 0x7F) | 0x80);
+			i >>>= 7;
+		}
+		out.writeByte(i);
+	}
+
+	public static int readVInt(DataInput in) throws IOException {
+		int result = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			result |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/** Returns the number of bytes of an unsigned varint */
+	public static int sizeOfVInt(int i) {
+		int size = 1;
+		while ((i & ~0x7F) != 0) {
+			size++;
+			i >>>= 7;
+		}
+		return size;
+	}
+
+	/**
+	 * Compares two serialized arrays lexicographically as signed ints, a
+	 * prefix coming first, without deserializing them.
+	 *
+	 * @param legacyStride bytes per value in the old format, see
+	 *            {@link Cursor#reset(byte[], int, int)}
+	 */
+	public static int compareArrays(byte[] b1, int s1, byte[] b2, int s2,
+			int legacyStride) {
+		Cursor[] c = CURSORS.get();
+		Cursor c1 = c[0].reset(b1, s1, legacyStride);
+		Cursor c2 = c[1].reset(b2, s2, legacyStride);
+		while (c1.hasNext() && c2.hasNext()) {
+			int v1 = c1.next();
+			int v2 = c2.next();
+			if (v1 != v2) {
+				return (v1 < v2) ? -1 : 1;
+			}
+		}
+		return c1.hasNext() ? 1 : (c2.hasNext() ? -1 : 0);
+	}
+
+	private static final ThreadLocal<Cursor[]> CURSORS = new ThreadLocal<Cursor[]>() {
+		@Override
+		protected Cursor[] initialValue() {
+			return new Cursor[] { new Cursor(), new Cursor() };
+		}
+	};
+
+	private static int readInt(byte[] b, int start) {
+		return ((b[start] & 0xFF) << 24) | ((b[start + 1] & 0xFF) << 16)
+				| ((b[start + 2] & 0xFF) << 8) | (b[start + 3] & 0xFF);
+	}
+
+	/**
+	 * Reads the values of a serialized array one at a time, straight from
+	 * the bytes, as the raw comparators do. A cursor can be reset to read
+	 * any number of arrays.
+	 */
+	public static final class Cursor {
+		private byte[] b;
+		private int pos;
+		private int format;
+		private int legacyStride;
+		private int remaining;
+		private boolean first;
+		private int previous;
+
+		// state of the current bit-packed block
+		private int bits;
+		private int blockLeft;
+		private long acc;
+		private int accBits;
+
+		/** Starts reading the array serialized at b[start] */
+		public Cursor reset(byte[] b, int start) {
+			return reset(b, start, 4);
+		}
+
+		/**
+		 * Starts reading the array serialized at b[start]. In the old format
+		 * each value takes legacyStride bytes, the int coming first: 8 when
+		 * a float follows each index.
+		 */
+		public Cursor reset(byte[] b, int start, int legacyStride) {
+			this.b = b;
+			this.legacyStride = legacyStride;
+			format = b[start] & 0xFF;
+			if ((format & 0x80) == 0) {
+				format = LEGACY;
+				remaining = readInt(b, start);
+				pos = start + 4;
+			} else {
+				pos = start + 1;
+				remaining = readVInt();
+			}
+			first = true;
+			blockLeft = 0;
+			return this;
+		}
+
+		/** The number of values left */
+		public int remaining() {
+			return remaining;
+		}
+
+		public boolean hasNext() {
+			return remaining > 0;
+		}
+
+		public int next() {
+			remaining--;
+			if (format == LEGACY) {
+				int v = readInt(b, pos);
+				pos += legacyStride;
+				return v;
+			}
+			int n;
+			if ((format & PACKED_FLAG) == 0) {
+				n = readVInt();
+			} else {
+				if (blockLeft == 0) {
+					bits = b[pos++] & 0xFF;
+					blockLeft = BLOCK_SIZE;
+					acc = 0;
+					accBits = 0;
+				}
+				while (accBits < bits) {
+					acc |= (b[pos++] & 0xFFL) << accBits;
+					accBits += 8;
+				}
+				n = (int) (acc & ((1L << bits) - 1));
+				acc >>>= bits;
+				accBits -= bits;
+				blockLeft--;
+			}
+			if (first || (format & DELTA_FLAG) == 0) {
+				first = false;
+				previous = zigZagDecode(n);
+			} else {
+				previous += n;
+			}
+			return previous;
+		}
+
+		private int readVInt() {
+			int result = 0;
+			for (int shift = 0; ; shift += 7) {
+				int v = b[pos++];
+				result |= (v & 0x7F) << shift;
+				if ((v & 0x80) == 0) {
+					return result;
+				}
+			}
+		}
+	}
+}
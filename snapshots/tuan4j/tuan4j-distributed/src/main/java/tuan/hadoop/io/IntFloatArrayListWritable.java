@@ -19,6 +19,8 @@ package tuan.hadoop.io;
 
 import java.util.Arrays;
 
+import org.apache.hadoop.io.WritableComparator;
+
 import tuan.core.NotImplementedException;
 
 /**
@@ -33,9 +35,6 @@ public class IntFloatArrayListWritable extends IntFloatListWritable {
 	private int[] indices;
 	private float[] contents;
 
-	// current size of the arrays
-	private int size;
-
 	public IntFloatArrayListWritable() {
 		indices = new int[DEFAULT_CAPACITY];
 		contents = new float[DEFAULT_CAPACITY];
@@ -236,4 +235,9 @@ public class IntFloatArrayListWritable extends IntFloatListWritable {
 		}
 		return sb.toString();
 	}
+
+	static { // register this comparator
+		WritableComparator.define(IntFloatArrayListWritable.class,
+				new IntFloatListWritable.Comparator(IntFloatArrayListWritable.class));
+	}
 }
@@ -21,6 +21,8 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import org.apache.hadoop.io.WritableComparator;
+
 /**
  * This class extends the basic java.util.List to make it writable in Hadoop
  * setting. It also supports a tuple type (integer index, float content) as
@@ -36,6 +38,9 @@ public abstract class IntFloatListWritable extends
 	protected static final int DEFAULT_CAPACITY = 10;
 	protected static final float LOAD_FACTOR = 1.5f;
 
+	/** Encoder and decoder of the indices */
+	private transient IntCodec codec;
+
 	/**
 	 * Returns <tt>true</tt> if this list contains the input element.
 	 *
@@ -204,30 +209,51 @@ public abstract class IntFloatListWritable extends
 		}
 	}
 	
+	private IntCodec codec() {
+		if (codec == null) {
+			codec = new IntCodec();
+		}
+		return codec;
+	}
+
 	/**
-	 * Deserializes this object.
+	 * Deserializes this object into the arrays returned by {@link #indices()}
+	 * and {@link #contents()}. The old format, where each index is followed
+	 * by its content, is still read.
 	 *
 	 * @param in source for raw byte representation
 	 */
 	public void readFields(DataInput in) throws IOException {
-		this.clear();
-		int size = in.readInt();
-		for (int i = 0; i < size; i++) {
-			add(i, in.readInt(), in.readFloat());
+		IntCodec codec = codec();
+		int size = codec.readHeader(in);
+		setSize(size);
+		int[] indices = indices();
+		float[] contents = contents();
+		if (codec.format() == IntCodec.LEGACY) {
+			for (int i = 0; i < size; i++) {
+				indices[i] = in.readInt();
+				contents[i] = in.readFloat();
+			}
+		} else {
+			codec.readValues(in, indices, 0, size);
+			for (int i = 0; i < size; i++) {
+				contents[i] = in.readFloat();
+			}
 		}
 	}
 
 	/**
-	 * Serializes this object.
+	 * Serializes this object: the indices in the most compact format of
+	 * {@link IntCodec}, then the contents.
 	 *
 	 * @param out	where to write the raw byte representation
 	 */
 	public void write(DataOutput out) throws IOException {
 		int size = size();
-		out.writeInt(size);
+		codec().write(out, indices(), 0, size);
+		float[] contents = contents();
 		for (int i = 0; i < size; i++) {
-			out.writeInt(getIndex(i));
-			out.writeFloat(getContent(i));
+			out.writeFloat(contents[i]);
 		}
 	}
 	
@@ -248,4 +274,38 @@ public abstract class IntFloatListWritable extends
 		s.append("]");
 		return s.toString();
 	}
+
+	/**
+	 * Comparator that orders serialized lists like {@link IntFloatListWritable#compareTo}, by
+	 * their indices, which are decoded one by one from the bytes with no list
+	 * being deserialized.
+	 */
+	public static class Comparator extends WritableComparator {
+
+		/**
+		 * Creates a new Comparator for <code>IntFloatArrayListWritable</code>.
+		 */
+		public Comparator() {
+			this(IntFloatArrayListWritable.class);
+		}
+
+		/**
+		 * Creates a new Comparator for the given implementation.
+		 */
+		public Comparator(Class<? extends IntFloatListWritable> keyClass) {
+			super(keyClass);
+		}
+
+		/**
+		 * Optimization hook.
+		 */
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			// in the old format, a float follows each index
+			return IntCodec.compareArrays(b1, s1, b2, s2, 8);
+		}
+	}
+
+	static { // register this comparator
+		WritableComparator.define(IntFloatListWritable.class, new Comparator());
+	}
 }
@@ -21,6 +21,8 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import org.apache.hadoop.io.WritableComparator;
+
 /**
  * This class extends the Java ArrayList to be writable in Hadoop setting.
  * It is an abstract extension, i.e. no data structure for the 
@@ -32,6 +34,9 @@ public abstract class IntListWritable extends ListWritable<IntListWritable> {
 
 	/** Cached sum hash */
 	private int sum;
+
+	/** Encoder and decoder of the elements */
+	private transient IntCodec codec;
 	
 	protected void resetHash() {
 		sum = -1;
@@ -176,29 +181,45 @@ public abstract class IntListWritable extends ListWritable<IntListWritable> {
 	public abstract int[] toArray();
 
 	/**
-	 * Deserializes this object.
+	 * Resizes the list to the given length and returns the array that
+	 * backs it, so that it can be filled in place. Subclasses whose
+	 * {@link #toArray()} does not return the backing array have to
+	 * override it.
+	 */
+	protected int[] backingArray(int length) {
+		setSize(length);
+		return toArray();
+	}
+
+	private IntCodec codec() {
+		if (codec == null) {
+			codec = new IntCodec();
+		}
+		return codec;
+	}
+
+	/**
+	 * Deserializes this object. Both the compact formats of {@link IntCodec}
+	 * and the old one of a 4-byte size and 4-byte elements are read.
 	 *
 	 * @param in source for raw byte representation
 	 */
 	public void readFields(DataInput in) throws IOException {
-		this.clear();
-		int size = in.readInt();
-		for (int i = 0; i < size; i++) {
-			add(i, in.readInt());
-		}
+		IntCodec codec = codec();
+		int size = codec.readHeader(in);
+		codec.readValues(in, backingArray(size), 0, size);
+		resetHash();
 	}
 
 	/**
-	 * Serializes this object.
+	 * Serializes this object in the most compact format of {@link IntCodec}:
+	 * delta-encoded if the list is sorted, bit-packed if it is long enough
+	 * to pay off.
 	 *
 	 * @param out	where to write the raw byte representation
 	 */
 	public void write(DataOutput out) throws IOException {
-		int size = size();
-		out.writeInt(size);
-		for (int i = 0; i < size; i++) {
-			out.writeInt(get(i));
-		}
+		codec().write(out, toArray(), 0, size());
 	}
 
 	@Override
@@ -246,4 +267,37 @@ public abstract class IntListWritable extends ListWritable<IntListWritable> {
 		}
 		return sum;
 	}
+
+	/**
+	 * Comparator that orders serialized lists like {@link IntListWritable#compareTo}, by
+	 * decoding their elements one by one from the bytes, with no list being
+	 * deserialized.
+	 */
+	public static class Comparator extends WritableComparator {
+
+		/**
+		 * Creates a new Comparator for <code>IntArrayListWritable</code>.
+		 */
+		public Comparator() {
+			this(IntArrayListWritable.class);
+		}
+
+		/**
+		 * Creates a new Comparator for the given implementation.
+		 */
+		public Comparator(Class<? extends IntListWritable> keyClass) {
+			super(keyClass);
+		}
+
+		/**
+		 * Optimization hook.
+		 */
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			return IntCodec.compareArrays(b1, s1, b2, s2, 4);
+		}
+	}
+
+	static { // register this comparator
+		WritableComparator.define(IntListWritable.class, new Comparator());
+	}
 }
@@ -20,6 +20,9 @@ package tuan.hadoop.io;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.WritableComparator;
 
 /**
  * @author tuan
@@ -27,6 +30,12 @@ import java.io.IOException;
  */
 public abstract class IntSetWritable extends SetWritable<IntSetWritable> {
 
+	/** Encoder and decoder of the elements */
+	private transient IntCodec codec;
+
+	/** Elements read by the last readFields() */
+	private transient int[] buffer;
+
 	public abstract boolean contains(int element);
 	
 	public abstract boolean containsAll(IntSetWritable subSet);
@@ -41,50 +50,69 @@ public abstract class IntSetWritable extends SetWritable<IntSetWritable> {
 	
 	public abstract boolean retainAll(IntSetWritable subSet);
 	
+	/** Returns the elements in a new array */
 	public abstract int[] toArray();
 	
-	@Override
 	/**
 	 * This is counter-intuitive when one tries to compare two sets. 
-	 * However, since this is necessary in Hadoop, we will provide a naive
-	 * measure based on hashcodes of the elements
+	 * However, since this is necessary in Hadoop, we compare the sorted
+	 * elements of the sets lexicographically, which is the order of their
+	 * serialized forms, so that only equal sets compare as 0 and are
+	 * grouped together.
 	 * 
 	 */
+	@Override
 	public int compareTo(IntSetWritable set2) {
 		int[] theseItems = toArray();
 		int[] thoseItems = set2.toArray();
-		int thisHashcode = 0, thatHashcode = 0;
-		for (int i : theseItems) thisHashcode += i;
-		for (int i : thoseItems) thatHashcode += i;
-		if (thisHashcode > thatHashcode) return 1;
-		else if (thisHashcode == thatHashcode) return 0;
-		else return -1;
+		Arrays.sort(theseItems);
+		Arrays.sort(thoseItems);
+		int n = Math.min(theseItems.length, thoseItems.length);
+		for (int i = 0; i < n; i++) {
+			if (theseItems[i] != thoseItems[i]) {
+				return (theseItems[i] < thoseItems[i]) ? -1 : 1;
+			}
+		}
+		if (theseItems.length == thoseItems.length) return 0;
+		else return (theseItems.length < thoseItems.length) ? -1 : 1;
 	}
 	
+	private IntCodec codec() {
+		if (codec == null) {
+			codec = new IntCodec();
+		}
+		return codec;
+	}
+
 	/**
-	 * Deserializes this object.
+	 * Deserializes this object. Both the compact formats of {@link IntCodec}
+	 * and the old one of a 4-byte size and 4-byte elements are read.
 	 *
 	 * @param in source for raw byte representation
 	 */
 	public void readFields(DataInput in) throws IOException {
 		clear();
-		int size = in.readInt();
+		IntCodec codec = codec();
+		int size = codec.readHeader(in);
+		if (buffer == null || buffer.length < size) {
+			buffer = new int[size];
+		}
+		codec.readValues(in, buffer, 0, size);
 		for (int i = 0; i < size; i++) {
-			add(in.readInt());
+			add(buffer[i]);
 		}
 	}
 
 	/**
-	 * Serializes this object.
+	 * Serializes this object. The elements are sorted, so that they can be
+	 * delta-encoded by {@link IntCodec}.
 	 *
 	 * @param out	where to write the raw byte representation
 	 */
 	public void write(DataOutput out) throws IOException {		
 		int[] elems = toArray();
-		out.writeInt(elems.length);
-		for (int i = 0; i < elems.length; i++) {
-			out.writeInt(elems[i]);
-		}
+		Arrays.sort(elems);
+		codec().write(out, elems, 0, elems.length);
 	}
 	
 	@Override
@@ -100,4 +128,39 @@ public abstract class IntSetWritable extends SetWritable<IntSetWritable> {
 		s.append("]");
 		return s.toString();
 	}
+
+	/**
+	 * Comparator that orders serialized sets like
+	 * {@link IntSetWritable#compareTo}, by decoding their sorted elements one
+	 * by one from the bytes, with no set being deserialized. Sets in the old
+	 * format were not written sorted, and are compared in the order they
+	 * were written.
+	 */
+	public static class Comparator extends WritableComparator {
+
+		/**
+		 * Creates a new Comparator for <code>IntBitSetWritable</code>.
+		 */
+		public Comparator() {
+			this(IntBitSetWritable.class);
+		}
+
+		/**
+		 * Creates a new Comparator for the given implementation.
+		 */
+		public Comparator(Class<? extends IntSetWritable> keyClass) {
+			super(keyClass);
+		}
+
+		/**
+		 * Optimization hook.
+		 */
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			return IntCodec.compareArrays(b1, s1, b2, s2, 4);
+		}
+	}
+
+	static { // register this comparator
+		WritableComparator.define(IntSetWritable.class, new Comparator());
+	}
 }
@@ -112,17 +112,17 @@ private long i1, i2, i3;
 		/**
 		 * Optimization hook.
 		 */
-		public long compare(byte[] b1, int s1, long l1, byte[] b2, int s2, long l2) {
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
 			long thisi1 = readLong(b1, s1);
 			long thati1 = readLong(b2, s2);
 
 			if (thisi1 == thati1) {
-				long thisi2 = readLong(b1, s1 + 4);
-				long thati2 = readLong(b2, s2 + 4);
+				long thisi2 = readLong(b1, s1 + 8);
+				long thati2 = readLong(b2, s2 + 8);
 
 				if (thisi2 == thati2) {
-					long thisi3 = readLong(b1, s1 + 8);
-					long thati3 = readLong(b2, s2 + 8);
+					long thisi3 = readLong(b1, s1 + 16);
+					long thati3 = readLong(b2, s2 + 16);
 					
 					return (thisi3 < thati3 ? -1 : (thisi3 == thati3 ? 0 : 1));
 				}
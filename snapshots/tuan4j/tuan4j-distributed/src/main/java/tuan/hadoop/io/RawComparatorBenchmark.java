@@ -0,0 +1,129 @@
+package tuan.hadoop.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.hadoop.io.WritableComparator;
+
+/**
+ * Measures the sort phase of a shuffle on list and set keys: the keys are
+ * serialized into one buffer, as in the map output buffer, and their
+ * offsets are sorted once with the registered raw comparator and once by
+ * deserializing both keys of every comparison, which is what Hadoop does
+ * when no raw comparator is registered.
+ * <p>
+ * Usage: RawComparatorBenchmark [keys] [elements per key] [rounds]
+ *
+ * @author tuan
+ *
+ */
+public class RawComparatorBenchmark {
+
+	private final byte[] buffer;
+	private final Integer[] offsets;
+
+	private RawComparatorBenchmark(CollectionWritable<?>[] keys)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		offsets = new Integer[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			offsets[i] = out.size();
+			keys[i].write(out);
+		}
+		out.close();
+		buffer = bytes.toByteArray();
+	}
+
+	/** Sorts the offsets with the raw comparator, returns the time in ms */
+	private long sortRaw(final WritableComparator comparator) {
+		Integer[] order = offsets.clone();
+		long start = System.nanoTime();
+		Arrays.sort(order, new java.util.Comparator<Integer>() {
+			public int compare(Integer o1, Integer o2) {
+				return comparator.compare(buffer, o1, 0, buffer, o2, 0);
+			}
+		});
+		return (System.nanoTime() - start) / 1000000;
+	}
+
+	/** Sorts the offsets by deserializing the keys, returns the time in ms */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private long sortDeserialized(final CollectionWritable k1,
+			final CollectionWritable k2) {
+		Integer[] order = offsets.clone();
+		long start = System.nanoTime();
+		Arrays.sort(order, new java.util.Comparator<Integer>() {
+			public int compare(Integer o1, Integer o2) {
+				try {
+					k1.readFields(new DataInputStream(new ByteArrayInputStream(
+							buffer, o1, buffer.length - o1)));
+					k2.readFields(new DataInputStream(new ByteArrayInputStream(
+							buffer, o2, buffer.length - o2)));
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+				return k1.compareTo(k2);
+			}
+		});
+		return (System.nanoTime() - start) / 1000000;
+	}
+
+	public static void main(String[] args) throws IOException {
+		int n = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+		int elements = (args.length > 1) ? Integer.parseInt(args[1]) : 50;
+		int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+		Random random = new Random(0);
+
+		// sorted page ids with a few common prefixes, so that comparisons
+		// have to look past the first elements
+		IntArrayListWritable[] lists = new IntArrayListWritable[n];
+		IntBitSetWritable[] sets = new IntBitSetWritable[n];
+		RoaringIntSetWritable[] roaringSets = new RoaringIntSetWritable[n];
+		for (int i = 0; i < n; i++) {
+			int[] ids = new int[1 + random.nextInt(elements)];
+			int id = random.nextInt(16);
+			for (int j = 0; j < ids.length; j++) {
+				ids[j] = id;
+				id += 1 + random.nextInt(j < 2 ? 2 : 100000);
+			}
+			lists[i] = new IntArrayListWritable(ids);
+			sets[i] = new IntBitSetWritable();
+			for (int j = 0; j < ids.length; j++) {
+				sets[i].add(ids[j]);
+			}
+			roaringSets[i] = new RoaringIntSetWritable(ids);
+		}
+
+		RawComparatorBenchmark listBench = new RawComparatorBenchmark(lists);
+		RawComparatorBenchmark setBench = new RawComparatorBenchmark(sets);
+		RawComparatorBenchmark roaringBench =
+				new RawComparatorBenchmark(roaringSets);
+		WritableComparator listComparator =
+				WritableComparator.get(IntArrayListWritable.class);
+		WritableComparator setComparator =
+				WritableComparator.get(IntBitSetWritable.class);
+		WritableComparator roaringComparator =
+				WritableComparator.get(RoaringIntSetWritable.class);
+		System.out.println(n + " keys of up to " + elements + " elements");
+		for (int r = 0; r < rounds; r++) {
+			System.out.println("IntArrayListWritable: raw "
+					+ listBench.sortRaw(listComparator) + " ms, deserialized "
+					+ listBench.sortDeserialized(new IntArrayListWritable(),
+							new IntArrayListWritable()) + " ms");
+			System.out.println("IntBitSetWritable:    raw "
+					+ setBench.sortRaw(setComparator) + " ms, deserialized "
+					+ setBench.sortDeserialized(new IntBitSetWritable(),
+							new IntBitSetWritable()) + " ms");
+			System.out.println("RoaringIntSetWritable: raw "
+					+ roaringBench.sortRaw(roaringComparator) + " ms, deserialized "
+					+ roaringBench.sortDeserialized(new RoaringIntSetWritable(),
+							new RoaringIntSetWritable()) + " ms");
+		}
+	}
+}
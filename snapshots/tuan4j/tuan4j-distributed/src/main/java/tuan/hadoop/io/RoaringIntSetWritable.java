@@ -0,0 +1,251 @@
+package tuan.hadoop.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.apache.hadoop.io.WritableComparator;
+
+import tuan.collections.ImmutableRoaringIntSet;
+import tuan.collections.RoaringIntSet;
+
+/**
+ * A set of ints kept in a {@link RoaringIntSet}, a compressed bitmap that
+ * stays small for sparse and dense sets alike, and whose set operations
+ * work on whole containers when both sides are roaring sets. It is
+ * serialized in the portable Roaring format, which other Roaring libraries
+ * read as is, so this format is not the one of {@link IntSetWritable#write}.
+ * The containers are written as they are: call {@link #runOptimize()} first
+ * to write runs of consecutive ids as run containers.
+ * The registered comparator orders the sets like
+ * {@link IntSetWritable#compareTo}, reading the bytes in place with
+ * {@link ImmutableRoaringIntSet}.
+ *
+ * @author tuan
+ *
+ */
+public class RoaringIntSetWritable extends IntSetWritable {
+
+	private transient RoaringIntSet data = new RoaringIntSet();
+
+	public RoaringIntSetWritable() {
+	}
+
+	public RoaringIntSetWritable(int... elements) {
+		data.addAll(elements);
+		data.runOptimize();
+		size = data.size();
+	}
+
+	/** The set behind this writable; call sync() after changing it */
+	public RoaringIntSet get() {
+		return data;
+	}
+
+	/** Updates the size after the set of {@link #get()} was changed */
+	public void sync() {
+		size = data.size();
+	}
+
+	@Override
+	public boolean contains(int element) {
+		return data.contains(element);
+	}
+
+	@Override
+	public boolean containsAll(IntSetWritable subSet) {
+		if (subSet instanceof RoaringIntSetWritable) {
+			return data.containsAll(((RoaringIntSetWritable) subSet).data);
+		}
+		for (int i : subSet.toArray()) {
+			if (!data.contains(i)) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean add(int element) {
+		boolean result = data.add(element);
+		size = data.size();
+		return result;
+	}
+
+	@Override
+	public boolean addAll(IntSetWritable subSet) {
+		boolean result = (subSet instanceof RoaringIntSetWritable)
+				? data.addAll(((RoaringIntSetWritable) subSet).data)
+				: data.addAll(subSet.toArray());
+		size = data.size();
+		return result;
+	}
+
+	@Override
+	public boolean remove(int element) {
+		boolean result = data.remove(element);
+		size = data.size();
+		return result;
+	}
+
+	@Override
+	public boolean removeAll(IntSetWritable subSet) {
+		boolean result = data.removeAll(roaring(subSet));
+		size = data.size();
+		return result;
+	}
+
+	@Override
+	public boolean retainAll(IntSetWritable subSet) {
+		boolean result = data.retainAll(roaring(subSet));
+		size = data.size();
+		return result;
+	}
+
+	private static RoaringIntSet roaring(IntSetWritable set) {
+		if (set instanceof RoaringIntSetWritable) {
+			return ((RoaringIntSetWritable) set).data;
+		}
+		return RoaringIntSet.of(set.toArray());
+	}
+
+	/** Returns the number of elements in both sets, without building the intersection */
+	public int andCardinality(RoaringIntSetWritable other) {
+		return RoaringIntSet.andCardinality(data, other.data);
+	}
+
+	/**
+	 * Turns the containers into run containers wherever that is smaller, so
+	 * that the set takes less memory and fewer bytes once written.
+	 *
+	 * @return true if any container was changed
+	 */
+	public boolean runOptimize() {
+		return data.runOptimize();
+	}
+
+	@Override
+	public void ensureCapacity(int minCapacity) {
+		// containers grow by themselves
+	}
+
+	@Override
+	public void trimToSize() {
+		data.trim();
+	}
+
+	@Override
+	public void clear() {
+		data.clear();
+		size = 0;
+	}
+
+	/** Returns the elements in a new array, in unsigned order */
+	@Override
+	public int[] toArray() {
+		return data.toArray();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (!(obj instanceof RoaringIntSetWritable)) return false;
+		return data.equals(((RoaringIntSetWritable) obj).data);
+	}
+
+	/** Depends on the elements only, so that HashPartitioner sends equal sets to the same reducer */
+	@Override
+	public int hashCode() {
+		return data.hashCode();
+	}
+
+	/**
+	 * Deserializes this object from the portable Roaring format.
+	 *
+	 * @param in source for raw byte representation
+	 */
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		data.deserialize(in);
+		size = data.size();
+	}
+
+	/**
+	 * Serializes this object in the portable Roaring format.
+	 *
+	 * @param out	where to write the raw byte representation
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		data.serialize(out);
+	}
+
+	/**
+	 * Comparator that orders serialized sets like
+	 * {@link IntSetWritable#compareTo}, by reading their elements in signed
+	 * order from the bytes, with no set being deserialized.
+	 */
+	public static class Comparator extends WritableComparator {
+
+		private static final ThreadLocal<Views> VIEWS = new ThreadLocal<Views>() {
+			@Override
+			protected Views initialValue() {
+				return new Views();
+			}
+		};
+
+		public Comparator() {
+			super(RoaringIntSetWritable.class);
+		}
+
+		/**
+		 * Optimization hook.
+		 */
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			Views v = VIEWS.get();
+			ImmutableRoaringIntSet.Cursor c1, c2;
+			try {
+				c1 = v.c1.reset(v.set1.wrap(v.buffer1(b1), s1), true);
+				c2 = v.c2.reset(v.set2.wrap(v.buffer2(b2), s2), true);
+			} catch (IOException e) {
+				throw new IllegalArgumentException(e);
+			}
+			while (c1.hasNext() && c2.hasNext()) {
+				int e1 = c1.next();
+				int e2 = c2.next();
+				if (e1 != e2) {
+					return (e1 < e2) ? -1 : 1;
+				}
+			}
+			return c1.hasNext() ? 1 : (c2.hasNext() ? -1 : 0);
+		}
+	}
+
+	/** Views and cursors of one thread, re-wrapped for every comparison */
+	private static final class Views {
+		final ImmutableRoaringIntSet set1 = new ImmutableRoaringIntSet();
+		final ImmutableRoaringIntSet set2 = new ImmutableRoaringIntSet();
+		final ImmutableRoaringIntSet.Cursor c1 = new ImmutableRoaringIntSet.Cursor();
+		final ImmutableRoaringIntSet.Cursor c2 = new ImmutableRoaringIntSet.Cursor();
+		private ByteBuffer buffer1, buffer2;
+
+		// the map output buffer is the same array for most comparisons
+		ByteBuffer buffer1(byte[] b) {
+			if (buffer1 == null || buffer1.array() != b) {
+				buffer1 = ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+			}
+			return buffer1;
+		}
+
+		ByteBuffer buffer2(byte[] b) {
+			if (buffer2 == null || buffer2.array() != b) {
+				buffer2 = ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+			}
+			return buffer2;
+		}
+	}
+
+	static { // register this comparator
+		WritableComparator.define(RoaringIntSetWritable.class, new Comparator());
+	}
+}
@@ -154,16 +154,15 @@ public class StringTripleWritable implements WritableComparable<StringTripleWrit
 				
 				return compareBytes(b1, s1 + firstVIntL1 + firstStrL1 
 						+ secondVIntL1 + secondStrL1 + thirdVIntL1, thirdStrL1, b2,
-						s2 + firstVIntL2 + firstStrL2 + secondVIntL2 +thirdVIntL2, thirdStrL2);
+						s2 + firstVIntL2 + firstStrL2 + secondVIntL2 + secondStrL2 + thirdVIntL2, thirdStrL2);
 				
 			} catch (IOException e) {
 				throw new IllegalArgumentException(e);
 			}
 		}
+	}
 
-
-		static { // register this comparator
-			WritableComparator.define(StringTripleWritable.class, new Comparator());
-		}
+	static { // register this comparator
+		WritableComparator.define(StringTripleWritable.class, new Comparator());
 	}
 }
\ No newline at end of file
@@ -19,7 +19,8 @@ import basics.Basics.InvalidTripleException;
 /**
  * Class FactCollection
  * 
- * Represents a collection of facts, indexes them
+ * Represents a collection of facts, indexes them. For large collections
+ * that do not change after loading, see TripleStore.
  * 
  * @author Fabian M. Suchanek
  */
@@ -327,6 +328,14 @@ public class FactCollection implements Iterable<Fact> {
   public int size() {
     return facts.size();
   }
+
+  /** Returns a read-only TripleStore with the positive facts of this collection */
+  public synchronized TripleStore toTripleStore(String technique) {
+    TripleStore.Builder builder = new TripleStore.Builder();
+    for (Fact f : facts)
+      builder.add(f);
+    return builder.build(technique);
+  }
   
   public String toString() {
     return facts.toString();
@@ -0,0 +1,274 @@
+package basics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javatools.datatypes.PeekIterator;
+
+/**
+ * Class JoinIterator
+ *
+ * Iterates over the variable bindings of a list of fact templates in a
+ * TripleStore. This is the in-memory counterpart of the SQL self-join of
+ * QueryProcessor.sqlFor. The templates are joined by index nested loops: at
+ * every step, the template with the fewest matches under the current
+ * bindings is taken next, which the TripleStore can tell in O(log n).
+ * Templates with virtual relations are checked as soon as both of their
+ * arguments are bound. Solutions are computed lazily, one per call of
+ * next().<BR>
+ * A template whose first argument refers to a previous template (#x) is
+ * evaluated after that template, with the first argument "#" + hashCode of
+ * the matched fact, as in TripleStore.
+ */
+public class JoinIterator extends PeekIterator<Map<String, String>> {
+
+	/** Holds the store */
+	protected final TripleStore store;
+	/** Holds the names of the variables */
+	protected final List<String> variables = new ArrayList<String>();
+	/** Holds the templates with stored relations */
+	protected final List<Fact> patterns = new ArrayList<Fact>();
+	/** Holds the templates with virtual relations */
+	protected final List<Fact> virtuals = new ArrayList<Fact>();
+	/** Holds the constant id of arg1, relation, arg2 of each pattern, -1 for variables */
+	protected int[][] constants;
+	/** Holds the variable of arg1, relation, arg2 of each pattern, -1 for constants */
+	protected int[][] patternVariables;
+	/** Holds the pattern that the first arg of each pattern refers to, -1 if none */
+	protected int[] references;
+	/** Holds the variables of arg1 and arg2 of each virtual template, -1 for constants */
+	protected int[][] virtualVariables;
+	/** TRUE if a constant does not occur in the store */
+	protected boolean empty = false;
+
+	/** Holds the value of each variable, -1 if unbound */
+	protected int[] binding;
+	/** Holds the depth at which each variable was bound */
+	protected int[] boundAt;
+	/** Holds the depth at which each virtual template was checked, -1 if not yet */
+	protected int[] checkedAt;
+	/** TRUE for patterns that are evaluated at some depth */
+	protected boolean[] used;
+	/** Holds the pattern evaluated at each depth */
+	protected int[] patternAt;
+	/** Holds the matches at each depth */
+	protected TripleStore.Range[] matches;
+	/** Holds the next match at each depth */
+	protected int[] cursor;
+	/** Holds the matched fact of each pattern, for references */
+	protected Fact[] matched;
+	/** Current depth, -1 before the first solution */
+	protected int depth = -1;
+
+	/** Prepares the join for the templates */
+	public JoinIterator(TripleStore store, List<Fact> templates) throws Basics.InvalidTripleException {
+		this.store = store;
+		for (Fact template : templates) {
+			if (Basics.virtualRelations != null && Basics.virtualRelations.containsKey(template.relation))
+				virtuals.add(template);
+			else
+				patterns.add(template);
+		}
+		if (patterns.size() == 0)
+			throw new Basics.InvalidTripleException("No non-virtual relation");
+		int n = patterns.size();
+		constants = new int[n][3];
+		patternVariables = new int[n][3];
+		references = new int[n];
+		for (int i = 0; i < n; i++) {
+			Fact pattern = patterns.get(i);
+			references[i] = -1;
+			if (pattern.arg1fact != null) {
+				references[i] = indexOf(patterns, pattern.arg1fact);
+				if (references[i] == -1 || references[i] >= i)
+					throw new Basics.InvalidTripleException("Reference to a virtual or later template in", pattern);
+			}
+			String[] terms = { pattern.arg1, pattern.relation, pattern.arg2 };
+			for (int t = 0; t < 3; t++) {
+				constants[i][t] = -1;
+				patternVariables[i][t] = -1;
+				if (t == 0 && references[i] != -1)
+					continue;
+				if (QueryProcessor.isVariable(terms[t])) {
+					patternVariables[i][t] = variable(terms[t], true);
+				} else {
+					constants[i][t] = store.id(terms[t]);
+					if (constants[i][t] == -1)
+						empty = true;
+				}
+			}
+		}
+		virtualVariables = new int[virtuals.size()][2];
+		for (int i = 0; i < virtuals.size(); i++) {
+			Fact virtual = virtuals.get(i);
+			for (int a = 1; a < 3; a++) {
+				String arg = virtual.getArg(a);
+				virtualVariables[i][a - 1] = QueryProcessor.isVariable(arg) ? variable(arg, false) : -1;
+			}
+		}
+		binding = new int[variables.size()];
+		boundAt = new int[variables.size()];
+		Arrays.fill(binding, -1);
+		checkedAt = new int[virtuals.size()];
+		Arrays.fill(checkedAt, -1);
+		used = new boolean[n];
+		patternAt = new int[n];
+		matches = new TripleStore.Range[n];
+		cursor = new int[n];
+		matched = new Fact[n];
+	}
+
+	/** Returns the position of a fact in a list by identity, or -1 */
+	protected static int indexOf(List<Fact> facts, Fact fact) {
+		for (int i = 0; i < facts.size(); i++)
+			if (facts.get(i) == fact)
+				return (i);
+		return (-1);
+	}
+
+	/** Returns the number of a variable, creates it if allowed */
+	protected int variable(String name, boolean create) throws Basics.InvalidTripleException {
+		int v = variables.indexOf(name);
+		if (v == -1) {
+			if (!create)
+				throw new Basics.InvalidTripleException("Unbound argument for virtual relation", name);
+			v = variables.size();
+			variables.add(name);
+		}
+		return (v);
+	}
+
+	/** Returns the id that a term of a pattern must have, -1 for any */
+	protected int required(int pattern, int term) {
+		if (term == 0 && references[pattern] != -1)
+			return (store.id("#" + matched[references[pattern]].hashCode()));
+		int v = patternVariables[pattern][term];
+		return (v == -1 ? constants[pattern][term] : binding[v]);
+	}
+
+	/** Returns the size of a range, 0 for null */
+	protected static int size(TripleStore.Range m) {
+		return (m == null ? 0 : m.size());
+	}
+
+	/** Chooses the pattern with the fewest matches for the given depth */
+	protected void open(int d) {
+		int best = -1;
+		TripleStore.Range bestMatches = null;
+		for (int i = 0; i < patterns.size(); i++) {
+			if (used[i] || (references[i] != -1 && !used[references[i]]))
+				continue;
+			int a1 = required(i, 0);
+			// A referenced fact that is not the first arg of any fact has no matches
+			TripleStore.Range m = a1 == -1 && references[i] != -1 ? null : store.match(a1, required(i, 1), required(i, 2));
+			if (best == -1 || size(m) < size(bestMatches)) {
+				best = i;
+				bestMatches = m;
+				if (size(m) == 0)
+					break;
+			}
+		}
+		used[best] = true;
+		patternAt[d] = best;
+		matches[d] = bestMatches;
+		cursor[d] = 0;
+	}
+
+	/** Releases the bindings made at a depth */
+	protected void unbind(int d) {
+		for (int v = 0; v < binding.length; v++)
+			if (binding[v] != -1 && boundAt[v] == d)
+				binding[v] = -1;
+		for (int i = 0; i < checkedAt.length; i++)
+			if (checkedAt[i] == d)
+				checkedAt[i] = -1;
+	}
+
+	/** Binds a variable or checks its binding, returns FALSE on a conflict */
+	protected boolean bind(int v, int value, int d) {
+		if (v == -1)
+			return (true);
+		if (binding[v] == -1) {
+			binding[v] = value;
+			boundAt[v] = d;
+			return (true);
+		}
+		return (binding[v] == value);
+	}
+
+	/** Returns the value of an argument of a virtual template */
+	protected String virtualArg(int i, int a) {
+		int v = virtualVariables[i][a - 1];
+		return (v == -1 ? virtuals.get(i).getArg(a) : store.string(binding[v]));
+	}
+
+	/** Checks the virtual templates whose arguments became bound at depth d */
+	protected boolean checkVirtuals(int d) {
+		for (int i = 0; i < virtuals.size(); i++) {
+			if (checkedAt[i] != -1)
+				continue;
+			int v1 = virtualVariables[i][0], v2 = virtualVariables[i][1];
+			if ((v1 != -1 && binding[v1] == -1) || (v2 != -1 && binding[v2] == -1))
+				continue;
+			checkedAt[i] = d;
+			Fact evalMe = new Fact(virtuals.get(i));
+			evalMe.arg1 = virtualArg(i, 1);
+			evalMe.arg2 = virtualArg(i, 2);
+			if (!Basics.virtualHolds(evalMe))
+				return (false);
+		}
+		return (true);
+	}
+
+	/** Moves to the next match at depth d, returns FALSE if there is none */
+	protected boolean advance(int d) {
+		int pattern = patternAt[d];
+		TripleStore.Range m = matches[d];
+		int[] vars = patternVariables[pattern];
+		while (cursor[d] < size(m)) {
+			int i = cursor[d]++;
+			unbind(d);
+			if (bind(vars[0], m.arg1(i), d) && bind(vars[1], m.relation(i), d) && bind(vars[2], m.arg2(i), d) && checkVirtuals(d)) {
+				if (references[pattern] == -1)
+					matched[pattern] = new Fact(store.string(m.arg1(i)), store.string(m.relation(i)), store.string(m.arg2(i)), null);
+				else
+					matched[pattern] = new Fact(matched[references[pattern]], store.string(m.relation(i)), store.string(m.arg2(i)));
+				return (true);
+			}
+		}
+		unbind(d);
+		used[pattern] = false;
+		return (false);
+	}
+
+	@Override
+	protected Map<String, String> internalNext() throws Exception {
+		if (empty)
+			return (null);
+		if (depth == -1) {
+			// Variables of virtual templates without stored relations have no binding
+			if (!checkVirtuals(-2))
+				return (null);
+			depth = 0;
+			open(0);
+		}
+		while (depth >= 0) {
+			if (!advance(depth)) {
+				depth--;
+				continue;
+			}
+			if (depth == patterns.size() - 1) {
+				Map<String, String> result = new TreeMap<String, String>();
+				for (int v = 0; v < variables.size(); v++)
+					result.put(variables.get(v), store.string(binding[v]));
+				return (result);
+			}
+			open(++depth);
+		}
+		empty = true;
+		return (null);
+	}
+}
@@ -45,6 +45,9 @@ public class QueryProcessor implements Closeable {
 	/** Holds the database*/
 	protected Database db;
 
+	/** Holds the triple store, if queries are answered in memory*/
+	protected TripleStore store;
+
 	/** Represents an sql command plus a sequence of variables */
 	public static class SQLCommand {
 
@@ -70,6 +73,11 @@ public class QueryProcessor implements Closeable {
 		db=db2;
 	}
 
+	/** Answers queries from a TripleStore by in-memory joins instead of SQL*/
+	public QueryProcessor(TripleStore store) {
+		this.store=store;
+	}
+
 	/** Tells whether a string starts with "?" */
 	public static boolean isVariable(String s) {
 		return (s.startsWith("?"));
@@ -236,9 +244,15 @@ public class QueryProcessor implements Closeable {
 		return (true);
 	}
 
-	/** Iterates over variable bindings for a list of templates */
+	/**
+	 * Iterates over variable bindings for a list of templates. With a
+	 * TripleStore, the bindings are computed by a JoinIterator and are not
+	 * limited to MAXSQLRES.
+	 */
 	public PeekIterator<Map<String, String>> solutions(
 			final List<Fact> templates) throws Basics.InvalidTripleException {
+		if (store != null)
+			return (new JoinIterator(store, templates));
 
 		final SQLCommand sql = sqlFor(templates);
 		Announce.debug(templates,sql.command);
@@ -335,13 +349,16 @@ public class QueryProcessor implements Closeable {
 				D.p(e.getMessage());
 			}
 		}
-		Announce.doing("Closing database");
-		db.close();
-		Announce.done();
+		if (db != null) {
+			Announce.doing("Closing database");
+			db.close();
+			Announce.done();
+		}
 	}
 
 	@Override
 	public void close() throws IOException {
-		db.close();
+		if (db != null)
+			db.close();
 	}
 }
@@ -0,0 +1,549 @@
+package basics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import javatools.filehandlers.FileLines;
+
+/**
+ * Class TripleStore
+ *
+ * Read-only, dictionary-encoded collection of facts. Every entity and relation
+ * is mapped to an int id; the ids follow the lexicographic order of the
+ * strings, so that the dictionary is a sorted array. The triples are kept in
+ * three sorted int orders (subject-predicate-object, predicate-object-subject,
+ * object-subject-predicate), so that the lookups by first arg, by relation, by
+ * relation and second arg and by second arg all take O(log n). This needs
+ * about 20 bytes per fact plus the strings, compared to several hundred
+ * bytes per fact in a FactCollection.<BR>
+ * A TripleStore is built by a Builder, by load() or by
+ * FactCollection.toTripleStore(). It cannot be changed afterwards, and it can
+ * be read by any number of threads without locking.
+ *
+ * <PRE>
+ * TripleStore yago = TripleStore.load(new File(&quot;facts.tsv&quot;), &quot;YAGO&quot;);
+ * List&lt;String&gt; parents = yago.getArg1s(&quot;hasChild&quot;, &quot;Elvis_Presley&quot;);
+ * </PRE>
+ *
+ * Duplicate facts and facts with identical arguments are dropped, as in
+ * FactCollection. Meta facts are stored with first arg "#" + hashCode of the
+ * fact they refer to, as Fact does.
+ */
+public class TripleStore implements Iterable<Fact> {
+
+	/** Holds the strings, sorted; the id of a string is its position */
+	protected final String[] dictionary;
+	/** Holds the first args in SPO order */
+	protected final int[] s;
+	/** Holds the relations in SPO order */
+	protected final int[] p;
+	/** Holds the second args in SPO order */
+	protected final int[] o;
+	/** Holds the SPO positions in POS order */
+	protected final int[] pos;
+	/** Holds the SPO positions in OSP order */
+	protected final int[] osp;
+	/** Holds the technique of the facts returned */
+	protected final String technique;
+
+	/** Builds a TripleStore from added triples */
+	public static class Builder {
+		/** Maps strings to temporary ids */
+		protected Map<String, Integer> ids = new HashMap<String, Integer>();
+		/** Holds the strings in the order of their temporary ids */
+		protected List<String> strings = new ArrayList<String>();
+		/** Holds the triples, 3 temporary ids each */
+		protected int[] triples = new int[3 * 1024];
+		/** Number of triples */
+		protected int size = 0;
+
+		/** Returns the temporary id of a string */
+		protected int id(String string) {
+			Integer id = ids.get(string);
+			if (id == null) {
+				id = strings.size();
+				ids.put(string, id);
+				strings.add(string);
+			}
+			return (id);
+		}
+
+		/** Adds a triple, returns FALSE for facts with identical arguments */
+		public boolean add(String arg1, String relation, String arg2) {
+			if (arg1.equals(arg2))
+				return (false);
+			if (size * 3 == triples.length)
+				triples = Arrays.copyOf(triples, triples.length * 2);
+			triples[size * 3] = id(arg1);
+			triples[size * 3 + 1] = id(relation);
+			triples[size * 3 + 2] = id(arg2);
+			size++;
+			return (true);
+		}
+
+		/** Adds a positive fact, returns FALSE for others */
+		public boolean add(Fact fact) {
+			if (!fact.polarity)
+				return (false);
+			return (add(fact.arg1, fact.relation, fact.arg2));
+		}
+
+		/** Adds facts from a TSV file as FactCollection.loadFrom does */
+		public Builder loadFrom(File tsvFile) throws IOException {
+			Fact previous = null;
+			for (String line : new FileLines(tsvFile, "Loading from " + tsvFile)) {
+				String[] split = line.split("\t");
+				if (split.length != 3)
+					continue;
+				if (split[0].length() == 0)
+					previous = new Fact(previous, split[1].trim(), split[2].trim());
+				else
+					previous = new Fact(split[0].trim(), split[1].trim(), split[2].trim(), null);
+				add(previous.arg1, previous.relation, previous.arg2);
+			}
+			return (this);
+		}
+
+		/** Returns the number of triples added so far */
+		public int size() {
+			return (size);
+		}
+
+		/** Builds the store. The builder is empty afterwards. */
+		public TripleStore build(String technique) {
+			// Renumber the strings in lexicographic order
+			String[] dictionary = strings.toArray(new String[strings.size()]);
+			Integer[] order = new Integer[dictionary.length];
+			for (int i = 0; i < order.length; i++)
+				order[i] = i;
+			final String[] unsorted = dictionary;
+			Arrays.sort(order, new java.util.Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					return (unsorted[a].compareTo(unsorted[b]));
+				}
+			});
+			int[] newId = new int[order.length];
+			String[] sorted = new String[order.length];
+			for (int i = 0; i < order.length; i++) {
+				newId[order[i]] = i;
+				sorted[i] = unsorted[order[i]];
+			}
+			order = null;
+			ids = new HashMap<String, Integer>();
+			strings = new ArrayList<String>();
+			int[] t = triples;
+			int n = size;
+			triples = new int[3 * 1024];
+			size = 0;
+			for (int i = 0; i < 3 * n; i++)
+				t[i] = newId[t[i]];
+			newId = null;
+			// Sort into SPO order and drop duplicates
+			int[] perm = identity(n);
+			sort(perm, t, 0, 1, 2);
+			int[] s = new int[n], p = new int[n], o = new int[n];
+			int m = 0;
+			for (int i = 0; i < n; i++) {
+				int k = perm[i] * 3;
+				if (m > 0 && s[m - 1] == t[k] && p[m - 1] == t[k + 1] && o[m - 1] == t[k + 2])
+					continue;
+				s[m] = t[k];
+				p[m] = t[k + 1];
+				o[m] = t[k + 2];
+				m++;
+			}
+			t = null;
+			perm = null;
+			s = Arrays.copyOf(s, m);
+			p = Arrays.copyOf(p, m);
+			o = Arrays.copyOf(o, m);
+			return (new TripleStore(sorted, s, p, o, technique));
+		}
+	}
+
+	/** Creates a store from columns in SPO order without duplicates */
+	protected TripleStore(String[] dictionary, int[] s, int[] p, int[] o, String technique) {
+		this.dictionary = dictionary;
+		this.s = s;
+		this.p = p;
+		this.o = o;
+		this.technique = technique;
+		int[] spo = interleave(s, p, o);
+		pos = identity(s.length);
+		sort(pos, spo, 1, 2, 0);
+		osp = identity(s.length);
+		sort(osp, spo, 2, 0, 1);
+	}
+
+	/** Loads the facts of a TSV file */
+	public static TripleStore load(File tsvFile, String technique) throws IOException {
+		return (new Builder().loadFrom(tsvFile).build(technique));
+	}
+
+	/** Returns 0..n-1 */
+	protected static int[] identity(int n) {
+		int[] result = new int[n];
+		for (int i = 0; i < n; i++)
+			result[i] = i;
+		return (result);
+	}
+
+	/** Returns the triples as one array, 3 ids each */
+	protected static int[] interleave(int[] s, int[] p, int[] o) {
+		int[] result = new int[s.length * 3];
+		for (int i = 0; i < s.length; i++) {
+			result[i * 3] = s[i];
+			result[i * 3 + 1] = p[i];
+			result[i * 3 + 2] = o[i];
+		}
+		return (result);
+	}
+
+	/** Compares the triples a and b by the components k0, k1, k2 */
+	protected static int compare(int[] t, int a, int b, int k0, int k1, int k2) {
+		a *= 3;
+		b *= 3;
+		if (t[a + k0] != t[b + k0])
+			return (t[a + k0] < t[b + k0] ? -1 : 1);
+		if (t[a + k1] != t[b + k1])
+			return (t[a + k1] < t[b + k1] ? -1 : 1);
+		if (t[a + k2] != t[b + k2])
+			return (t[a + k2] < t[b + k2] ? -1 : 1);
+		return (0);
+	}
+
+	/** Sorts the triple numbers in perm by the components k0, k1, k2 of the triples in t */
+	protected static void sort(int[] perm, int[] t, int k0, int k1, int k2) {
+		if (perm.length < 2)
+			return;
+		int[] buffer = new int[perm.length];
+		mergeSort(perm, buffer, 0, perm.length, t, k0, k1, k2);
+	}
+
+	/** Sorts perm[from..to) with a merge sort, which is stable and needs no boxing */
+	protected static void mergeSort(int[] perm, int[] buffer, int from, int to, int[] t, int k0, int k1, int k2) {
+		if (to - from <= 16) {
+			for (int i = from + 1; i < to; i++) {
+				int x = perm[i];
+				int j = i - 1;
+				while (j >= from && compare(t, perm[j], x, k0, k1, k2) > 0) {
+					perm[j + 1] = perm[j];
+					j--;
+				}
+				perm[j + 1] = x;
+			}
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		mergeSort(perm, buffer, from, mid, t, k0, k1, k2);
+		mergeSort(perm, buffer, mid, to, t, k0, k1, k2);
+		if (compare(t, perm[mid - 1], perm[mid], k0, k1, k2) <= 0)
+			return;
+		System.arraycopy(perm, from, buffer, from, to - from);
+		int i = from, j = mid, k = from;
+		while (i < mid && j < to)
+			perm[k++] = compare(t, buffer[j], buffer[i], k0, k1, k2) < 0 ? buffer[j++] : buffer[i++];
+		while (i < mid)
+			perm[k++] = buffer[i++];
+		while (j < to)
+			perm[k++] = buffer[j++];
+	}
+
+	/** Returns the id of a string, or -1 */
+	public int id(String string) {
+		if (string == null)
+			return (-1);
+		int i = Arrays.binarySearch(dictionary, string);
+		return (i < 0 ? -1 : i);
+	}
+
+	/** Returns the string of an id */
+	public String string(int id) {
+		return (dictionary[id]);
+	}
+
+	/** Returns the number of distinct strings */
+	public int numStrings() {
+		return (dictionary.length);
+	}
+
+	/** Returns the number of facts */
+	public int size() {
+		return (s.length);
+	}
+
+	/** Returns the first key of the fact at position i of an order */
+	protected int key(int[] perm, int[] c, int i) {
+		return (c[perm == null ? i : perm[i]]);
+	}
+
+	/**
+	 * Returns the first position in an order where the keys (c0, c1) are
+	 * &gt;= (v0, v1), or &gt; (v0, v1) if after is set. v1=-1 compares c0 only.
+	 */
+	protected int bound(int[] perm, int[] c0, int[] c1, int v0, int v1, boolean after) {
+		int low = 0, high = s.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			int k0 = key(perm, c0, mid);
+			int cmp = k0 < v0 ? -1 : k0 > v0 ? 1 : 0;
+			if (cmp == 0 && v1 != -1) {
+				int k1 = key(perm, c1, mid);
+				cmp = k1 < v1 ? -1 : k1 > v1 ? 1 : 0;
+			}
+			if (cmp < 0 || (after && cmp == 0))
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return (low);
+	}
+
+	/** Returns the SPO positions of the facts with matching keys in an order */
+	protected int[] find(int[] perm, int[] c0, int[] c1, int v0, int v1) {
+		if (v0 == -1)
+			return (EMPTY_RANGE);
+		int from = bound(perm, c0, c1, v0, v1, false);
+		int to = bound(perm, c0, c1, v0, v1, true);
+		return (new int[] { from, to });
+	}
+
+	/** Empty position range */
+	protected static final int[] EMPTY_RANGE = new int[] { 0, 0 };
+
+	/** Returns the given component of the facts in a range of an order as strings */
+	protected List<String> strings(final int[] perm, final int[] range, final int[] component) {
+		if (range[0] == range[1])
+			return (Collections.<String> emptyList());
+		return (new AbstractList<String>() {
+			@Override
+			public String get(int i) {
+				return (dictionary[key(perm, component, range[0] + i)]);
+			}
+
+			@Override
+			public int size() {
+				return (range[1] - range[0]);
+			}
+		});
+	}
+
+	/** A range of facts in one of the orders, as returned by match() */
+	public class Range {
+		/** Holds the order (null for SPO) */
+		protected final int[] perm;
+		/** Holds the first position */
+		protected final int from;
+		/** Holds the position after the last one */
+		protected final int to;
+
+		protected Range(int[] perm, int from, int to) {
+			this.perm = perm;
+			this.from = from;
+			this.to = to;
+		}
+
+		/** Returns the number of facts */
+		public int size() {
+			return (to - from);
+		}
+
+		/** Returns the SPO position of the i-th fact */
+		protected int position(int i) {
+			return (perm == null ? from + i : perm[from + i]);
+		}
+
+		/** Returns the id of the first arg of the i-th fact */
+		public int arg1(int i) {
+			return (s[position(i)]);
+		}
+
+		/** Returns the id of the relation of the i-th fact */
+		public int relation(int i) {
+			return (p[position(i)]);
+		}
+
+		/** Returns the id of the second arg of the i-th fact */
+		public int arg2(int i) {
+			return (o[position(i)]);
+		}
+	}
+
+	/**
+	 * Returns the facts that match the given ids, where -1 matches any id.
+	 * Takes O(log n) for every combination of given ids.
+	 */
+	public Range match(int arg1, int relation, int arg2) {
+		int[] perm = null;
+		int[] range;
+		if (arg1 != -1 && relation != -1) {
+			range = find(null, s, p, arg1, relation);
+			if (arg2 != -1) {
+				int low = range[0], high = range[1];
+				while (low < high) {
+					int mid = (low + high) >>> 1;
+					if (o[mid] < arg2)
+						low = mid + 1;
+					else
+						high = mid;
+				}
+				range = new int[] { low, low < range[1] && o[low] == arg2 ? low + 1 : low };
+			}
+		} else if (arg1 != -1) {
+			if (arg2 != -1)
+				range = find(perm = osp, o, s, arg2, arg1);
+			else
+				range = find(null, s, p, arg1, -1);
+		} else if (relation != -1) {
+			range = find(perm = pos, p, o, relation, arg2);
+		} else if (arg2 != -1) {
+			range = find(perm = osp, o, s, arg2, -1);
+		} else {
+			range = new int[] { 0, s.length };
+		}
+		return (new Range(perm, range[0], range[1]));
+	}
+
+	/** Returns the facts in a range of an order */
+	protected List<Fact> facts(final int[] perm, final int[] range) {
+		if (range[0] == range[1])
+			return (Collections.<Fact> emptyList());
+		return (new AbstractList<Fact>() {
+			@Override
+			public Fact get(int i) {
+				i += range[0];
+				return (fact(perm == null ? i : perm[i]));
+			}
+
+			@Override
+			public int size() {
+				return (range[1] - range[0]);
+			}
+		});
+	}
+
+	/** Returns the fact at SPO position i */
+	protected Fact fact(int i) {
+		return (new Fact(dictionary[s[i]], dictionary[p[i]], dictionary[o[i]], technique));
+	}
+
+	/** TRUE if the fact is in the store */
+	public boolean contains(String arg1, String relation, String arg2) {
+		int a = id(arg1), r = id(relation), b = id(arg2);
+		if (a == -1 || r == -1 || b == -1)
+			return (false);
+		return (match(a, r, b).size() != 0);
+	}
+
+	/** TRUE if the positive fact is in the store */
+	public boolean contains(Fact fact) {
+		return (fact.polarity && contains(fact.arg1, fact.relation, fact.arg2));
+	}
+
+	/** Returns facts with matching first arg and relation */
+	public List<Fact> get(String arg1, String relation) {
+		return (facts(null, find(null, s, p, id(arg1), idOrSkip(relation))));
+	}
+
+	/** Returns facts with matching relation */
+	public List<Fact> get(String relation) {
+		return (facts(pos, find(pos, p, o, id(relation), -1)));
+	}
+
+	/** Returns facts with matching first arg */
+	public List<Fact> getByArg1(String arg1) {
+		return (facts(null, find(null, s, p, id(arg1), -1)));
+	}
+
+	/** Returns facts with matching second arg */
+	public List<Fact> getByArg2(String arg2) {
+		return (facts(osp, find(osp, o, s, id(arg2), -1)));
+	}
+
+	/** Returns the second argument of the first fact with matching first arg and relation, or null */
+	public String getArg2(String arg1, String relation) {
+		List<String> result = getArg2s(arg1, relation);
+		return (result.isEmpty() ? null : result.get(0));
+	}
+
+	/** Returns second arguments of facts with matching first arg and relation, sorted */
+	public List<String> getArg2s(String arg1, String relation) {
+		return (strings(null, find(null, s, p, id(arg1), idOrSkip(relation)), o));
+	}
+
+	/** Returns first arguments of facts with matching relation and second arg, sorted */
+	public List<String> getArg1s(String relation, String arg2) {
+		return (strings(pos, find(pos, p, o, id(relation), idOrSkip(arg2)), s));
+	}
+
+	/**
+	 * Returns the id of a second key, or an id that cannot match. -1 would
+	 * make find() ignore the key.
+	 */
+	protected int idOrSkip(String string) {
+		int id = id(string);
+		return (id == -1 ? Integer.MAX_VALUE : id);
+	}
+
+	/** TRUE if the fact holds in the union of the stores, with "$" as wildcard, as in FactCollection */
+	public static boolean holdsPositive(Fact formula, TripleStore... stores) {
+		if (Basics.virtualHolds(formula))
+			return (true);
+		for (TripleStore store : stores) {
+			if (formula.arg1.equals("$")) {
+				if (store.getArg1s(formula.relation, formula.arg2).size() != 0)
+					return (true);
+			} else if (formula.arg2.equals("$")) {
+				if (store.getArg2s(formula.arg1, formula.relation).size() != 0)
+					return (true);
+			} else if (store.contains(formula.arg1, formula.relation, formula.arg2)) {
+				return (true);
+			}
+		}
+		return (false);
+	}
+
+	/** TRUE if the facts holds in the union of the stores */
+	public static boolean holds(Fact formula, TripleStore... stores) {
+		return (holdsPositive(formula, stores) == formula.polarity);
+	}
+
+	/** Iterates over the facts in SPO order */
+	@Override
+	public Iterator<Fact> iterator() {
+		return (new Iterator<Fact>() {
+			int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return (i < s.length);
+			}
+
+			@Override
+			public Fact next() {
+				if (i >= s.length)
+					throw new NoSuchElementException();
+				return (fact(i++));
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		});
+	}
+
+	@Override
+	public String toString() {
+		return ("TripleStore with " + size() + " facts and " + numStrings() + " strings");
+	}
+}